@@ -0,0 +1,70 @@
+package ca.polymtl.crac.tpot.bench;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the command line options of JMH. Unless other
+ * profilers or another result format are given, the allocation rate is
+ * measured with the gc profiler and the results, one per benchmark and set
+ * of parameters, are written to "jmh-result.json" for plotting the scaling
+ * curves and comparing two versions.
+ * @author Daniel Lefevre
+ */
+public final class BenchmarkMain {
+
+    /**
+     * The default result file.
+     */
+    private static final String RESULT_FILE = "jmh-result.json";
+
+    /**
+     * Private constructor.
+     */
+    private BenchmarkMain() {
+    }
+
+    /**
+     * Main.
+     * @param args
+     *            the options of JMH, see "-h"
+     * @throws CommandLineOptionException
+     *             if the options are incorrect
+     * @throws RunnerException
+     *             if a benchmark failed
+     * @throws IOException
+     *             if the help could not be written
+     */
+    public static void main(final String[] args)
+            throws CommandLineOptionException, RunnerException, IOException {
+        CommandLineOptions options = new CommandLineOptions(args);
+        if (options.shouldHelp()) {
+            options.showHelp();
+            return;
+        }
+        if (options.shouldList()) {
+            new Runner(options).list();
+            return;
+        }
+
+        ChainedOptionsBuilder builder = new OptionsBuilder().parent(options);
+        if (options.getIncludes().isEmpty()) {
+            builder.include(BenchmarkMain.class.getPackage().getName() + ".*");
+        }
+        if (options.getProfilers().isEmpty()) {
+            builder.addProfiler(GCProfiler.class);
+        }
+        if (!options.getResultFormat().hasValue()) {
+            builder.resultFormat(ResultFormatType.JSON).result(RESULT_FILE);
+        }
+        new Runner(builder.build()).run();
+    }
+}
@@ -0,0 +1,160 @@
+package ca.polymtl.crac.tpot.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import net.jautomata.rationals.Automaton;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import ca.polymtl.crac.tpot.model.Model;
+import ca.polymtl.crac.tpot.model.Opacity;
+import ca.polymtl.crac.tpot.model.io.AutoParser;
+import ca.polymtl.crac.tpot.model.io.RegParser;
+
+/**
+ * The benchmark state holding a {@link SyntheticModel}, written to temporary
+ * files and parsed once per trial. The parameters give the scaling curves of
+ * the benchmarks, and can be overridden with the "-p" option of JMH.
+ * @author Daniel Lefevre
+ */
+@State(Scope.Benchmark)
+public class GeneratedModel {
+
+    /**
+     * The number of working states.
+     */
+    @Param({"16", "128", "1024" })
+    private int states;
+    /**
+     * The number of working letters.
+     */
+    @Param({"2", "8" })
+    private int alphabet;
+    /**
+     * The number of transitions of a state for each working letter. Above 1,
+     * the automaton is not deterministic and the subset constructions of the
+     * validation grow quickly with the number of states.
+     */
+    @Param({"1" })
+    private int branching;
+    /**
+     * The probability that a transition goes back.
+     */
+    @Param({"0.2" })
+    private double cycleDensity;
+    /**
+     * The number of observations.
+     */
+    @Param({"4" })
+    private int observations;
+    /**
+     * The number of observations included in the predicate.
+     */
+    @Param({"2" })
+    private int secrets;
+    /**
+     * The seed of the generator.
+     */
+    @Param({"42" })
+    private long seed;
+
+    /**
+     * The generated model.
+     */
+    private SyntheticModel model;
+    /**
+     * The temporary directory of the files.
+     */
+    private File directory;
+    /**
+     * The prefix of the files.
+     */
+    private String prefix;
+    /**
+     * The parsed automaton.
+     */
+    private Automaton automaton;
+    /**
+     * The parsed observations.
+     */
+    private List<Automaton> obs;
+    /**
+     * The parsed predicate.
+     */
+    private Automaton phi;
+
+    /**
+     * Generates, writes and parses the model.
+     * @throws IOException
+     *             if the files could not be written or read
+     */
+    @Setup(Level.Trial)
+    public final void setUp() throws IOException {
+        Model.LOGGER.setLevel(java.util.logging.Level.WARNING);
+        this.model = new SyntheticModel(this.states, this.alphabet,
+                this.branching, this.cycleDensity, this.observations,
+                this.secrets, this.seed);
+        this.directory = File.createTempFile("tpot-bench", "");
+        if (!this.directory.delete() || !this.directory.mkdir()) {
+            throw new IOException("Cannot create " + this.directory);
+        }
+        this.prefix = this.model.write(this.directory, "model");
+
+        AutoParser autoParser = new AutoParser(this.getAutoFile());
+        autoParser.parseFile();
+        this.automaton = autoParser.getParsedAutomaton();
+        RegParser regParser = new RegParser(this.getRegFile());
+        regParser.parseFile();
+        this.obs = regParser.getParsedObservations();
+        this.phi = regParser.getParsedPhi();
+    }
+
+    /**
+     * Deletes the files.
+     */
+    @TearDown(Level.Trial)
+    public final void tearDown() {
+        new File(this.getAutoFile()).delete();
+        new File(this.getRegFile()).delete();
+        this.directory.delete();
+    }
+
+    /**
+     * Getter.
+     * @return the generated model
+     */
+    public final SyntheticModel getModel() {
+        return this.model;
+    }
+
+    /**
+     * Getter.
+     * @return the name of the ".auto" file
+     */
+    public final String getAutoFile() {
+        return this.prefix + ".auto";
+    }
+
+    /**
+     * Getter.
+     * @return the name of the ".reg" file
+     */
+    public final String getRegFile() {
+        return this.prefix + ".reg";
+    }
+
+    /**
+     * Creates a new opacity on the parsed model, without any cached result.
+     * @return the opacity
+     */
+    public final Opacity newOpacity() {
+        return new Opacity(this.automaton, this.obs, this.phi);
+    }
+}
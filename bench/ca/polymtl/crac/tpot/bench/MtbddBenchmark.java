@@ -0,0 +1,38 @@
+package ca.polymtl.crac.tpot.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ca.polymtl.crac.tpot.mtbdd.Mtbdd;
+
+/**
+ * Benchmark of the symbolic computation of the LPO, on the engine selected
+ * by {@link Mtbdd} : the native library if it is found, the Java engine
+ * otherwise or with "-jvmArgs -Dtpot.mtbdd.engine=java".
+ * @author Daniel Lefevre
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MtbddBenchmark {
+
+    /**
+     * Computes the LPO with the mtbdds.
+     * @param model
+     *            the model
+     * @return the LPO
+     */
+    @Benchmark
+    public final double computeLpo(final GeneratedModel model) {
+        return Mtbdd.computeLpo(model.newOpacity());
+    }
+}
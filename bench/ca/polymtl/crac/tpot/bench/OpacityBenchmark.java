@@ -0,0 +1,90 @@
+package ca.polymtl.crac.tpot.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ca.polymtl.crac.tpot.model.JointDistribution;
+import ca.polymtl.crac.tpot.model.Opacity;
+import ca.polymtl.crac.tpot.model.Opacity.IncorrectDataException;
+
+/**
+ * Benchmarks of the validation and of the explicit computations of the
+ * opacities. Each invocation works on a new {@link Opacity}, so that nothing
+ * is reused from the previous invocations ; the measures which need the
+ * joint distribution include its computation, which is also measured alone.
+ * @author Daniel Lefevre
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OpacityBenchmark {
+
+    /**
+     * Validates the model.
+     * @param model
+     *            the model
+     * @return the opacity
+     * @throws IncorrectDataException
+     *             if the generated model is incorrect
+     */
+    @Benchmark
+    public final Opacity validateData(final GeneratedModel model)
+            throws IncorrectDataException {
+        Opacity opacity = model.newOpacity();
+        opacity.validateData();
+        return opacity;
+    }
+
+    /**
+     * Computes the joint distribution of the predicate and the observations.
+     * @param model
+     *            the model
+     * @return the distribution
+     */
+    @Benchmark
+    public final JointDistribution distribution(final GeneratedModel model) {
+        return model.newOpacity().getDistribution();
+    }
+
+    /**
+     * Computes the LPO.
+     * @param model
+     *            the model
+     * @return the LPO
+     */
+    @Benchmark
+    public final double computeLpo(final GeneratedModel model) {
+        return model.newOpacity().computeLpo();
+    }
+
+    /**
+     * Computes the RPO.
+     * @param model
+     *            the model
+     * @return the RPO
+     */
+    @Benchmark
+    public final double computeRpo(final GeneratedModel model) {
+        return model.newOpacity().computeRpo();
+    }
+
+    /**
+     * Computes the VPO.
+     * @param model
+     *            the model
+     * @return the VPO
+     */
+    @Benchmark
+    public final double computeVpo(final GeneratedModel model) {
+        return model.newOpacity().computeVpo();
+    }
+}
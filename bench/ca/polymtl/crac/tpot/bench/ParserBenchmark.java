@@ -0,0 +1,80 @@
+package ca.polymtl.crac.tpot.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import net.jautomata.rationals.Automaton;
+import net.jautomata.rationals.converters.JAutoCodec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ca.polymtl.crac.tpot.model.io.AutoParser;
+import ca.polymtl.crac.tpot.model.io.RegParser;
+
+/**
+ * Benchmarks of the parsing of the models.
+ * @author Daniel Lefevre
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    /**
+     * Parses the ".auto" file with {@link AutoParser}.
+     * @param model
+     *            the model
+     * @return the automaton
+     * @throws IOException
+     *             if the file could not be read
+     */
+    @Benchmark
+    public final Automaton autoParser(final GeneratedModel model)
+            throws IOException {
+        AutoParser parser = new AutoParser(model.getAutoFile());
+        parser.parseFile();
+        return parser.getParsedAutomaton();
+    }
+
+    /**
+     * Decodes the ".auto" text from memory with {@link JAutoCodec}, without
+     * the file system.
+     * @param model
+     *            the model
+     * @return the automaton
+     * @throws IOException
+     *             if the text could not be decoded
+     */
+    @Benchmark
+    public final Automaton jautoCodec(final GeneratedModel model)
+            throws IOException {
+        return new JAutoCodec().input(new ByteArrayInputStream(model
+                .getModel().getAuto().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Parses the ".reg" file with {@link RegParser}.
+     * @param model
+     *            the model
+     * @return the predicate
+     * @throws IOException
+     *             if the file could not be read
+     */
+    @Benchmark
+    public final Automaton regParser(final GeneratedModel model)
+            throws IOException {
+        RegParser parser = new RegParser(model.getRegFile());
+        parser.parseFile();
+        return parser.getParsedPhi();
+    }
+}
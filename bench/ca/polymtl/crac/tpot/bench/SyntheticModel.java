@@ -0,0 +1,287 @@
+package ca.polymtl.crac.tpot.bench;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * A random probabilistic automaton, with its observations and its predicate,
+ * written in the ".auto" and ".reg" formats of the models.
+ * <p>
+ * The automaton has the given number of working states and one terminal
+ * state. Each working state has, for each working letter (lowercase), some
+ * transitions to random working states, and for each end letter (uppercase)
+ * one transition to the terminal state. Its language is therefore W*E, where
+ * W are the working letters and E the end letters, whatever the random
+ * transitions are, so that the observations can be written without
+ * analyzing the automaton :
+ * <ul>
+ * <li>the observation j is W*Ej, the words ending with the end letter j ;</li>
+ * <li>the predicate is the union of the first observations, plus the words
+ * of the next observation containing the first working letter, so that one
+ * observation is neither included in nor disjoint from the predicate.</li>
+ * </ul>
+ * The same seed always gives the same model.
+ * @author Daniel Lefevre
+ */
+public class SyntheticModel {
+
+    /**
+     * The maximum number of working letters, and of end letters.
+     */
+    public static final int MAX_LETTERS = 26;
+
+    /**
+     * The text of the ".auto" file.
+     */
+    private final String auto;
+    /**
+     * The text of the ".reg" file.
+     */
+    private final String reg;
+    /**
+     * The number of transitions.
+     */
+    private int transitions;
+
+    /**
+     * Generates a model.
+     * @param states
+     *            the number of working states, at least 1
+     * @param alphabet
+     *            the number of working letters, from 1 to 26
+     * @param branching
+     *            the number of transitions of a state for each working
+     *            letter, at least 1
+     * @param cycleDensity
+     *            the probability, between 0 and 1, that a transition goes
+     *            back to a previous state or to its own state
+     * @param observations
+     *            the number of observations, from 1 to 26
+     * @param secrets
+     *            the number of observations included in the predicate, less
+     *            than the number of observations
+     * @param seed
+     *            the seed of the random generator
+     */
+    public SyntheticModel(final int states, final int alphabet,
+            final int branching, final double cycleDensity,
+            final int observations, final int secrets, final long seed) {
+        if (states < 1 || branching < 1 || alphabet < 1
+                || alphabet > MAX_LETTERS || observations < 1
+                || observations > MAX_LETTERS || secrets < 0
+                || secrets >= observations || cycleDensity < 0
+                || cycleDensity > 1) {
+            throw new IllegalArgumentException("Incorrect parameters");
+        }
+        this.auto = this.generateAuto(states, alphabet, branching,
+                cycleDensity, observations, new Random(seed));
+        this.reg = generateReg(alphabet, observations, secrets);
+    }
+
+    /**
+     * Getter.
+     * @return the text of the ".auto" file
+     */
+    public final String getAuto() {
+        return this.auto;
+    }
+
+    /**
+     * Getter.
+     * @return the text of the ".reg" file
+     */
+    public final String getReg() {
+        return this.reg;
+    }
+
+    /**
+     * Getter.
+     * @return the number of transitions of the automaton
+     */
+    public final int getTransitions() {
+        return this.transitions;
+    }
+
+    /**
+     * Writes the ".auto" and ".reg" files of the model.
+     * @param directory
+     *            the directory of the files
+     * @param name
+     *            the name of the model
+     * @return the prefix of the files
+     * @throws IOException
+     *             if a file could not be written
+     */
+    public final String write(final File directory, final String name)
+            throws IOException {
+        String prefix = new File(directory, name).getPath();
+        writeFile(new File(prefix + ".auto"), this.auto);
+        writeFile(new File(prefix + ".reg"), this.reg);
+        return prefix;
+    }
+
+    /**
+     * Writes a text file.
+     * @param file
+     *            the file
+     * @param text
+     *            the text
+     * @throws IOException
+     *             if the file could not be written
+     */
+    private static void writeFile(final File file, final String text)
+            throws IOException {
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(file),
+                StandardCharsets.UTF_8)) {
+            out.write(text);
+        }
+    }
+
+    /**
+     * Getter.
+     * @param i
+     *            an index
+     * @return the working letter of the index
+     */
+    private static char working(final int i) {
+        return (char) ('a' + i);
+    }
+
+    /**
+     * Getter.
+     * @param j
+     *            an index
+     * @return the end letter of the index
+     */
+    private static char end(final int j) {
+        return (char) ('A' + j);
+    }
+
+    /**
+     * Generates the automaton. The state 0 is initial and the state
+     * {@code states} is terminal.
+     * @param states
+     *            the number of working states
+     * @param alphabet
+     *            the number of working letters
+     * @param branching
+     *            the number of transitions for each working letter
+     * @param cycleDensity
+     *            the probability of a transition to a previous state
+     * @param observations
+     *            the number of end letters
+     * @param random
+     *            the random generator
+     * @return the text of the ".auto" file
+     */
+    private String generateAuto(final int states, final int alphabet,
+            final int branching, final double cycleDensity,
+            final int observations, final Random random) {
+        StringBuilder sb = new StringBuilder("A = [");
+        for (int i = 0; i < alphabet; ++i) {
+            sb.append(working(i)).append(", ");
+        }
+        for (int j = 0; j < observations; ++j) {
+            sb.append(end(j)).append((j + 1 < observations) ? ", " : "]\n");
+        }
+        sb.append("Q = [");
+        for (int q = 0; q <= states; ++q) {
+            sb.append(q).append((q < states) ? ", " : "]\n");
+        }
+        sb.append("I = [0]\nT = [").append(states).append("]\n");
+        sb.append("delta = [\n");
+
+        int working = alphabet * branching;
+        double[] weights = new double[working + observations];
+        for (int q = 0; q < states; ++q) {
+            // Random weights, the end letters keeping at least a tenth of the
+            // mass so that the computations converge on the cyclic models
+            double total = 0;
+            for (int k = 0; k < weights.length; ++k) {
+                weights[k] = random.nextDouble();
+                total += weights[k];
+            }
+            double endTotal = 0;
+            for (int k = working; k < weights.length; ++k) {
+                endTotal += weights[k];
+            }
+            double endMass = Math.max(endTotal / total, 0.1);
+            for (int k = 0; k < weights.length; ++k) {
+                weights[k] *= (k < working) ? (1 - endMass)
+                        / (total - endTotal) : endMass / endTotal;
+            }
+
+            for (int k = 0; k < working; ++k) {
+                int target;
+                if (q + 1 == states || random.nextDouble() < cycleDensity) {
+                    target = random.nextInt(q + 1);
+                } else {
+                    target = q + 1 + random.nextInt(states - q - 1);
+                }
+                this.appendTransition(sb, q, working(k / branching), target,
+                        weights[k]);
+            }
+            for (int j = 0; j < observations; ++j) {
+                this.appendTransition(sb, q, end(j), states,
+                        weights[working + j]);
+            }
+        }
+        return sb.append("]\n").toString();
+    }
+
+    /**
+     * Appends a transition to the text of the automaton.
+     * @param sb
+     *            the text
+     * @param from
+     *            the start state
+     * @param label
+     *            the letter
+     * @param to
+     *            the end state
+     * @param probability
+     *            the probability
+     */
+    private void appendTransition(final StringBuilder sb, final int from,
+            final char label, final int to, final double probability) {
+        sb.append('(').append(from).append(", ").append(label).append(", ")
+                .append(to).append(", ").append(probability).append(")\n");
+        ++this.transitions;
+    }
+
+    /**
+     * Generates the observations and the predicate.
+     * @param alphabet
+     *            the number of working letters
+     * @param observations
+     *            the number of observations
+     * @param secrets
+     *            the number of observations included in the predicate
+     * @return the text of the ".reg" file
+     */
+    private static String generateReg(final int alphabet,
+            final int observations, final int secrets) {
+        StringBuilder letters = new StringBuilder("(");
+        for (int i = 0; i < alphabet; ++i) {
+            letters.append(working(i)).append((i + 1 < alphabet) ? "+" : ")*");
+        }
+        String words = letters.toString();
+
+        StringBuilder sb = new StringBuilder("O = [\n");
+        for (int j = 0; j < observations; ++j) {
+            sb.append(words).append(end(j)).append('\n');
+        }
+        sb.append("]\nphi =\n");
+        for (int j = 0; j < secrets; ++j) {
+            sb.append('(').append(words).append(end(j)).append(")+");
+        }
+        sb.append('(').append(words).append(working(0)).append(words)
+                .append(end(secrets)).append(")\n");
+        return sb.toString();
+    }
+}
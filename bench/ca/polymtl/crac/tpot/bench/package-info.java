@@ -0,0 +1,11 @@
+/**
+ * JMH benchmarks of the parsing, the validation and the computation of the
+ * opacities, on seeded random models of increasing size.
+ * <p>
+ * This source root is kept apart from the application : it is compiled with
+ * jmh-core on the class path and jmh-generator-annprocess as annotation
+ * processor, then run with {@link ca.polymtl.crac.tpot.bench.BenchmarkMain}
+ * and the usual JMH options, for example
+ * {@code -p states=16,128 -p branching=1 OpacityBenchmark}.
+ */
+package ca.polymtl.crac.tpot.bench;
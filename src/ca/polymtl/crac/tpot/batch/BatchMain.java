@@ -0,0 +1,224 @@
+package ca.polymtl.crac.tpot.batch;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+
+import ca.polymtl.crac.tpot.model.Model;
+import ca.polymtl.crac.tpot.model.ResultCache;
+import ca.polymtl.crac.tpot.model.metrics.MetricsRecorder;
+
+/**
+ * Command line entry point computing the opacities of many models.
+ * <p>
+ * Usage : {@code BatchMain [-j threads] [-t timeoutSeconds] [-s maxStates]
+ * [-f json|csv] [-o output] [-c cacheDirectory] [-m] [-v] source...}, where
+ * each source is either a directory, searched recursively for the models
+ * having both a ".auto" and a ".reg" file, or a manifest listing one model
+ * prefix per line. The blank lines and the lines starting with '#' of a
+ * manifest are ignored, and the relative prefixes are resolved from the
+ * directory of the manifest. With a cache directory, which several batches
+ * may share, the models whose files did not change since a previous run are
+ * not computed again. With -m, the measures of the phases of all the models
+ * are summed by phase and printed on the error output at the end. With -s, a
+ * model building an automaton or a product of more states fails with the
+ * LIMIT status.
+ * <p>
+ * The exit status is 0 if all models succeeded, 1 if some failed and 2 if
+ * the arguments are incorrect.
+ * @author Daniel Lefevre
+ */
+public final class BatchMain {
+
+    /**
+     * Exit status when some models failed.
+     */
+    private static final int EXIT_FAILURES = 1;
+    /**
+     * Exit status when the arguments are incorrect.
+     */
+    private static final int EXIT_USAGE = 2;
+    /**
+     * Usage message.
+     */
+    private static final String USAGE = "Usage : BatchMain [-j threads] "
+            + "[-t timeoutSeconds] [-s maxStates] [-f json|csv] [-o output] "
+            + "[-c cacheDirectory] [-m] [-v] "
+            + "(directory|manifest)...";
+
+    /**
+     * Private constructor.
+     */
+    private BatchMain() {
+    }
+
+    /**
+     * Main.
+     * @param args
+     *            the options and the sources of the models
+     */
+    public static void main(final String[] args) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        long timeout = 0;
+        int maxStates = 0;
+        ResultFormat format = ResultFormat.JSON;
+        String output = null;
+        String cache = null;
+        boolean verbose = false;
+        MetricsRecorder metrics = null;
+        List<String> sources = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; ++i) {
+                switch (args[i]) {
+                case "-j":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "-t":
+                    timeout = Math.round(Double.parseDouble(args[++i]) * 1000);
+                    break;
+                case "-s":
+                    maxStates = Integer.parseInt(args[++i]);
+                    break;
+                case "-f":
+                    format = ResultFormat.valueOf(args[++i].toUpperCase());
+                    break;
+                case "-o":
+                    output = args[++i];
+                    break;
+                case "-c":
+                    cache = args[++i];
+                    break;
+                case "-m":
+                    metrics = new MetricsRecorder();
+                    break;
+                case "-v":
+                    verbose = true;
+                    break;
+                default:
+                    sources.add(args[i]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.println(USAGE);
+            System.exit(EXIT_USAGE);
+        }
+        if (sources.isEmpty()) {
+            System.err.println(USAGE);
+            System.exit(EXIT_USAGE);
+        }
+        if (!verbose) {
+            Model.LOGGER.setLevel(Level.WARNING);
+        }
+
+        int failures;
+        try {
+            List<String> models = new ArrayList<>();
+            for (String source : sources) {
+                models.addAll(findModels(new File(source)));
+            }
+            Writer out = new BufferedWriter(new OutputStreamWriter(
+                    (output == null) ? System.out : new FileOutputStream(
+                            output), StandardCharsets.UTF_8));
+            BatchRunner runner = new BatchRunner(threads, timeout);
+            runner.setMaxStates(maxStates);
+            if (cache != null) {
+                runner.setResultCache(new ResultCache(new File(cache)));
+            }
+            runner.setMetricsListener(metrics);
+            try {
+                failures = runner.run(models, format, out);
+            } finally {
+                if (output != null) {
+                    out.close();
+                } else {
+                    out.flush();
+                }
+            }
+            System.err.println(models.size() + " models, " + failures
+                    + " failed");
+            if (metrics != null) {
+                System.err.print(metrics.summary());
+            }
+        } catch (IOException | InterruptedException
+                | IllegalArgumentException e) {
+            System.err.println("Error : " + e.getMessage());
+            failures = EXIT_FAILURES;
+        }
+        System.exit((failures == 0) ? 0 : EXIT_FAILURES);
+    }
+
+    /**
+     * Lists the models of a source.
+     * @param source
+     *            a directory or a manifest
+     * @return the prefixes of the files of the models
+     * @throws IOException
+     *             if the source could not be read
+     */
+    public static List<String> findModels(final File source)
+            throws IOException {
+        List<String> models = new ArrayList<>();
+        if (source.isDirectory()) {
+            findModels(source, models);
+            return models;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(source), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                File model = new File(line);
+                if (!model.isAbsolute()) {
+                    model = new File(source.getAbsoluteFile().getParentFile(),
+                            line);
+                }
+                models.add(model.getPath());
+            }
+        }
+        return models;
+    }
+
+    /**
+     * Searches a directory recursively for the models.
+     * @param directory
+     *            the directory
+     * @param models
+     *            the list where the prefixes of the models are added
+     * @throws IOException
+     *             if the directory could not be listed
+     */
+    private static void findModels(final File directory,
+            final List<String> models) throws IOException {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            throw new IOException("Cannot list " + directory);
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            String name = file.getPath();
+            if (file.isDirectory()) {
+                findModels(file, models);
+            } else if (name.endsWith(".auto")) {
+                String prefix = name.substring(0, name.length()
+                        - ".auto".length());
+                if (new File(prefix + ".reg").isFile()) {
+                    models.add(prefix);
+                }
+            }
+        }
+    }
+}
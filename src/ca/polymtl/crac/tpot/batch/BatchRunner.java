@@ -0,0 +1,671 @@
+package ca.polymtl.crac.tpot.batch;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+import ca.polymtl.crac.tpot.batch.ModelResult.Phase;
+import ca.polymtl.crac.tpot.batch.ModelResult.Status;
+import ca.polymtl.crac.tpot.budget.BudgetExceededException;
+import ca.polymtl.crac.tpot.budget.WorkBudget;
+import ca.polymtl.crac.tpot.model.BasicModel;
+import ca.polymtl.crac.tpot.model.Model;
+import ca.polymtl.crac.tpot.model.Opacity;
+import ca.polymtl.crac.tpot.model.ResultCache;
+import ca.polymtl.crac.tpot.model.metrics.MetricsListener;
+
+/**
+ * Computes the opacities of many models on a bounded pool of threads. The
+ * line of each model is written as soon as it is finished, so the order of
+ * the lines is the order of completion. A model which fails or exceeds the
+ * timeout or the ceiling of states is reported with the opacities computed
+ * until then, and does not stop the others.
+ * <p>
+ * Each model is computed with its own {@link WorkBudget}, checked by the
+ * transformations, the solvers and between the phases : the computation of a
+ * model which timed out stops at the next check and is reported with the
+ * opacities computed until then. The parsing of the files and the dense
+ * solves are not checked : a model which does not stop within a grace period
+ * after its timeout is reported without opacities, while another thread
+ * takes its place, and ends in the background.
+ * @author Daniel Lefevre
+ */
+public class BatchRunner {
+
+    /**
+     * The default time left to a model after its timeout to stop and report
+     * its partial result, in milliseconds.
+     */
+    public static final long DEFAULT_GRACE = 1000;
+
+    /**
+     * The number of threads.
+     */
+    private final int threads;
+    /**
+     * The timeout of each model in milliseconds, 0 for none.
+     */
+    private final long timeout;
+    /**
+     * The time left to a model after its timeout to stop and report its
+     * partial result, in milliseconds.
+     */
+    private long grace = DEFAULT_GRACE;
+    /**
+     * The maximum number of states of each automaton or product built, 0 for
+     * none.
+     */
+    private int maxStates;
+    /**
+     * The cache of the opacities, null for none.
+     */
+    private ResultCache resultCache;
+    /**
+     * The listener of the measures of the phases of the models, null for
+     * none.
+     */
+    private MetricsListener metricsListener;
+
+    /**
+     * Constructor.
+     * @param threadsIn
+     *            the number of models computed at the same time
+     * @param timeoutIn
+     *            the timeout of each model in milliseconds, 0 for none
+     */
+    public BatchRunner(final int threadsIn, final long timeoutIn) {
+        if (threadsIn < 1) {
+            throw new IllegalArgumentException("The number of threads must be"
+                    + " at least 1 : " + threadsIn);
+        }
+        if (timeoutIn < 0) {
+            throw new IllegalArgumentException("The timeout must not be "
+                    + "negative : " + timeoutIn);
+        }
+        this.threads = threadsIn;
+        this.timeout = timeoutIn;
+    }
+
+    /**
+     * Getter.
+     * @return the number of models computed at the same time
+     */
+    public final int getThreads() {
+        return this.threads;
+    }
+
+    /**
+     * Getter.
+     * @return the timeout of each model in milliseconds, 0 for none
+     */
+    public final long getTimeout() {
+        return this.timeout;
+    }
+
+    /**
+     * Getter.
+     * @return the time left to a model after its timeout to stop and report
+     *         its partial result, in milliseconds
+     */
+    public final long getGrace() {
+        return this.grace;
+    }
+
+    /**
+     * Setter. A model which did not stop within this time after its timeout
+     * is reported without opacities.
+     * @param graceIn
+     *            the time left to a model after its timeout to stop and
+     *            report its partial result, in milliseconds
+     */
+    public final void setGrace(final long graceIn) {
+        if (graceIn < 0) {
+            throw new IllegalArgumentException("The grace period must not be "
+                    + "negative : " + graceIn);
+        }
+        this.grace = graceIn;
+    }
+
+    /**
+     * Getter.
+     * @return the maximum number of states of each automaton or product
+     *         built, 0 for none
+     */
+    public final int getMaxStates() {
+        return this.maxStates;
+    }
+
+    /**
+     * Setter. A model building a larger automaton or product fails with the
+     * LIMIT status.
+     * @param maxStatesIn
+     *            the maximum number of states of each automaton or product
+     *            built, 0 for none
+     */
+    public final void setMaxStates(final int maxStatesIn) {
+        if (maxStatesIn < 0) {
+            throw new IllegalArgumentException("The ceiling of states must not"
+                    + " be negative : " + maxStatesIn);
+        }
+        this.maxStates = maxStatesIn;
+    }
+
+    /**
+     * Getter.
+     * @return the cache of the opacities, null for none
+     */
+    public final ResultCache getResultCache() {
+        return this.resultCache;
+    }
+
+    /**
+     * Setter. The models found in the cache are not computed again, and the
+     * others are stored in the cache once computed.
+     * @param resultCacheIn
+     *            the cache of the opacities, null for none
+     */
+    public final void setResultCache(final ResultCache resultCacheIn) {
+        this.resultCache = resultCacheIn;
+    }
+
+    /**
+     * Getter.
+     * @return the listener of the measures of the phases of the models, null
+     *         for none
+     */
+    public final MetricsListener getMetricsListener() {
+        return this.metricsListener;
+    }
+
+    /**
+     * Setter. The listener is shared by the models computed at the same
+     * time, so it must be thread safe.
+     * @param metricsListenerIn
+     *            the listener of the measures of the phases of the models,
+     *            null for none
+     */
+    public final void setMetricsListener(
+            final MetricsListener metricsListenerIn) {
+        this.metricsListener = metricsListenerIn;
+    }
+
+    /**
+     * Computes the opacities of some models and writes one line per model.
+     * An error of the virtual machine which is not caused by a model alone,
+     * such as {@link OutOfMemoryError}, stops the batch : the line of the
+     * model is written, the models not started are skipped, and the error is
+     * thrown again.
+     * @param models
+     *            the prefixes of the files of the models
+     * @param format
+     *            the format of the lines
+     * @param out
+     *            the output, flushed after each line
+     * @return the number of models which did not succeed
+     * @throws IOException
+     *             if the output could not be written
+     * @throws InterruptedException
+     *             if the calling thread is interrupted
+     */
+    public final int run(final List<String> models, final ResultFormat format,
+            final Writer out) throws IOException, InterruptedException {
+        final ResultWriter writer = new ResultWriter(format, out);
+        writer.writeHeader();
+
+        ExecutorService workers = Executors
+                .newCachedThreadPool(new DaemonThreadFactory("tpot-batch-"));
+        final Semaphore slots = new Semaphore(this.threads);
+        final ScheduledExecutorService timer = Executors
+                .newSingleThreadScheduledExecutor(new DaemonThreadFactory(
+                        "tpot-batch-timer-"));
+        final CountDownLatch remaining = new CountDownLatch(models.size());
+        final Runnable done = new Runnable() {
+            @Override
+            public void run() {
+                remaining.countDown();
+                slots.release();
+            }
+        };
+        final Runnable abort = new Runnable() {
+            @Override
+            public void run() {
+                while (remaining.getCount() > 0) {
+                    remaining.countDown();
+                }
+            }
+        };
+        try {
+            for (final String model : models) {
+                slots.acquire();
+                if (writer.isAborted()) {
+                    break;
+                }
+                workers.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        BatchRunner.this.runReported(model, timer, writer,
+                                done, abort);
+                    }
+                });
+            }
+            remaining.await();
+        } finally {
+            workers.shutdownNow();
+            timer.shutdownNow();
+        }
+        writer.rethrow();
+        return writer.getFailures();
+    }
+
+    /**
+     * Computes a model on the current thread, and reports it. At the timeout,
+     * the work budget of the model is cancelled and the thread interrupted,
+     * so the model stops at its next check and reports the opacities
+     * computed until then; if it did not report within the grace period, it
+     * is reported without opacities.
+     * @param model
+     *            the prefix of the files of the model
+     * @param timer
+     *            the executor of the timeouts
+     * @param writer
+     *            the output
+     * @param done
+     *            run once the model is reported, even if the output failed
+     * @param abort
+     *            run after an error which stops the batch, once the writer
+     *            keeps it
+     */
+    private void runReported(final String model,
+            final ScheduledExecutorService timer, final ResultWriter writer,
+            final Runnable done, final Runnable abort) {
+        // Clears an interruption left by a previous model
+        Thread.interrupted();
+        final AtomicBoolean reported = new AtomicBoolean();
+        final long start = System.nanoTime();
+        final WorkBudget budget = new WorkBudget(this.timeout, this.maxStates);
+        ScheduledFuture<?> alarm = null;
+        ScheduledFuture<?> lastAlarm = null;
+        if (this.timeout > 0) {
+            final Thread worker = Thread.currentThread();
+            alarm = timer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    budget.cancel();
+                    // the worker claims its report under the same lock, so it
+                    // is not interrupted once it left the model
+                    synchronized (reported) {
+                        if (!reported.get()) {
+                            worker.interrupt();
+                        }
+                    }
+                }
+            }, this.timeout, TimeUnit.MILLISECONDS);
+            lastAlarm = timer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    if (reported.compareAndSet(false, true)) {
+                        ModelResult result = new ModelResult(model);
+                        result.fail(Status.TIMEOUT,
+                                BatchRunner.this.timeoutMessage());
+                        result.setTotalTime(System.nanoTime() - start);
+                        try {
+                            writer.write(result);
+                        } finally {
+                            done.run();
+                        }
+                    }
+                }
+            }, this.timeout + this.grace, TimeUnit.MILLISECONDS);
+        }
+
+        WorkBudget previous = WorkBudget.install(budget);
+        ModelResult result;
+        Error fatal = null;
+        try {
+            result = this.compute(model);
+        } catch (Error e) {
+            // compute keeps the errors caused by the model alone; the others,
+            // such as OutOfMemoryError, may have left the virtual machine
+            // unusable
+            fatal = e;
+            result = new ModelResult(model);
+            result.fail(Status.ERROR, e.toString());
+            result.setTotalTime(System.nanoTime() - start);
+        } finally {
+            WorkBudget.install(previous);
+        }
+        if (alarm != null) {
+            alarm.cancel(false);
+            lastAlarm.cancel(false);
+        }
+        // a model stopped by the timeout may have failed on the interruption
+        // rather than on a check of its budget
+        if (budget.isCancelled() && (fatal == null)
+                && (result.getStatus() != Status.OK)) {
+            result.fail(Status.TIMEOUT, this.timeoutMessage());
+        }
+        boolean claimed;
+        synchronized (reported) {
+            claimed = reported.compareAndSet(false, true);
+        }
+        try {
+            if (claimed) {
+                try {
+                    writer.write(result);
+                } finally {
+                    done.run();
+                }
+            }
+        } finally {
+            if (fatal != null) {
+                writer.abort(fatal);
+                abort.run();
+            }
+        }
+        Thread.interrupted();
+    }
+
+    /**
+     * Getter.
+     * @return the message of a model stopped by the timeout
+     */
+    private String timeoutMessage() {
+        return "Timeout after " + this.timeout + " ms";
+    }
+
+    /**
+     * Builds a model and computes its opacities, timing each phase, within
+     * the work budget of the current thread, if any.
+     * @param file
+     *            the prefix of the files of the model
+     * @return the result, with the ERROR status if something failed, or the
+     *         TIMEOUT or LIMIT status and the opacities computed until then
+     *         if the budget was exceeded
+     */
+    public final ModelResult compute(final String file) {
+        ModelResult result = new ModelResult(file);
+        long start = System.nanoTime();
+        try {
+            Model model = new BasicModel(file);
+            model.setResultCache(this.resultCache);
+            model.setMetricsListener(this.metricsListener);
+            long t = System.nanoTime();
+            model.buildModel();
+            result.setPhaseTime(Phase.BUILD, System.nanoTime() - t);
+            if (model.isCachedResult()) {
+                restore(result, model.getOpacity());
+            } else {
+                measure(result, model.getOpacity());
+                model.saveResult();
+            }
+        } catch (BudgetExceededException e) {
+            exceeded(result, e);
+        } catch (Exception | StackOverflowError e) {
+            Model.LOGGER.log(Level.FINE, "Model " + file + " failed", e);
+            result.fail(Status.ERROR, e.toString());
+        }
+        result.setTotalTime(System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Computes the opacities of a model already built and validated, timing
+     * each phase.
+     * @param name
+     *            the name of the model in the result
+     * @param opacity
+     *            the opacity of the model
+     * @return the result, with the ERROR status if something failed, or the
+     *         TIMEOUT or LIMIT status and the opacities computed until then
+     *         if the work budget of the current thread was exceeded
+     */
+    public static ModelResult compute(final String name,
+            final Opacity opacity) {
+        ModelResult result = new ModelResult(name);
+        long start = System.nanoTime();
+        try {
+            measure(result, opacity);
+        } catch (BudgetExceededException e) {
+            exceeded(result, e);
+        } catch (RuntimeException | StackOverflowError e) {
+            Model.LOGGER.log(Level.FINE, "Model " + name + " failed", e);
+            result.fail(Status.ERROR, e.toString());
+        }
+        result.setTotalTime(System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Records a computation which exceeded its work budget.
+     * @param result
+     *            the result, with the opacities computed until then
+     * @param e
+     *            the exception
+     */
+    private static void exceeded(final ModelResult result,
+            final BudgetExceededException e) {
+        Model.LOGGER.log(Level.FINE, "Model " + result.getModel()
+                + " stopped : " + e.getMessage());
+        if (e.getReason() == BudgetExceededException.Reason.STATES) {
+            result.fail(Status.LIMIT, e.getMessage());
+        } else {
+            result.fail(Status.TIMEOUT, e.getMessage());
+        }
+    }
+
+    /**
+     * Copies the opacities read from the cache.
+     * @param result
+     *            the result where the measures are stored
+     * @param opacity
+     *            the opacity of the model
+     */
+    private static void restore(final ModelResult result,
+            final Opacity opacity) {
+        result.setSizes(opacity.getAutomaton().states().size(), opacity
+                .getAutomaton().delta().size(), opacity.getObs().size());
+        result.setCached(true);
+        result.setLpo(opacity.getLpo());
+        result.setRpo(opacity.getRpo(), opacity.getInitialEntropy(),
+                opacity.getRemainingEntropy(), opacity.getMutualInformation());
+        result.setVpo(opacity.getVpo());
+    }
+
+    /**
+     * Computes the opacities, timing each phase. The budget is checked
+     * between the phases, so a model stopped there keeps the opacities
+     * computed until then.
+     * @param result
+     *            the result where the measures are stored
+     * @param opacity
+     *            the opacity of the model
+     */
+    private static void measure(final ModelResult result,
+            final Opacity opacity) {
+        result.setSizes(opacity.getAutomaton().states().size(), opacity
+                .getAutomaton().delta().size(), opacity.getObs().size());
+
+        long t = System.nanoTime();
+        opacity.getDistribution();
+        result.setPhaseTime(Phase.DISTRIBUTION, System.nanoTime() - t);
+
+        WorkBudget.checkpoint();
+        t = System.nanoTime();
+        result.setLpo(opacity.computeLpo());
+        result.setPhaseTime(Phase.LPO, System.nanoTime() - t);
+
+        WorkBudget.checkpoint();
+        t = System.nanoTime();
+        opacity.computeRpo();
+        result.setRpo(opacity.getRpo(), opacity.getInitialEntropy(),
+                opacity.getRemainingEntropy(), opacity.getMutualInformation());
+        result.setPhaseTime(Phase.RPO, System.nanoTime() - t);
+
+        WorkBudget.checkpoint();
+        t = System.nanoTime();
+        result.setVpo(opacity.computeVpo());
+        result.setPhaseTime(Phase.VPO, System.nanoTime() - t);
+        result.setConverged(opacity.isConverged());
+    }
+
+    /**
+     * Writes the lines of the results, one at a time.
+     * @author Daniel Lefevre
+     */
+    private static class ResultWriter {
+
+        /**
+         * The format.
+         */
+        private final ResultFormat format;
+        /**
+         * The output.
+         */
+        private final Writer out;
+        /**
+         * The number of models which did not succeed.
+         */
+        private int failures;
+        /**
+         * The first error of the output, if any.
+         */
+        private IOException error;
+        /**
+         * The error which stopped the batch, if any.
+         */
+        private Error fatal;
+
+        /**
+         * Constructor.
+         * @param formatIn
+         *            the format
+         * @param outIn
+         *            the output
+         */
+        ResultWriter(final ResultFormat formatIn, final Writer outIn) {
+            this.format = formatIn;
+            this.out = outIn;
+        }
+
+        /**
+         * Writes the header of the format, if any.
+         * @throws IOException
+         *             if the output could not be written
+         */
+        final synchronized void writeHeader() throws IOException {
+            String header = this.format.header();
+            if (header != null) {
+                this.out.write(header + System.lineSeparator());
+                this.out.flush();
+            }
+        }
+
+        /**
+         * Writes the line of a result. An error of the output is kept to be
+         * thrown by {@link #rethrow()}.
+         * @param result
+         *            the result
+         */
+        final synchronized void write(final ModelResult result) {
+            if (result.getStatus() != Status.OK) {
+                ++this.failures;
+            }
+            if ((this.error != null) || (this.fatal != null)) {
+                return;
+            }
+            try {
+                this.out.write(this.format.format(result)
+                        + System.lineSeparator());
+                this.out.flush();
+            } catch (IOException e) {
+                this.error = e;
+            }
+        }
+
+        /**
+         * Getter.
+         * @return the number of models which did not succeed
+         */
+        final synchronized int getFailures() {
+            return this.failures;
+        }
+
+        /**
+         * Stops the output : the next lines are not written. Only the first
+         * error is kept.
+         * @param e
+         *            the error which stopped the batch
+         */
+        final synchronized void abort(final Error e) {
+            if (this.fatal == null) {
+                this.fatal = e;
+            }
+        }
+
+        /**
+         * Getter.
+         * @return true if an error stopped the batch
+         */
+        final synchronized boolean isAborted() {
+            return this.fatal != null;
+        }
+
+        /**
+         * Throws the error which stopped the batch, or else the first error
+         * of the output, if any.
+         * @throws IOException
+         *             the first error of the output
+         */
+        final synchronized void rethrow() throws IOException {
+            if (this.fatal != null) {
+                throw this.fatal;
+            }
+            if (this.error != null) {
+                throw this.error;
+            }
+        }
+    }
+
+    /**
+     * Creates named daemon threads, so that a model which never ends does not
+     * keep the virtual machine alive.
+     * @author Daniel Lefevre
+     */
+    private static class DaemonThreadFactory implements ThreadFactory {
+
+        /**
+         * The prefix of the names of the threads.
+         */
+        private final String prefix;
+        /**
+         * The number of threads created.
+         */
+        private int count;
+
+        /**
+         * Constructor.
+         * @param prefixIn
+         *            the prefix of the names of the threads
+         */
+        DaemonThreadFactory(final String prefixIn) {
+            this.prefix = prefixIn;
+        }
+
+        @Override
+        public synchronized Thread newThread(final Runnable r) {
+            Thread thread = new Thread(r, this.prefix + (++this.count));
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
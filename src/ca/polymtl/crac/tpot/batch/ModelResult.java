@@ -0,0 +1,370 @@
+package ca.polymtl.crac.tpot.batch;
+
+/**
+ * The outcome of the computation of the opacities of one model in a batch.
+ * The measures are NaN when they were not computed.
+ * @author Daniel Lefevre
+ */
+public class ModelResult {
+
+    /**
+     * The phases of the computation of a model, in order.
+     */
+    public enum Phase {
+        /**
+         * Parsing of the files and validation of the data.
+         */
+        BUILD,
+        /**
+         * Joint distribution of the predicate and of the observations.
+         */
+        DISTRIBUTION,
+        /**
+         * Liberal probabilistic opacity.
+         */
+        LPO,
+        /**
+         * Restrictive probabilistic opacity and entropies.
+         */
+        RPO,
+        /**
+         * Vulnerable probabilistic opacity.
+         */
+        VPO
+    }
+
+    /**
+     * The status of a model.
+     */
+    public enum Status {
+        /**
+         * All opacities were computed.
+         */
+        OK,
+        /**
+         * The model could not be read, was incorrect or the computation
+         * failed.
+         */
+        ERROR,
+        /**
+         * The computation took longer than the timeout.
+         */
+        TIMEOUT,
+        /**
+         * An automaton or a product exceeded the ceiling of states.
+         */
+        LIMIT
+    }
+
+    /**
+     * The prefix of the files of the model.
+     */
+    private final String model;
+    /**
+     * The status.
+     */
+    private Status status = Status.OK;
+    /**
+     * The reason of the failure, null if the model succeeded.
+     */
+    private String message;
+    /**
+     * The number of states of the automaton, -1 if unknown.
+     */
+    private int states = -1;
+    /**
+     * The number of transitions of the automaton, -1 if unknown.
+     */
+    private int transitions = -1;
+    /**
+     * The number of observations, -1 if unknown.
+     */
+    private int observations = -1;
+    /**
+     * True if the measures were read from the cache.
+     */
+    private boolean cached;
+    /**
+     * False if a linear solve did not reach the tolerance of its solver.
+     */
+    private boolean converged = true;
+    /**
+     * The LPO.
+     */
+    private double lpo = Double.NaN;
+    /**
+     * The RPO.
+     */
+    private double rpo = Double.NaN;
+    /**
+     * The VPO.
+     */
+    private double vpo = Double.NaN;
+    /**
+     * The initial entropy.
+     */
+    private double initialEntropy = Double.NaN;
+    /**
+     * The remaining entropy.
+     */
+    private double remainingEntropy = Double.NaN;
+    /**
+     * The mutual information.
+     */
+    private double mutualInformation = Double.NaN;
+    /**
+     * The wall time of each phase in nanoseconds, -1 if it did not run.
+     */
+    private final long[] phaseTimes = new long[Phase.values().length];
+    /**
+     * The total wall time in nanoseconds.
+     */
+    private long totalTime;
+
+    /**
+     * Constructor.
+     * @param modelIn
+     *            the prefix of the files of the model
+     */
+    public ModelResult(final String modelIn) {
+        this.model = modelIn;
+        for (int i = 0; i < this.phaseTimes.length; ++i) {
+            this.phaseTimes[i] = -1;
+        }
+    }
+
+    /**
+     * Getter.
+     * @return the prefix of the files of the model
+     */
+    public final String getModel() {
+        return this.model;
+    }
+
+    /**
+     * Getter.
+     * @return the status
+     */
+    public final Status getStatus() {
+        return this.status;
+    }
+
+    /**
+     * Getter.
+     * @return the reason of the failure, null if the model succeeded
+     */
+    public final String getMessage() {
+        return this.message;
+    }
+
+    /**
+     * Records a failure.
+     * @param statusIn
+     *            the status
+     * @param messageIn
+     *            the reason of the failure
+     */
+    final void fail(final Status statusIn, final String messageIn) {
+        this.status = statusIn;
+        this.message = messageIn;
+    }
+
+    /**
+     * Getter.
+     * @return the number of states of the automaton, -1 if unknown
+     */
+    public final int getStates() {
+        return this.states;
+    }
+
+    /**
+     * Getter.
+     * @return the number of transitions of the automaton, -1 if unknown
+     */
+    public final int getTransitions() {
+        return this.transitions;
+    }
+
+    /**
+     * Getter.
+     * @return the number of observations, -1 if unknown
+     */
+    public final int getObservations() {
+        return this.observations;
+    }
+
+    /**
+     * Setter.
+     * @param statesIn
+     *            the number of states of the automaton
+     * @param transitionsIn
+     *            the number of transitions of the automaton
+     * @param observationsIn
+     *            the number of observations
+     */
+    final void setSizes(final int statesIn, final int transitionsIn,
+            final int observationsIn) {
+        this.states = statesIn;
+        this.transitions = transitionsIn;
+        this.observations = observationsIn;
+    }
+
+    /**
+     * Getter.
+     * @return true if the measures were read from the cache
+     */
+    public final boolean isCached() {
+        return this.cached;
+    }
+
+    /**
+     * Setter.
+     * @param cachedIn
+     *            true if the measures were read from the cache
+     */
+    final void setCached(final boolean cachedIn) {
+        this.cached = cachedIn;
+    }
+
+    /**
+     * Getter.
+     * @return false if a linear solve did not reach the tolerance of its
+     *         solver, so that the measures are approximate
+     */
+    public final boolean isConverged() {
+        return this.converged;
+    }
+
+    /**
+     * Setter.
+     * @param convergedIn
+     *            false if a linear solve did not reach the tolerance of its
+     *            solver
+     */
+    final void setConverged(final boolean convergedIn) {
+        this.converged = convergedIn;
+    }
+
+    /**
+     * Getter.
+     * @return the LPO
+     */
+    public final double getLpo() {
+        return this.lpo;
+    }
+
+    /**
+     * Setter.
+     * @param lpoIn
+     *            the LPO
+     */
+    final void setLpo(final double lpoIn) {
+        this.lpo = lpoIn;
+    }
+
+    /**
+     * Getter.
+     * @return the RPO
+     */
+    public final double getRpo() {
+        return this.rpo;
+    }
+
+    /**
+     * Getter.
+     * @return the initial entropy
+     */
+    public final double getInitialEntropy() {
+        return this.initialEntropy;
+    }
+
+    /**
+     * Getter.
+     * @return the remaining entropy
+     */
+    public final double getRemainingEntropy() {
+        return this.remainingEntropy;
+    }
+
+    /**
+     * Getter.
+     * @return the mutual information
+     */
+    public final double getMutualInformation() {
+        return this.mutualInformation;
+    }
+
+    /**
+     * Setter.
+     * @param rpoIn
+     *            the RPO
+     * @param initialEntropyIn
+     *            the initial entropy
+     * @param remainingEntropyIn
+     *            the remaining entropy
+     * @param mutualInformationIn
+     *            the mutual information
+     */
+    final void setRpo(final double rpoIn, final double initialEntropyIn,
+            final double remainingEntropyIn, final double mutualInformationIn) {
+        this.rpo = rpoIn;
+        this.initialEntropy = initialEntropyIn;
+        this.remainingEntropy = remainingEntropyIn;
+        this.mutualInformation = mutualInformationIn;
+    }
+
+    /**
+     * Getter.
+     * @return the VPO
+     */
+    public final double getVpo() {
+        return this.vpo;
+    }
+
+    /**
+     * Setter.
+     * @param vpoIn
+     *            the VPO
+     */
+    final void setVpo(final double vpoIn) {
+        this.vpo = vpoIn;
+    }
+
+    /**
+     * Getter.
+     * @param phase
+     *            the phase
+     * @return the wall time of the phase in nanoseconds, -1 if it did not run
+     */
+    public final long getPhaseTime(final Phase phase) {
+        return this.phaseTimes[phase.ordinal()];
+    }
+
+    /**
+     * Setter.
+     * @param phase
+     *            the phase
+     * @param nanos
+     *            the wall time of the phase in nanoseconds
+     */
+    final void setPhaseTime(final Phase phase, final long nanos) {
+        this.phaseTimes[phase.ordinal()] = nanos;
+    }
+
+    /**
+     * Getter.
+     * @return the total wall time in nanoseconds
+     */
+    public final long getTotalTime() {
+        return this.totalTime;
+    }
+
+    /**
+     * Setter.
+     * @param nanos
+     *            the total wall time in nanoseconds
+     */
+    final void setTotalTime(final long nanos) {
+        this.totalTime = nanos;
+    }
+}
@@ -0,0 +1,210 @@
+package ca.polymtl.crac.tpot.batch;
+
+import ca.polymtl.crac.tpot.batch.ModelResult.Phase;
+
+/**
+ * The formats of the lines written for each model of a batch.
+ * @author Daniel Lefevre
+ */
+public enum ResultFormat {
+
+    /**
+     * One JSON object per line. The measures which were not computed are
+     * null.
+     */
+    JSON {
+        @Override
+        public String header() {
+            return null;
+        }
+
+        @Override
+        public String format(final ModelResult result) {
+            StringBuilder sb = new StringBuilder("{");
+            sb.append("\"model\":").append(quoteJson(result.getModel()));
+            sb.append(",\"status\":\"").append(result.getStatus()).append('"');
+            if (result.getMessage() != null) {
+                sb.append(",\"message\":").append(
+                        quoteJson(result.getMessage()));
+            }
+            sb.append(",\"states\":").append(result.getStates());
+            sb.append(",\"transitions\":").append(result.getTransitions());
+            sb.append(",\"observations\":").append(result.getObservations());
+            sb.append(",\"cached\":").append(result.isCached());
+            sb.append(",\"converged\":").append(result.isConverged());
+            String[] names = measureNames();
+            double[] measures = measures(result);
+            for (int i = 0; i < names.length; ++i) {
+                sb.append(",\"").append(names[i]).append("\":");
+                if (Double.isNaN(measures[i])
+                        || Double.isInfinite(measures[i])) {
+                    sb.append("null");
+                } else {
+                    sb.append(measures[i]);
+                }
+            }
+            sb.append(",\"timesMs\":{");
+            for (Phase phase : Phase.values()) {
+                sb.append('"').append(phaseName(phase)).append("\":")
+                        .append(millis(result.getPhaseTime(phase)))
+                        .append(',');
+            }
+            sb.append("\"total\":").append(millis(result.getTotalTime()));
+            sb.append("}}");
+            return sb.toString();
+        }
+    },
+
+    /**
+     * Comma separated values, after a header line. The measures which were
+     * not computed are empty.
+     */
+    CSV {
+        @Override
+        public String header() {
+            StringBuilder sb = new StringBuilder(
+                    "model,status,message,states,transitions,observations,"
+                            + "cached,converged");
+            for (String name : measureNames()) {
+                sb.append(',').append(name);
+            }
+            for (Phase phase : Phase.values()) {
+                sb.append(',').append(phaseName(phase)).append("Ms");
+            }
+            sb.append(",totalMs");
+            return sb.toString();
+        }
+
+        @Override
+        public String format(final ModelResult result) {
+            StringBuilder sb = new StringBuilder();
+            sb.append(quoteCsv(result.getModel())).append(',');
+            sb.append(result.getStatus()).append(',');
+            if (result.getMessage() != null) {
+                sb.append(quoteCsv(result.getMessage()));
+            }
+            sb.append(',').append(result.getStates());
+            sb.append(',').append(result.getTransitions());
+            sb.append(',').append(result.getObservations());
+            sb.append(',').append(result.isCached());
+            sb.append(',').append(result.isConverged());
+            for (double measure : measures(result)) {
+                sb.append(',');
+                if (!Double.isNaN(measure)) {
+                    sb.append(measure);
+                }
+            }
+            for (Phase phase : Phase.values()) {
+                sb.append(',').append(millis(result.getPhaseTime(phase)));
+            }
+            sb.append(',').append(millis(result.getTotalTime()));
+            return sb.toString();
+        }
+    };
+
+    /**
+     * Returns the line written before the results.
+     * @return the header, or null if there is none
+     */
+    public abstract String header();
+
+    /**
+     * Formats the result of a model on one line.
+     * @param result
+     *            the result
+     * @return the line, without line separator
+     */
+    public abstract String format(ModelResult result);
+
+    /**
+     * Getter.
+     * @return the names of the measures, in the order of measures
+     */
+    private static String[] measureNames() {
+        return new String[] {"lpo", "rpo", "vpo", "initialEntropy",
+                "remainingEntropy", "mutualInformation" };
+    }
+
+    /**
+     * Getter.
+     * @param result
+     *            a result
+     * @return the measures of the result
+     */
+    private static double[] measures(final ModelResult result) {
+        return new double[] {result.getLpo(), result.getRpo(),
+                result.getVpo(), result.getInitialEntropy(),
+                result.getRemainingEntropy(), result.getMutualInformation() };
+    }
+
+    /**
+     * Getter.
+     * @param phase
+     *            a phase
+     * @return the name of the phase in the output
+     */
+    private static String phaseName(final Phase phase) {
+        return phase.name().toLowerCase();
+    }
+
+    /**
+     * Converts a wall time.
+     * @param nanos
+     *            the wall time in nanoseconds, negative if it is unknown
+     * @return the wall time in milliseconds, or -1
+     */
+    private static double millis(final long nanos) {
+        return (nanos < 0) ? -1 : nanos / 1e6;
+    }
+
+    /**
+     * Quotes a JSON string.
+     * @param s
+     *            the string
+     * @return the quoted string
+     */
+    private static String quoteJson(final String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); ++i) {
+            char c = s.charAt(i);
+            switch (c) {
+            case '"':
+                sb.append("\\\"");
+                break;
+            case '\\':
+                sb.append("\\\\");
+                break;
+            case '\n':
+                sb.append("\\n");
+                break;
+            case '\r':
+                sb.append("\\r");
+                break;
+            case '\t':
+                sb.append("\\t");
+                break;
+            default:
+                if (c < 0x20) {
+                    sb.append(String.format("\\u%04x", (int) c));
+                } else {
+                    sb.append(c);
+                }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * Quotes a CSV field.
+     * @param s
+     *            the field
+     * @return the quoted field, on a single line
+     */
+    private static String quoteCsv(final String s) {
+        String line = s.replace('\n', ' ').replace('\r', ' ');
+        if (line.indexOf(',') < 0 && line.indexOf('"') < 0) {
+            return line;
+        }
+        return '"' + line.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * Batch computation of the opacities of many models, with one line of
+ * results per model.
+ */
+package ca.polymtl.crac.tpot.batch;
@@ -0,0 +1,108 @@
+package ca.polymtl.crac.tpot.budget;
+
+/**
+ * Thrown by a computation which exceeded its {@link WorkBudget}. The
+ * message reports the work done until then. The values already computed,
+ * for instance the opacities computed before, are kept by their owners.
+ * @author Daniel Lefevre
+ */
+public class BudgetExceededException extends RuntimeException {
+
+    /**
+     * The serial version.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The reasons to stop a computation.
+     * @author Daniel Lefevre
+     */
+    public enum Reason {
+        /**
+         * The computation was cancelled.
+         */
+        CANCELLED,
+        /**
+         * The deadline passed.
+         */
+        DEADLINE,
+        /**
+         * An automaton or a product exceeded the size ceiling.
+         */
+        STATES
+    }
+
+    /**
+     * The reason.
+     */
+    private final Reason reason;
+    /**
+     * The time spent, in milliseconds.
+     */
+    private final long elapsed;
+    /**
+     * The number of checkpoints passed.
+     */
+    private final long checkpoints;
+    /**
+     * The number of states of the largest automaton built.
+     */
+    private final int largestStates;
+
+    /**
+     * Constructor.
+     * @param reasonIn
+     *            the reason
+     * @param detail
+     *            the description of the exceeded limit
+     * @param elapsedIn
+     *            the time spent, in milliseconds
+     * @param checkpointsIn
+     *            the number of checkpoints passed
+     * @param largestStatesIn
+     *            the number of states of the largest automaton built
+     */
+    public BudgetExceededException(final Reason reasonIn, final String detail,
+            final long elapsedIn, final long checkpointsIn,
+            final int largestStatesIn) {
+        super(detail + " after " + elapsedIn + " ms, " + checkpointsIn
+                + " checkpoints, largest automaton of " + largestStatesIn
+                + " states");
+        this.reason = reasonIn;
+        this.elapsed = elapsedIn;
+        this.checkpoints = checkpointsIn;
+        this.largestStates = largestStatesIn;
+    }
+
+    /**
+     * Getter.
+     * @return the reason
+     */
+    public final Reason getReason() {
+        return this.reason;
+    }
+
+    /**
+     * Getter.
+     * @return the time spent, in milliseconds
+     */
+    public final long getElapsed() {
+        return this.elapsed;
+    }
+
+    /**
+     * Getter.
+     * @return the number of checkpoints passed
+     */
+    public final long getCheckpoints() {
+        return this.checkpoints;
+    }
+
+    /**
+     * Getter.
+     * @return the number of states of the largest automaton built
+     */
+    public final int getLargestStates() {
+        return this.largestStates;
+    }
+}
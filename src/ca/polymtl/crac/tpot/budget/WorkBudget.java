@@ -0,0 +1,289 @@
+package ca.polymtl.crac.tpot.budget;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ca.polymtl.crac.tpot.budget.BudgetExceededException.Reason;
+
+/**
+ * The limits of a computation : a deadline, a ceiling on the number of
+ * states of each automaton or product built, and a cancellation flag.
+ * <p>
+ * A budget is installed for the current thread with
+ * {@link #install(WorkBudget)}, so that the transformations, the products
+ * and the solvers check it without passing it around : they call
+ * {@link #checkpoint()} once per state or iteration of their work loops,
+ * and the state factories call {@link #checkSize(int)} for each new state.
+ * Without a budget the checks do nothing. The tasks given to other threads
+ * keep the budget of their submitter with {@link #propagate(Callable)} or
+ * {@link #propagate(Runnable)}. When a limit is exceeded, the check throws a
+ * {@link BudgetExceededException}.
+ * @author Daniel Lefevre
+ */
+public class WorkBudget {
+
+    /**
+     * The budget of each thread.
+     */
+    private static final ThreadLocal<WorkBudget> CURRENT = new ThreadLocal<>();
+
+    /**
+     * The time of the creation, in nanoseconds.
+     */
+    private final long start = System.nanoTime();
+    /**
+     * The timeout, in milliseconds, 0 for none.
+     */
+    private final long timeout;
+    /**
+     * The deadline, in nanoseconds.
+     */
+    private final long deadline;
+    /**
+     * The maximum number of states of an automaton, 0 for none.
+     */
+    private final int maxStates;
+    /**
+     * True once cancelled.
+     */
+    private volatile boolean cancelled;
+    /**
+     * The number of checkpoints passed.
+     */
+    private final AtomicLong checkpoints = new AtomicLong();
+    /**
+     * The number of states of the largest automaton built.
+     */
+    private final AtomicInteger largestStates = new AtomicInteger();
+
+    /**
+     * Constructor.
+     * @param timeoutIn
+     *            the time given to the computation from now, in
+     *            milliseconds, 0 for none
+     * @param maxStatesIn
+     *            the maximum number of states of each automaton or product
+     *            built, 0 for none
+     */
+    public WorkBudget(final long timeoutIn, final int maxStatesIn) {
+        if ((timeoutIn < 0) || (maxStatesIn < 0)) {
+            throw new IllegalArgumentException("The limits must not be "
+                    + "negative : " + timeoutIn + ", " + maxStatesIn);
+        }
+        this.timeout = timeoutIn;
+        this.deadline = this.start + TimeUnit.MILLISECONDS.toNanos(timeoutIn);
+        this.maxStates = maxStatesIn;
+    }
+
+    /**
+     * Getter.
+     * @return the timeout, in milliseconds, 0 for none
+     */
+    public final long getTimeout() {
+        return this.timeout;
+    }
+
+    /**
+     * Getter.
+     * @return the maximum number of states of each automaton, 0 for none
+     */
+    public final int getMaxStates() {
+        return this.maxStates;
+    }
+
+    /**
+     * Getter.
+     * @return the time spent since the creation, in milliseconds
+     */
+    public final long getElapsed() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - this.start);
+    }
+
+    /**
+     * Getter.
+     * @return the number of checkpoints passed
+     */
+    public final long getCheckpoints() {
+        return this.checkpoints.get();
+    }
+
+    /**
+     * Getter.
+     * @return the number of states of the largest automaton built
+     */
+    public final int getLargestStates() {
+        return this.largestStates.get();
+    }
+
+    /**
+     * Cancels the computation : the next check of each thread using this
+     * budget fails.
+     */
+    public final void cancel() {
+        this.cancelled = true;
+    }
+
+    /**
+     * Getter.
+     * @return true if the computation was cancelled
+     */
+    public final boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    /**
+     * Checks that the computation was not cancelled and that the deadline
+     * did not pass.
+     * @throws BudgetExceededException
+     *             if the computation must stop
+     */
+    public final void check() {
+        this.checkpoints.incrementAndGet();
+        if (this.cancelled) {
+            throw this.exceeded(Reason.CANCELLED, "Cancelled");
+        }
+        if ((this.timeout > 0) && (System.nanoTime() - this.deadline > 0)) {
+            throw this.exceeded(Reason.DEADLINE, "Timeout of " + this.timeout
+                    + " ms exceeded");
+        }
+    }
+
+    /**
+     * Checks the size of an automaton being built.
+     * @param states
+     *            the number of states of the automaton
+     * @throws BudgetExceededException
+     *             if the automaton is larger than the ceiling
+     */
+    public final void checkStates(final int states) {
+        int largest = this.largestStates.get();
+        while ((states > largest)
+                && !this.largestStates.compareAndSet(largest, states)) {
+            largest = this.largestStates.get();
+        }
+        if ((this.maxStates > 0) && (states > this.maxStates)) {
+            throw this.exceeded(Reason.STATES, "Ceiling of " + this.maxStates
+                    + " states exceeded");
+        }
+    }
+
+    /**
+     * Builds the exception of an exceeded limit.
+     * @param reason
+     *            the reason
+     * @param detail
+     *            the description of the limit
+     * @return the exception
+     */
+    private BudgetExceededException exceeded(final Reason reason,
+            final String detail) {
+        return new BudgetExceededException(reason, detail, this.getElapsed(),
+                this.getCheckpoints(), this.getLargestStates());
+    }
+
+    /**
+     * Getter.
+     * @return the budget of the current thread, null for none
+     */
+    public static WorkBudget current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Sets the budget of the current thread. The previous budget should be
+     * installed again at the end of the computation, in a finally block.
+     * @param budget
+     *            the budget, null for none
+     * @return the previous budget, null for none
+     */
+    public static WorkBudget install(final WorkBudget budget) {
+        WorkBudget previous = CURRENT.get();
+        if (budget == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(budget);
+        }
+        return previous;
+    }
+
+    /**
+     * Checks the budget of the current thread, if any.
+     * @throws BudgetExceededException
+     *             if the computation must stop
+     */
+    public static void checkpoint() {
+        WorkBudget budget = CURRENT.get();
+        if (budget != null) {
+            budget.check();
+        }
+    }
+
+    /**
+     * Checks the size of an automaton against the budget of the current
+     * thread, if any.
+     * @param states
+     *            the number of states of the automaton
+     * @throws BudgetExceededException
+     *             if the automaton is larger than the ceiling
+     */
+    public static void checkSize(final int states) {
+        WorkBudget budget = CURRENT.get();
+        if (budget != null) {
+            budget.checkStates(states);
+        }
+    }
+
+    /**
+     * Makes a task run with the budget of the current thread, whatever the
+     * thread running it.
+     * @param task
+     *            the task
+     * @return the task, wrapped if the current thread has a budget
+     */
+    public static Runnable propagate(final Runnable task) {
+        final WorkBudget budget = CURRENT.get();
+        if (budget == null) {
+            return task;
+        }
+        return new Runnable() {
+            @Override
+            public void run() {
+                WorkBudget previous = install(budget);
+                try {
+                    task.run();
+                } finally {
+                    install(previous);
+                }
+            }
+        };
+    }
+
+    /**
+     * Makes a task run with the budget of the current thread, whatever the
+     * thread running it.
+     * @param task
+     *            the task
+     * @param <T>
+     *            the type of the result
+     * @return the task, wrapped if the current thread has a budget
+     */
+    public static <T> Callable<T> propagate(final Callable<T> task) {
+        final WorkBudget budget = CURRENT.get();
+        if (budget == null) {
+            return task;
+        }
+        return new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                WorkBudget previous = install(budget);
+                try {
+                    return task.call();
+                } finally {
+                    install(previous);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * Time budgets, cancellation and size ceilings of the computations, checked
+ * by the transformations, the products and the solvers.
+ */
+package ca.polymtl.crac.tpot.budget;
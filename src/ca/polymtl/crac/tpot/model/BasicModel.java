@@ -1,11 +1,16 @@
 package ca.polymtl.crac.tpot.model;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 import java.util.logging.Level;
 
 import ca.polymtl.crac.tpot.model.Opacity.IncorrectDataException;
 import ca.polymtl.crac.tpot.model.io.AutoParser;
+import ca.polymtl.crac.tpot.model.io.ModelDigest;
 import ca.polymtl.crac.tpot.model.io.RegParser;
+import ca.polymtl.crac.tpot.model.metrics.PhaseTimer;
 
 /**
  * Extends a Model, with basic functionnalities.
@@ -31,20 +36,36 @@ public class BasicModel extends Model {
     public final void buildModel() throws IncorrectDataException, IOException {
         LOGGER.log(Level.INFO, "Building model : " + this.getFile() + ".");
 
+        // Reads the files, once for the parsers and the key of the cache.
+        PhaseTimer timer = PhaseTimer.start(this.getMetricsListener(), "read");
+        String auto = ModelDigest.read(this.getFile() + ".auto");
+        String reg = ModelDigest.read(this.getFile() + ".reg");
+        timer.stop();
+
         // Parses auto file.
+        timer = PhaseTimer.start(this.getMetricsListener(), "parse.auto");
         AutoParser autoParser = new AutoParser(this.getFile() + ".auto");
-        autoParser.parseFile();
+        autoParser.parse(new ByteArrayInputStream(auto
+                .getBytes(StandardCharsets.UTF_8)));
+        timer.stop(autoParser.getParsedAutomaton());
 
         // Parses reg file.
+        timer = PhaseTimer.start(this.getMetricsListener(), "parse.reg");
         RegParser regParser = new RegParser(this.getFile() + ".reg");
-        regParser.parseFile();
+        regParser.parse(new StringReader(reg));
+        timer.stop();
 
         // Creates the opacity.
         this.setOpacity(new Opacity(autoParser.getParsedAutomaton(), regParser
                 .getParsedObservations(), regParser.getParsedPhi()));
 
-        // Validates the datas.
-        this.getOpacity().validateData();
+        // Validates the datas, unless the same files were already computed.
+        if (!this.restoreResult((this.getResultCache() == null) ? null
+                : ResultCache.key(auto, reg))) {
+            timer = PhaseTimer.start(this.getMetricsListener(), "validate");
+            this.getOpacity().validateData();
+            timer.stop();
+        }
 
         Model.LOGGER.log(Level.INFO, "Model building finished successfully.");
     }
@@ -0,0 +1,218 @@
+package ca.polymtl.crac.tpot.model;
+
+/**
+ * Joint distribution of the predicate and of the observation classes of an
+ * opacity problem. For each observation index o it holds P(O=o) and
+ * P(1_\phi = 1, O=o), along with P(1_\phi = 1) and the total probability of
+ * the system. All the opacity measures can be derived from these values.
+ * @author Daniel Lefevre
+ */
+public class JointDistribution {
+
+    /**
+     * P(O=o) for each observation index.
+     */
+    private final double[] pObs;
+    /**
+     * P(1_\phi = 1 and O=o) for each observation index.
+     */
+    private final double[] pPhiAndObs;
+    /**
+     * P(1_\phi = 1).
+     */
+    private final double pPhi;
+    /**
+     * The total probability of the system.
+     */
+    private final double pTotal;
+
+    /**
+     * Constructor. The values may come from different products and solves,
+     * so P(1_\phi = 1 and O=o) may exceed P(O=o) by a rounding error : it is
+     * capped to P(O=o), so that P(1_\phi = 0 and O=o) is never negative.
+     * @param pObsIn
+     *            P(O=o) for each observation index
+     * @param pPhiAndObsIn
+     *            P(1_\phi = 1 and O=o) for each observation index
+     * @param pPhiIn
+     *            P(1_\phi = 1)
+     * @param pTotalIn
+     *            the total probability of the system
+     */
+    public JointDistribution(final double[] pObsIn,
+            final double[] pPhiAndObsIn, final double pPhiIn,
+            final double pTotalIn) {
+        this.pObs = pObsIn;
+        this.pPhiAndObs = new double[pPhiAndObsIn.length];
+        for (int i = 0; i < pPhiAndObsIn.length; ++i) {
+            this.pPhiAndObs[i] = Math.min(pPhiAndObsIn[i], pObsIn[i]);
+        }
+        this.pPhi = pPhiIn;
+        this.pTotal = pTotalIn;
+    }
+
+    /**
+     * Getter.
+     * @return the number of observations
+     */
+    public final int size() {
+        return this.pObs.length;
+    }
+
+    /**
+     * Getter.
+     * @param index
+     *            the index of the observation
+     * @return P(O=o)
+     */
+    public final double getPObs(final int index) {
+        return this.pObs[index];
+    }
+
+    /**
+     * Getter.
+     * @param index
+     *            the index of the observation
+     * @return P(1_\phi = 1 and O=o)
+     */
+    public final double getPPhiAndObs(final int index) {
+        return this.pPhiAndObs[index];
+    }
+
+    /**
+     * Getter.
+     * @param index
+     *            the index of the observation
+     * @return P(1_\phi = 0 and O=o)
+     */
+    public final double getPPhiCompAndObs(final int index) {
+        return this.pObs[index] - this.pPhiAndObs[index];
+    }
+
+    /**
+     * Getter.
+     * @return P(1_\phi = 1)
+     */
+    public final double getPPhi() {
+        return this.pPhi;
+    }
+
+    /**
+     * Getter.
+     * @return P(1_\phi = 0)
+     */
+    public final double getPPhiComplement() {
+        return this.pTotal - this.pPhi;
+    }
+
+    /**
+     * Getter.
+     * @return the total probability of the system
+     */
+    public final double getPTotal() {
+        return this.pTotal;
+    }
+
+    /**
+     * Computes the liberal probabilistic opacity : the probability of the
+     * observations which reveal the value of the predicate.
+     * @param revealing
+     *            for each observation index, true if the observation is
+     *            included in the predicate or in its complement
+     * @return the LPO
+     */
+    public final double lpo(final boolean[] revealing) {
+        double opacity = 0;
+        for (int i = 0; i < this.pObs.length; ++i) {
+            if (revealing[i]) {
+                opacity += this.pObs[i];
+            }
+        }
+        return opacity;
+    }
+
+    /**
+     * Computes the initial entropy H(1_\phi).
+     * @return the initial entropy
+     */
+    public final double initialEntropy() {
+        double pPhiComplement = this.getPPhiComplement();
+        double entropy = 0;
+        // H(Phi) = - Sum (P(i) log P(i))
+        if ((this.pPhi != 1) && (this.pPhi != 0)) {
+            entropy -= this.pPhi * Math.log(this.pPhi) / Math.log(2);
+            entropy -= pPhiComplement * Math.log(pPhiComplement) / Math.log(2);
+        }
+        return entropy;
+    }
+
+    /**
+     * Computes the remaining entropy H(1_\phi | O).
+     * @return the remaining entropy
+     */
+    public final double remainingEntropy() {
+        double entropy = 0;
+        // H(Phi|O) = - Sum ( P ( i , o) * log ( P (i , o) )
+        for (int i = 0; i < this.pObs.length; ++i) {
+            double obs = this.pObs[i];
+            if (obs == 0) {
+                continue;
+            }
+            double phiAndObs = this.pPhiAndObs[i];
+            double phiCompAndObs = obs - phiAndObs;
+
+            if (phiAndObs != 0) {
+                entropy -= phiAndObs * Math.log(phiAndObs / obs)
+                        / Math.log(2);
+            }
+            if (phiCompAndObs != 0) {
+                entropy -= phiCompAndObs * Math.log(phiCompAndObs / obs)
+                        / Math.log(2);
+            }
+        }
+        return entropy;
+    }
+
+    /**
+     * Computes the vulnerable probabilistic opacity.
+     * @return the VPO
+     */
+    public final double vpo() {
+        double vpOpacity = 0;
+        // sum ( P(O=o)log(1-V(1_\phi | O = o)))
+        // where V(1_\phi | O = o) = max(P(1_\phi = 0 | O = o); P(1_\phi = 1 | O
+        // = o))
+        for (int i = 0; i < this.pObs.length; ++i) {
+            double obs = this.pObs[i];
+            if (obs == 0) {
+                continue;
+            }
+            double phiAndObs = this.pPhiAndObs[i];
+            double phiCompAndObs = obs - phiAndObs;
+
+            double vulnerability = Math.max(phiAndObs, phiCompAndObs) / obs;
+
+            vpOpacity += obs * Math.log(1 - vulnerability) / Math.log(2);
+        }
+        return -1 / vpOpacity;
+    }
+
+    /**
+     * Computes the harmonic probabilistic opacity.
+     * @return the HPO
+     */
+    public final double hpo() {
+        double hpo = 0;
+        // sum ( P(O=o) / P(1_\phi = 0 | O = o) )
+        for (int i = 0; i < this.pObs.length; ++i) {
+            double obs = this.pObs[i];
+            if (obs == 0) {
+                continue;
+            }
+            double phiCompAndObs = obs - this.pPhiAndObs[i];
+
+            hpo += obs / (phiCompAndObs / obs);
+        }
+        return 1 / hpo;
+    }
+}
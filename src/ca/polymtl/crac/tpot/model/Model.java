@@ -3,10 +3,19 @@ package ca.polymtl.crac.tpot.model;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import ca.polymtl.crac.tpot.model.Opacity.IncorrectDataException;
+import ca.polymtl.crac.tpot.model.io.AutoParser;
+import ca.polymtl.crac.tpot.model.io.RegParser;
+import ca.polymtl.crac.tpot.model.metrics.MetricsListener;
 import ca.polymtl.crac.tpot.mtbdd.Mtbdd;
+import ca.polymtl.crac.tpot.sampling.MonteCarloEstimator;
+import ca.polymtl.crac.tpot.scheduler.NonDetScheduler;
+import ca.polymtl.crac.tpot.scheduler.OptimalScheduler;
+import net.jautomata.rationals.Automaton;
 
 /**
  * @author Olivier Bachard, Daniel Lefevre
@@ -25,6 +34,32 @@ public abstract class Model implements ModelObservable {
      * The observers of this model.
      */
     private List<ModelObserver> observers = new ArrayList<>();
+    /**
+     * The number of threads computing the opacity.
+     */
+    private int parallelism = 1;
+    /**
+     * The pool running the computations of the opacity, null if the
+     * parallelism is 1.
+     */
+    private ForkJoinPool pool;
+    /**
+     * The cache of the opacities, null for none.
+     */
+    private ResultCache resultCache;
+    /**
+     * The key of the files of the model in the cache, null if there is no
+     * cache or if the opacity no longer matches the files.
+     */
+    private String resultKey;
+    /**
+     * True if the opacities were read from the cache.
+     */
+    private boolean cachedResult;
+    /**
+     * The listener of the measures of the phases, null for none.
+     */
+    private MetricsListener metricsListener;
 
     /**
      * Logger.
@@ -81,16 +116,64 @@ public abstract class Model implements ModelObservable {
      * mutual information, VPO).
      */
     public final void computeOpacity() {
-        this.opacity.computeLpo();
-        this.opacity.computeRpo();
-        this.opacity.getInitialEntropy();
-        this.opacity.getRemainingEntropy();
-        this.opacity.getMutualInformation();
-        this.opacity.computeVpo();
+        if (!this.cachedResult) {
+            this.opacity.computeLpo();
+            this.opacity.computeRpo();
+            this.opacity.getInitialEntropy();
+            this.opacity.getRemainingEntropy();
+            this.opacity.getMutualInformation();
+            this.opacity.computeVpo();
+            this.saveResult();
+        }
 
         this.updateObserver();
     }
 
+    /**
+     * Reads the opacities of this model from the cache, if any.
+     * @param key
+     *            the key of the files of the model, or null if there is no
+     *            cache
+     * @return true if the opacities were found
+     */
+    protected final boolean restoreResult(final String key) {
+        this.resultKey = key;
+        this.cachedResult = key != null
+                && this.resultCache.restore(key, this.opacity);
+        if (this.cachedResult) {
+            LOGGER.log(Level.INFO, "Opacities of " + this.file
+                    + " read from the cache.");
+        }
+        return this.cachedResult;
+    }
+
+    /**
+     * Writes the computed opacities of this model to the cache, if any,
+     * unless a solve did not converge. A failure is only logged.
+     */
+    public final void saveResult() {
+        if (this.resultKey == null || this.cachedResult) {
+            return;
+        }
+        try {
+            if (!this.resultCache.store(this.resultKey, this.opacity)) {
+                LOGGER.log(Level.WARNING, "Opacities of " + this.file
+                        + " not cached : a solve did not converge.");
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Cannot cache the opacities of "
+                    + this.file + " : " + e);
+        }
+    }
+
+    /**
+     * Forgets the files of the model, after its opacity was changed.
+     */
+    private void forgetResult() {
+        this.resultKey = null;
+        this.cachedResult = false;
+    }
+
     /**
      * Computes RPO.
      */
@@ -128,40 +211,166 @@ public abstract class Model implements ModelObservable {
         return this.opacity;
     }
 
+    /**
+     * Getter.
+     * @return the number of threads computing the opacity
+     */
+    public final int getParallelism() {
+        return this.parallelism;
+    }
+
+    /**
+     * Getter.
+     * @return the listener of the measures of the phases, null for none
+     */
+    public final MetricsListener getMetricsListener() {
+        return this.metricsListener;
+    }
+
+    /**
+     * Getter.
+     * @return the cache of the opacities, null for none
+     */
+    public final ResultCache getResultCache() {
+        return this.resultCache;
+    }
+
+    /**
+     * Getter.
+     * @return true if the opacities were read from the cache instead of
+     *         being computed
+     */
+    public final boolean isCachedResult() {
+        return this.cachedResult;
+    }
+
+    /**
+     * Replaces the system automaton, recomputes all opacities and notifies the
+     * observers.
+     * @param automatonIn
+     *            the new system automaton
+     */
+    public final void replaceAutomaton(final Automaton automatonIn) {
+        this.forgetResult();
+        this.opacity.setAutomaton(automatonIn);
+        this.computeOpacity();
+    }
+
+    /**
+     * Replaces one observation, recomputes the opacities and notifies the
+     * observers. Only the contribution of this observation is computed again.
+     * @param index
+     *            the index of the observation
+     * @param observationIn
+     *            the new observation
+     */
+    public final void replaceObservation(final int index,
+            final Automaton observationIn) {
+        this.forgetResult();
+        this.opacity.setObservation(index, observationIn);
+        this.computeOpacity();
+    }
+
+    /**
+     * Replaces the predicate, recomputes the opacities and notifies the
+     * observers. With the joint product, the default, the whole product is
+     * rebuilt and the probabilities of the observations are recomputed with
+     * those of the predicate; without it, they are reused and only the terms
+     * of the predicate are recomputed.
+     * @param phiIn
+     *            the new predicate
+     */
+    public final void replacePhi(final Automaton phiIn) {
+        this.forgetResult();
+        this.opacity.setPhi(phiIn);
+        this.computeOpacity();
+    }
+
     // public final void internScheduleModel() {
     // Model.LOGGER.log(Level.INFO, "Ordonnancement interne du modele "
     // + this.file + "...");
     // new InternScheduleModel().start();
     // }
 
-    // /**
-    // * TODO : in english. Effectue les mesures d'opacités pour tous les
-    // chemins
-    // * pour lesquels le choix est non déterministe. Attention : l'automate
-    // doit
-    // * alors etre non déterministe uniquement au début jusqu'à une certaine
-    // * profondeur et sans boucles dans la partie non déterministe.
-    // */
-    // public final void nonDetScheduleModel() {
-    //
-    // NonDetScheduler nds = new NonDetScheduler();
-    // try {
-    // nds.computeOpacities(this.automaton, this.file);
-    // nds.getMinMaxOpacities();
-    // } catch (IOException e) {
-    // e.printStackTrace();
-    // }
-    //
-    // double[] opacities = new double[6];
-    // opacities[0] = nds.getMinLpo();
-    // opacities[1] = nds.getMaxLpo();
-    // opacities[2] = nds.getMinRpo();
-    // opacities[3] = nds.getMaxRpo();
-    // opacities[4] = nds.getMinVpo();
-    // opacities[5] = nds.getMaxVpo();
-    //
-    // updateMinMaxOpacities(opacities);
-    // }
+    /**
+     * Computes the extremes of the opacities over all the schedulers of the
+     * automaton of the files, whose nondeterminism must be a loop-free
+     * prefix. The model does not need to be built : the observations are over
+     * the words of the probabilistic branches, and are validated against each
+     * branch. The schedulers are evaluated on the pool of the model, and the
+     * observers are notified after each one with the current extremes and
+     * progress, as returned by {@link NonDetScheduler#getMinMaxOpacities()}.
+     * @throws IOException
+     *             if a file could not be read
+     * @throws InterruptedException
+     *             if the calling thread is interrupted
+     */
+    public final void nonDetScheduleModel() throws IOException,
+            InterruptedException {
+        LOGGER.log(Level.INFO, "Scheduling the model " + this.file + ".");
+        AutoParser autoParser = new AutoParser(this.file + ".auto");
+        autoParser.parseFile();
+        new NonDetScheduler(this.pool, this).computeOpacities(
+                autoParser.getParsedAutomaton(), this.file + ".reg");
+    }
+
+    /**
+     * Computes the extremes of the LPO over all the schedulers of the
+     * automaton of the files by value iteration, without enumerating the
+     * schedulers, so the nondeterminism may have loops. The observations are
+     * over the words of the probabilistic transitions, as for
+     * {@link #nonDetScheduleModel()}, and the model does not need to be
+     * built. The observers are notified with the extremes of the LPO by
+     * {@link ModelObserver#displayLpo(double, double)}, as for a single
+     * scheduler.
+     * @return the scheduler, with the optimal choices
+     * @throws IOException
+     *             if a file could not be read
+     */
+    public final OptimalScheduler optimalScheduleModel() throws IOException {
+        LOGGER.log(Level.INFO, "Optimizing the schedulers of the model "
+                + this.file + ".");
+        AutoParser autoParser = new AutoParser(this.file + ".auto");
+        autoParser.parseFile();
+        RegParser regParser = new RegParser(this.file + ".reg");
+        regParser.parseFile();
+        OptimalScheduler scheduler = new OptimalScheduler(
+                autoParser.getParsedAutomaton(),
+                regParser.getParsedObservations(), regParser.getParsedPhi());
+        scheduler.computeLpoBounds();
+        for (ModelObserver o : this.observers) {
+            o.displayLpo(scheduler.getMinLpo(), scheduler.getMaxLpo());
+        }
+        return scheduler;
+    }
+
+    /**
+     * Estimates the opacities of the automaton of the files by sampling runs,
+     * for the models too large to be built. The model does not need to be
+     * built, and the runs are sampled on the pool of the model. The observers
+     * are notified after each round of batches with the bounds of the
+     * confidence intervals and the progress, as returned by
+     * {@link MonteCarloEstimator#getBounds()}.
+     * @param precision
+     *            the half-width of the confidence intervals to reach
+     * @return the estimator, with the estimates
+     * @throws IOException
+     *             if a file could not be read
+     */
+    public final MonteCarloEstimator estimateModel(final double precision)
+            throws IOException {
+        LOGGER.log(Level.INFO, "Sampling the model " + this.file + ".");
+        AutoParser autoParser = new AutoParser(this.file + ".auto");
+        autoParser.parseFile();
+        RegParser regParser = new RegParser(this.file + ".reg");
+        regParser.parseFile();
+        MonteCarloEstimator estimator = new MonteCarloEstimator(this.pool,
+                this);
+        estimator.setPrecision(precision);
+        estimator.estimate(autoParser.getParsedAutomaton(),
+                regParser.getParsedObservations(), regParser.getParsedPhi());
+        return estimator;
+    }
 
     /**
      * Setter.
@@ -178,7 +387,60 @@ public abstract class Model implements ModelObservable {
      *            the new opacity
      */
     public final void setOpacity(final Opacity opacityIn) {
+        this.forgetResult();
         this.opacity = opacityIn;
+        if (this.opacity != null) {
+            this.opacity.setExecutor(this.pool);
+            this.opacity.setMetricsListener(this.metricsListener);
+        }
+    }
+
+    /**
+     * Setter. The listener is called at the end of each phase of the build
+     * and of the computations, possibly by the threads of the pool.
+     * @param metricsListenerIn
+     *            the listener of the measures of the phases, null for none
+     */
+    public final void setMetricsListener(
+            final MetricsListener metricsListenerIn) {
+        this.metricsListener = metricsListenerIn;
+        if (this.opacity != null) {
+            this.opacity.setMetricsListener(metricsListenerIn);
+        }
+    }
+
+    /**
+     * Setter. The cache is used by the next build of the model.
+     * @param resultCacheIn
+     *            the cache of the opacities, null for none
+     */
+    public final void setResultCache(final ResultCache resultCacheIn) {
+        this.resultCache = resultCacheIn;
+    }
+
+    /**
+     * Setter. With a parallelism greater than 1, the observations are
+     * evaluated by a pool of this many threads.
+     * @param parallelismIn
+     *            the number of threads computing the opacity
+     */
+    public final void setParallelism(final int parallelismIn) {
+        if (parallelismIn < 1) {
+            throw new IllegalArgumentException("The parallelism must be at "
+                    + "least 1 : " + parallelismIn);
+        }
+        if (parallelismIn == this.parallelism) {
+            return;
+        }
+        if (this.pool != null) {
+            this.pool.shutdown();
+        }
+        this.parallelism = parallelismIn;
+        this.pool = (parallelismIn > 1) ? new ForkJoinPool(parallelismIn)
+                : null;
+        if (this.opacity != null) {
+            this.opacity.setExecutor(this.pool);
+        }
     }
 
     @Override
@@ -255,7 +517,7 @@ public abstract class Model implements ModelObservable {
     // }
     //
     // Model.LOGGER.log(Level.INFO, "Ordonnancement ......");
-    // Model.this.getAutomaton().schedule(sched);
+    // Model.this.replaceAutomaton(Model.this.getAutomaton().schedule(sched));
     // Model.LOGGER.log(Level.INFO, "...... ok");
     // Model.LOGGER.log(Level.INFO, "Ordonnancement termine avec succes");
     // }
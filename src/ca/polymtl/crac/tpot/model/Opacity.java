@@ -1,17 +1,32 @@
 package ca.polymtl.crac.tpot.model;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.logging.Level;
 
+import ca.polymtl.crac.tpot.budget.WorkBudget;
+import ca.polymtl.crac.tpot.model.metrics.MetricsListener;
+import ca.polymtl.crac.tpot.model.metrics.PhaseTimer;
+import ca.polymtl.crac.tpot.model.product.BoundedPropagation;
+import ca.polymtl.crac.tpot.model.product.JointProduct;
+import ca.polymtl.crac.tpot.model.product.PartitionValidator;
+import ca.polymtl.crac.tpot.model.product.PartitionValidator.Violation;
+import ca.polymtl.crac.tpot.solver.DenseSolver;
+import ca.polymtl.crac.tpot.solver.GaussSeidelSolver;
+import ca.polymtl.crac.tpot.solver.LinearSolver;
+import ca.polymtl.crac.tpot.solver.ReachabilitySystem;
+import ca.polymtl.crac.tpot.solver.SolverResult;
+import ca.polymtl.crac.tpot.solver.SparseMatrix;
 import net.jautomata.rationals.Automaton;
-import net.jautomata.rationals.PSymbol;
-import net.jautomata.rationals.State;
-import net.jautomata.rationals.Transition;
+import net.jautomata.rationals.SymbolTable;
 import net.jautomata.rationals.properties.binarytests.BinaryTest;
 import net.jautomata.rationals.properties.binarytests.Inclusion;
 import net.jautomata.rationals.properties.unarytests.IsEmpty;
@@ -20,13 +35,17 @@ import net.jautomata.rationals.transformations.Intersection;
 import net.jautomata.rationals.transformations.SynchronizationProduct;
 import net.jautomata.rationals.transformations.UnProb;
 import net.jautomata.rationals.transformations.Union;
-import Jama.Matrix;
 
 /**
  * @author Olivier Bachard, Daniel Lefevre
  */
 public class Opacity {
 
+    /**
+     * Default number of states above which the sparse solver is used.
+     */
+    public static final int DEFAULT_SPARSE_THRESHOLD = 500;
+
     /**
      * The automaton.
      */
@@ -63,6 +82,88 @@ public class Opacity {
      * The value of the VPO.
      */
     private double vpo = -1;
+    /**
+     * The joint distribution of the predicate and the observations, computed
+     * lazily and shared by all the opacity measures.
+     */
+    private JointDistribution distribution;
+    /**
+     * The propagation over the joint product giving the joint distributions
+     * over the traces of length at most 0, 1, ..., extended lazily up to the
+     * largest horizon asked.
+     */
+    private BoundedPropagation propagation;
+    /**
+     * The total probability of the system, NaN if unknown.
+     */
+    private double pTotal = Double.NaN;
+    /**
+     * P(1_\phi = 1), NaN if unknown.
+     */
+    private double pPhi = Double.NaN;
+    /**
+     * P(O=o) for each observation index, NaN if unknown.
+     */
+    private double[] pObs;
+    /**
+     * P(1_\phi = 1 and O=o) for each observation index, NaN if unknown.
+     */
+    private double[] pPhiAndObs;
+    /**
+     * For each observation index, true if the observation is included in the
+     * predicate, null if unknown.
+     */
+    private Boolean[] inPhi;
+    /**
+     * For each observation index, true if the observation is included in the
+     * complement of the predicate, null if unknown.
+     */
+    private Boolean[] inPhiComplement;
+    /**
+     * The system restricted to the predicate, null if not built yet.
+     */
+    private Automaton automatonPhi;
+    /**
+     * The complement of the predicate, null if not built yet.
+     */
+    private Automaton phiComplement;
+    /**
+     * The number of states above which the sparse solver is used.
+     */
+    private int sparseThreshold = DEFAULT_SPARSE_THRESHOLD;
+    /**
+     * The solver used for the small systems.
+     */
+    private LinearSolver denseSolver = new DenseSolver();
+    /**
+     * The solver used for the large systems.
+     */
+    private LinearSolver sparseSolver = new GaussSeidelSolver();
+    /**
+     * True if the distribution is computed with the joint product, false if
+     * it is computed observation by observation.
+     */
+    private boolean jointProduct = true;
+    /**
+     * The executor running the computations of the observations, null to run
+     * them in the calling thread.
+     */
+    private Executor executor;
+    /**
+     * True to validate the data with single-pass products, false to use the
+     * inclusion and intersection tests.
+     */
+    private boolean fastValidation = true;
+    /**
+     * The listener of the measures of the phases, null for none.
+     */
+    private MetricsListener metricsListener;
+    /**
+     * False if a linear system solved for the probabilities computed so far
+     * did not reach the tolerance of its solver. Written by the threads of
+     * the executor.
+     */
+    private volatile boolean converged = true;
 
     /**
      * Creates the opacity, with an automaton, a list of observations, and the
@@ -79,125 +180,390 @@ public class Opacity {
         this.automaton = automatonIn;
         this.observations = observationsIn;
         this.phi = phiIn;
+        this.resetObservationCaches();
     }
 
     /**
      * Computes the probability for a automaton defined by transitions (whithin
      * this automaton). We meen the probability for the automaton to reach a
      * final state.
-     * @param index
-     *            the index of the equivalanceClase in the equivalanceClasses
-     *            vector
+     * @param auto
+     *            the automaton
      * @return the coresponding probability between 0 and 1
      */
-    private static double computeProbability(final Automaton auto) {
-        Set<Transition> transitions = auto.delta();
-        Set<State> states = auto.states();
-        Set<State> initials = auto.initials();
-        Set<State> terminals = auto.terminals();
-        Map<State, Integer> map = new HashMap<>();
-        Iterator<State> it = states.iterator();
-        int index = 0;
-        while (it.hasNext()) {
-            State s = it.next();
-            map.put(s, index);
-            ++index;
-        }
-        int n = index; // the number of states
+    private double computeProbability(final Automaton auto) {
+        ReachabilitySystem system = new ReachabilitySystem(auto);
+        SolverResult result = this.solve(system.getMatrix(), system.getRhs());
 
-        // this will be used to solve the system
-        Matrix a = new Matrix(n, n, 0);
+        // the total probability it's sum of probabilities from each node
+        return system.initialProbability(result.getSolution());
+    }
 
-        // we initialise the matrix
-        // given that the equation are implicit we need to explicitate them
-        // so a -1 apears in the matrix for each state
-        for (int i = 0; i < n; ++i) {
-            a.set(i, i, -1);
+    /**
+     * Solves a linear system, with the dense solver for the small systems and
+     * with the sparse solver above {@link #getSparseThreshold()} states.
+     * @param a
+     *            the matrix
+     * @param b
+     *            the right-hand side
+     * @return the result of the solver
+     */
+    private SolverResult solve(final SparseMatrix a, final double[] b) {
+        LinearSolver solver = (a.size() > this.sparseThreshold)
+                ? this.sparseSolver : this.denseSolver;
+
+        PhaseTimer timer = PhaseTimer.start(this.metricsListener, "solve");
+        SolverResult result = solver.solve(a, b);
+        timer.stop(a.size(), a.nonZeros());
+        if (!result.isConverged()) {
+            this.converged = false;
+            Model.LOGGER.log(Level.WARNING, solver.getClass().getSimpleName()
+                    + " on " + a.size() + " states : " + result);
+        } else if (Model.LOGGER.isLoggable(Level.FINE)) {
+            Model.LOGGER.log(Level.FINE, solver.getClass().getSimpleName()
+                    + " on " + a.size() + " states : " + result);
         }
+        return result;
+    }
 
-        // we add all the probabilities from transitions to the matrix
-        Iterator<Transition> transitionIt = transitions.iterator();
-        while (transitionIt.hasNext()) {
-            Transition t = transitionIt.next();
-            int i = map.get(t.start());
-            int j = map.get(t.end());
-            double probability = 1;
-            if (t.label() instanceof PSymbol) {
-                probability = ((PSymbol) t.label()).getProbability();
+    /**
+     * Computes the joint distribution of the predicate and the observations.
+     * Unless it is disabled, the joint product computes all the values at
+     * once, the cached ones included, whenever P(phi) or the values of more
+     * than one observation are missing : this is the case on the first
+     * computation, and after a change of the system or of the predicate. The
+     * values of a single changed observation are computed alone, with the
+     * products of the system and of its restriction to the predicate with
+     * this observation.
+     * @return the joint distribution
+     */
+    private JointDistribution computeDistribution() {
+        int missing = 0;
+        for (int i = 0; i < this.pObs.length; ++i) {
+            if (Double.isNaN(this.pObs[i])
+                    || Double.isNaN(this.pPhiAndObs[i])) {
+                ++missing;
             }
-            a.set(i, j, a.get(i, j) + probability);
         }
+        if (this.jointProduct && (missing > 1 || Double.isNaN(this.pPhi))) {
+            this.computeJointDistribution();
+        } else {
+            this.computeDistributionByObservation();
+        }
+        return new JointDistribution(this.pObs.clone(),
+                this.pPhiAndObs.clone(), this.pPhi, this.pTotal);
+    }
+
+    /**
+     * Computes the joint distribution with a single product of the system,
+     * the predicate and all the observations, and a single solve.
+     */
+    private void computeJointDistribution() {
+        PhaseTimer timer = PhaseTimer.start(this.metricsListener,
+                "product.joint");
+        JointProduct product = new JointProduct(this.automaton, this.phi,
+                this.observations);
+        timer.stop(product.size(), product.transitionCount());
+        SolverResult result = this.solve(product.transposedSystem(),
+                product.initialVector());
+        JointDistribution joint = product.toDistribution(result
+                .getSolution());
+
+        this.pTotal = joint.getPTotal();
+        this.pPhi = joint.getPPhi();
+        for (int i = 0; i < this.pObs.length; ++i) {
+            this.pObs[i] = joint.getPObs(i);
+            this.pPhiAndObs[i] = joint.getPPhiAndObs(i);
+        }
+    }
 
-        // we define the matrix of free terms (1-column matrix)
-        // this is the probability for a state to take an ending transition
-        // so it's 1 for every final state and 0 for the others
-        Matrix b = new Matrix(n, 1, 0);
-        it = terminals.iterator();
-        while (it.hasNext()) {
-            b.set(map.get(it.next()), 0, -1);
+    /**
+     * Computes the missing values of the joint distribution observation by
+     * observation. Each observation costs up to two products and two solves :
+     * the system with the observation, and the system restricted to the
+     * predicate with the observation.
+     */
+    private void computeDistributionByObservation() {
+        // the system restricted to the predicate is shared by all observations
+        if (this.automatonPhi == null) {
+            PhaseTimer timer = PhaseTimer.start(this.metricsListener,
+                    "product.phi");
+            this.automatonPhi = new SynchronizationProduct().transform(
+                    this.automaton, this.phi);
+            timer.stop(this.automatonPhi);
+        }
+        final Automaton restricted = this.automatonPhi;
+
+        List<Callable<Double>> totals = new ArrayList<>();
+        if (Double.isNaN(this.pTotal)) {
+            totals.add(new Callable<Double>() {
+                @Override
+                public Double call() {
+                    return Opacity.this.computeProbability(
+                            Opacity.this.automaton);
+                }
+            });
+        }
+        if (Double.isNaN(this.pPhi)) {
+            totals.add(new Callable<Double>() {
+                @Override
+                public Double call() {
+                    return Opacity.this.computeProbability(restricted);
+                }
+            });
+        }
+
+        List<Integer> indexes = new ArrayList<>();
+        List<Callable<double[]>> tasks = new ArrayList<>();
+        for (int i = 0; i < this.pObs.length; ++i) {
+            if (!Double.isNaN(this.pObs[i])
+                    && !Double.isNaN(this.pPhiAndObs[i])) {
+                continue;
+            }
+            final Automaton observable = this.observations.get(i);
+            final double knownObs = this.pObs[i];
+            final int index = i;
+            indexes.add(i);
+            tasks.add(new Callable<double[]>() {
+                @Override
+                public double[] call() {
+                    SynchronizationProduct synchronisation =
+                            new SynchronizationProduct();
+                    double[] p = new double[2];
+
+                    // P(O = o)
+                    p[0] = knownObs;
+                    if (Double.isNaN(p[0])) {
+                        p[0] = Opacity.this.computeProbability(Opacity.this
+                                .product("product.observation", index,
+                                        synchronisation, Opacity.this
+                                                .automaton, observable));
+                    }
+
+                    // P(1_\phi = 1 and O = o)
+                    if (p[0] != 0) {
+                        p[1] = Opacity.this.computeProbability(Opacity.this
+                                .product("product.observationPhi", index,
+                                        synchronisation, restricted,
+                                        observable));
+                    }
+                    return p;
+                }
+            });
         }
 
-        // let's find the solution
-        Matrix x = a.solve(b);
+        List<Future<Double>> totalResults = this.submitAll(totals);
+        List<Future<double[]>> results = this.submitAll(tasks);
 
-        // the total probability it's sum of probabilities from each node
-        double probability = 0;
-        it = initials.iterator();
-        while (it.hasNext()) {
-            probability += x.get(map.get(it.next()), 0);
+        for (int k = 0; k < results.size(); ++k) {
+            double[] p = this.get(results.get(k));
+            this.pObs[indexes.get(k)] = p[0];
+            this.pPhiAndObs[indexes.get(k)] = p[1];
         }
+        int k = 0;
+        if (Double.isNaN(this.pTotal)) {
+            this.pTotal = this.get(totalResults.get(k++));
+        }
+        if (Double.isNaN(this.pPhi)) {
+            this.pPhi = this.get(totalResults.get(k));
+        }
+    }
 
-        return probability;
+    /**
+     * Builds the product of a system with an observation, as a phase.
+     * @param phase
+     *            the name of the phase
+     * @param index
+     *            the index of the observation
+     * @param synchronisation
+     *            the product
+     * @param system
+     *            the system
+     * @param observable
+     *            the observation
+     * @return the product
+     */
+    private Automaton product(final String phase, final int index,
+            final SynchronizationProduct synchronisation,
+            final Automaton system, final Automaton observable) {
+        PhaseTimer timer = PhaseTimer.start(this.metricsListener, phase, index);
+        Automaton product = synchronisation.transform(system, observable);
+        timer.stop(product);
+        return product;
     }
 
     /**
-     * Computes harmonic probabilistic opacity. It provides a mesure of how
-     * vulnerable the system is. If Hpo = 1 if anly \phi is allways false
-     * @return a value between 0 and 1 mesuring the opacity
+     * Submits tasks to the executor, or runs them in the calling thread if
+     * there is none. The tasks keep the work budget of the calling thread.
+     * @param tasks
+     *            the tasks
+     * @param <T>
+     *            the type of the results
+     * @return the futures of the tasks, in the same order
      */
-    public final double computeHpo() {
-        SynchronizationProduct synchronisation = new SynchronizationProduct();
+    private <T> List<Future<T>> submitAll(final List<Callable<T>> tasks) {
+        List<Future<T>> futures = new ArrayList<>(tasks.size());
+        for (Callable<T> task : tasks) {
+            FutureTask<T> future = new FutureTask<>(
+                    WorkBudget.propagate(task));
+            futures.add(future);
+            if (this.executor == null) {
+                future.run();
+            } else {
+                this.executor.execute(future);
+            }
+        }
+        return futures;
+    }
 
-        // some general probabilities
-        // double pPhi = computeProbability(synchronisation.transform(this.auto,
-        // this.phi));
-        // we want to compute the opacity
-        double hpo = 0;
+    /**
+     * Waits for the result of a task, rethrowing its exception if it failed.
+     * @param future
+     *            the future of the task
+     * @param <T>
+     *            the type of the result
+     * @return the result of the task
+     */
+    private <T> T get(final Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while computing the "
+                    + "opacity", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
 
-        // first, we compute the denominator (the sum)
-        // sum ( P(O=o) / P(1_\phi = 0 | O = o) )
-        for (int i = 0; i < this.observations.size(); ++i) {
-            Automaton observable = this.observations.get(i);
+    /**
+     * Tests, for each observation, if it reveals the predicate : if it is
+     * included in the predicate or, for the symmetrical LPO, in its
+     * complement. The results of the inclusion tests are cached. The tests
+     * only depend on the observations and on the predicate.
+     * @param symmetrical
+     *            true to also test the inclusion in the complement
+     * @return for each observation index, true if the observation is
+     *         revealing
+     */
+    public final boolean[] computeRevealing(final boolean symmetrical) {
+        this.testInclusions("inclusion.phi", this.inPhi, this.phi, null);
+        if (symmetrical) {
+            if (this.phiComplement == null) {
+                PhaseTimer timer = PhaseTimer.start(this.metricsListener,
+                        "complement");
+                // the complement is taken over all the letters the
+                // observations may use, not only over those of the predicate
+                Set<Object> alphabet = new HashSet<>();
+                for (Object label : this.automaton.alphabet()) {
+                    alphabet.add(SymbolTable.symbolOf(label));
+                }
+                for (Automaton o : this.observations) {
+                    alphabet.addAll(o.alphabet());
+                }
+                Complement complement = new Complement();
+                complement.setAlphabet(alphabet);
+                this.phiComplement = complement.transform(this.phi);
+                timer.stop(this.phiComplement);
+            }
+            // the complement only matters when the predicate is not revealed
+            this.testInclusions("inclusion.complement", this.inPhiComplement,
+                    this.phiComplement, this.inPhi);
+        }
 
-            double pObs = computeProbability(synchronisation.transform(
-                    this.automaton, observable));
+        boolean[] revealing = new boolean[this.inPhi.length];
+        for (int i = 0; i < revealing.length; ++i) {
+            revealing[i] = this.inPhi[i] || (symmetrical
+                    && Boolean.TRUE.equals(this.inPhiComplement[i]));
+        }
+        return revealing;
+    }
 
-            if (pObs == 0) { // I think this should never happen
+    /**
+     * Fills the unknown results of the inclusion of each observation in an
+     * automaton.
+     * @param phase
+     *            the name of the phase of each test
+     * @param results
+     *            the cached results, null where unknown
+     * @param target
+     *            the automaton which may include the observations
+     * @param skip
+     *            the observations whose value is true are not tested, may be
+     *            null
+     */
+    private void testInclusions(final String phase, final Boolean[] results,
+            final Automaton target, final Boolean[] skip) {
+        List<Integer> indexes = new ArrayList<>();
+        List<Callable<Boolean>> tasks = new ArrayList<>();
+        for (int i = 0; i < results.length; ++i) {
+            if ((results[i] != null)
+                    || ((skip != null) && Boolean.TRUE.equals(skip[i]))) {
                 continue;
             }
+            final Automaton o = this.observations.get(i);
+            final int index = i;
+            indexes.add(i);
+            tasks.add(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    PhaseTimer timer = PhaseTimer.start(
+                            Opacity.this.metricsListener, phase, index);
+                    // Inclusion keeps its last counter-example, so each task
+                    // has its own
+                    BinaryTest inclusion = new Inclusion();
+                    boolean included = inclusion.test(o, target);
+                    timer.stop();
+                    return included;
+                }
+            });
+        }
 
-            // for phi : P(1_\phi = 1 and O = o)
-            double pPhiAndObs = computeProbability(synchronisation.transform(
-                    synchronisation.transform(this.automaton, this.phi),
-                    observable));
-            // for phi complement : P(1_\phi = 0 and O = o)
-            double pPhiCompAndObs = pObs - pPhiAndObs;
-
-            hpo += pObs / (pPhiCompAndObs / pObs);
+        List<Future<Boolean>> futures = this.submitAll(tasks);
+        for (int k = 0; k < futures.size(); ++k) {
+            results[indexes.get(k)] = this.get(futures.get(k));
         }
+    }
 
-        hpo = 1 / hpo;
+    /**
+     * Creates empty caches for the values depending on the observations.
+     */
+    private void resetObservationCaches() {
+        int n = (this.observations == null) ? 0 : this.observations.size();
+        this.pObs = new double[n];
+        this.pPhiAndObs = new double[n];
+        Arrays.fill(this.pObs, Double.NaN);
+        Arrays.fill(this.pPhiAndObs, Double.NaN);
+        this.inPhi = new Boolean[n];
+        this.inPhiComplement = new Boolean[n];
+        this.phiComplement = null;
+        this.distribution = null;
+        this.propagation = null;
+        this.converged = true;
+    }
 
-        return hpo;
+    /**
+     * Computes harmonic probabilistic opacity. It provides a mesure of how
+     * vulnerable the system is. If Hpo = 1 if anly \phi is allways false
+     * @return a value between 0 and 1 mesuring the opacity
+     */
+    public final double computeHpo() {
+        return this.getDistribution().hpo();
     }
 
     /**
-     * Private function for computing initial entropy of the system. This is
-     * H(1_\phi).
+     * Computes the initial entropy of the system, H(1_\phi), from the joint
+     * distribution.
      */
     public final void computeInitialEntropy() {
-        this.initialEntropy = 0;
-        // H(Phi) = - Sum (P(i) log P(i))
+        this.initialEntropy = this.getDistribution().initialEntropy();
     }
 
     /**
@@ -206,22 +572,8 @@ public class Opacity {
      * @return a value between 0 and 1 mesuring the opacity
      */
     public final double computeLpo() {
-        Complement complement = new Complement();
-        BinaryTest inclusion = new Inclusion();
-        SynchronizationProduct synchronisation = new SynchronizationProduct();
-
-        Automaton phiComplement = complement.transform(this.phi);
-
-        double opacity = 0;
-        for (Automaton o : this.observations) {
-            if (inclusion.test(o, this.phi) || inclusion.test(o, phiComplement)) {
-                opacity += computeProbability(synchronisation.transform(
-                        this.automaton, o));
-            }
-        }
-
-        this.lpo = opacity;
-        return opacity;
+        this.lpo = this.getDistribution().lpo(this.computeRevealing(true));
+        return this.lpo;
     }
 
     /**
@@ -230,18 +582,7 @@ public class Opacity {
      * @return a value between 0 and 1 measuring the opacity
      */
     public final double computeLpoAsym() {
-        BinaryTest inclusion = new Inclusion();
-        SynchronizationProduct synchronisation = new SynchronizationProduct();
-
-        double opacity = 0;
-        for (Automaton o : this.observations) {
-            if (inclusion.test(o, this.phi)) {
-                opacity += computeProbability(synchronisation.transform(
-                        this.automaton, o));
-            }
-        }
-
-        return opacity;
+        return this.getDistribution().lpo(this.computeRevealing(false));
     }
 
     public final void computeLpoForMtbddCase(final Automaton autoIn,
@@ -256,54 +597,13 @@ public class Opacity {
      * @return a value between 0 and 1 mesuring the opacity
      */
     public final double computeRpo() {
-        SynchronizationProduct synchronisation = new SynchronizationProduct();
-
-        // some general probabilities
-        double pPhi = computeProbability(synchronisation.transform(
-                this.automaton, this.phi));
-        double pPhiComplement = computeProbability(this.automaton) - pPhi;
-
-        // we want to compute the opacity
+        JointDistribution distribution = this.getDistribution();
 
         // first we need the initial entropy = H(1_\phi)
-        this.initialEntropy = 0;
-        // H(Phi) = - Sum (P(i) log P(i))
-        if ((pPhi != 1) && (pPhi != 0)) {
-            this.initialEntropy -= pPhi * Math.log(pPhi) / Math.log(2);
-            this.initialEntropy -= pPhiComplement * Math.log(pPhiComplement)
-                    / Math.log(2);
-        }
+        this.initialEntropy = distribution.initialEntropy();
 
         // second we need the remaining entropy = H(1_\phi | O)
-        this.remainingEntropy = 0;
-        // H(Phi|O) = - Sum ( P ( i , o) * log ( P (i , o) )
-        for (int i = 0; i < this.observations.size(); ++i) {
-            Automaton observable = this.observations.get(i);
-
-            double pObs = computeProbability(synchronisation.transform(
-                    this.automaton, observable));
-
-            if (pObs == 0) {
-                continue;
-            }
-
-            // for phi
-            double pPhiAndObs = computeProbability(synchronisation.transform(
-                    synchronisation.transform(this.automaton, this.phi),
-                    observable));
-            // for phi complement
-            double pPhiCompAndObs = pObs - pPhiAndObs;
-
-            if (pPhiAndObs != 0) {
-                this.remainingEntropy -= pPhiAndObs
-                        * Math.log(pPhiAndObs / pObs) / Math.log(2);
-            }
-
-            if (pPhiCompAndObs != 0) {
-                this.remainingEntropy -= pPhiCompAndObs
-                        * Math.log(pPhiCompAndObs / pObs) / Math.log(2);
-            }
-        }
+        this.remainingEntropy = distribution.remainingEntropy();
 
         // third, we find the mutual information
         // I(1_\phi ; O) = H(1_\phi) - H(1_\phi | O)
@@ -311,10 +611,8 @@ public class Opacity {
 
         // finnally, we have the rational probabilistic opacity
         // Rpo = 1 - I(1_\phi ; O) = 1 - H(1_\phi) + H(1_\phi | O)
-        double opacity = 1 - this.mutualInformation;
-
-        this.rpo = opacity;
-        return opacity;
+        this.rpo = 1 - this.mutualInformation;
+        return this.rpo;
     }
 
     /**
@@ -323,51 +621,100 @@ public class Opacity {
      * @return a value between 0 and 1 mesuring the opacity
      */
     public final double computeVpo() {
-        SynchronizationProduct synchronisation = new SynchronizationProduct();
-
-        // some general probabilities
-        // double pPhi = computeProbability(synchronisation.transform(this.auto,
-        // this.phi));
-        // we want to compute the opacity
-        double vpOpacity = 0;
-        // first, we compute the denominator (the sum)
-        // sum ( P(O=o)log(1-V(1_\phi | O = o)))
-        // where V(1_\phi | O = o) = max(P(1_\phi = 0 | O = o); P(1_\phi = 0 | O
-        // = o))
-        for (int i = 0; i < this.observations.size(); ++i) {
-            Automaton observable = this.observations.get(i);
-
-            double pObs = computeProbability(synchronisation.transform(
-                    this.automaton, observable));
-
-            if (pObs == 0) { // I think this should never happen
-                continue;
-            }
+        this.vpo = this.getDistribution().vpo();
+        return this.vpo;
+    }
 
-            // for phi : P(1_\phi = 1 and O = o)
-            double pPhiAndObs = computeProbability(synchronisation.transform(
-                    synchronisation.transform(this.automaton, this.phi),
-                    observable));
-            // for phi complement : P(1_\phi = 0 and O = o)
-            double pPhiCompAndObs = pObs - pPhiAndObs;
+    /**
+     * Getter.
+     * @return the automaton
+     */
+    public final Automaton getAutomaton() {
+        return this.automaton;
+    }
 
-            double vulnerability = Math.max(pPhiAndObs, pPhiCompAndObs) / pObs;
+    /**
+     * Getter. The joint distribution is computed on first use and kept until
+     * the automaton, the predicate or the observations are replaced.
+     * @return the joint distribution of the predicate and the observations
+     */
+    public final JointDistribution getDistribution() {
+        if (this.distribution == null) {
+            PhaseTimer timer = PhaseTimer.start(this.metricsListener,
+                    "distribution");
+            this.distribution = this.computeDistribution();
+            timer.stop();
+        }
+        return this.distribution;
+    }
 
-            vpOpacity += pObs * Math.log(1 - vulnerability) / Math.log(2);
+    /**
+     * Getter. The distributions are computed by propagating the probabilities
+     * over the joint product for as many steps as the horizon. The product is
+     * built once, and the propagation is kept and only extended to a larger
+     * horizon, until the automaton, the predicate or the observations are
+     * replaced. The probabilities of the traces longer than the horizon are
+     * missing, so the total probability is lower than without horizon.
+     * @param horizon
+     *            the maximum length of the traces
+     * @return the joint distributions over the traces of length at most 0,
+     *         1, ..., horizon, the curve of the bounded opacities
+     */
+    public final JointDistribution[] getBoundedDistributions(
+            final int horizon) {
+        if (horizon < 0) {
+            throw new IllegalArgumentException("The horizon must not be "
+                    + "negative : " + horizon);
+        }
+        if (this.propagation == null) {
+            PhaseTimer timer = PhaseTimer.start(this.metricsListener,
+                    "product.joint");
+            JointProduct product = new JointProduct(this.automaton, this.phi,
+                    this.observations);
+            timer.stop(product.size(), product.transitionCount());
+            this.propagation = new BoundedPropagation(product);
         }
+        PhaseTimer timer = PhaseTimer.start(this.metricsListener,
+                "propagation");
+        JointDistribution[] curve = this.propagation.extend(horizon);
+        timer.stop();
+        return curve;
+    }
 
-        vpOpacity = -1 / vpOpacity;
+    /**
+     * Computes the liberal probabilistic opacity (symmetrical) over the traces
+     * of length at most the horizon.
+     * @param horizon
+     *            the maximum length of the traces
+     * @return the bounded LPO
+     */
+    public final double computeBoundedLpo(final int horizon) {
+        return this.getBoundedDistributions(horizon)[horizon].lpo(this
+                .computeRevealing(true));
+    }
 
-        this.vpo = vpOpacity;
-        return vpOpacity;
+    /**
+     * Computes the restrictive probabilistic opacity over the traces of
+     * length at most the horizon.
+     * @param horizon
+     *            the maximum length of the traces
+     * @return the bounded RPO
+     */
+    public final double computeBoundedRpo(final int horizon) {
+        JointDistribution[] curve = this.getBoundedDistributions(horizon);
+        JointDistribution bounded = curve[horizon];
+        return 1 - bounded.initialEntropy() + bounded.remainingEntropy();
     }
 
     /**
-     * Getter.
-     * @return the automaton
+     * Computes the vulnerable probabilistic opacity over the traces of length
+     * at most the horizon.
+     * @param horizon
+     *            the maximum length of the traces
+     * @return the bounded VPO
      */
-    public final Automaton getAutomaton() {
-        return this.automaton;
+    public final double computeBoundedVpo(final int horizon) {
+        return this.getBoundedDistributions(horizon)[horizon].vpo();
     }
 
     /**
@@ -435,12 +782,92 @@ public class Opacity {
     }
 
     /**
-     * Setter.
+     * Getter.
+     * @return the executor running the computations of the observations, or
+     *         null
+     */
+    public final Executor getExecutor() {
+        return this.executor;
+    }
+
+    /**
+     * Getter.
+     * @return true if the data is validated with single-pass products
+     */
+    public final boolean isFastValidation() {
+        return this.fastValidation;
+    }
+
+    /**
+     * Getter.
+     * @return the listener of the measures of the phases, null for none
+     */
+    public final MetricsListener getMetricsListener() {
+        return this.metricsListener;
+    }
+
+    /**
+     * Getter. The probabilities kept after a change of the predicate or of an
+     * observation count, as well as those computed since.
+     * @return false if a linear system solved for the probabilities did not
+     *         reach the tolerance of its solver, or if a symbolic power
+     *         iteration was reported by {@link #reportNotConverged()} : the
+     *         opacities are then approximate
+     */
+    public final boolean isConverged() {
+        return this.converged;
+    }
+
+    /**
+     * Records that a probability computed outside of this object, such as the
+     * symbolic LPO, stopped before reaching the tolerance of its iteration.
+     * The flag is reset with the probabilities.
+     */
+    public final void reportNotConverged() {
+        this.converged = false;
+    }
+
+    /**
+     * Getter.
+     * @return true if the distribution is computed with the joint product
+     */
+    public final boolean isJointProduct() {
+        return this.jointProduct;
+    }
+
+    /**
+     * Getter.
+     * @return the number of states above which the sparse solver is used
+     */
+    public final int getSparseThreshold() {
+        return this.sparseThreshold;
+    }
+
+    /**
+     * Getter.
+     * @return the solver used for the systems above the sparse threshold
+     */
+    public final LinearSolver getSparseSolver() {
+        return this.sparseSolver;
+    }
+
+    /**
+     * Setter. All the probabilities are recomputed on next use; the results
+     * of the inclusion tests, which do not depend on the system, are kept.
      * @param autoIn
      *            the new automaton
      */
     public final void setAutomaton(final Automaton autoIn) {
         this.automaton = autoIn;
+        this.automatonPhi = null;
+        this.phiComplement = null;
+        this.pTotal = Double.NaN;
+        this.pPhi = Double.NaN;
+        Arrays.fill(this.pObs, Double.NaN);
+        Arrays.fill(this.pPhiAndObs, Double.NaN);
+        this.distribution = null;
+        this.propagation = null;
+        this.converged = true;
     }
 
     /**
@@ -453,23 +880,158 @@ public class Opacity {
     }
 
     /**
-     * Setter.
+     * Sets all opacities at once, to the values computed by a previous run.
+     * @param lpoIn
+     *            the LPO
+     * @param rpoIn
+     *            the RPO
+     * @param vpoIn
+     *            the VPO
+     * @param initialEntropyIn
+     *            the initial entropy
+     * @param remainingEntropyIn
+     *            the remaining entropy
+     * @param mutualInformationIn
+     *            the mutual information
+     */
+    final void restoreMetrics(final double lpoIn, final double rpoIn,
+            final double vpoIn, final double initialEntropyIn,
+            final double remainingEntropyIn, final double mutualInformationIn) {
+        this.lpo = lpoIn;
+        this.rpo = rpoIn;
+        this.vpo = vpoIn;
+        this.initialEntropy = initialEntropyIn;
+        this.remainingEntropy = remainingEntropyIn;
+        this.mutualInformation = mutualInformationIn;
+        this.converged = true;
+    }
+
+    /**
+     * Setter. Everything depending on the observations is recomputed on next
+     * use.
      * @param obsIn
      *            the new observer
      */
     public final void setObs(final List<Automaton> obsIn) {
         this.observations = obsIn;
+        this.resetObservationCaches();
     }
 
     /**
-     * Setter.
+     * Replaces a single observation. Only the products, solves and inclusion
+     * tests of this observation are redone on next use.
+     * @param index
+     *            the index of the observation
+     * @param observationIn
+     *            the new observation
+     */
+    public final void setObservation(final int index,
+            final Automaton observationIn) {
+        // copies the list, which may be shared with the caller
+        List<Automaton> copy = new ArrayList<>(this.observations);
+        copy.set(index, observationIn);
+        this.observations = copy;
+
+        this.pObs[index] = Double.NaN;
+        this.pPhiAndObs[index] = Double.NaN;
+        this.inPhi[index] = null;
+        this.inPhiComplement[index] = null;
+        // the complement of the predicate is taken over the letters of the
+        // observations
+        this.phiComplement = null;
+        this.distribution = null;
+        this.propagation = null;
+    }
+
+    /**
+     * Setter. The terms depending on the predicate are recomputed on next use,
+     * with the joint product unless it is disabled; without it, the
+     * probabilities of the observations are kept.
      * @param phiIn
      *            the new phi
      */
     public final void setPhi(final Automaton phiIn) {
         this.phi = phiIn;
+        this.automatonPhi = null;
+        this.phiComplement = null;
+        this.pPhi = Double.NaN;
+        Arrays.fill(this.pPhiAndObs, Double.NaN);
+        Arrays.fill(this.inPhi, null);
+        Arrays.fill(this.inPhiComplement, null);
+        this.distribution = null;
+        this.propagation = null;
     }
 
+    /**
+     * Setter. The observations are then evaluated in parallel; the results are
+     * gathered in the order of the observations, so they do not depend on the
+     * scheduling of the tasks.
+     * @param executorIn
+     *            the executor running the computations of the observations,
+     *            null to run them in the calling thread
+     */
+    public final void setExecutor(final Executor executorIn) {
+        this.executor = executorIn;
+    }
+
+    /**
+     * Setter.
+     * @param fastValidationIn
+     *            true to validate the data with single-pass products, false
+     *            to use the inclusion and intersection tests
+     */
+    public final void setFastValidation(final boolean fastValidationIn) {
+        this.fastValidation = fastValidationIn;
+    }
+
+    /**
+     * Setter. The listener is called at the end of each phase, possibly by
+     * the threads of the executor.
+     * @param metricsListenerIn
+     *            the listener of the measures of the phases, null for none
+     */
+    public final void setMetricsListener(
+            final MetricsListener metricsListenerIn) {
+        this.metricsListener = metricsListenerIn;
+    }
+
+    /**
+     * Setter. The cached probabilities are dropped, so that they are computed
+     * again with the chosen engine.
+     * @param jointProductIn
+     *            true to compute the distribution with the joint product,
+     *            false to compute it observation by observation
+     */
+    public final void setJointProduct(final boolean jointProductIn) {
+        this.jointProduct = jointProductIn;
+        this.setAutomaton(this.automaton);
+    }
+
+    /**
+     * Setter.
+     * @param sparseThresholdIn
+     *            the number of states above which the sparse solver is used
+     */
+    public final void setSparseThreshold(final int sparseThresholdIn) {
+        this.sparseThreshold = sparseThresholdIn;
+    }
+
+    /**
+     * Setter.
+     * @param sparseSolverIn
+     *            the solver used for the systems above the sparse threshold
+     */
+    public final void setSparseSolver(final LinearSolver sparseSolverIn) {
+        this.sparseSolver = sparseSolverIn;
+    }
+
+    /**
+     * Validates the data : nothing is null, the observations form a partition
+     * of the language of the automaton, and the automaton includes the
+     * predicate.
+     * @throws IncorrectDataException
+     *             if the data is incorrect
+     */
     public final void validateData() throws IncorrectDataException {
         // Makes sure all attributes are not null.
         if (this.automaton == null) {
@@ -488,6 +1050,11 @@ public class Opacity {
             }
         }
 
+        if (this.fastValidation) {
+            this.validateWithProducts();
+            return;
+        }
+
         Inclusion inclusion = new Inclusion();
         Automaton a = new UnProb().transform(this.automaton);
 
@@ -522,6 +1089,70 @@ public class Opacity {
         }
     }
 
+    /**
+     * Checks that the observations form a partition of the language of the
+     * automaton and that the automaton includes the predicate, with one
+     * on-the-fly product for each check. The two checks run in parallel on the
+     * executor, if any.
+     * @throws IncorrectDataException
+     *             with a witness word if the data is incorrect
+     */
+    private void validateWithProducts() throws IncorrectDataException {
+        final PartitionValidator validator = new PartitionValidator(
+                this.automaton);
+        final List<Automaton> obs = this.observations;
+        final Automaton predicate = this.phi;
+
+        List<Callable<Violation>> checks = new ArrayList<>();
+        checks.add(new Callable<Violation>() {
+            @Override
+            public Violation call() {
+                PhaseTimer timer = PhaseTimer.start(
+                        Opacity.this.metricsListener, "validate.partition");
+                Violation v = validator.checkPartition(obs);
+                timer.stop();
+                return v;
+            }
+        });
+        checks.add(new Callable<Violation>() {
+            @Override
+            public Violation call() {
+                PhaseTimer timer = PhaseTimer.start(
+                        Opacity.this.metricsListener, "validate.predicate");
+                Violation v = validator.checkPredicate(predicate);
+                timer.stop();
+                return v;
+            }
+        });
+
+        for (Future<Violation> result : this.submitAll(checks)) {
+            Violation v = this.get(result);
+            if (v == null) {
+                continue;
+            }
+            String word = "\"" + v.getWordString() + "\"";
+            switch (v.getKind()) {
+            case UNOBSERVED:
+                throw new IncorrectDataException("The union of observables "
+                        + "should equal the automaton : the word " + word
+                        + " is in no observable.");
+            case OUTSIDE_SYSTEM:
+                throw new IncorrectDataException("The union of observables "
+                        + "should equal the automaton : the word " + word
+                        + " of observable " + v.getFirst()
+                        + " is not in the automaton.");
+            case COLLISION:
+                throw new IncorrectDataException("Collision between "
+                        + "observables " + v.getFirst() + " and "
+                        + v.getSecond() + " on the word " + word + ".");
+            default:
+                throw new IncorrectDataException("The automaton doesn't "
+                        + "include the predicate : the word " + word
+                        + " is not in the automaton.");
+            }
+        }
+    }
+
     /**
      * Implements an exception used in the validation of the data.
      * @author Daniel Lefevre
@@ -0,0 +1,171 @@
+package ca.polymtl.crac.tpot.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import java.util.logging.Level;
+
+import ca.polymtl.crac.tpot.model.io.ModelDigest;
+
+/**
+ * A directory keeping the opacities of the models already computed, one
+ * file per model named after the content hash of its files, of
+ * {@link #VERSION} and of the names of the stored measures. Only the
+ * opacities computed with converged solves are stored. A file is written under a temporary name and then
+ * renamed, so that the processes sharing the directory never read a partial
+ * file.
+ * @author Daniel Lefevre
+ */
+public class ResultCache {
+
+    /**
+     * The version of the computations, part of the keys : to increase when a
+     * change of the computations changes the results. Version 2 complements
+     * the predicate over the letters of the system and of the observations,
+     * which changed the LPO of the models whose observations use letters the
+     * predicate does not.
+     */
+    public static final String VERSION = "2";
+    /**
+     * The extension of the files.
+     */
+    private static final String EXTENSION = ".properties";
+    /**
+     * The names of the measures in the files.
+     */
+    private static final String[] NAMES = {"lpo", "rpo", "vpo",
+            "initialEntropy", "remainingEntropy", "mutualInformation" };
+
+    /**
+     * The directory.
+     */
+    private final File directory;
+
+    /**
+     * Constructor. The directory is created if needed.
+     * @param directoryIn
+     *            the directory
+     * @throws IOException
+     *             if the directory could not be created
+     */
+    public ResultCache(final File directoryIn) throws IOException {
+        this.directory = directoryIn;
+        Files.createDirectories(directoryIn.toPath());
+    }
+
+    /**
+     * Getter.
+     * @return the directory
+     */
+    public final File getDirectory() {
+        return this.directory;
+    }
+
+    /**
+     * Computes the key of a model.
+     * @param auto
+     *            the text of the ".auto" file
+     * @param reg
+     *            the text of the ".reg" file
+     * @return the key
+     */
+    public static String key(final String auto, final String reg) {
+        StringBuilder schema = new StringBuilder("results-" + VERSION);
+        for (String name : NAMES) {
+            schema.append(',').append(name);
+        }
+        return ModelDigest.digest(auto, reg, schema.toString());
+    }
+
+    /**
+     * Getter.
+     * @param key
+     *            the key of a model
+     * @return the file of the model
+     */
+    private Path path(final String key) {
+        return new File(this.directory, key + EXTENSION).toPath();
+    }
+
+    /**
+     * Sets the opacities of a model to the stored values, if any.
+     * @param key
+     *            the key of the model
+     * @param opacity
+     *            the opacity of the model
+     * @return true if the values were found
+     */
+    public final boolean restore(final String key, final Opacity opacity) {
+        Path file = this.path(key);
+        if (!Files.isRegularFile(file)) {
+            return false;
+        }
+        Properties properties = new Properties();
+        double[] values = new double[NAMES.length];
+        try (Reader in = Files.newBufferedReader(file,
+                StandardCharsets.UTF_8)) {
+            properties.load(in);
+            for (int i = 0; i < NAMES.length; ++i) {
+                values[i] = Double.parseDouble(properties
+                        .getProperty(NAMES[i]));
+            }
+        } catch (IOException | NullPointerException
+                | NumberFormatException e) {
+            Model.LOGGER.log(Level.WARNING, "Ignoring the incorrect cached "
+                    + "result " + file + " : " + e);
+            return false;
+        }
+        opacity.restoreMetrics(values[0], values[1], values[2], values[3],
+                values[4], values[5]);
+        return true;
+    }
+
+    /**
+     * Stores the opacities of a model, unless a solve did not converge : the
+     * approximate values are not kept.
+     * @param key
+     *            the key of the model
+     * @param opacity
+     *            the opacity of the model, with all opacities computed
+     * @return true if the opacities were stored
+     * @throws IOException
+     *             if the file could not be written
+     */
+    public final boolean store(final String key, final Opacity opacity)
+            throws IOException {
+        if (!opacity.isConverged()) {
+            return false;
+        }
+        double[] values = {opacity.getLpo(), opacity.getRpo(),
+                opacity.getVpo(), opacity.getInitialEntropy(),
+                opacity.getRemainingEntropy(), opacity.getMutualInformation() };
+        Properties properties = new Properties();
+        for (int i = 0; i < NAMES.length; ++i) {
+            properties.setProperty(NAMES[i], Double.toString(values[i]));
+        }
+
+        Path target = this.path(key);
+        Path temp = Files.createTempFile(this.directory.toPath(), key, ".tmp");
+        try {
+            try (Writer out = Files.newBufferedWriter(temp,
+                    StandardCharsets.UTF_8)) {
+                properties.store(out, null);
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return true;
+    }
+}
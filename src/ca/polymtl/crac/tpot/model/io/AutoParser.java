@@ -2,6 +2,7 @@ package ca.polymtl.crac.tpot.model.io;
 
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 
 import net.jautomata.rationals.Automaton;
 import net.jautomata.rationals.converters.JAutoCodec;
@@ -40,7 +41,20 @@ public class AutoParser extends AbstractParser {
      *             if an io error occured
      */
     public final void parseFile() throws IOException {
-        this.parsedAutomaton = new JAutoCodec().input(new FileInputStream(this
-                .getFileName()));
+        try (InputStream in = new FileInputStream(this.getFileName())) {
+            this.parse(in);
+        }
+    }
+
+    /**
+     * Reads the content of a ".auto" file, and builds this automaton. Uses
+     * JAutoCodec.
+     * @param in
+     *            the content, not closed
+     * @throws IOException
+     *             if an io error occured
+     */
+    public final void parse(final InputStream in) throws IOException {
+        this.parsedAutomaton = new JAutoCodec().input(in);
     }
 }
@@ -0,0 +1,114 @@
+package ca.polymtl.crac.tpot.model.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The content hash of a model : the SHA-256 of its ".auto" and ".reg" texts,
+ * normalized so that the line separators and the trailing spaces do not
+ * change the hash.
+ * @author Daniel Lefevre
+ */
+public final class ModelDigest {
+
+    /**
+     * The digest algorithm.
+     */
+    private static final String ALGORITHM = "SHA-256";
+    /**
+     * The hexadecimal digits.
+     */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * Private constructor.
+     */
+    private ModelDigest() {
+    }
+
+    /**
+     * Reads a text file.
+     * @param file
+     *            the file
+     * @return the text
+     * @throws IOException
+     *             if the file could not be read
+     */
+    public static String read(final String file) throws IOException {
+        return new String(Files.readAllBytes(new File(file).toPath()),
+                StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Normalizes a text : the line separators become "\n" and the trailing
+     * spaces of the lines are removed.
+     * @param text
+     *            the text
+     * @return the normalized text
+     */
+    public static String normalize(final String text) {
+        StringBuilder sb = new StringBuilder(text.length());
+        for (String line : text.split("\r\n|\r|\n", -1)) {
+            int end = line.length();
+            while (end > 0 && Character.isWhitespace(line.charAt(end - 1))) {
+                --end;
+            }
+            sb.append(line, 0, end).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Computes the hash of a model.
+     * @param auto
+     *            the text of the ".auto" file
+     * @param reg
+     *            the text of the ".reg" file
+     * @param extra
+     *            other strings to include in the hash, such as a version
+     * @return the hash, in hexadecimal
+     */
+    public static String digest(final String auto, final String reg,
+            final String... extra) {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform has SHA-256
+            throw new IllegalStateException(e);
+        }
+        update(md, normalize(auto));
+        update(md, normalize(reg));
+        for (String s : extra) {
+            update(md, s);
+        }
+
+        byte[] hash = md.digest();
+        char[] hex = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; ++i) {
+            hex[2 * i] = HEX[(hash[i] >> 4) & 0xf];
+            hex[2 * i + 1] = HEX[hash[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * Adds a string and its length to a digest, so that the boundaries
+     * between the strings are part of the hash.
+     * @param md
+     *            the digest
+     * @param s
+     *            the string
+     */
+    private static void update(final MessageDigest md, final String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        int n = bytes.length;
+        md.update(new byte[] {(byte) (n >>> 24), (byte) (n >>> 16),
+                (byte) (n >>> 8), (byte) n });
+        md.update(bytes);
+    }
+}
@@ -3,6 +3,7 @@ package ca.polymtl.crac.tpot.model.io;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Level;
@@ -58,9 +59,21 @@ public class RegParser extends AbstractParser {
      *             if an io error occured
      */
     public final void parseFile() throws IOException {
+        try (Reader reader = new FileReader(this.getFileName())) {
+            this.parse(reader);
+        }
+    }
 
-        BufferedReader reader = new BufferedReader(new FileReader(
-                this.getFileName()));
+    /**
+     * Reads the content of a ".reg" file, and builds the list of
+     * observations, and the predicate.
+     * @param in
+     *            the content, not closed
+     * @throws IOException
+     *             if an io error occured
+     */
+    public final void parse(final Reader in) throws IOException {
+        BufferedReader reader = new BufferedReader(in);
 
         // Reading all the observation classes (as automata).
         String line = reader.readLine();
@@ -0,0 +1,17 @@
+package ca.polymtl.crac.tpot.model.metrics;
+
+/**
+ * Receives the measures of the phases of a model. The phases of the
+ * observations may run on the threads of the pool of the model, so the
+ * listener must be thread safe.
+ * @author Daniel Lefevre
+ */
+public interface MetricsListener {
+
+    /**
+     * Called at the end of each phase, by the thread which ran it.
+     * @param metrics
+     *            the measures of the phase
+     */
+    void phaseFinished(PhaseMetrics metrics);
+}
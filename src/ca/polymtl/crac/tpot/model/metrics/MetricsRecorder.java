@@ -0,0 +1,74 @@
+package ca.polymtl.crac.tpot.model.metrics;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A listener keeping the measures of all the phases, in the order they
+ * finished. It is thread safe, so it can be shared by the models of a batch.
+ * @author Daniel Lefevre
+ */
+public class MetricsRecorder implements MetricsListener {
+
+    /**
+     * The measures.
+     */
+    private final List<PhaseMetrics> metrics = new ArrayList<>();
+
+    @Override
+    public final synchronized void phaseFinished(final PhaseMetrics m) {
+        this.metrics.add(m);
+    }
+
+    /**
+     * Getter.
+     * @return a copy of the measures, in the order the phases finished
+     */
+    public final synchronized List<PhaseMetrics> getMetrics() {
+        return new ArrayList<>(this.metrics);
+    }
+
+    /**
+     * Forgets the measures.
+     */
+    public final synchronized void clear() {
+        this.metrics.clear();
+    }
+
+    /**
+     * Sums the measures by phase, over the observations and the models.
+     * @return one line per phase, in the order of their first end : the
+     *         number of runs, the total wall time and CPU time in
+     *         milliseconds, the total allocated bytes, and the largest number
+     *         of states and transitions built
+     */
+    public final synchronized String summary() {
+        Map<String, long[]> totals = new LinkedHashMap<>();
+        for (PhaseMetrics m : this.metrics) {
+            long[] t = totals.get(m.getPhase());
+            if (t == null) {
+                t = new long[] {0, 0, 0, 0, -1, -1 };
+                totals.put(m.getPhase(), t);
+            }
+            t[0] += 1;
+            t[1] += m.getWallTime();
+            t[2] += Math.max(0, m.getCpuTime());
+            t[3] += Math.max(0, m.getAllocatedBytes());
+            t[4] = Math.max(t[4], m.getStates());
+            t[5] = Math.max(t[5], m.getTransitions());
+        }
+
+        StringBuilder out = new StringBuilder(String.format(
+                "%-24s %8s %12s %12s %14s %10s %12s%n", "phase", "count",
+                "wall (ms)", "cpu (ms)", "allocated", "states", "transitions"));
+        for (Map.Entry<String, long[]> e : totals.entrySet()) {
+            long[] t = e.getValue();
+            out.append(String.format("%-24s %8d %12.3f %12.3f %14d %10d %12d%n",
+                    e.getKey(), t[0], t[1] / 1e6, t[2] / 1e6, t[3], t[4],
+                    t[5]));
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,138 @@
+package ca.polymtl.crac.tpot.model.metrics;
+
+/**
+ * The measures of a phase. The phases may nest : for instance the
+ * distribution includes the products and the solves. A measure which is not
+ * available is -1.
+ * @author Daniel Lefevre
+ */
+public class PhaseMetrics {
+
+    /**
+     * The name of the phase.
+     */
+    private final String phase;
+    /**
+     * The index of the observation, -1 if the phase is not specific to an
+     * observation.
+     */
+    private final int observation;
+    /**
+     * The wall time, in nanoseconds.
+     */
+    private final long wallTime;
+    /**
+     * The CPU time of the thread, in nanoseconds.
+     */
+    private final long cpuTime;
+    /**
+     * The bytes allocated by the thread.
+     */
+    private final long allocatedBytes;
+    /**
+     * The number of states of the automaton or system built.
+     */
+    private final int states;
+    /**
+     * The number of transitions of the automaton or system built.
+     */
+    private final int transitions;
+
+    /**
+     * Constructor.
+     * @param phaseIn
+     *            the name of the phase
+     * @param observationIn
+     *            the index of the observation, -1 for none
+     * @param wallTimeIn
+     *            the wall time, in nanoseconds
+     * @param cpuTimeIn
+     *            the CPU time of the thread, in nanoseconds
+     * @param allocatedBytesIn
+     *            the bytes allocated by the thread
+     * @param statesIn
+     *            the number of states built
+     * @param transitionsIn
+     *            the number of transitions built
+     */
+    public PhaseMetrics(final String phaseIn, final int observationIn,
+            final long wallTimeIn, final long cpuTimeIn,
+            final long allocatedBytesIn, final int statesIn,
+            final int transitionsIn) {
+        this.phase = phaseIn;
+        this.observation = observationIn;
+        this.wallTime = wallTimeIn;
+        this.cpuTime = cpuTimeIn;
+        this.allocatedBytes = allocatedBytesIn;
+        this.states = statesIn;
+        this.transitions = transitionsIn;
+    }
+
+    /**
+     * Getter.
+     * @return the name of the phase
+     */
+    public final String getPhase() {
+        return this.phase;
+    }
+
+    /**
+     * Getter.
+     * @return the index of the observation, -1 if the phase is not specific
+     *         to an observation
+     */
+    public final int getObservation() {
+        return this.observation;
+    }
+
+    /**
+     * Getter.
+     * @return the wall time, in nanoseconds
+     */
+    public final long getWallTime() {
+        return this.wallTime;
+    }
+
+    /**
+     * Getter.
+     * @return the CPU time of the thread, in nanoseconds, -1 if not
+     *         available
+     */
+    public final long getCpuTime() {
+        return this.cpuTime;
+    }
+
+    /**
+     * Getter.
+     * @return the bytes allocated by the thread, -1 if not available
+     */
+    public final long getAllocatedBytes() {
+        return this.allocatedBytes;
+    }
+
+    /**
+     * Getter.
+     * @return the number of states built, -1 if the phase builds nothing
+     */
+    public final int getStates() {
+        return this.states;
+    }
+
+    /**
+     * Getter.
+     * @return the number of transitions built, -1 if the phase builds
+     *         nothing
+     */
+    public final int getTransitions() {
+        return this.transitions;
+    }
+
+    @Override
+    public final String toString() {
+        String name = (this.observation < 0) ? this.phase : this.phase
+                + "[" + this.observation + "]";
+        return name + " wall=" + this.wallTime + "ns cpu=" + this.cpuTime
+                + "ns alloc=" + this.allocatedBytes + "B states=" + this.states
+                + " transitions=" + this.transitions;
+    }
+}
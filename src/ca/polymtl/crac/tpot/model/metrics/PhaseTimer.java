@@ -0,0 +1,207 @@
+package ca.polymtl.crac.tpot.model.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import net.jautomata.rationals.Automaton;
+
+/**
+ * Measures a phase in the current thread and reports it to a listener when
+ * stopped. Without a listener the timer does nothing, so the phases cost
+ * nothing when nobody listens. A timer must be stopped by the thread which
+ * started it, once.
+ * @author Daniel Lefevre
+ */
+public final class PhaseTimer {
+
+    /**
+     * The threads of the virtual machine.
+     */
+    private static final ThreadMXBean THREADS = ManagementFactory
+            .getThreadMXBean();
+    /**
+     * The timer of the phases nobody listens to.
+     */
+    private static final PhaseTimer INACTIVE = new PhaseTimer(null, null, -1);
+
+    /**
+     * The listener, null for the inactive timer.
+     */
+    private final MetricsListener listener;
+    /**
+     * The name of the phase.
+     */
+    private final String phase;
+    /**
+     * The index of the observation, -1 for none.
+     */
+    private final int observation;
+    /**
+     * The wall time at the start, in nanoseconds.
+     */
+    private final long wallStart;
+    /**
+     * The CPU time of the thread at the start, -1 if not available.
+     */
+    private final long cpuStart;
+    /**
+     * The bytes allocated by the thread at the start, -1 if not available.
+     */
+    private final long allocatedStart;
+
+    /**
+     * Constructor.
+     * @param listenerIn
+     *            the listener, null for the inactive timer
+     * @param phaseIn
+     *            the name of the phase
+     * @param observationIn
+     *            the index of the observation, -1 for none
+     */
+    private PhaseTimer(final MetricsListener listenerIn, final String phaseIn,
+            final int observationIn) {
+        this.listener = listenerIn;
+        this.phase = phaseIn;
+        this.observation = observationIn;
+        if (listenerIn == null) {
+            this.cpuStart = -1;
+            this.allocatedStart = -1;
+            this.wallStart = 0;
+        } else {
+            this.cpuStart = cpuTime();
+            this.allocatedStart = allocatedBytes();
+            this.wallStart = System.nanoTime();
+        }
+    }
+
+    /**
+     * Starts a phase.
+     * @param listener
+     *            the listener, null for none
+     * @param phase
+     *            the name of the phase
+     * @return the timer of the phase
+     */
+    public static PhaseTimer start(final MetricsListener listener,
+            final String phase) {
+        return start(listener, phase, -1);
+    }
+
+    /**
+     * Starts a phase specific to an observation.
+     * @param listener
+     *            the listener, null for none
+     * @param phase
+     *            the name of the phase
+     * @param observation
+     *            the index of the observation
+     * @return the timer of the phase
+     */
+    public static PhaseTimer start(final MetricsListener listener,
+            final String phase, final int observation) {
+        return (listener == null) ? INACTIVE : new PhaseTimer(listener, phase,
+                observation);
+    }
+
+    /**
+     * Stops a phase which builds nothing.
+     */
+    public void stop() {
+        this.stop(-1, -1);
+    }
+
+    /**
+     * Stops a phase which built an automaton. The automaton is only measured
+     * if somebody listens, after the times.
+     * @param built
+     *            the automaton built
+     */
+    public void stop(final Automaton built) {
+        if (this.listener != null) {
+            long wall = System.nanoTime();
+            long cpu = cpuTime();
+            long allocated = allocatedBytes();
+            this.report(wall, cpu, allocated, built.states().size(), built
+                    .delta().size());
+        }
+    }
+
+    /**
+     * Stops a phase which built a system.
+     * @param states
+     *            the number of states built
+     * @param transitions
+     *            the number of transitions built
+     */
+    public void stop(final int states, final int transitions) {
+        if (this.listener != null) {
+            long wall = System.nanoTime();
+            long cpu = cpuTime();
+            long allocated = allocatedBytes();
+            this.report(wall, cpu, allocated, states, transitions);
+        }
+    }
+
+    /**
+     * Reports the measures to the listener.
+     * @param wall
+     *            the wall time at the end
+     * @param cpu
+     *            the CPU time at the end, -1 if not available
+     * @param allocated
+     *            the bytes allocated at the end, -1 if not available
+     * @param states
+     *            the number of states built
+     * @param transitions
+     *            the number of transitions built
+     */
+    private void report(final long wall, final long cpu, final long allocated,
+            final int states, final int transitions) {
+        this.listener.phaseFinished(new PhaseMetrics(this.phase,
+                this.observation, wall - this.wallStart, difference(
+                        this.cpuStart, cpu), difference(this.allocatedStart,
+                        allocated), states, transitions));
+    }
+
+    /**
+     * Computes the difference of two measures.
+     * @param start
+     *            the measure at the start, -1 if not available
+     * @param end
+     *            the measure at the end, -1 if not available
+     * @return the difference, -1 if not available
+     */
+    private static long difference(final long start, final long end) {
+        return ((start < 0) || (end < 0)) ? -1 : end - start;
+    }
+
+    /**
+     * Getter.
+     * @return the CPU time of the current thread, in nanoseconds, -1 if not
+     *         available
+     */
+    private static long cpuTime() {
+        if (!THREADS.isCurrentThreadCpuTimeSupported()
+                || !THREADS.isThreadCpuTimeEnabled()) {
+            return -1;
+        }
+        return THREADS.getCurrentThreadCpuTime();
+    }
+
+    /**
+     * Getter.
+     * @return the bytes allocated by the current thread, -1 if not available
+     */
+    private static long allocatedBytes() {
+        if (!(THREADS instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) THREADS;
+        if (!threads.isThreadAllocatedMemorySupported()
+                || !threads.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,6 @@
+/**
+ * Measures of the phases of the computation of the opacities : wall time,
+ * CPU time, allocated bytes and sizes of the automata built, reported to a
+ * listener.
+ */
+package ca.polymtl.crac.tpot.model.metrics;
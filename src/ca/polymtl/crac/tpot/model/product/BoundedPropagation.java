@@ -0,0 +1,198 @@
+package ca.polymtl.crac.tpot.model.product;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ca.polymtl.crac.tpot.budget.WorkBudget;
+import ca.polymtl.crac.tpot.model.JointDistribution;
+
+/**
+ * The propagation of the probabilities over a joint product, from the initial
+ * states, summing at each step the probabilities of the terminal states
+ * reached. The propagation keeps its vectors between two calls, so that a
+ * larger horizon only costs the steps beyond the previous one : the product is
+ * built once, and the curve is extended as the horizon grows.
+ * <p>
+ * Only the states of nonzero probability are visited, and the vectors are
+ * reused from a step to the next, so each step costs the transitions of these
+ * states.
+ * @author Daniel Lefevre
+ */
+public class BoundedPropagation {
+
+    /**
+     * The product.
+     */
+    private final JointProduct product;
+    /**
+     * The joint distributions over the traces of length at most 0, 1, ...,
+     * computed so far.
+     */
+    private final List<JointDistribution> curve = new ArrayList<>();
+    /**
+     * P(O = o) over the traces seen so far.
+     */
+    private final double[] pObs;
+    /**
+     * P(1_\phi = 1, O = o) over the traces seen so far.
+     */
+    private final double[] pPhiAndObs;
+    /**
+     * P(1_\phi = 1) over the traces seen so far.
+     */
+    private double pPhi = 0;
+    /**
+     * The total probability of the traces seen so far.
+     */
+    private double pTotal = 0;
+    /**
+     * The probabilities of the states after the last step.
+     */
+    private double[] current;
+    /**
+     * The probabilities of the states after the next step, zero between two
+     * steps.
+     */
+    private double[] next;
+    /**
+     * The states of nonzero probability after the last step.
+     */
+    private int[] active;
+    /**
+     * The states of nonzero probability after the next step.
+     */
+    private int[] nextActive;
+    /**
+     * The number of states of nonzero probability after the last step.
+     */
+    private int count = 0;
+    /**
+     * True for the states already in the list being built.
+     */
+    private final boolean[] listed;
+
+    /**
+     * Constructor. No step is propagated until the curve is extended.
+     * @param productIn
+     *            the product
+     */
+    public BoundedPropagation(final JointProduct productIn) {
+        this.product = productIn;
+        int classes = productIn.getObservations().classCount();
+        this.pObs = new double[classes];
+        this.pPhiAndObs = new double[classes];
+
+        int size = productIn.size();
+        this.current = new double[size];
+        this.next = new double[size];
+        this.active = new int[size];
+        this.nextActive = new int[size];
+        this.listed = new boolean[size];
+        for (int i : productIn.getInitials()) {
+            if (!this.listed[i]) {
+                this.listed[i] = true;
+                this.active[this.count++] = i;
+            }
+            this.current[i] += 1;
+        }
+    }
+
+    /**
+     * Getter.
+     * @return the product
+     */
+    public final JointProduct getProduct() {
+        return this.product;
+    }
+
+    /**
+     * Getter.
+     * @return the largest horizon of the curve computed so far, -1 if none
+     */
+    public final int getHorizon() {
+        return this.curve.size() - 1;
+    }
+
+    /**
+     * Propagates the probabilities up to a horizon, from the last one
+     * reached. Nothing is propagated if the horizon is already reached.
+     * @param horizon
+     *            the number of steps, the maximum length of the traces
+     * @return the joint distributions over the traces of length at most 0,
+     *         1, ..., horizon
+     */
+    public final JointDistribution[] extend(final int horizon) {
+        while (this.curve.size() <= horizon) {
+            if (this.curve.isEmpty()) {
+                this.sum();
+            } else if (this.count == 0) {
+                // no probability left : the curve is flat from here
+                this.curve.add(this.curve.get(this.curve.size() - 1));
+            } else {
+                WorkBudget.checkpoint();
+                this.step();
+                this.sum();
+            }
+        }
+        return this.curve.subList(0, horizon + 1).toArray(
+                new JointDistribution[horizon + 1]);
+    }
+
+    /**
+     * Adds the probabilities of the terminal states reached by the last step
+     * to the sums, and their distribution to the curve.
+     */
+    private void sum() {
+        for (int a = 0; a < this.count; ++a) {
+            int i = this.active[a];
+            this.listed[i] = false;
+            if (!this.product.isTerminal(i)) {
+                continue;
+            }
+            double v = this.current[i];
+            boolean inPhi = this.product.isPhi(i);
+            this.pTotal += v;
+            if (inPhi) {
+                this.pPhi += v;
+            }
+            for (int o : this.product.getTags(i)) {
+                this.pObs[o] += v;
+                if (inPhi) {
+                    this.pPhiAndObs[o] += v;
+                }
+            }
+        }
+        this.curve.add(new JointDistribution(this.pObs.clone(),
+                this.pPhiAndObs.clone(), this.pPhi, this.pTotal));
+    }
+
+    /**
+     * Propagates the probabilities of the active states over one transition.
+     */
+    private void step() {
+        int[] rowPtr = this.product.getRowPtr();
+        int[] targets = this.product.getTargets();
+        double[] probabilities = this.product.getProbabilities();
+        int nextCount = 0;
+        for (int a = 0; a < this.count; ++a) {
+            int i = this.active[a];
+            double v = this.current[i];
+            this.current[i] = 0;
+            for (int k = rowPtr[i]; k < rowPtr[i + 1]; ++k) {
+                int t = targets[k];
+                if (!this.listed[t]) {
+                    this.listed[t] = true;
+                    this.nextActive[nextCount++] = t;
+                }
+                this.next[t] += v * probabilities[k];
+            }
+        }
+        double[] vector = this.current;
+        this.current = this.next;
+        this.next = vector;
+        int[] list = this.active;
+        this.active = this.nextActive;
+        this.nextActive = list;
+        this.count = nextCount;
+    }
+}
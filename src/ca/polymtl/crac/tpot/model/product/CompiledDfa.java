@@ -0,0 +1,207 @@
+package ca.polymtl.crac.tpot.model.product;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import net.jautomata.rationals.Automaton;
+import net.jautomata.rationals.State;
+import net.jautomata.rationals.SymbolTable;
+import net.jautomata.rationals.Transition;
+import net.jautomata.rationals.transformations.ToDFA;
+
+/**
+ * A deterministic automaton whose states are numbered from 0, so that the
+ * products can work on indexes instead of on {@link State} objects. The
+ * labels are numbered by a {@link SymbolTable}, possibly shared with the
+ * other automata of the product : the transitions of each state are sorted
+ * by the number of their label, and {@link #next(int, int)} compares
+ * integers only.
+ * @author Daniel Lefevre
+ */
+public class CompiledDfa {
+
+    /**
+     * The index returned by {@link #next(int, int)} when there is no
+     * transition.
+     */
+    public static final int NONE = -1;
+
+    /**
+     * The numbers of the labels.
+     */
+    private final SymbolTable symbols;
+    /**
+     * Beginning of the transitions of each state.
+     */
+    private final int[] offsets;
+    /**
+     * The number of the label of each transition, increasing in each state.
+     */
+    private final int[] labels;
+    /**
+     * The target of each transition.
+     */
+    private final int[] targets;
+    /**
+     * True for the accepting states.
+     */
+    private final boolean[] accepting;
+
+    /**
+     * Determinizes an automaton and numbers its states, with labels numbered
+     * by a table of its own.
+     * @param auto
+     *            the automaton
+     */
+    public CompiledDfa(final Automaton auto) {
+        this(auto, new SymbolTable());
+    }
+
+    /**
+     * Determinizes an automaton and numbers its states. The initial state has
+     * the index 0. The determinization removes the epsilon transitions first,
+     * so that the labels of the result are never null. An automaton without
+     * initial state recognizes the empty language : it gives a single state,
+     * not accepting and without transitions, which the words leave at once.
+     * @param auto
+     *            the automaton
+     * @param symbolsIn
+     *            the table numbering the labels, completed with those of the
+     *            automaton
+     */
+    public CompiledDfa(final Automaton auto, final SymbolTable symbolsIn) {
+        this.symbols = symbolsIn;
+        Automaton dfa = new ToDFA().transform(auto);
+
+        Map<State, Integer> indexes = new HashMap<>();
+        List<Transition> delta = new ArrayList<>();
+        Iterator<State> initials = dfa.initials().iterator();
+        if (initials.hasNext()) {
+            indexes.put(initials.next(), 0);
+            for (State s : dfa.states()) {
+                if (!indexes.containsKey(s)) {
+                    indexes.put(s, indexes.size());
+                }
+            }
+            delta.addAll(dfa.delta());
+        }
+
+        int n = Math.max(indexes.size(), 1);
+        this.accepting = new boolean[n];
+        for (Map.Entry<State, Integer> e : indexes.entrySet()) {
+            this.accepting[e.getValue()] = e.getKey().isTerminal();
+        }
+
+        // groups the transitions by state, then sorts each state by label
+        this.offsets = new int[n + 1];
+        this.labels = new int[delta.size()];
+        this.targets = new int[delta.size()];
+        for (Transition t : delta) {
+            ++this.offsets[indexes.get(t.start()) + 1];
+        }
+        for (int i = 0; i < n; ++i) {
+            this.offsets[i + 1] += this.offsets[i];
+        }
+        int[] next = Arrays.copyOf(this.offsets, n);
+        for (Transition t : delta) {
+            int position = next[indexes.get(t.start())]++;
+            this.labels[position] = this.symbols.intern(t.symbol());
+            this.targets[position] = indexes.get(t.end());
+        }
+        for (int i = 0; i < n; ++i) {
+            this.sortRow(this.offsets[i], this.offsets[i + 1]);
+        }
+    }
+
+    /**
+     * Sorts the transitions of a state by label, by insertion : the states of
+     * a deterministic automaton have few transitions.
+     * @param begin
+     *            the position of the first transition
+     * @param end
+     *            the position after the last transition
+     */
+    private void sortRow(final int begin, final int end) {
+        for (int k = begin + 1; k < end; ++k) {
+            int label = this.labels[k];
+            int target = this.targets[k];
+            int j = k - 1;
+            while ((j >= begin) && (this.labels[j] > label)) {
+                this.labels[j + 1] = this.labels[j];
+                this.targets[j + 1] = this.targets[j];
+                --j;
+            }
+            this.labels[j + 1] = label;
+            this.targets[j + 1] = target;
+        }
+    }
+
+    /**
+     * Getter.
+     * @return the table numbering the labels
+     */
+    public final SymbolTable getSymbols() {
+        return this.symbols;
+    }
+
+    /**
+     * Getter.
+     * @return the number of states
+     */
+    public final int size() {
+        return this.accepting.length;
+    }
+
+    /**
+     * Getter.
+     * @param state
+     *            the index of a state
+     * @return true if the state is accepting
+     */
+    public final boolean isAccepting(final int state) {
+        return this.accepting[state];
+    }
+
+    /**
+     * Follows a transition, by binary search in the transitions of the state.
+     * @param state
+     *            the index of the source state
+     * @param symbol
+     *            the number of the label in the table of this automaton, or
+     *            a negative number for a label it does not number
+     * @return the index of the target state, or {@link #NONE}
+     */
+    public final int next(final int state, final int symbol) {
+        int low = this.offsets[state];
+        int high = this.offsets[state + 1] - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int label = this.labels[middle];
+            if (label < symbol) {
+                low = middle + 1;
+            } else if (label > symbol) {
+                high = middle - 1;
+            } else {
+                return this.targets[middle];
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Follows a transition. The label is looked up in the table :
+     * {@link #next(int, int)} should be used in the loops.
+     * @param state
+     *            the index of the source state
+     * @param label
+     *            the label, possibly a probabilistic symbol
+     * @return the index of the target state, or {@link #NONE}
+     */
+    public final int next(final int state, final Object label) {
+        return this.next(state, this.symbols.indexOf(label));
+    }
+}
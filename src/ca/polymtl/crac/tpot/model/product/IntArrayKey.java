@@ -0,0 +1,41 @@
+package ca.polymtl.crac.tpot.model.product;
+
+import java.util.Arrays;
+
+/**
+ * An array of integers used as a key of a map, for instance the states of a
+ * subset construction.
+ * @author Daniel Lefevre
+ */
+class IntArrayKey {
+
+    /**
+     * The values.
+     */
+    private final int[] values;
+    /**
+     * The hash code.
+     */
+    private final int hash;
+
+    /**
+     * Constructor.
+     * @param valuesIn
+     *            the values, which must not be modified afterwards
+     */
+    IntArrayKey(final int[] valuesIn) {
+        this.values = valuesIn;
+        this.hash = Arrays.hashCode(valuesIn);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        return (obj instanceof IntArrayKey)
+                && Arrays.equals(this.values, ((IntArrayKey) obj).values);
+    }
+
+    @Override
+    public int hashCode() {
+        return this.hash;
+    }
+}
@@ -0,0 +1,416 @@
+package ca.polymtl.crac.tpot.model.product;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ca.polymtl.crac.tpot.budget.WorkBudget;
+import ca.polymtl.crac.tpot.model.JointDistribution;
+import ca.polymtl.crac.tpot.solver.SparseMatrix;
+import net.jautomata.rationals.Automaton;
+import net.jautomata.rationals.State;
+import net.jautomata.rationals.SymbolTable;
+import net.jautomata.rationals.Transition;
+
+/**
+ * The product of the system with the predicate and with all the observation
+ * classes at once. Each state is a triple (system state, predicate state,
+ * observation state); the predicate is completed with a sink so that the
+ * words leaving it are kept, and so is the observation automaton with its dead
+ * state. A single product thus gives the probabilities of the system, of the
+ * predicate and of every observation class.
+ * <p>
+ * Instead of solving (I - P) x = t once per observation class, the product
+ * solves the transposed system (I - P)^T y = i once, where i is the initial
+ * vector : y is the expected number of visits of each state, and the
+ * probability of any set of final states is the sum of y over them.
+ * @author Daniel Lefevre
+ */
+public class JointProduct {
+
+    /**
+     * The determinized predicate.
+     */
+    private final CompiledDfa phi;
+    /**
+     * The observation automaton.
+     */
+    private final ObservationDfa observations;
+    /**
+     * The number of states.
+     */
+    private int size = 0;
+    /**
+     * The system state of each state.
+     */
+    private int[] systemStates = new int[16];
+    /**
+     * The predicate state of each state, {@link CompiledDfa#NONE} for the
+     * sink.
+     */
+    private int[] phiStates = new int[16];
+    /**
+     * The observation state of each state.
+     */
+    private int[] observationStates = new int[16];
+    /**
+     * Beginning of the transitions of each state.
+     */
+    private final int[] rowPtr;
+    /**
+     * The targets of the transitions.
+     */
+    private int[] targets = new int[16];
+    /**
+     * The probabilities of the transitions.
+     */
+    private double[] probabilities = new double[16];
+    /**
+     * The indexes of the initial states.
+     */
+    private final int[] initials;
+    /**
+     * True for the system states which are terminal.
+     */
+    private final boolean[] systemTerminals;
+
+    /**
+     * Builds the reachable part of the product. The predicate and the
+     * observation classes may have epsilon transitions : they are removed by
+     * the determinization. The system may not, since the probability of an
+     * epsilon transition would be lost by the synchronization.
+     * @param system
+     *            the probabilistic system
+     * @param phiIn
+     *            the predicate
+     * @param observationsIn
+     *            the observation classes
+     * @throws IllegalArgumentException
+     *             if the system has an epsilon transition
+     */
+    public JointProduct(final Automaton system, final Automaton phiIn,
+            final List<Automaton> observationsIn) {
+        SymbolTable symbols = new SymbolTable();
+        this.phi = new CompiledDfa(phiIn, symbols);
+        this.observations = new ObservationDfa(observationsIn, symbols);
+
+        // numbers the system states and packs their transitions by state,
+        // with the label numbers and the probabilities in parallel arrays
+        Map<State, Integer> indexes = new HashMap<>();
+        for (State s : system.states()) {
+            indexes.put(s, indexes.size());
+        }
+        int n = indexes.size();
+        this.systemTerminals = new boolean[n];
+        for (Map.Entry<State, Integer> e : indexes.entrySet()) {
+            this.systemTerminals[e.getValue()] = e.getKey().isTerminal();
+        }
+        List<Transition> delta = new ArrayList<>(system.delta());
+        int[] outPtr = new int[n + 1];
+        for (Transition t : delta) {
+            ++outPtr[indexes.get(t.start()) + 1];
+        }
+        for (int i = 0; i < n; ++i) {
+            outPtr[i + 1] += outPtr[i];
+        }
+        int[] outSymbols = new int[delta.size()];
+        int[] outTargets = new int[delta.size()];
+        double[] outWeights = new double[delta.size()];
+        int[] next = Arrays.copyOf(outPtr, n);
+        for (Transition t : delta) {
+            if (t.symbol() == null) {
+                throw new IllegalArgumentException(
+                        "The system has an epsilon transition : " + t);
+            }
+            int position = next[indexes.get(t.start())]++;
+            outSymbols[position] = symbols.intern(t.symbol());
+            outTargets[position] = indexes.get(t.end());
+            outWeights[position] = t.weight();
+        }
+
+        Map<Triple, Integer> states = new HashMap<>();
+        this.initials = new int[system.initials().size()];
+        int k = 0;
+        for (State s : system.initials()) {
+            this.initials[k++] = this.intern(states, new Triple(
+                    indexes.get(s), 0, this.observations.initial()));
+        }
+
+        // the states are numbered in breadth-first order, so the rows can be
+        // filled while exploring
+        List<Integer> rows = new ArrayList<>();
+        int count = 0;
+        for (int i = 0; i < this.size; ++i) {
+            WorkBudget.checkpoint();
+            WorkBudget.checkSize(this.size);
+            rows.add(count);
+            int phiState = this.phiStates[i];
+            int observationState = this.observationStates[i];
+            int from = this.systemStates[i];
+            for (int j = outPtr[from]; j < outPtr[from + 1]; ++j) {
+                int symbol = outSymbols[j];
+                int nextPhi = (phiState == CompiledDfa.NONE) ? CompiledDfa.NONE
+                        : this.phi.next(phiState, symbol);
+                int target = this.intern(states, new Triple(outTargets[j],
+                        nextPhi, this.observations.next(observationState,
+                                symbol)));
+                if (count == this.targets.length) {
+                    this.targets = Arrays.copyOf(this.targets, 2 * count);
+                    this.probabilities = Arrays.copyOf(this.probabilities,
+                            2 * count);
+                }
+                this.targets[count] = target;
+                this.probabilities[count] = outWeights[j];
+                ++count;
+            }
+        }
+        this.rowPtr = new int[this.size + 1];
+        for (int i = 0; i < this.size; ++i) {
+            this.rowPtr[i] = rows.get(i);
+        }
+        this.rowPtr[this.size] = count;
+    }
+
+    /**
+     * Returns the index of a state, adding it if needed.
+     * @param states
+     *            the states added so far
+     * @param triple
+     *            the state
+     * @return the index of the state
+     */
+    private int intern(final Map<Triple, Integer> states, final Triple triple) {
+        Integer index = states.get(triple);
+        if (index == null) {
+            index = this.size;
+            states.put(triple, index);
+            if (this.size == this.systemStates.length) {
+                int capacity = 2 * this.size;
+                this.systemStates = Arrays.copyOf(this.systemStates, capacity);
+                this.phiStates = Arrays.copyOf(this.phiStates, capacity);
+                this.observationStates = Arrays.copyOf(this.observationStates,
+                        capacity);
+            }
+            this.systemStates[this.size] = triple.system;
+            this.phiStates[this.size] = triple.phi;
+            this.observationStates[this.size] = triple.observation;
+            ++this.size;
+        }
+        return index;
+    }
+
+    /**
+     * Getter.
+     * @return the number of states
+     */
+    public final int size() {
+        return this.size;
+    }
+
+    /**
+     * Getter.
+     * @return the number of transitions
+     */
+    public final int transitionCount() {
+        return this.rowPtr[this.size];
+    }
+
+    /**
+     * Getter. The transitions of the state i are at the positions rowPtr[i]
+     * to rowPtr[i + 1] - 1 of the targets and of the probabilities. The array
+     * is shared, it must not be modified.
+     * @return the beginning of the transitions of each state
+     */
+    public final int[] getRowPtr() {
+        return this.rowPtr;
+    }
+
+    /**
+     * Getter. The array is shared, it must not be modified.
+     * @return the targets of the transitions
+     */
+    public final int[] getTargets() {
+        return this.targets;
+    }
+
+    /**
+     * Getter. The array is shared, it must not be modified.
+     * @return the probabilities of the transitions
+     */
+    public final double[] getProbabilities() {
+        return this.probabilities;
+    }
+
+    /**
+     * Getter. The array is shared, it must not be modified.
+     * @return the indexes of the initial states
+     */
+    public final int[] getInitials() {
+        return this.initials;
+    }
+
+    /**
+     * Getter.
+     * @return the observation automaton
+     */
+    public final ObservationDfa getObservations() {
+        return this.observations;
+    }
+
+    /**
+     * Getter.
+     * @param state
+     *            the index of a state
+     * @return true if the system state is terminal
+     */
+    public final boolean isTerminal(final int state) {
+        return this.systemTerminals[this.systemStates[state]];
+    }
+
+    /**
+     * Getter.
+     * @param state
+     *            the index of a state
+     * @return true if the word leading to the state satisfies the predicate
+     */
+    public final boolean isPhi(final int state) {
+        int phiState = this.phiStates[state];
+        return (phiState != CompiledDfa.NONE) && this.phi.isAccepting(phiState);
+    }
+
+    /**
+     * Getter.
+     * @param state
+     *            the index of a state
+     * @return the observation classes accepting the word leading to the state
+     */
+    public final int[] getTags(final int state) {
+        return this.observations.tags(this.observationStates[state]);
+    }
+
+    /**
+     * Builds the transposed system (I - P)^T, whose solution for the initial
+     * vector is the expected number of visits of each state.
+     * @return the matrix (I - P)^T
+     */
+    public final SparseMatrix transposedSystem() {
+        SparseMatrix.Builder builder = new SparseMatrix.Builder(this.size);
+        for (int i = 0; i < this.size; ++i) {
+            builder.add(i, i, 1);
+            for (int k = this.rowPtr[i]; k < this.rowPtr[i + 1]; ++k) {
+                builder.add(this.targets[k], i, -this.probabilities[k]);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Getter.
+     * @return the initial vector : the number of initial states at each index
+     */
+    public final double[] initialVector() {
+        double[] vector = new double[this.size];
+        for (int i : this.initials) {
+            vector[i] += 1;
+        }
+        return vector;
+    }
+
+    /**
+     * Sums the expected number of visits over the final states.
+     * @param visits
+     *            the solution of the transposed system
+     * @return the joint distribution of the predicate and the observations
+     */
+    public final JointDistribution toDistribution(final double[] visits) {
+        int classes = this.observations.classCount();
+        double[] pObs = new double[classes];
+        double[] pPhiAndObs = new double[classes];
+        double pPhi = 0;
+        double pTotal = 0;
+        for (int i = 0; i < this.size; ++i) {
+            if (!this.isTerminal(i)) {
+                continue;
+            }
+            double v = visits[i];
+            boolean inPhi = this.isPhi(i);
+            pTotal += v;
+            if (inPhi) {
+                pPhi += v;
+            }
+            for (int o : this.getTags(i)) {
+                pObs[o] += v;
+                if (inPhi) {
+                    pPhiAndObs[o] += v;
+                }
+            }
+        }
+        return new JointDistribution(pObs, pPhiAndObs, pPhi, pTotal);
+    }
+
+    /**
+     * Propagates the probabilities from the initial states for a number of
+     * steps, summing at each step the probabilities of the terminal states
+     * reached. To extend the curve later without propagating again from the
+     * initial states, use a {@link BoundedPropagation}.
+     * @param horizon
+     *            the number of steps, the maximum length of the traces
+     * @return the joint distributions over the traces of length at most 0,
+     *         1, ..., horizon
+     */
+    public final JointDistribution[] boundedDistributions(final int horizon) {
+        return new BoundedPropagation(this).extend(horizon);
+    }
+
+    /**
+     * A state of the product, used as a key while exploring.
+     * @author Daniel Lefevre
+     */
+    private static class Triple {
+
+        /**
+         * The system state.
+         */
+        private final int system;
+        /**
+         * The predicate state.
+         */
+        private final int phi;
+        /**
+         * The observation state.
+         */
+        private final int observation;
+
+        /**
+         * Constructor.
+         * @param systemIn
+         *            the system state
+         * @param phiIn
+         *            the predicate state
+         * @param observationIn
+         *            the observation state
+         */
+        Triple(final int systemIn, final int phiIn, final int observationIn) {
+            this.system = systemIn;
+            this.phi = phiIn;
+            this.observation = observationIn;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof Triple)) {
+                return false;
+            }
+            Triple t = (Triple) obj;
+            return (this.system == t.system) && (this.phi == t.phi)
+                    && (this.observation == t.observation);
+        }
+
+        @Override
+        public int hashCode() {
+            return (this.system * 31 + this.phi) * 31 + this.observation;
+        }
+    }
+}
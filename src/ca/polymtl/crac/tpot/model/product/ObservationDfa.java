@@ -0,0 +1,226 @@
+package ca.polymtl.crac.tpot.model.product;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ca.polymtl.crac.tpot.budget.WorkBudget;
+import net.jautomata.rationals.Automaton;
+import net.jautomata.rationals.SymbolTable;
+
+/**
+ * The deterministic automaton recognizing the union of the observation
+ * classes, built on the fly as the product of the determinized classes. Each
+ * state is the set of the (class, state) pairs that are still alive, and its
+ * tags are the classes accepting the words leading to it. The classes share
+ * the {@link SymbolTable} of the automaton, so that the transitions are
+ * followed by label number. This class is not thread safe.
+ * @author Daniel Lefevre
+ */
+public class ObservationDfa {
+
+    /**
+     * The target of the transitions not computed yet.
+     */
+    private static final int UNKNOWN = -1;
+
+    /**
+     * The numbers of the labels.
+     */
+    private final SymbolTable symbols;
+    /**
+     * The determinized observation classes.
+     */
+    private final CompiledDfa[] classes;
+    /**
+     * The index of each state, by its live pairs.
+     */
+    private final Map<IntArrayKey, Integer> indexes = new HashMap<>();
+    /**
+     * The live pairs of each state : class indexes at even positions, states
+     * of the class at odd positions.
+     */
+    private final List<int[]> pairs = new ArrayList<>();
+    /**
+     * The tags of each state.
+     */
+    private final List<int[]> tags = new ArrayList<>();
+    /**
+     * The transitions computed so far, by source state and label number,
+     * {@link #UNKNOWN} for the others. The rows grow with the largest label
+     * number followed.
+     */
+    private final List<int[]> transitions = new ArrayList<>();
+
+    /**
+     * Constructor, with labels numbered by a table of its own.
+     * @param observations
+     *            the observation classes
+     */
+    public ObservationDfa(final List<Automaton> observations) {
+        this(observations, new SymbolTable());
+    }
+
+    /**
+     * Constructor. The classes are determinized, so their epsilon transitions
+     * are removed before the product.
+     * @param observations
+     *            the observation classes
+     * @param symbolsIn
+     *            the table numbering the labels, completed with those of the
+     *            classes
+     */
+    public ObservationDfa(final List<Automaton> observations,
+            final SymbolTable symbolsIn) {
+        this.symbols = symbolsIn;
+        this.classes = new CompiledDfa[observations.size()];
+        int[] initial = new int[2 * observations.size()];
+        for (int i = 0; i < observations.size(); ++i) {
+            this.classes[i] = new CompiledDfa(observations.get(i),
+                    symbolsIn);
+            initial[2 * i] = i;
+            initial[2 * i + 1] = 0;
+        }
+        this.intern(initial);
+    }
+
+    /**
+     * Getter.
+     * @return the table numbering the labels
+     */
+    public final SymbolTable getSymbols() {
+        return this.symbols;
+    }
+
+    /**
+     * Getter.
+     * @return the number of observation classes
+     */
+    public final int classCount() {
+        return this.classes.length;
+    }
+
+    /**
+     * Getter.
+     * @param index
+     *            the index of an observation class
+     * @return the determinized class
+     */
+    public final CompiledDfa getObservation(final int index) {
+        return this.classes[index];
+    }
+
+    /**
+     * Getter.
+     * @return the number of states built so far
+     */
+    public final int size() {
+        return this.pairs.size();
+    }
+
+    /**
+     * Getter.
+     * @return the index of the initial state
+     */
+    public final int initial() {
+        return 0;
+    }
+
+    /**
+     * Getter.
+     * @param state
+     *            the index of a state
+     * @return the indexes of the observation classes accepting in this state
+     */
+    public final int[] tags(final int state) {
+        return this.tags.get(state);
+    }
+
+    /**
+     * Getter.
+     * @param state
+     *            the index of a state
+     * @return true if no observation class can accept anymore from this state
+     */
+    public final boolean isDead(final int state) {
+        return this.pairs.get(state).length == 0;
+    }
+
+    /**
+     * Follows a transition, building the target state if needed. The dead
+     * state is a state like the others.
+     * @param state
+     *            the index of the source state
+     * @param symbol
+     *            the number of the label in the table of this automaton
+     * @return the index of the target state
+     */
+    public final int next(final int state, final int symbol) {
+        int[] out = this.transitions.get(state);
+        if (symbol >= out.length) {
+            int length = out.length;
+            out = Arrays.copyOf(out, Math.max(symbol + 1, 2 * length));
+            Arrays.fill(out, length, out.length, UNKNOWN);
+            this.transitions.set(state, out);
+        }
+        int target = out[symbol];
+        if (target == UNKNOWN) {
+            int[] source = this.pairs.get(state);
+            int[] live = new int[source.length];
+            int size = 0;
+            for (int k = 0; k < source.length; k += 2) {
+                int s = this.classes[source[k]].next(source[k + 1], symbol);
+                if (s != CompiledDfa.NONE) {
+                    live[size++] = source[k];
+                    live[size++] = s;
+                }
+            }
+            target = this.intern(Arrays.copyOf(live, size));
+            out[symbol] = target;
+        }
+        return target;
+    }
+
+    /**
+     * Follows a transition, numbering the label if needed :
+     * {@link #next(int, int)} should be used in the loops.
+     * @param state
+     *            the index of the source state
+     * @param label
+     *            the label, possibly a probabilistic symbol
+     * @return the index of the target state
+     */
+    public final int next(final int state, final Object label) {
+        return this.next(state, this.symbols.intern(label));
+    }
+
+    /**
+     * Returns the index of a state, building it if needed.
+     * @param live
+     *            the live pairs of the state, sorted by class
+     * @return the index of the state
+     */
+    private int intern(final int[] live) {
+        IntArrayKey key = new IntArrayKey(live);
+        Integer index = this.indexes.get(key);
+        if (index == null) {
+            index = this.pairs.size();
+            WorkBudget.checkSize(index + 1);
+            this.indexes.put(key, index);
+            this.pairs.add(live);
+            this.transitions.add(new int[0]);
+
+            int[] accepting = new int[live.length / 2];
+            int count = 0;
+            for (int k = 0; k < live.length; k += 2) {
+                if (this.classes[live[k]].isAccepting(live[k + 1])) {
+                    accepting[count++] = live[k];
+                }
+            }
+            this.tags.add(Arrays.copyOf(accepting, count));
+        }
+        return index;
+    }
+}
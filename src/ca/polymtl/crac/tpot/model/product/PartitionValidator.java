@@ -0,0 +1,323 @@
+package ca.polymtl.crac.tpot.model.product;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ca.polymtl.crac.tpot.budget.WorkBudget;
+import net.jautomata.rationals.Automaton;
+
+/**
+ * Checks the data of an opacity problem in a single pass over on-the-fly
+ * products, instead of complementing, determinizing and intersecting the
+ * automata pairwise. The products are explored breadth first and the
+ * exploration stops on the first violation, whose witness is thus a shortest
+ * word. The checks build their own automata, so they can run concurrently.
+ * @author Daniel Lefevre
+ */
+public class PartitionValidator {
+
+    /**
+     * The system.
+     */
+    private final Automaton system;
+
+    /**
+     * Constructor.
+     * @param systemIn
+     *            the system, whose probabilities are ignored
+     */
+    public PartitionValidator(final Automaton systemIn) {
+        this.system = systemIn;
+    }
+
+    /**
+     * Checks that the observation classes form a partition of the language of
+     * the system : each word of the system is in exactly one class, and the
+     * classes have no word outside of the system.
+     * @param observations
+     *            the observation classes
+     * @return the first violation found, or null if the classes form a
+     *         partition
+     */
+    public final Violation checkPartition(final List<Automaton> observations) {
+        SubsetDfa sys = new SubsetDfa(this.system);
+        ObservationDfa obs = new ObservationDfa(observations);
+        Set<Object> labels = new LinkedHashSet<>(sys.labels());
+        for (Automaton o : observations) {
+            labels.addAll(o.alphabet());
+        }
+
+        Exploration exploration = new Exploration(sys.initial(), obs
+                .initial());
+        for (int i = 0; i < exploration.size(); ++i) {
+            WorkBudget.checkpoint();
+            int s = exploration.first(i);
+            int o = exploration.second(i);
+            int[] tags = obs.tags(o);
+            boolean accepted = sys.isAccepting(s);
+            if (tags.length > 1) {
+                return new Violation(Kind.COLLISION, exploration.word(i),
+                        tags[0], tags[1]);
+            }
+            if (accepted && (tags.length == 0)) {
+                return new Violation(Kind.UNOBSERVED, exploration.word(i), -1,
+                        -1);
+            }
+            if (!accepted && (tags.length == 1)) {
+                return new Violation(Kind.OUTSIDE_SYSTEM, exploration.word(i),
+                        tags[0], -1);
+            }
+            for (Object label : labels) {
+                int nextS = sys.next(s, label);
+                int nextO = obs.next(o, label);
+                if (!sys.isEmpty(nextS) || !obs.isDead(nextO)) {
+                    exploration.visit(nextS, nextO, i, label);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks that the language of the predicate is included in the language
+     * of the system.
+     * @param phi
+     *            the predicate
+     * @return the first violation found, or null if the predicate is included
+     */
+    public final Violation checkPredicate(final Automaton phi) {
+        SubsetDfa sys = new SubsetDfa(this.system);
+        CompiledDfa predicate = new CompiledDfa(phi);
+        Set<Object> labels = new LinkedHashSet<>(phi.alphabet());
+
+        Exploration exploration = new Exploration(sys.initial(), 0);
+        for (int i = 0; i < exploration.size(); ++i) {
+            WorkBudget.checkpoint();
+            int s = exploration.first(i);
+            int p = exploration.second(i);
+            if (predicate.isAccepting(p) && !sys.isAccepting(s)) {
+                return new Violation(Kind.PREDICATE_OUTSIDE_SYSTEM,
+                        exploration.word(i), -1, -1);
+            }
+            for (Object label : labels) {
+                int nextP = predicate.next(p, label);
+                if (nextP != CompiledDfa.NONE) {
+                    exploration.visit(sys.next(s, label), nextP, i, label);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The kinds of violations.
+     * @author Daniel Lefevre
+     */
+    public enum Kind {
+        /**
+         * A word of the system is in no observation class.
+         */
+        UNOBSERVED,
+        /**
+         * A word of an observation class is not in the system.
+         */
+        OUTSIDE_SYSTEM,
+        /**
+         * A word is in two observation classes.
+         */
+        COLLISION,
+        /**
+         * A word of the predicate is not in the system.
+         */
+        PREDICATE_OUTSIDE_SYSTEM
+    }
+
+    /**
+     * A violation found by the validator, with a witness word.
+     * @author Daniel Lefevre
+     */
+    public static class Violation {
+
+        /**
+         * The kind of violation.
+         */
+        private final Kind kind;
+        /**
+         * The witness word.
+         */
+        private final List<Object> word;
+        /**
+         * The first observation class involved, -1 if none.
+         */
+        private final int first;
+        /**
+         * The second observation class involved, -1 if none.
+         */
+        private final int second;
+
+        /**
+         * Constructor.
+         * @param kindIn
+         *            the kind of violation
+         * @param wordIn
+         *            the witness word
+         * @param firstIn
+         *            the first observation class involved, -1 if none
+         * @param secondIn
+         *            the second observation class involved, -1 if none
+         */
+        public Violation(final Kind kindIn, final List<Object> wordIn,
+                final int firstIn, final int secondIn) {
+            this.kind = kindIn;
+            this.word = wordIn;
+            this.first = firstIn;
+            this.second = secondIn;
+        }
+
+        /**
+         * Getter.
+         * @return the kind of violation
+         */
+        public final Kind getKind() {
+            return this.kind;
+        }
+
+        /**
+         * Getter.
+         * @return the witness word
+         */
+        public final List<Object> getWord() {
+            return this.word;
+        }
+
+        /**
+         * Getter.
+         * @return the first observation class involved, -1 if none
+         */
+        public final int getFirst() {
+            return this.first;
+        }
+
+        /**
+         * Getter.
+         * @return the second observation class involved, -1 if none
+         */
+        public final int getSecond() {
+            return this.second;
+        }
+
+        /**
+         * Getter.
+         * @return the witness word, its labels concatenated
+         */
+        public final String getWordString() {
+            StringBuilder sb = new StringBuilder();
+            for (Object label : this.word) {
+                sb.append(label);
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * The breadth-first exploration of a product of two automata, keeping for
+     * each pair the transition it was reached by.
+     * @author Daniel Lefevre
+     */
+    private static class Exploration {
+
+        /**
+         * The index of each visited pair.
+         */
+        private final Map<Long, Integer> indexes = new HashMap<>();
+        /**
+         * The visited pairs, in order.
+         */
+        private final List<long[]> pairs = new ArrayList<>();
+        /**
+         * The labels by which the pairs were reached.
+         */
+        private final List<Object> labels = new ArrayList<>();
+
+        /**
+         * Constructor.
+         * @param first
+         *            the first component of the initial pair
+         * @param second
+         *            the second component of the initial pair
+         */
+        Exploration(final int first, final int second) {
+            this.visit(first, second, -1, null);
+        }
+
+        /**
+         * Getter.
+         * @return the number of visited pairs
+         */
+        int size() {
+            return this.pairs.size();
+        }
+
+        /**
+         * Getter.
+         * @param i
+         *            the index of a pair
+         * @return its first component
+         */
+        int first(final int i) {
+            return (int) (this.pairs.get(i)[0] >> 32);
+        }
+
+        /**
+         * Getter.
+         * @param i
+         *            the index of a pair
+         * @return its second component
+         */
+        int second(final int i) {
+            return (int) this.pairs.get(i)[0];
+        }
+
+        /**
+         * Visits a pair, if it was not visited yet.
+         * @param first
+         *            the first component
+         * @param second
+         *            the second component
+         * @param parent
+         *            the index of the pair it is reached from
+         * @param label
+         *            the label it is reached by
+         */
+        void visit(final int first, final int second, final int parent,
+                final Object label) {
+            long key = ((long) first << 32) | (second & 0xffffffffL);
+            if (!this.indexes.containsKey(key)) {
+                this.indexes.put(key, this.pairs.size());
+                this.pairs.add(new long[] {key, parent});
+                this.labels.add(label);
+            }
+        }
+
+        /**
+         * Builds the word leading to a pair.
+         * @param i
+         *            the index of the pair
+         * @return the word
+         */
+        List<Object> word(final int i) {
+            List<Object> word = new ArrayList<>();
+            for (int k = i; this.pairs.get(k)[1] >= 0; k = (int) this.pairs
+                    .get(k)[1]) {
+                word.add(this.labels.get(k));
+            }
+            Collections.reverse(word);
+            return word;
+        }
+    }
+}
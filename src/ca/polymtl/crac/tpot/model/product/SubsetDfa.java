@@ -0,0 +1,269 @@
+package ca.polymtl.crac.tpot.model.product;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ca.polymtl.crac.tpot.budget.WorkBudget;
+import net.jautomata.rationals.Automaton;
+import net.jautomata.rationals.State;
+import net.jautomata.rationals.Transition;
+
+/**
+ * The determinization of an automaton, built on the fly by the subset
+ * construction. The probabilities of the transitions are ignored (as with
+ * {@link net.jautomata.rationals.transformations.UnProb}) and the transitions
+ * labelled with null are epsilon transitions. The empty subset is a state like
+ * the others. This class is not thread safe.
+ * @author Daniel Lefevre
+ */
+public class SubsetDfa {
+
+    /**
+     * The targets of the transitions of each state of the automaton, by
+     * label.
+     */
+    private final List<Map<Object, int[]>> transitions;
+    /**
+     * The targets of the epsilon transitions of each state of the automaton.
+     */
+    private final List<int[]> epsilons;
+    /**
+     * True if the automaton has epsilon transitions.
+     */
+    private final boolean hasEpsilons;
+    /**
+     * True for the terminal states of the automaton.
+     */
+    private final boolean[] terminals;
+    /**
+     * The labels of the automaton.
+     */
+    private final Set<Object> labels = new HashSet<>();
+    /**
+     * The index of each subset.
+     */
+    private final Map<IntArrayKey, Integer> indexes = new HashMap<>();
+    /**
+     * The states of the automaton in each subset, sorted.
+     */
+    private final List<int[]> subsets = new ArrayList<>();
+    /**
+     * True for the subsets containing a terminal state.
+     */
+    private boolean[] accepting = new boolean[16];
+    /**
+     * The transitions computed so far, by subset and label.
+     */
+    private final List<Map<Object, Integer>> successors = new ArrayList<>();
+
+    /**
+     * Constructor.
+     * @param auto
+     *            the automaton
+     */
+    public SubsetDfa(final Automaton auto) {
+        Map<State, Integer> states = new HashMap<>();
+        for (State s : auto.states()) {
+            states.put(s, states.size());
+        }
+        int n = states.size();
+        this.terminals = new boolean[n];
+        this.transitions = new ArrayList<>(n);
+        List<List<Integer>> eps = new ArrayList<>(n);
+        for (int i = 0; i < n; ++i) {
+            this.transitions.add(new HashMap<Object, int[]>());
+            eps.add(new ArrayList<Integer>());
+        }
+        for (Map.Entry<State, Integer> e : states.entrySet()) {
+            this.terminals[e.getValue()] = e.getKey().isTerminal();
+        }
+        for (Transition t : auto.delta()) {
+            Object label = t.symbol();
+            int from = states.get(t.start());
+            int to = states.get(t.end());
+            if (label == null) {
+                eps.get(from).add(to);
+                continue;
+            }
+            this.labels.add(label);
+            Map<Object, int[]> out = this.transitions.get(from);
+            int[] targets = out.get(label);
+            if (targets == null) {
+                out.put(label, new int[] {to});
+            } else {
+                targets = Arrays.copyOf(targets, targets.length + 1);
+                targets[targets.length - 1] = to;
+                out.put(label, targets);
+            }
+        }
+        this.epsilons = new ArrayList<>(n);
+        boolean epsilon = false;
+        for (List<Integer> l : eps) {
+            epsilon |= !l.isEmpty();
+            int[] targets = new int[l.size()];
+            for (int k = 0; k < targets.length; ++k) {
+                targets[k] = l.get(k);
+            }
+            this.epsilons.add(targets);
+        }
+        this.hasEpsilons = epsilon;
+
+        int[] initial = new int[auto.initials().size()];
+        int k = 0;
+        for (State s : auto.initials()) {
+            initial[k++] = states.get(s);
+        }
+        this.intern(initial, k);
+    }
+
+    /**
+     * Getter.
+     * @return the labels of the automaton
+     */
+    public final Set<Object> labels() {
+        return this.labels;
+    }
+
+    /**
+     * Getter.
+     * @return the number of subsets built so far
+     */
+    public final int size() {
+        return this.subsets.size();
+    }
+
+    /**
+     * Getter.
+     * @return the index of the initial subset
+     */
+    public final int initial() {
+        return 0;
+    }
+
+    /**
+     * Getter.
+     * @param state
+     *            the index of a subset
+     * @return true if the subset contains a terminal state
+     */
+    public final boolean isAccepting(final int state) {
+        return this.accepting[state];
+    }
+
+    /**
+     * Getter.
+     * @param state
+     *            the index of a subset
+     * @return true if the subset is empty
+     */
+    public final boolean isEmpty(final int state) {
+        return this.subsets.get(state).length == 0;
+    }
+
+    /**
+     * Follows a transition, building the target subset if needed.
+     * @param state
+     *            the index of the source subset
+     * @param label
+     *            the label
+     * @return the index of the target subset
+     */
+    public final int next(final int state, final Object label) {
+        Map<Object, Integer> out = this.successors.get(state);
+        Integer target = out.get(label);
+        if (target == null) {
+            int[] members = new int[8];
+            int count = 0;
+            for (int s : this.subsets.get(state)) {
+                int[] targets = this.transitions.get(s).get(label);
+                if (targets == null) {
+                    continue;
+                }
+                if (count + targets.length > members.length) {
+                    members = Arrays.copyOf(members, 2 * (count
+                            + targets.length));
+                }
+                System.arraycopy(targets, 0, members, count, targets.length);
+                count += targets.length;
+            }
+            target = this.intern(members, count);
+            out.put(label, target);
+        }
+        return target;
+    }
+
+    /**
+     * Closes a set of states by the epsilon transitions and returns the index
+     * of the subset, building it if needed.
+     * @param members
+     *            the states of the set, possibly repeated, modified
+     * @param count
+     *            the number of states in the array
+     * @return the index of the subset
+     */
+    private int intern(final int[] members, final int count) {
+        int[] subset;
+        if (this.hasEpsilons) {
+            BitSet closure = new BitSet();
+            int[] stack = Arrays.copyOf(members, count);
+            int top = 0;
+            for (int i = 0; i < count; ++i) {
+                if (!closure.get(members[i])) {
+                    closure.set(members[i]);
+                    stack[top++] = members[i];
+                }
+            }
+            while (top > 0) {
+                for (int t : this.epsilons.get(stack[--top])) {
+                    if (!closure.get(t)) {
+                        closure.set(t);
+                        if (top == stack.length) {
+                            stack = Arrays.copyOf(stack, 2 * top + 1);
+                        }
+                        stack[top++] = t;
+                    }
+                }
+            }
+            subset = new int[closure.cardinality()];
+            int k = 0;
+            for (int s = closure.nextSetBit(0); s >= 0; s = closure
+                    .nextSetBit(s + 1)) {
+                subset[k++] = s;
+            }
+        } else {
+            Arrays.sort(members, 0, count);
+            int k = 0;
+            for (int i = 0; i < count; ++i) {
+                if ((k == 0) || (members[k - 1] != members[i])) {
+                    members[k++] = members[i];
+                }
+            }
+            subset = Arrays.copyOf(members, k);
+        }
+
+        IntArrayKey key = new IntArrayKey(subset);
+        Integer index = this.indexes.get(key);
+        if (index == null) {
+            index = this.subsets.size();
+            WorkBudget.checkSize(index + 1);
+            this.indexes.put(key, index);
+            this.subsets.add(subset);
+            this.successors.add(new HashMap<Object, Integer>());
+            if (index == this.accepting.length) {
+                this.accepting = Arrays.copyOf(this.accepting, 2 * index);
+            }
+            boolean terminal = false;
+            for (int s : subset) {
+                terminal |= this.terminals[s];
+            }
+            this.accepting[index] = terminal;
+        }
+        return index;
+    }
+}
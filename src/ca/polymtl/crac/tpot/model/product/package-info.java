@@ -0,0 +1,5 @@
+/**
+ * Product constructions computing the probabilities of all the observation
+ * classes of an opacity problem at once.
+ */
+package ca.polymtl.crac.tpot.model.product;
@@ -0,0 +1,177 @@
+package ca.polymtl.crac.tpot.mtbdd;
+
+import java.util.Arrays;
+
+/**
+ * Lossy cache of the results of the operations of {@link JavaMtbddEngine}. It
+ * is direct mapped : an entry overwrites the previous entry of its slot.
+ * @author Daniel Lefevre
+ */
+class ComputedTable {
+
+    /**
+     * The operation of each entry, 0 for an empty slot.
+     */
+    private int[] ops;
+    /**
+     * The first operand of each entry.
+     */
+    private int[] firsts;
+    /**
+     * The second operand of each entry.
+     */
+    private int[] seconds;
+    /**
+     * The third operand of each entry.
+     */
+    private int[] thirds;
+    /**
+     * The result of each entry.
+     */
+    private int[] results;
+    /**
+     * The number of slots minus one.
+     */
+    private int mask;
+
+    /**
+     * Constructor.
+     * @param size
+     *            the number of slots, a power of 2
+     */
+    ComputedTable(final int size) {
+        this.allocate(size);
+    }
+
+    /**
+     * Allocates empty slots.
+     * @param size
+     *            the number of slots, a power of 2
+     */
+    private void allocate(final int size) {
+        this.ops = new int[size];
+        this.firsts = new int[size];
+        this.seconds = new int[size];
+        this.thirds = new int[size];
+        this.results = new int[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Getter.
+     * @return the number of slots
+     */
+    final int size() {
+        return this.mask + 1;
+    }
+
+    /**
+     * Removes all the entries.
+     */
+    final void clear() {
+        Arrays.fill(this.ops, 0);
+    }
+
+    /**
+     * Removes all the entries and changes the number of slots.
+     * @param size
+     *            the new number of slots, a power of 2
+     */
+    final void resize(final int size) {
+        this.allocate(size);
+    }
+
+    /**
+     * Computes the slot of an entry.
+     * @param op
+     *            the operation
+     * @param first
+     *            the first operand
+     * @param second
+     *            the second operand
+     * @param third
+     *            the third operand
+     * @return the slot
+     */
+    private int slot(final int op, final int first, final int second,
+            final int third) {
+        int h = op * 0x9E3779B1 + first * 0x85EBCA77 + second * 0xC2B2AE3D
+                + third * 0x27D4EB2F;
+        return (h ^ (h >>> 15)) & this.mask;
+    }
+
+    /**
+     * Looks for the result of an operation.
+     * @param op
+     *            the operation, not 0
+     * @param first
+     *            the first operand
+     * @param second
+     *            the second operand
+     * @return the cached result, 0 if there is none
+     */
+    final int lookup(final int op, final int first, final int second) {
+        return this.lookup(op, first, second, 0);
+    }
+
+    /**
+     * Looks for the result of an operation with three operands.
+     * @param op
+     *            the operation, not 0
+     * @param first
+     *            the first operand
+     * @param second
+     *            the second operand
+     * @param third
+     *            the third operand
+     * @return the cached result, 0 if there is none
+     */
+    final int lookup(final int op, final int first, final int second,
+            final int third) {
+        int i = this.slot(op, first, second, third);
+        if (this.ops[i] == op && this.firsts[i] == first
+                && this.seconds[i] == second && this.thirds[i] == third) {
+            return this.results[i];
+        }
+        return 0;
+    }
+
+    /**
+     * Stores the result of an operation.
+     * @param op
+     *            the operation, not 0
+     * @param first
+     *            the first operand
+     * @param second
+     *            the second operand
+     * @param result
+     *            the result
+     */
+    final void insert(final int op, final int first, final int second,
+            final int result) {
+        this.insert(op, first, second, 0, result);
+    }
+
+    /**
+     * Stores the result of an operation with three operands.
+     * @param op
+     *            the operation, not 0
+     * @param first
+     *            the first operand
+     * @param second
+     *            the second operand
+     * @param third
+     *            the third operand
+     * @param result
+     *            the result
+     */
+    final void insert(final int op, final int first, final int second,
+            final int third, final int result) {
+        int i = this.slot(op, first, second, third);
+        this.ops[i] = op;
+        this.firsts[i] = first;
+        this.seconds[i] = second;
+        this.thirds[i] = third;
+        this.results[i] = result;
+    }
+}
@@ -0,0 +1,1280 @@
+package ca.polymtl.crac.tpot.mtbdd;
+
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+
+import ca.polymtl.crac.tpot.model.Model;
+
+/**
+ * Engine written in Java, used when the native library is not available.
+ * <p>
+ * The nodes are hash-consed in a unique table, so that two equal functions
+ * always have the same handle, and the results of the operations are kept in
+ * a computed table. The functions whose values are all 0 or 1 use complement
+ * edges : the lowest bit of a handle negates the function, the constant 0 is
+ * the complement of the constant 1, and the then edge of a stored 0-1 node is
+ * never complemented. The other functions never carry a complement bit.
+ * <p>
+ * The nodes whose reference count is not 0 are the roots of a mark and sweep
+ * garbage collection, which runs before an operation when the unique table
+ * has grown enough, or on {@link #freeTree()}. The operands of the operation
+ * are kept as well. The automatic collection is enabled unless
+ * {@link #disableGarbageCollection()} is called.
+ * <p>
+ * This class is not thread-safe.
+ * @author Daniel Lefevre
+ */
+public class JavaMtbddEngine implements MtbddEngine {
+
+    /**
+     * Initial number of node slots.
+     */
+    private static final int INITIAL_NODES = 1 << 12;
+    /**
+     * Initial number of slots of the computed table.
+     */
+    private static final int INITIAL_CACHE = 1 << 14;
+    /**
+     * Maximum number of slots of the computed table.
+     */
+    private static final int MAX_CACHE = 1 << 22;
+    /**
+     * Number of live nodes above which the automatic garbage collection runs.
+     */
+    private static final int INITIAL_GC_THRESHOLD = 1 << 16;
+    /**
+     * Index of a free slot.
+     */
+    private static final int FREE = -1;
+    /**
+     * Handle of the constant 1. The slot 0 is never used, so that the handle
+     * 0 is never valid.
+     */
+    private static final int ONE = 2;
+    /**
+     * Handle of the constant 0.
+     */
+    private static final int ZERO = ONE | 1;
+
+    /**
+     * Operation code of the product.
+     */
+    private static final int OP_TIMES = 1;
+    /**
+     * Operation code of the sum.
+     */
+    private static final int OP_PLUS = 2;
+    /**
+     * Operation code of the disjunction.
+     */
+    private static final int OP_OR = 3;
+    /**
+     * Operation code of the exclusive disjunction.
+     */
+    private static final int OP_XOR = 4;
+    /**
+     * Operation code of the complement.
+     */
+    private static final int OP_NOT = 5;
+    /**
+     * Operation code of the sum abstraction.
+     */
+    private static final int OP_EXIST_ABSTRACT = 6;
+    /**
+     * Operation code of the disjunction abstraction.
+     */
+    private static final int OP_OR_ABSTRACT = 7;
+    /**
+     * Operation code of the matrix multiplication.
+     */
+    private static final int OP_MATRIX_MULTIPLY = 8;
+
+    /**
+     * The variable of each node, CONST_INDEX for a constant, FREE for a free
+     * slot.
+     */
+    private int[] index;
+    /**
+     * The then edge of each node.
+     */
+    private int[] thenEdge;
+    /**
+     * The else edge of each node.
+     */
+    private int[] elseEdge;
+    /**
+     * The value of each constant.
+     */
+    private double[] value;
+    /**
+     * True for each node whose values are all 0 or 1.
+     */
+    private boolean[] boolean01;
+    /**
+     * The reference count of each node.
+     */
+    private int[] refs;
+    /**
+     * The next node of the same bucket, or the next free slot.
+     */
+    private int[] next;
+    /**
+     * The first node of each bucket of the unique table, 0 if empty.
+     */
+    private int[] buckets;
+    /**
+     * The number of slots used so far.
+     */
+    private int used;
+    /**
+     * The number of live nodes.
+     */
+    private int live;
+    /**
+     * The first free slot, 0 if there is none.
+     */
+    private int freeList;
+    /**
+     * The number of variables.
+     */
+    private int varCount;
+    /**
+     * The results of the operations.
+     */
+    private ComputedTable cache;
+    /**
+     * True if the garbage collection runs automatically.
+     */
+    private boolean gcEnabled = true;
+    /**
+     * Number of live nodes above which the automatic garbage collection runs.
+     */
+    private int gcThreshold;
+
+    /**
+     * Constructor.
+     */
+    public JavaMtbddEngine() {
+        this.reset(INITIAL_NODES, INITIAL_CACHE);
+    }
+
+    /**
+     * Discards all nodes and variables.
+     * @param nodes
+     *            the number of node slots, a power of 2
+     * @param cacheSize
+     *            the number of slots of the computed table, a power of 2
+     */
+    private void reset(final int nodes, final int cacheSize) {
+        this.index = new int[nodes];
+        this.thenEdge = new int[nodes];
+        this.elseEdge = new int[nodes];
+        this.value = new double[nodes];
+        this.boolean01 = new boolean[nodes];
+        this.refs = new int[nodes];
+        this.next = new int[nodes];
+        this.buckets = new int[nodes];
+        this.used = 1;
+        this.live = 0;
+        this.freeList = 0;
+        this.varCount = 0;
+        this.cache = new ComputedTable(cacheSize);
+        this.gcThreshold = INITIAL_GC_THRESHOLD;
+
+        int one = this.allocate();
+        this.index[one] = CONST_INDEX;
+        this.value[one] = 1;
+        this.boolean01[one] = true;
+        this.insert(one);
+    }
+
+    // -------------------------------------------------------------------
+    // Unique table
+    // -------------------------------------------------------------------
+
+    /**
+     * Hashes the key of a node.
+     * @param var
+     *            the variable
+     * @param t
+     *            the then edge, or the low bits of a constant
+     * @param e
+     *            the else edge, or the high bits of a constant
+     * @return the hash
+     */
+    private static int hash(final int var, final int t, final int e) {
+        int h = var * 0x9E3779B1 + t * 0x85EBCA77 + e * 0xC2B2AE3D;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Hashes a stored node.
+     * @param id
+     *            the node
+     * @return the hash
+     */
+    private int hashOf(final int id) {
+        if (this.index[id] == CONST_INDEX) {
+            long bits = Double.doubleToLongBits(this.value[id]);
+            return hash(CONST_INDEX, (int) bits, (int) (bits >>> 32));
+        }
+        return hash(this.index[id], this.thenEdge[id], this.elseEdge[id]);
+    }
+
+    /**
+     * Adds a node in its bucket.
+     * @param id
+     *            the node
+     */
+    private void insert(final int id) {
+        int b = this.hashOf(id) & (this.buckets.length - 1);
+        this.next[id] = this.buckets[b];
+        this.buckets[b] = id;
+    }
+
+    /**
+     * Takes a free slot, growing the arrays if needed.
+     * @return the slot
+     */
+    private int allocate() {
+        int id;
+        if (this.freeList != 0) {
+            id = this.freeList;
+            this.freeList = this.next[id];
+        } else {
+            if (this.used == this.index.length) {
+                this.grow();
+            }
+            id = this.used++;
+        }
+        this.refs[id] = 0;
+        ++this.live;
+        return id;
+    }
+
+    /**
+     * Doubles the number of slots and of buckets.
+     */
+    private void grow() {
+        int size = this.index.length * 2;
+        this.index = Arrays.copyOf(this.index, size);
+        this.thenEdge = Arrays.copyOf(this.thenEdge, size);
+        this.elseEdge = Arrays.copyOf(this.elseEdge, size);
+        this.value = Arrays.copyOf(this.value, size);
+        this.boolean01 = Arrays.copyOf(this.boolean01, size);
+        this.refs = Arrays.copyOf(this.refs, size);
+        this.next = Arrays.copyOf(this.next, size);
+        this.rehash(size);
+        if (this.cache.size() < size && this.cache.size() < MAX_CACHE) {
+            this.cache.resize(Math.min(size, MAX_CACHE));
+        }
+    }
+
+    /**
+     * Rebuilds the unique table from the live nodes.
+     * @param size
+     *            the number of buckets, a power of 2
+     */
+    private void rehash(final int size) {
+        this.buckets = new int[size];
+        for (int id = 1; id < this.used; ++id) {
+            if (this.index[id] != FREE) {
+                this.insert(id);
+            }
+        }
+    }
+
+    /**
+     * Returns the handle of a constant.
+     * @param d
+     *            the value
+     * @return the constant
+     */
+    private int constant(final double d) {
+        if (d == 0) {
+            return ZERO;
+        }
+        if (d == 1) {
+            return ONE;
+        }
+        long bits = Double.doubleToLongBits(d);
+        int h = hash(CONST_INDEX, (int) bits, (int) (bits >>> 32));
+        int id = this.buckets[h & (this.buckets.length - 1)];
+        for (; id != 0; id = this.next[id]) {
+            if (this.index[id] == CONST_INDEX
+                    && Double.doubleToLongBits(this.value[id]) == bits) {
+                return id << 1;
+            }
+        }
+        id = this.allocate();
+        this.index[id] = CONST_INDEX;
+        this.value[id] = d;
+        this.boolean01[id] = false;
+        this.insert(id);
+        return id << 1;
+    }
+
+    /**
+     * Returns the handle of a node, applying the reduction rule and the
+     * canonical form of the complement edges.
+     * @param var
+     *            the variable
+     * @param t
+     *            the then edge
+     * @param e
+     *            the else edge
+     * @return the node
+     */
+    private int mk(final int var, final int t, final int e) {
+        if (t == e) {
+            return t;
+        }
+        boolean b = this.isBool(t) && this.isBool(e);
+        if (b && (t & 1) != 0) {
+            return this.findOrAdd(var, t ^ 1, e ^ 1, true) ^ 1;
+        }
+        return this.findOrAdd(var, t, e, b);
+    }
+
+    /**
+     * Looks for a node in the unique table, adding it if it is not there.
+     * @param var
+     *            the variable
+     * @param t
+     *            the then edge
+     * @param e
+     *            the else edge
+     * @param b
+     *            true if the values of the node are all 0 or 1
+     * @return the regular handle of the node
+     */
+    private int findOrAdd(final int var, final int t, final int e,
+            final boolean b) {
+        int h = hash(var, t, e);
+        int id = this.buckets[h & (this.buckets.length - 1)];
+        for (; id != 0; id = this.next[id]) {
+            if (this.index[id] == var && this.thenEdge[id] == t
+                    && this.elseEdge[id] == e) {
+                return id << 1;
+            }
+        }
+        id = this.allocate();
+        this.index[id] = var;
+        this.thenEdge[id] = t;
+        this.elseEdge[id] = e;
+        this.boolean01[id] = b;
+        this.insert(id);
+        return id << 1;
+    }
+
+    // -------------------------------------------------------------------
+    // Garbage collection
+    // -------------------------------------------------------------------
+
+    /**
+     * Frees the nodes which are not reachable from a referenced node.
+     * @param roots
+     *            the handles to keep even if they are not referenced
+     * @return the number of freed nodes
+     */
+    private int garbageCollect(final int... roots) {
+        boolean[] marked = new boolean[this.used];
+        int[] stack = new int[64 + roots.length];
+        int top = 0;
+        stack[top++] = ONE >>> 1;
+        for (int root : roots) {
+            stack[top++] = root >>> 1;
+        }
+        for (int id = 1; id < this.used; ++id) {
+            if (this.refs[id] > 0 && this.index[id] != FREE) {
+                if (top + 2 >= stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                stack[top++] = id;
+            }
+        }
+        while (top > 0) {
+            int id = stack[--top];
+            if (marked[id]) {
+                continue;
+            }
+            marked[id] = true;
+            if (this.index[id] != CONST_INDEX) {
+                if (top + 2 >= stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                stack[top++] = this.thenEdge[id] >>> 1;
+                stack[top++] = this.elseEdge[id] >>> 1;
+            }
+        }
+
+        int freed = 0;
+        for (int id = 1; id < this.used; ++id) {
+            if (!marked[id] && this.index[id] != FREE) {
+                this.index[id] = FREE;
+                this.next[id] = this.freeList;
+                this.freeList = id;
+                ++freed;
+            }
+        }
+        this.live -= freed;
+        this.rehash(this.buckets.length);
+        this.cache.clear();
+        return freed;
+    }
+
+    /**
+     * Runs the garbage collection if it is enabled and enough nodes have
+     * been created since the last one.
+     * @param operands
+     *            all the handles given to the operation about to run, which
+     *            are kept
+     */
+    private void collectIfNeeded(final int... operands) {
+        if (this.gcEnabled && this.live > this.gcThreshold) {
+            this.garbageCollect(operands);
+            this.gcThreshold = Math.max(INITIAL_GC_THRESHOLD, 2 * this.live);
+        }
+    }
+
+    /**
+     * Frees the nodes which are not reachable from a referenced node.
+     * @return the number of freed nodes
+     */
+    public final int garbageCollect() {
+        return this.garbageCollect(new int[0]);
+    }
+
+    /**
+     * Stops the automatic garbage collection, until
+     * {@link #enableGarbageCollection()} is called. The collection still runs
+     * on {@link #freeTree()}.
+     */
+    public final void disableGarbageCollection() {
+        this.gcEnabled = false;
+    }
+
+    /**
+     * Getter.
+     * @return the number of live nodes
+     */
+    public final int getNodeCount() {
+        return this.live;
+    }
+
+    /**
+     * Getter.
+     * @return the number of variables
+     */
+    public final int getVariableCount() {
+        return this.varCount;
+    }
+
+    // -------------------------------------------------------------------
+    // Accessors on handles
+    // -------------------------------------------------------------------
+
+    /**
+     * Checks a handle given by a caller.
+     * @param node
+     *            the handle
+     * @return the handle
+     */
+    private int handle(final long node) {
+        if (node <= 0 || node >= ((long) this.used << 1)) {
+            throw new IllegalArgumentException("Invalid mtbdd handle : "
+                    + node);
+        }
+        int h = (int) node;
+        if (this.index[h >>> 1] == FREE) {
+            throw new IllegalStateException("The mtbdd node " + node
+                    + " has been garbage collected");
+        }
+        return h;
+    }
+
+    /**
+     * Getter.
+     * @param h
+     *            a handle
+     * @return true if the values of the function are all 0 or 1
+     */
+    private boolean isBool(final int h) {
+        return (h & 1) != 0 || this.boolean01[h >>> 1];
+    }
+
+    /**
+     * Getter.
+     * @param h
+     *            a handle
+     * @return true if the function is a constant
+     */
+    private boolean isConst(final int h) {
+        return this.index[h >>> 1] == CONST_INDEX;
+    }
+
+    /**
+     * Getter.
+     * @param h
+     *            the handle of a constant
+     * @return the value of the constant
+     */
+    private double val(final int h) {
+        double v = this.value[h >>> 1];
+        return (h & 1) == 0 ? v : 1 - v;
+    }
+
+    /**
+     * Getter.
+     * @param h
+     *            a handle
+     * @return the variable of the node
+     */
+    private int top(final int h) {
+        return this.index[h >>> 1];
+    }
+
+    /**
+     * Computes the positive cofactor of a function.
+     * @param h
+     *            the function
+     * @param var
+     *            a variable which is not below the variable of the function
+     * @return the cofactor of the function where the variable is true
+     */
+    private int thenOf(final int h, final int var) {
+        int id = h >>> 1;
+        if (this.index[id] != var) {
+            return h;
+        }
+        return this.thenEdge[id] ^ (h & 1);
+    }
+
+    /**
+     * Computes the negative cofactor of a function.
+     * @param h
+     *            the function
+     * @param var
+     *            a variable which is not below the variable of the function
+     * @return the cofactor of the function where the variable is false
+     */
+    private int elseOf(final int h, final int var) {
+        int id = h >>> 1;
+        if (this.index[id] != var) {
+            return h;
+        }
+        return this.elseEdge[id] ^ (h & 1);
+    }
+
+    // -------------------------------------------------------------------
+    // Operations
+    // -------------------------------------------------------------------
+
+    /**
+     * Solves the trivial cases of a binary operation.
+     * @param op
+     *            the operation
+     * @param f
+     *            the first operand
+     * @param g
+     *            the second operand
+     * @return the result, 0 if the case is not trivial
+     */
+    private int terminalCase(final int op, final int f, final int g) {
+        boolean constants = this.isConst(f) && this.isConst(g);
+        switch (op) {
+        case OP_TIMES:
+            if (f == ZERO || g == ZERO || f == (g ^ 1)) {
+                return ZERO;
+            }
+            if (f == ONE) {
+                return g;
+            }
+            if (g == ONE || (f == g && this.isBool(f))) {
+                return f;
+            }
+            if (constants) {
+                return this.constant(this.val(f) * this.val(g));
+            }
+            return 0;
+        case OP_PLUS:
+            if (f == ZERO) {
+                return g;
+            }
+            if (g == ZERO) {
+                return f;
+            }
+            if (constants) {
+                return this.constant(this.val(f) + this.val(g));
+            }
+            return 0;
+        case OP_OR:
+            if ((this.isConst(f) && this.val(f) != 0)
+                    || (this.isConst(g) && this.val(g) != 0)
+                    || f == (g ^ 1)) {
+                return ONE;
+            }
+            if (f == ZERO && this.isBool(g)) {
+                return g;
+            }
+            if ((g == ZERO || f == g) && this.isBool(f)) {
+                return f;
+            }
+            return 0;
+        case OP_XOR:
+            if (constants) {
+                return ((this.val(f) != 0) != (this.val(g) != 0)) ? ONE
+                        : ZERO;
+            }
+            if (this.isBool(f) && this.isBool(g)) {
+                if (f == g) {
+                    return ZERO;
+                }
+                if (f == (g ^ 1)) {
+                    return ONE;
+                }
+                if (f == ZERO) {
+                    return g;
+                }
+                if (g == ZERO) {
+                    return f;
+                }
+                if (f == ONE) {
+                    return g ^ 1;
+                }
+                if (g == ONE) {
+                    return f ^ 1;
+                }
+            }
+            return 0;
+        default:
+            throw new IllegalArgumentException("Unknown operation " + op);
+        }
+    }
+
+    /**
+     * Applies a commutative binary operation.
+     * @param op
+     *            the operation
+     * @param f
+     *            the first operand
+     * @param g
+     *            the second operand
+     * @return the result
+     */
+    private int apply(final int op, final int f, final int g) {
+        int r = this.terminalCase(op, f, g);
+        if (r != 0) {
+            return r;
+        }
+        if (op == OP_XOR && this.isBool(f) && this.isBool(g)
+                && ((f | g) & 1) != 0) {
+            // not(f) xor g = not(f xor g)
+            return this.apply(op, f & ~1, g & ~1) ^ ((f ^ g) & 1);
+        }
+        int a = Math.min(f, g);
+        int b = Math.max(f, g);
+        r = this.cache.lookup(op, a, b);
+        if (r != 0) {
+            return r;
+        }
+        int var = Math.min(this.top(a), this.top(b));
+        int t = this.apply(op, this.thenOf(a, var), this.thenOf(b, var));
+        int e = this.apply(op, this.elseOf(a, var), this.elseOf(b, var));
+        r = this.mk(var, t, e);
+        this.cache.insert(op, a, b, r);
+        return r;
+    }
+
+    /**
+     * Computes the complement of a function.
+     * @param f
+     *            the function
+     * @return 1 where f is 0, 0 elsewhere
+     */
+    private int complement(final int f) {
+        if (this.isBool(f)) {
+            return f ^ 1;
+        }
+        if (this.isConst(f)) {
+            return this.val(f) == 0 ? ONE : ZERO;
+        }
+        int r = this.cache.lookup(OP_NOT, f, 0);
+        if (r != 0) {
+            return r;
+        }
+        int id = f >>> 1;
+        r = this.mk(this.index[id], this.complement(this.thenEdge[id]),
+                this.complement(this.elseEdge[id]));
+        this.cache.insert(OP_NOT, f, 0, r);
+        return r;
+    }
+
+    /**
+     * Sums a function over the variables of a cube.
+     * @param f
+     *            the function
+     * @param cube
+     *            a positive cube
+     * @return the abstraction
+     */
+    private int existAbstract(final int f, final int cube) {
+        if (f == ZERO || cube == ONE) {
+            return f;
+        }
+        int fVar = this.top(f);
+        int cubeVar = this.top(cube);
+        int rest = this.thenEdge[cube >>> 1];
+        if (cubeVar < fVar) {
+            // f does not depend on this variable : f + f
+            int r = this.existAbstract(f, rest);
+            return this.apply(OP_PLUS, r, r);
+        }
+        int r = this.cache.lookup(OP_EXIST_ABSTRACT, f, cube);
+        if (r != 0) {
+            return r;
+        }
+        if (cubeVar == fVar) {
+            r = this.apply(OP_PLUS,
+                    this.existAbstract(this.thenOf(f, fVar), rest),
+                    this.existAbstract(this.elseOf(f, fVar), rest));
+        } else {
+            r = this.mk(fVar, this.existAbstract(this.thenOf(f, fVar), cube),
+                    this.existAbstract(this.elseOf(f, fVar), cube));
+        }
+        this.cache.insert(OP_EXIST_ABSTRACT, f, cube, r);
+        return r;
+    }
+
+    /**
+     * Computes the disjunction of a function over the variables of a cube.
+     * @param f
+     *            the function
+     * @param cube
+     *            a positive cube
+     * @return the abstraction
+     */
+    private int orAbstract(final int f, final int cube) {
+        if (cube == ONE || this.isConst(f)) {
+            return f;
+        }
+        int fVar = this.top(f);
+        int cubeVar = this.top(cube);
+        int rest = this.thenEdge[cube >>> 1];
+        if (cubeVar < fVar) {
+            return this.orAbstract(f, rest);
+        }
+        int r = this.cache.lookup(OP_OR_ABSTRACT, f, cube);
+        if (r != 0) {
+            return r;
+        }
+        if (cubeVar == fVar) {
+            r = this.apply(OP_OR, this.orAbstract(this.thenOf(f, fVar), rest),
+                    this.orAbstract(this.elseOf(f, fVar), rest));
+        } else {
+            r = this.mk(fVar, this.orAbstract(this.thenOf(f, fVar), cube),
+                    this.orAbstract(this.elseOf(f, fVar), cube));
+        }
+        this.cache.insert(OP_OR_ABSTRACT, f, cube, r);
+        return r;
+    }
+
+    /**
+     * Multiplies two functions and sums the product over the variables of a
+     * cube, without building the whole product.
+     * @param f
+     *            the first function
+     * @param g
+     *            the second function
+     * @param cube
+     *            a positive cube
+     * @return the sum of f * g over the variables of the cube
+     */
+    private int matrixMultiply(final int f, final int g, final int cube) {
+        if (f == ZERO || g == ZERO) {
+            return ZERO;
+        }
+        if (cube == ONE) {
+            return this.apply(OP_TIMES, f, g);
+        }
+        int var = Math.min(this.top(f), this.top(g));
+        int cubeVar = this.top(cube);
+        int rest = this.thenEdge[cube >>> 1];
+        if (cubeVar < var) {
+            int r = this.matrixMultiply(f, g, rest);
+            return this.apply(OP_PLUS, r, r);
+        }
+        int a = Math.min(f, g);
+        int b = Math.max(f, g);
+        int r = this.cache.lookup(OP_MATRIX_MULTIPLY, a, b, cube);
+        if (r != 0) {
+            return r;
+        }
+        int sub = (cubeVar == var) ? rest : cube;
+        int t = this.matrixMultiply(this.thenOf(a, var), this.thenOf(b, var),
+                sub);
+        int e = this.matrixMultiply(this.elseOf(a, var), this.elseOf(b, var),
+                sub);
+        r = (cubeVar == var) ? this.apply(OP_PLUS, t, e) : this.mk(var, t, e);
+        this.cache.insert(OP_MATRIX_MULTIPLY, a, b, cube, r);
+        return r;
+    }
+
+    /**
+     * Renames the variables of a function.
+     * @param f
+     *            the function
+     * @param permutation
+     *            the new index of each variable
+     * @param memo
+     *            the functions already renamed
+     * @return the renamed function
+     */
+    private int permute(final int f, final int[] permutation,
+            final Map<Integer, Integer> memo) {
+        if (this.isConst(f)) {
+            return f;
+        }
+        Integer known = memo.get(f);
+        if (known != null) {
+            return known;
+        }
+        int var = this.top(f);
+        int target = (var < permutation.length) ? permutation[var] : var;
+        int t = this.permute(this.thenOf(f, var), permutation, memo);
+        int e = this.permute(this.elseOf(f, var), permutation, memo);
+        int r;
+        if (target < this.top(t) && target < this.top(e)) {
+            r = this.mk(target, t, e);
+        } else {
+            // x * t + not(x) * e, where one of the terms is 0
+            int x = this.mk(target, ONE, ZERO);
+            r = this.apply(OP_PLUS, this.apply(OP_TIMES, x, t),
+                    this.apply(OP_TIMES, x ^ 1, e));
+        }
+        memo.put(f, r);
+        return r;
+    }
+
+    /**
+     * Compares two functions.
+     * @param f
+     *            the first function
+     * @param g
+     *            the second function
+     * @param tolerance
+     *            the greatest allowed difference
+     * @param visited
+     *            the pairs of functions already compared
+     * @return true if the difference is never greater than the tolerance
+     */
+    private boolean equalSupNorm(final int f, final int g,
+            final double tolerance, final Set<Long> visited) {
+        if (f == g) {
+            return true;
+        }
+        if (this.isConst(f) && this.isConst(g)) {
+            return Math.abs(this.val(f) - this.val(g)) <= tolerance;
+        }
+        if (!visited.add(((long) f << 32) | (g & 0xFFFFFFFFL))) {
+            return true;
+        }
+        int var = Math.min(this.top(f), this.top(g));
+        return this.equalSupNorm(this.thenOf(f, var), this.thenOf(g, var),
+                tolerance, visited)
+                && this.equalSupNorm(this.elseOf(f, var),
+                        this.elseOf(g, var), tolerance, visited);
+    }
+
+    /**
+     * Checks that a handle is a cube of positive literals.
+     * @param cube
+     *            the handle
+     * @return the handle
+     */
+    private int cube(final long cube) {
+        int h = this.handle(cube);
+        for (int c = h; c != ONE; c = this.thenEdge[c >>> 1]) {
+            if ((c & 1) != 0 || this.isConst(c)
+                    || this.elseEdge[c >>> 1] != ZERO) {
+                throw new IllegalArgumentException("Not a cube : " + cube);
+            }
+        }
+        return h;
+    }
+
+    // -------------------------------------------------------------------
+    // MtbddEngine
+    // -------------------------------------------------------------------
+
+    @Override
+    public final void init() {
+        boolean enabled = this.gcEnabled;
+        this.reset(INITIAL_NODES, INITIAL_CACHE);
+        this.gcEnabled = enabled;
+    }
+
+    @Override
+    public final void quit() {
+        this.reset(INITIAL_NODES, INITIAL_CACHE);
+    }
+
+    @Override
+    public final void enableGarbageCollection() {
+        this.gcEnabled = true;
+    }
+
+    @Override
+    public final void freeTree() {
+        this.garbageCollect();
+    }
+
+    @Override
+    public final void ref(final long node) {
+        ++this.refs[this.handle(node) >>> 1];
+    }
+
+    @Override
+    public final void recursiveDeref(final long node) {
+        int id = this.handle(node) >>> 1;
+        if (this.refs[id] > 0) {
+            --this.refs[id];
+        }
+    }
+
+    @Override
+    public final long readOne() {
+        return ONE;
+    }
+
+    @Override
+    public final long readLogicZero() {
+        return ZERO;
+    }
+
+    @Override
+    public final long addConst(final double d) {
+        this.collectIfNeeded();
+        return this.constant(d);
+    }
+
+    @Override
+    public final long addIthVar(final int i) {
+        if (i < 0 || i == CONST_INDEX) {
+            throw new IllegalArgumentException("Invalid variable index : " + i);
+        }
+        this.collectIfNeeded();
+        this.varCount = Math.max(this.varCount, i + 1);
+        return this.mk(i, ONE, ZERO);
+    }
+
+    @Override
+    public final long addNewVar() {
+        return this.addIthVar(this.varCount);
+    }
+
+    /**
+     * Applies a binary operation on handles given by a caller.
+     * @param op
+     *            the operation
+     * @param dd1
+     *            the first operand
+     * @param dd2
+     *            the second operand
+     * @return the result
+     */
+    private long apply(final int op, final long dd1, final long dd2) {
+        int f = this.handle(dd1);
+        int g = this.handle(dd2);
+        this.collectIfNeeded(f, g);
+        return this.apply(op, f, g);
+    }
+
+    @Override
+    public final long and(final long dd1, final long dd2) {
+        return this.apply(OP_TIMES, dd1, dd2);
+    }
+
+    @Override
+    public final long or(final long dd1, final long dd2) {
+        return this.apply(OP_OR, dd1, dd2);
+    }
+
+    @Override
+    public final long xor(final long dd1, final long dd2) {
+        return this.apply(OP_XOR, dd1, dd2);
+    }
+
+    @Override
+    public final long not(final long dd) {
+        int f = this.handle(dd);
+        this.collectIfNeeded(f);
+        return this.complement(f);
+    }
+
+    @Override
+    public final long plus(final long dd1, final long dd2) {
+        return this.apply(OP_PLUS, dd1, dd2);
+    }
+
+    @Override
+    public final long addComputeCube(final long[] vars) {
+        int[] indexes = new int[vars.length];
+        for (int i = 0; i < vars.length; ++i) {
+            int h = this.handle(vars[i]);
+            int id = h >>> 1;
+            if (h != (id << 1) || this.isConst(h)
+                    || this.thenEdge[id] != ONE || this.elseEdge[id] != ZERO) {
+                throw new IllegalArgumentException("Not a variable : "
+                        + vars[i]);
+            }
+            indexes[i] = this.index[id];
+        }
+        this.collectIfNeeded();
+        Arrays.sort(indexes);
+        int cube = ONE;
+        for (int i = indexes.length - 1; i >= 0; --i) {
+            cube = this.mk(indexes[i], cube, ZERO);
+        }
+        return cube;
+    }
+
+    @Override
+    public final long addExistAbstract(final long dd, final long cube) {
+        int f = this.handle(dd);
+        int c = this.cube(cube);
+        this.collectIfNeeded(f, c);
+        return this.existAbstract(f, c);
+    }
+
+    @Override
+    public final long addOrAbstract(final long dd, final long cube) {
+        int f = this.handle(dd);
+        int c = this.cube(cube);
+        this.collectIfNeeded(f, c);
+        return this.orAbstract(f, c);
+    }
+
+    @Override
+    public final long addMatrixMultiply(final long dd1, final long dd2,
+            final long cube) {
+        int f = this.handle(dd1);
+        int g = this.handle(dd2);
+        int c = this.cube(cube);
+        this.collectIfNeeded(f, g, c);
+        return this.matrixMultiply(f, g, c);
+    }
+
+    @Override
+    public final long addPermute(final long dd, final int[] permutation) {
+        int f = this.handle(dd);
+        for (int i = 0; i < permutation.length; ++i) {
+            if (permutation[i] < 0 || permutation[i] == CONST_INDEX) {
+                throw new IllegalArgumentException("Invalid variable index : "
+                        + permutation[i]);
+            }
+            this.varCount = Math.max(this.varCount, permutation[i] + 1);
+        }
+        this.collectIfNeeded(f);
+        return this.permute(f, permutation, new HashMap<Integer, Integer>());
+    }
+
+    @Override
+    public final boolean equalSupNorm(final long dd1, final long dd2,
+            final double tolerance) {
+        return this.equalSupNorm(this.handle(dd1), this.handle(dd2),
+                tolerance, new HashSet<Long>());
+    }
+
+    @Override
+    public final double countPath(final long node) {
+        return this.countPaths(this.handle(node) & ~1, false,
+                new HashMap<Integer, Double>());
+    }
+
+    @Override
+    public final double countPathsToNonZero(final long node) {
+        return this.countPaths(this.handle(node), true,
+                new HashMap<Integer, Double>());
+    }
+
+    /**
+     * Counts the paths of a function.
+     * @param h
+     *            the function
+     * @param nonZero
+     *            true to count only the paths leading to a value other than 0
+     * @param memo
+     *            the number of paths of the functions already visited
+     * @return the number of paths
+     */
+    private double countPaths(final int h, final boolean nonZero,
+            final Map<Integer, Double> memo) {
+        if (this.isConst(h)) {
+            return (!nonZero || this.val(h) != 0) ? 1 : 0;
+        }
+        Double known = memo.get(h);
+        if (known != null) {
+            return known;
+        }
+        int var = this.top(h);
+        double count = this.countPaths(this.thenOf(h, var), nonZero, memo)
+                + this.countPaths(this.elseOf(h, var), nonZero, memo);
+        memo.put(h, count);
+        return count;
+    }
+
+    @Override
+    public final double findMax(final long node) {
+        return this.findExtremum(this.handle(node), true,
+                new HashMap<Integer, Double>());
+    }
+
+    @Override
+    public final double findMin(final long node) {
+        return this.findExtremum(this.handle(node), false,
+                new HashMap<Integer, Double>());
+    }
+
+    /**
+     * Finds the greatest or the smallest value of a function.
+     * @param h
+     *            the function
+     * @param max
+     *            true for the greatest value
+     * @param memo
+     *            the extremum of the functions already visited
+     * @return the extremum
+     */
+    private double findExtremum(final int h, final boolean max,
+            final Map<Integer, Double> memo) {
+        if (this.isConst(h)) {
+            return this.val(h);
+        }
+        Double known = memo.get(h);
+        if (known != null) {
+            return known;
+        }
+        int var = this.top(h);
+        double t = this.findExtremum(this.thenOf(h, var), max, memo);
+        double e = this.findExtremum(this.elseOf(h, var), max, memo);
+        double extremum = max ? Math.max(t, e) : Math.min(t, e);
+        memo.put(h, extremum);
+        return extremum;
+    }
+
+    @Override
+    public final boolean isConstant(final long node) {
+        return this.isConst(this.handle(node));
+    }
+
+    @Override
+    public final boolean isComplemented(final long node) {
+        return (this.handle(node) & 1) != 0;
+    }
+
+    @Override
+    public final int getIndex(final long node) {
+        return this.top(this.handle(node));
+    }
+
+    @Override
+    public final long getThenChild(final long node) {
+        int h = this.handle(node);
+        return this.thenOf(h, this.top(h));
+    }
+
+    @Override
+    public final long getElseChild(final long node) {
+        int h = this.handle(node);
+        return this.elseOf(h, this.top(h));
+    }
+
+    @Override
+    public final double getConstValue(final long node) {
+        int h = this.handle(node);
+        if (!this.isConst(h)) {
+            throw new IllegalArgumentException("Not a constant : " + node);
+        }
+        return this.val(h);
+    }
+
+    /**
+     * The constants are shared, so the node is left unchanged and the
+     * constant of the new value is returned.
+     */
+    @Override
+    public final long setConstValue(final double d, final long node) {
+        this.handle(node);
+        return this.addConst(d);
+    }
+
+    @Override
+    public final void drawMtbdd(final long node, final String filename) {
+        int root = this.handle(node);
+        PrintStream out = System.out;
+        if (filename != null) {
+            try {
+                out = new PrintStream(filename);
+            } catch (FileNotFoundException e) {
+                Model.LOGGER.log(Level.WARNING, "Cannot write " + filename, e);
+                return;
+            }
+        }
+        out.println("digraph mtbdd {");
+        out.println("  root [shape=none, label=\"\"];");
+        out.println("  root -> n" + (root >>> 1) + this.edgeStyle(root, ""));
+        boolean[] visited = new boolean[this.used];
+        int[] stack = new int[] {root >>> 1 };
+        int top = 1;
+        while (top > 0) {
+            int id = stack[--top];
+            if (visited[id]) {
+                continue;
+            }
+            visited[id] = true;
+            if (this.index[id] == CONST_INDEX) {
+                out.println("  n" + id + " [shape=box, label=\""
+                        + this.value[id] + "\"];");
+                continue;
+            }
+            out.println("  n" + id + " [label=\"x" + this.index[id] + "\"];");
+            out.println("  n" + id + " -> n" + (this.thenEdge[id] >>> 1)
+                    + this.edgeStyle(this.thenEdge[id], ""));
+            out.println("  n" + id + " -> n" + (this.elseEdge[id] >>> 1)
+                    + this.edgeStyle(this.elseEdge[id], "dashed"));
+            if (top + 2 > stack.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2 + 2);
+            }
+            stack[top++] = this.thenEdge[id] >>> 1;
+            stack[top++] = this.elseEdge[id] >>> 1;
+        }
+        out.println("}");
+        if (out != System.out) {
+            out.close();
+        }
+    }
+
+    /**
+     * Formats the attributes of an edge.
+     * @param h
+     *            the handle of the edge
+     * @param style
+     *            the style of the edge, empty for the default one
+     * @return the attributes
+     */
+    private String edgeStyle(final int h, final String style) {
+        String attributes = style.isEmpty() ? "" : "style=" + style;
+        if ((h & 1) != 0) {
+            attributes += (attributes.isEmpty() ? "" : ", ")
+                    + "arrowhead=odot";
+        }
+        return attributes.isEmpty() ? ";" : " [" + attributes + "];";
+    }
+}
@@ -1,16 +1,21 @@
 package ca.polymtl.crac.tpot.mtbdd;
 
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.logging.Level;
 
 import net.jautomata.rationals.Automaton;
 import net.jautomata.rationals.PSymbol;
 import net.jautomata.rationals.Transition;
 import net.jautomata.rationals.transformations.Complement;
+import net.jautomata.rationals.transformations.EpsilonTransitionRemover;
 
+import ca.polymtl.crac.tpot.model.Model;
 import ca.polymtl.crac.tpot.model.Opacity;
+import ca.polymtl.crac.tpot.solver.AbstractIterativeSolver;
 
 /**
  * @author Olivier Bachard
@@ -19,13 +24,33 @@ public class Mtbdd {
 
     private static int a = 0;
 
-    // Load the dynamic library that manipulate Mtbdds
+    /**
+     * System property choosing the engine : "java" to use the Java engine even
+     * if the native library is available.
+     */
+    public static final String ENGINE_PROPERTY = "tpot.mtbdd.engine";
+
+    /**
+     * The engine running the operations on the mtbdds. It is not thread-safe :
+     * it is only used while holding the lock of this class, as
+     * {@link #computeLpo(Opacity)} does.
+     */
+    private static volatile MtbddEngine engine;
+
+    // Load the dynamic library that manipulate Mtbdds, or fall back on the
+    // Java engine
     static {
-        try {
-            System.loadLibrary("MtbddBis");
-        } catch (UnsatisfiedLinkError e) {
-            System.out.println(e);
-            System.exit(1);
+        if ("java".equals(System.getProperty(ENGINE_PROPERTY))) {
+            engine = new JavaMtbddEngine();
+        } else {
+            try {
+                System.loadLibrary("MtbddBis");
+                engine = new NativeMtbddEngine();
+            } catch (UnsatisfiedLinkError e) {
+                Model.LOGGER.log(Level.INFO, "Native library MtbddBis not "
+                        + "available, using the Java mtbdd engine");
+                engine = new JavaMtbddEngine();
+            }
         }
     }
 
@@ -136,27 +161,42 @@ public class Mtbdd {
         }
     }
 
+    /**
+     * Wraps the result of an operation, referencing it. The mtbdds built by
+     * the static methods of this class are kept in the fields of the automata
+     * and of their transitions, so they must survive the garbage collection
+     * of the engine, which frees the nodes not reachable from a referenced
+     * one.
+     * @param node
+     *            the result of an operation
+     * @return the referenced node
+     */
+    private static MtbddNode referenced(final long node) {
+        engine.ref(node);
+        return new MtbddNode(node);
+    }
+
     public static MtbddNode addComputeCube(final long[] dd) {
-        return new MtbddNode(Nat_addComputeCube(dd));
+        return referenced(engine.addComputeCube(dd));
     }
 
     public static MtbddNode addConst(final double value) {
-        return new MtbddNode(Nat_addConst(value));
+        return referenced(engine.addConst(value));
     }
 
     public static MtbddNode addExistAbstract(final MtbddNode aIn,
             final MtbddNode cube) {
-        return new MtbddNode(Nat_addExistAbstract(aIn.getPointer(),
+        return referenced(engine.addExistAbstract(aIn.getPointer(),
                 cube.getPointer()));
     }
 
     public static MtbddNode addIthVar(final int index) {
-        return new MtbddNode(Nat_addIthVar(index));
+        return referenced(engine.addIthVar(index));
     }
 
     public static MtbddNode addOrAbstract(final MtbddNode aIn,
             final MtbddNode cube) {
-        return new MtbddNode(Nat_addOrAbstract(aIn.getPointer(),
+        return referenced(engine.addOrAbstract(aIn.getPointer(),
                 cube.getPointer()));
     }
 
@@ -326,61 +366,72 @@ public class Mtbdd {
     }
 
     /**
-     * Compute the liberal opacity symbolically.
+     * Compute the liberal opacity symbolically. An observation reveals the
+     * predicate if the product of the system, the observation and the
+     * complement of the predicate (or the predicate itself) has an empty
+     * language ; its probability is then computed by a symbolic power
+     * iteration on the product of the system and the observation.
+     * <p>
+     * The engine is shared by all the threads, and reinitialized by each
+     * computation : the computations are serialized on this class.
      * @param opacity
      *            the opacity object representing the problem to solve
-     * @return TODO
+     * @return the liberal opacity
      */
     public static double computeLpo(final Opacity opacity) {
+        return computeLpo(opacity,
+                AbstractIterativeSolver.DEFAULT_MAX_ITERATIONS);
+    }
+
+    /**
+     * Compute the liberal opacity symbolically, with a maximum number of
+     * iterations for each power iteration. A power iteration stopped before
+     * reaching its tolerance is reported by {@link Opacity#isConverged()}.
+     * @param opacity
+     *            the opacity object representing the problem to solve
+     * @param maxIterations
+     *            the maximum number of iterations of each power iteration
+     * @return the liberal opacity
+     */
+    public static synchronized double computeLpo(final Opacity opacity,
+            final int maxIterations) {
         // intialisation of the manager
-        Mtbdd.Nat_manager_init();
+        engine.init();
+        engine.enableGarbageCollection();
 
-        // Build the Mtbdd representing Pi<
+        // Build the Mtbdds representing Pi
         Mtbdd piUnprob = new Mtbdd(opacity.getAutomaton(), false);
-
-        // ------------------------------------------------------//
-        // BEGINNING OF THE MAIN ALGORITHM //
-        // ------------------------------------------------------//
-
-        // Variables needed for the observation classes
-
-        List<MtbddTransition> piAoTransitions = new LinkedList<>();         // Pi||Ao
-        // transitions
-        List<MtbddTransition> piAoPhiTransitions = new LinkedList<>();      // (Pi||Ao)||Phi
-        // transitions
-        List<MtbddTransition> piAoPhiCompTransitions = new LinkedList<>();    // (Pi||Ao)||PhiComp
-        // transitions
-
-        MtbddNode cubeWithPhi;     // the mtbddnode representing the cube for phi
-        MtbddNode cubeWithPhiComp;     // the mtbddnode representing the cube for
-        // phi complement
+        Mtbdd piProb = new Mtbdd(opacity.getAutomaton(), true);
 
         // The value of liberal opacity of the automaton
-        // =============================================
-        double lpsoBis = 0;
-
-        Iterator<Automaton> itObs = opacity.getObs().iterator();
+        double lpso = 0;
 
         // For each observation
-        while (itObs.hasNext()) {
-            // System.out.println("\nObservation n°" + m + " :");
-            // System.out.println("----------------------");
-            Automaton observation = itObs.next();
-
-            // ==========================================================================//
-            // Build the Mtbdd representing Phi and Phi complement //
-            // ==========================================================================//
+        for (Automaton o : opacity.getObs()) {
+            // the labels are encoded as variables, so the epsilon transitions
+            // of the observation are removed first
+            Automaton observation = new EpsilonTransitionRemover()
+                    .transform(o);
+
+            // Build the Mtbdds representing Phi and Phi complement, over the
+            // alphabet of the observation. Both complements must be taken
+            // over the same alphabet, otherwise the complement of the
+            // complement also accepts the words using the letters the
+            // predicate does not use.
+            Set<Object> alphabet = new HashSet<>(observation.alphabet());
+            alphabet.addAll(opacity.getPhi().alphabet());
 
             Complement complement = new Complement();
+            complement.setAlphabet(alphabet);
             Automaton phiComplementTemp = complement
                     .transform(opacity.getPhi());
 
             Complement complementBis = new Complement();
-            complementBis.setAlphabet(observation.alphabet());
+            complementBis.setAlphabet(alphabet);
             Automaton phiAutomaton = complementBis.transform(phiComplementTemp);
 
             Complement complementTer = new Complement();
-            complementTer.setAlphabet(observation.alphabet());
+            complementTer.setAlphabet(alphabet);
             Automaton phiComp = complementTer.transform(opacity.getPhi());
             Mtbdd phi = new Mtbdd(phiAutomaton, false);
             Mtbdd phiComplement = new Mtbdd(phiComp, false);
@@ -389,304 +440,105 @@ public class Mtbdd {
             Mtbdd obs = new Mtbdd(observation, false);
 
             // The boolean function representing Pi||Ao
-            // ------------------------------------------------------------------------------------
-            piAoTransitions.clear();
-            piAoTransitions = Mtbdd.SyncProductUnprob(
+            List<MtbddTransition> piAoTransitions = Mtbdd.SyncProductUnprob(
                     piUnprob.getTransitions(), obs.getTransitions(),
                     obs.getLabels());
 
-            // Language inclusion with phi
-            // =====================================================================================================================
-
-            // The boolean function representing (Pi||Ao)||phi
-            // ------------------------------------------------------------------------------------
-            piAoPhiTransitions.clear();
-            piAoPhiTransitions = Mtbdd.SyncProductUnprob(piAoTransitions,
-                    phi.getTransitions(), phi.getLabels());
-            // piAoPhiTransitions =
-            // Mtbdd.SyncProductUnprob(obs.getTransitions(),
-            // phi.getTransitions(), phi.getLabels());
-            MtbddNode piAoPhi = Mtbdd
-                    .buildMtbddFromTransitionsUnprob(piAoPhiTransitions);
-
-            // Get the initials states of the whole automaton (Pi||Ao)||phi
-            // -------------------------------------------------------------------------------------
-            MtbddNode initials = Mtbdd.mtbddAnd(
-                    obs.getInitialMtbdd(),
-                    Mtbdd.mtbddAnd(phi.getInitialMtbdd(),
-                            piUnprob.getInitialMtbdd()));
-            MtbddNode finals = Mtbdd.mtbddAnd(
-                    obs.getTerminalMtbdd(),
-                    Mtbdd.mtbddAnd(phi.getTerminalMtbdd(),
-                            piUnprob.getTerminalMtbdd()));
-            // MtbddNode initials = Mtbdd.mtbddAnd(obs.getInitialMtbdd(),
-            // phi.getInitialMtbdd());
-            // MtbddNode finals =
-            // Mtbdd.mtbddAnd(obs.getTerminalMtbdd(),phi.getTerminalMtbdd());
-
-            // Get the variables we need for the cube with phi
-            // -------------------------------------------------------------------------------------
-            long[] cubeVarsWithPhi = Mtbdd.builCube(piUnprob.getxVars(),
-                    obs.getxVars(), phi.getxVars());
-            // long cubeVarsWithPhi[] = Mtbdd.buildCube(obs.getxVars(),
-            // phi.getxVars());
-            cubeWithPhi = Mtbdd.addComputeCube(cubeVarsWithPhi); 	// Compute the
-                                                                 // cube
-
-            // Compute o in Phi
-            // -------------------------------------------------------------------------------------
-            try {
-                if (piAoPhi == null
-                        || Mtbdd.isLanguageEmpty(piAoPhi, initials, finals,
-                                cubeWithPhi, null)) {
-
-                    Mtbdd piProb = new Mtbdd(opacity.getAutomaton(), true);
-
-                    List<MtbddTransition> oPiProbT = new LinkedList<>();
-                    oPiProbT = Mtbdd.SyncProduct(piProb.getTransitions(),
-                            obs.getTransitions(), obs.getLabels());
-
-                    MtbddNode oPiProb = Mtbdd
-                            .buildMtbddFromTransitions(oPiProbT);
-
-                    MtbddNode oPiProbInitials = Mtbdd.mtbddAnd(
-                            piProb.getInitialMtbdd(), obs.getInitialMtbdd());
-                    MtbddNode oPiProbFinals = Mtbdd.mtbddAnd(
-                            piProb.getTerminalMtbdd(), obs.getTerminalMtbdd());
-
-                    long[] oPiProbCubeVars = Mtbdd.buildCube(piProb.getxVars(),
-                            obs.getxVars());
-                    MtbddNode oPiProbCube = Mtbdd
-                            .addComputeCube(oPiProbCubeVars);
-
-                    lpsoBis = Mtbdd.computeProbability(oPiProb,
-                            oPiProbInitials, oPiProbFinals, oPiProbCube,
-                            lpsoBis);
-
-                }
-            } catch (Exception e) {
-                System.out.println("Error -- " + e);
-            }
-
-            // Language inclusion with phi complement
-            // =====================================================================================================================
-
-            // The boolean function representing (Pi||Ao)||phiComplement
-            // ------------------------------------------------------------------------------------
-            piAoPhiCompTransitions.clear();
-            piAoPhiCompTransitions = Mtbdd.SyncProductUnprob(piAoTransitions,
-                    phiComplement.getTransitions(), phiComplement.getLabels());
-            // piAoPhiCompTransitions =
-            // Mtbdd.SyncProductUnprob(obs.getTransitions(),
-            // phiComplement.getTransitions(), phiComplement.getLabels());
-            MtbddNode piAoPhiComp = Mtbdd
-                    .buildMtbddFromTransitionsUnprob(piAoPhiCompTransitions);
-
-            // Get the initials states of the whole automaton
-            // (Pi||Ao)||phiComplement
-            // -------------------------------------------------------------------------------------
-            MtbddNode initialsWithPhiComp = Mtbdd.mtbddAnd(
-                    obs.getInitialMtbdd(),
-                    Mtbdd.mtbddAnd(phiComplement.getInitialMtbdd(),
-                            piUnprob.getInitialMtbdd()));
-            MtbddNode finalsWithPhiComp = Mtbdd.mtbddAnd(
-                    obs.getTerminalMtbdd(),
-                    Mtbdd.mtbddAnd(phiComplement.getTerminalMtbdd(),
-                            piUnprob.getTerminalMtbdd()));
-            // MtbddNode initialsWithPhiComp =
-            // Mtbdd.mtbddAnd(obs.getInitialMtbdd(),
-            // phiComplement.getInitialMtbdd());
-            // MtbddNode finalsWithPhiComp =
-            // Mtbdd.mtbddAnd(obs.getTerminalMtbdd(),phiComplement.getTerminalMtbdd());
-
-            // Get the variables we need for the cube with phi complement
-            // -------------------------------------------------------------------------------------
-            long[] cubeVarsWithPhiComp = Mtbdd.builCube(piUnprob.getxVars(),
-                    obs.getxVars(), phiComplement.getxVars());
-            // long cubeVarsWithPhiComp[] = Mtbdd.buildCube(obs.getxVars(),
-            // phiComplement.getxVars());
-            cubeWithPhiComp = Mtbdd.addComputeCube(cubeVarsWithPhiComp);	// Compute
-                                                                         // the
-                                                                         // cube
-
-            // Compute o in Phi complement
-            // -------------------------------------------------------------------------------------
-            try {
-                if (piAoPhiComp == null
-                        || Mtbdd.isLanguageEmpty(piAoPhiComp,
-                                initialsWithPhiComp, finalsWithPhiComp,
-                                cubeWithPhiComp, null)) {
-
-                    Mtbdd piProb = new Mtbdd(opacity.getAutomaton(), true);
-
-                    List<MtbddTransition> oPiProbT = new LinkedList<>();
-                    oPiProbT = Mtbdd.SyncProduct(piProb.getTransitions(),
-                            obs.getTransitions(), obs.getLabels());
-
-                    MtbddNode oPiProb = Mtbdd
-                            .buildMtbddFromTransitions(oPiProbT);
-
-                    MtbddNode oPiProbInitials = Mtbdd.mtbddAnd(
-                            obs.getInitialMtbdd(), piProb.getInitialMtbdd());
-                    MtbddNode oPiProbFinals = Mtbdd.mtbddAnd(
-                            obs.getTerminalMtbdd(), piProb.getTerminalMtbdd());
-
-                    long[] oPiProbCubeVars = Mtbdd.buildCube(piProb.getxVars(),
-                            obs.getxVars());
-                    MtbddNode oPiProbCube = Mtbdd
-                            .addComputeCube(oPiProbCubeVars);
-
-                    lpsoBis = Mtbdd.computeProbability(oPiProb,
-                            oPiProbInitials, oPiProbFinals, oPiProbCube,
-                            lpsoBis);
+            // o is included in Phi if (Pi||Ao)||PhiComplement is empty, and
+            // conversely
+            if (Mtbdd.isProductEmpty(piUnprob, obs, piAoTransitions,
+                    phiComplement)
+                    || Mtbdd.isProductEmpty(piUnprob, obs, piAoTransitions,
+                            phi)) {
+                List<MtbddTransition> oPiProbT = Mtbdd.SyncProduct(
+                        piProb.getTransitions(), obs.getTransitions(),
+                        obs.getLabels());
+                MtbddNode oPiProb = oPiProbT.isEmpty() ? null : Mtbdd
+                        .buildMtbddFromTransitions(oPiProbT);
+
+                MtbddNode oPiProbInitials = Mtbdd.mtbddAnd(
+                        piProb.getInitialMtbdd(), obs.getInitialMtbdd());
+                MtbddNode oPiProbFinals = Mtbdd.mtbddAnd(
+                        piProb.getTerminalMtbdd(), obs.getTerminalMtbdd());
+
+                SymbolicReachability reachability = new SymbolicReachability(
+                        oPiProb, piProb, obs);
+                reachability.setMaxIterations(maxIterations);
+                lpso += reachability.computeProbability(oPiProbInitials,
+                        oPiProbFinals);
+                if (!reachability.isConverged()) {
+                    opacity.reportNotConverged();
                 }
-            } catch (Exception e) {
-                System.out.println("Error -- " + e);
-            }
-
-            // Deref Cudd variables
-            try {
-                Mtbdd.Nat_RecursiveDeref(piAoPhi.getPointer());
-                Mtbdd.Nat_RecursiveDeref(piAoPhiComp.getPointer());
-            } catch (Exception e) {
-                System.out.println("Error -- " + e);
+                reachability.release();
             }
-
-            Mtbdd.Nat_RecursiveDeref(initials.getPointer());
-            Mtbdd.Nat_RecursiveDeref(finals.getPointer());
-            Mtbdd.Nat_RecursiveDeref(initialsWithPhiComp.getPointer());
-            Mtbdd.Nat_RecursiveDeref(finalsWithPhiComp.getPointer());
-
         }
-        // End while
-
-        Mtbdd.Nat_manager_quit();
-        System.out.println("L'opacité du système lspoBis est: " + lpsoBis);
-        return lpsoBis;
 
+        engine.quit();
+        return lpso;
     }
 
     /**
-     * Compute the probability for a certain observation class. It takes the
-     * mtbdd representing Pi||Ao and look if there exists a way from the initial
-     * state to a terminal state. If it is the case, the probability is added.
-     * @param tree
-     * @param initials
-     * @param finals
-     * @param cube
-     * @param prob
-     * @return the value of the probability
+     * Checks whether the synchronised product of Pi||Ao with another
+     * automaton has an empty language.
+     * @param pi
+     *            the mtbdd of the system, without probabilities
+     * @param obs
+     *            the mtbdd of the observation
+     * @param piAoTransitions
+     *            the transitions of Pi||Ao
+     * @param other
+     *            the mtbdd of the other automaton
+     * @return true if no word is accepted by the three automata
      */
-    public static double computeProbability(final MtbddNode tree,
-            final MtbddNode initials, final MtbddNode finals,
-            final MtbddNode cube, double prob) {
-        MtbddNode txy = Mtbdd.mtbddAnd(tree, initials);
-        MtbddNode extract = Mtbdd.addExistAbstract(txy, cube);
-
-        // if the state is a final state
-        if (extract.isConstant()) {
-            return prob;
-        } else if (extract.isFinal(finals)) {
-            MtbddNode temp = Mtbdd.mtbddAnd(extract, finals);
-            LinkedList<Double> probs = new LinkedList<>();
-            probs = getConstValue(temp);
-            for (int i = 0; i < probs.size(); i++) {
-                prob += probs.get(i);
-            }
+    private static boolean isProductEmpty(final Mtbdd pi, final Mtbdd obs,
+            final List<MtbddTransition> piAoTransitions, final Mtbdd other) {
+        List<MtbddTransition> transitions = Mtbdd.SyncProductUnprob(
+                piAoTransitions, other.getTransitions(), other.getLabels());
+        MtbddNode product = transitions.isEmpty() ? null : Mtbdd
+                .buildMtbddFromTransitionsUnprob(transitions);
 
-            MtbddNode convExtract = extract.convertTree();
-            Mtbdd.Nat_RecursiveDeref(extract.getPointer());
-            return computeProbability(tree, convExtract, finals, cube, prob);
-        } else {
-            MtbddNode convExtract = extract.convertTree();
-            Mtbdd.Nat_RecursiveDeref(extract.getPointer());
-            return computeProbability(tree, convExtract, finals, cube, prob);
-        }
+        MtbddNode initials = Mtbdd.mtbddAnd(obs.getInitialMtbdd(),
+                Mtbdd.mtbddAnd(other.getInitialMtbdd(), pi.getInitialMtbdd()));
+        MtbddNode finals = Mtbdd.mtbddAnd(obs.getTerminalMtbdd(), Mtbdd
+                .mtbddAnd(other.getTerminalMtbdd(), pi.getTerminalMtbdd()));
+
+        SymbolicReachability reachability = new SymbolicReachability(
+                product, pi, obs, other);
+        boolean empty = reachability.isLanguageEmpty(initials, finals);
+        reachability.release();
+        return empty;
     }
 
     public static double countPath(final MtbddNode node) {
-        return Nat_CountPath(node.getPointer());
+        return engine.countPath(node.getPointer());
     }
 
     public static double countPathsToNonZero(final MtbddNode node) {
-        return Nat_CountPathsToNonZero(node.getPointer());
+        return engine.countPathsToNonZero(node.getPointer());
     }
 
     public static double findMax(final MtbddNode node) {
-        return Nat_findMax(node.getPointer());
-    }
-
-    /**
-     * @param node
-     *            a mtbdd
-     * @return look through the mtbdd and get all the values of the leafs
-     */
-    public static LinkedList<Double> getConstValue(final MtbddNode node) {
-        LinkedList<Double> list = new LinkedList<>();
-        if (!node.isConstant()) {
-            for (Double d : getConstValue(node.getThenChild())) {
-                list.add(d);
-            }
-            for (Double d : getConstValue(node.getElseChild())) {
-                list.add(d);
-            }
-            return list;
-        }
-        list.add(node.getConstValue());
-        return list;
-    }
-
-    /**
-     * Compute the inclusion of languages. It takes the mtbdd representing
-     * (pi||Ao)Phi and look if there exists a way from the initial state bis a
-     * terminal state. If it is the case, the language is not empty.
-     * @param tree
-     * @param initials
-     * @param finals
-     * @param cube
-     * @param prev
-     * @return true if the language is empty, false otherwise
-     */
-    public static boolean isLanguageEmpty(final MtbddNode tree,
-            final MtbddNode initials, final MtbddNode finals,
-            final MtbddNode cube, MtbddNode prev) {
-        MtbddNode txy = Mtbdd.mtbddAnd(tree, initials);
-        MtbddNode extract = Mtbdd.addOrAbstract(txy, cube);
-
-        if (prev != null) {
-            // If the boolean And return a constant null, it means that extract
-            // and prev are the same
-            MtbddNode fixPoint = mtbddAnd(extract, mtbddNot(prev));
-            if (fixPoint.isConstant() && fixPoint.getConstValue() == 0) {
-                // Fix point is reached
-                return prev.isFinal(finals);
-            }
-        }
-
-        // if the state is a final state
-        if (extract.isFinal(finals)) {
-            return false;
-        }
-        prev = new MtbddNode(extract.getPointer());
-        MtbddNode convExtract = extract.convertTreeUnprob();
-        Mtbdd.Nat_RecursiveDeref(txy.getPointer());
-        return isLanguageEmpty(tree, convExtract, finals, cube, prev);
+        return engine.findMax(node.getPointer());
     }
 
     public static MtbddNode mtbddAnd(final MtbddNode aIn, final MtbddNode b) {
-        return new MtbddNode(Nat_And(aIn.getPointer(), b.getPointer()));
+        return referenced(engine.and(aIn.getPointer(), b.getPointer()));
     }
 
     public static MtbddNode mtbddNot(final MtbddNode aIn) {
-        return new MtbddNode(Nat_Not(aIn.getPointer()));
+        return referenced(engine.not(aIn.getPointer()));
     }
 
     public static MtbddNode mtbddOr(final MtbddNode aIn, final MtbddNode b) {
-        return new MtbddNode(Nat_Or(aIn.getPointer(), b.getPointer()));
+        return referenced(engine.or(aIn.getPointer(), b.getPointer()));
     }
 
     public static MtbddNode mtbddPlus(final MtbddNode aIn, final MtbddNode b) {
-        return new MtbddNode(Nat_Plus(aIn.getPointer(), b.getPointer()));
+        return referenced(engine.plus(aIn.getPointer(), b.getPointer()));
+    }
+
+    public static MtbddNode mtbddXor(final MtbddNode aIn, final MtbddNode b) {
+        return referenced(engine.xor(aIn.getPointer(), b.getPointer()));
     }
 
     public static native long Nat_addComputeCube(final long[] dd);
@@ -718,7 +570,7 @@ public class Mtbdd {
     public static native double Nat_findMin(final long node);
 
     public static double Nat_findMin(final MtbddNode node) {
-        return Nat_findMin(node.getPointer());
+        return engine.findMin(node.getPointer());
     }
 
     public static native void Nat_freeTree();
@@ -746,11 +598,40 @@ public class Mtbdd {
     public static native long Nat_Xor(final long dd1, final long dd2);
 
     public static MtbddNode readLogicZero() {
-        return new MtbddNode(Nat_ReadLogicZero());
+        return referenced(engine.readLogicZero());
     }
 
     public static MtbddNode readOne() {
-        return new MtbddNode(Nat_readOne());
+        return referenced(engine.readOne());
+    }
+
+    /**
+     * Increases the reference count of a node.
+     * @param node
+     *            the node
+     */
+    public static void ref(final MtbddNode node) {
+        engine.ref(node.getPointer());
+    }
+
+    /**
+     * Decreases the reference count of a node.
+     * @param node
+     *            the node
+     */
+    public static void recursiveDeref(final MtbddNode node) {
+        engine.recursiveDeref(node.getPointer());
+    }
+
+    /**
+     * Writes a mtbdd in the dot format.
+     * @param node
+     *            the mtbdd
+     * @param filename
+     *            the output file, or null to write on the standard output
+     */
+    public static void drawMtbdd(final MtbddNode node, final String filename) {
+        engine.drawMtbdd(node.getPointer(), filename);
     }
 
     /**
@@ -824,8 +705,7 @@ public class Mtbdd {
                 // the result the list of syncMtbdd transitions
                 syncMtbdd.add(new MtbddTransition(label));
                 syncMtbdd.getLast().setTransition(
-                        new MtbddNode(Mtbdd.Nat_And(n_Mtbdd1.getPointer(),
-                                n_Mtbdd2.getPointer())));
+                        mtbddAnd(n_Mtbdd1, n_Mtbdd2));
             }
         }
 
@@ -902,8 +782,7 @@ public class Mtbdd {
                 // the result the list of syncMtbdd transitions
                 syncMtbdd.add(new MtbddTransition(label));
                 syncMtbdd.getLast().setTransition(
-                        new MtbddNode(Mtbdd.Nat_And(n_Mtbdd1.getPointer(),
-                                n_Mtbdd2.getPointer())));
+                        mtbddAnd(n_Mtbdd1, n_Mtbdd2));
             }
         }
 
@@ -931,6 +810,24 @@ public class Mtbdd {
         }
     }
 
+    /**
+     * Getter.
+     * @return the engine running the operations on the mtbdds
+     */
+    public static MtbddEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Setter. The mtbdds created by the previous engine must not be used
+     * anymore.
+     * @param engineIn
+     *            the new engine
+     */
+    public static synchronized void setEngine(final MtbddEngine engineIn) {
+        engine = engineIn;
+    }
+
     public final MtbddNode getInitialMtbdd() {
         return this.initialMtbdd;
     }
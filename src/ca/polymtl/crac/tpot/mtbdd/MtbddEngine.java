@@ -0,0 +1,305 @@
+package ca.polymtl.crac.tpot.mtbdd;
+
+/**
+ * The operations on multi-terminal binary decision diagrams used by the
+ * symbolic computations. The diagrams are designated by opaque handles, which
+ * are only meaningful to the engine which created them. As in CUDD, the
+ * results of the operations are not referenced : they stay valid until the
+ * next garbage collection unless {@link #ref(long)} is called on them.
+ * @author Daniel Lefevre
+ */
+public interface MtbddEngine {
+
+    /**
+     * Index returned by {@link #getIndex(long)} for a constant node.
+     */
+    int CONST_INDEX = Integer.MAX_VALUE;
+
+    /**
+     * Initializes the manager. All previously created diagrams and variables
+     * are discarded.
+     */
+    void init();
+
+    /**
+     * Releases the manager.
+     */
+    void quit();
+
+    /**
+     * Enables the automatic garbage collection of the unreferenced nodes.
+     */
+    void enableGarbageCollection();
+
+    /**
+     * Frees all the nodes which are not referenced.
+     */
+    void freeTree();
+
+    /**
+     * Increases the reference count of a node.
+     * @param node
+     *            the node
+     */
+    void ref(long node);
+
+    /**
+     * Decreases the reference count of a node.
+     * @param node
+     *            the node
+     */
+    void recursiveDeref(long node);
+
+    /**
+     * Getter.
+     * @return the constant 1
+     */
+    long readOne();
+
+    /**
+     * Getter.
+     * @return the constant 0
+     */
+    long readLogicZero();
+
+    /**
+     * Returns the constant diagram of a value.
+     * @param value
+     *            the value
+     * @return the constant
+     */
+    long addConst(double value);
+
+    /**
+     * Returns the projection function of a variable, creating the variables
+     * up to this index if needed.
+     * @param index
+     *            the index of the variable
+     * @return the diagram which is 1 if the variable is true, 0 otherwise
+     */
+    long addIthVar(int index);
+
+    /**
+     * Creates a new variable, after all the existing ones.
+     * @return the projection function of the new variable
+     */
+    long addNewVar();
+
+    /**
+     * Computes the product of two diagrams, which is the conjunction for 0-1
+     * diagrams.
+     * @param dd1
+     *            the first diagram
+     * @param dd2
+     *            the second diagram
+     * @return dd1 * dd2
+     */
+    long and(long dd1, long dd2);
+
+    /**
+     * Computes the disjunction of two diagrams, a value being true if it is
+     * not 0.
+     * @param dd1
+     *            the first diagram
+     * @param dd2
+     *            the second diagram
+     * @return 1 where dd1 or dd2 is not 0, 0 elsewhere
+     */
+    long or(long dd1, long dd2);
+
+    /**
+     * Computes the exclusive disjunction of two diagrams, a value being true
+     * if it is not 0.
+     * @param dd1
+     *            the first diagram
+     * @param dd2
+     *            the second diagram
+     * @return 1 where exactly one of dd1 and dd2 is not 0, 0 elsewhere
+     */
+    long xor(long dd1, long dd2);
+
+    /**
+     * Computes the complement of a diagram.
+     * @param dd
+     *            the diagram
+     * @return 1 where dd is 0, 0 elsewhere
+     */
+    long not(long dd);
+
+    /**
+     * Computes the sum of two diagrams.
+     * @param dd1
+     *            the first diagram
+     * @param dd2
+     *            the second diagram
+     * @return dd1 + dd2
+     */
+    long plus(long dd1, long dd2);
+
+    /**
+     * Computes the cube of some variables.
+     * @param vars
+     *            the projection functions of the variables
+     * @return the product of the variables
+     */
+    long addComputeCube(long[] vars);
+
+    /**
+     * Sums a diagram over the variables of a cube.
+     * @param dd
+     *            the diagram
+     * @param cube
+     *            the cube of the abstracted variables
+     * @return the sum of the cofactors of dd over the variables of the cube
+     */
+    long addExistAbstract(long dd, long cube);
+
+    /**
+     * Computes the disjunction of a 0-1 diagram over the variables of a cube.
+     * @param dd
+     *            the diagram
+     * @param cube
+     *            the cube of the abstracted variables
+     * @return the disjunction of the cofactors of dd over the variables of the
+     *         cube
+     */
+    long addOrAbstract(long dd, long cube);
+
+    /**
+     * Multiplies two diagrams and sums the product over the variables of a
+     * cube. With a matrix and a vector, it is the matrix-vector product.
+     * @param dd1
+     *            the first diagram
+     * @param dd2
+     *            the second diagram
+     * @param cube
+     *            the cube of the summed variables
+     * @return the sum of dd1 * dd2 over the variables of the cube
+     */
+    long addMatrixMultiply(long dd1, long dd2, long cube);
+
+    /**
+     * Renames the variables of a diagram.
+     * @param dd
+     *            the diagram
+     * @param permutation
+     *            the new index of each variable, the variables with a greater
+     *            index being left unchanged
+     * @return the diagram where each variable i is replaced by the variable
+     *         permutation[i]
+     */
+    long addPermute(long dd, int[] permutation);
+
+    /**
+     * Compares two diagrams.
+     * @param dd1
+     *            the first diagram
+     * @param dd2
+     *            the second diagram
+     * @param tolerance
+     *            the greatest allowed difference
+     * @return true if the difference between dd1 and dd2 is never greater
+     *         than the tolerance
+     */
+    boolean equalSupNorm(long dd1, long dd2, double tolerance);
+
+    /**
+     * Counts the paths of a diagram.
+     * @param node
+     *            the diagram
+     * @return the number of paths from the root to a constant
+     */
+    double countPath(long node);
+
+    /**
+     * Counts the paths of a diagram leading to a value other than 0.
+     * @param node
+     *            the diagram
+     * @return the number of paths from the root to a constant other than 0
+     */
+    double countPathsToNonZero(long node);
+
+    /**
+     * Finds the maximum of a diagram.
+     * @param node
+     *            the diagram
+     * @return the greatest constant of the diagram
+     */
+    double findMax(long node);
+
+    /**
+     * Finds the minimum of a diagram.
+     * @param node
+     *            the diagram
+     * @return the smallest constant of the diagram
+     */
+    double findMin(long node);
+
+    /**
+     * Getter.
+     * @param node
+     *            the node
+     * @return true if the node is a constant
+     */
+    boolean isConstant(long node);
+
+    /**
+     * Getter.
+     * @param node
+     *            the node
+     * @return true if the handle is a complemented edge
+     */
+    boolean isComplemented(long node);
+
+    /**
+     * Getter.
+     * @param node
+     *            the node
+     * @return the index of the variable of the node, {@link #CONST_INDEX} for
+     *         a constant
+     */
+    int getIndex(long node);
+
+    /**
+     * Getter.
+     * @param node
+     *            a node which is not a constant
+     * @return the cofactor of the node where its variable is true
+     */
+    long getThenChild(long node);
+
+    /**
+     * Getter.
+     * @param node
+     *            a node which is not a constant
+     * @return the cofactor of the node where its variable is false
+     */
+    long getElseChild(long node);
+
+    /**
+     * Getter.
+     * @param node
+     *            a constant node
+     * @return the value of the constant
+     */
+    double getConstValue(long node);
+
+    /**
+     * Replaces a constant by another one.
+     * @param value
+     *            the new value
+     * @param node
+     *            the constant to replace
+     * @return the new constant
+     */
+    long setConstValue(double value, long node);
+
+    /**
+     * Writes a diagram in the dot format.
+     * @param node
+     *            the diagram
+     * @param filename
+     *            the output file, or null to write on the standard output
+     */
+    void drawMtbdd(long node, String filename);
+}
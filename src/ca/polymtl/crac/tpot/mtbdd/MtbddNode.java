@@ -6,12 +6,17 @@ package ca.polymtl.crac.tpot.mtbdd;
 public class MtbddNode {
 
     /**
-     * A pointer to the C DdNode structure.
+     * A handle on the node, given by the engine of Mtbdd.
      */
     private long pointer;
 
+    /**
+     * Creates a new variable, referenced so that it is never garbage
+     * collected.
+     */
     public MtbddNode() {
-        this.pointer = Nat_CreateNode();
+        this.pointer = Mtbdd.getEngine().addNewVar();
+        Mtbdd.getEngine().ref(this.pointer);
     }
 
     public MtbddNode(long n) {
@@ -22,49 +27,16 @@ public class MtbddNode {
         this.pointer = n.getPointer();
     }
 
-    /**
-     * @return a mtbdd where all yi variables have been replaced by the xi
-     *         related variables, considering probability. It means that boolean
-     *         "Or" have been replaced by "Plus" operation.
-     */
-    public MtbddNode convertTree() {
-        if (!this.isConstant()) {
-            // If node is yi, it will return xi; because index are moved back a
-            // row.
-            MtbddNode n = Mtbdd.addIthVar(this.getIndex() - 1);
-            return Mtbdd.mtbddPlus(Mtbdd.mtbddAnd(n, this.getThenChild()
-                    .convertTree()), Mtbdd.mtbddAnd(Mtbdd.mtbddNot(n), this
-                    .getElseChild().convertTree()));
-        }
-        return this;
-    }
-
-    /**
-     * @return a mtbdd where all yi variables have been replaced by the xi
-     *         related variables, without considering probability.
-     */
-    public MtbddNode convertTreeUnprob() {
-        if (!this.isConstant()) {
-            // If node is yi, it will return xi; because index are moved back a
-            // row.
-            MtbddNode n = Mtbdd.addIthVar(this.getIndex() - 1);
-            return Mtbdd.mtbddOr(Mtbdd.mtbddAnd(n, this.getThenChild()
-                    .convertTreeUnprob()), Mtbdd.mtbddAnd(Mtbdd.mtbddNot(n),
-                    this.getElseChild().convertTreeUnprob()));
-        }
-        return this;
-    }
-
     public double getConstValue() {
-        return Nat_GetConstValue(this.pointer);
+        return Mtbdd.getEngine().getConstValue(this.pointer);
     }
 
     public MtbddNode getElseChild() {
-        return new MtbddNode(Nat_GetElseChild(this.pointer));
+        return new MtbddNode(Mtbdd.getEngine().getElseChild(this.pointer));
     }
 
     public int getIndex() {
-        return Nat_GetIndex(this.pointer);
+        return Mtbdd.getEngine().getIndex(this.pointer);
     }
 
     public long getPointer() {
@@ -72,15 +44,15 @@ public class MtbddNode {
     }
 
     public MtbddNode getThenChild() {
-        return new MtbddNode(Nat_GetThenChild(this.pointer));
+        return new MtbddNode(Mtbdd.getEngine().getThenChild(this.pointer));
     }
 
     public boolean isComplemented() {
-        return Nat_IsComplemented(this.pointer);
+        return Mtbdd.getEngine().isComplemented(this.pointer);
     }
 
     public boolean isConstant() {
-        return Nat_IsConstant(this.pointer);
+        return Mtbdd.getEngine().isConstant(this.pointer);
     }
 
     /**
@@ -93,13 +65,13 @@ public class MtbddNode {
      */
     public boolean isFinal(MtbddNode finals) {
         MtbddNode n1 = Mtbdd.mtbddAnd(this, finals);
-        Mtbdd.Nat_RecursiveDeref(n1.getPointer());
+        Mtbdd.recursiveDeref(n1);
         return !n1.isConstant();
     }
 
-    private native long Nat_CreateNode();
+    native long Nat_CreateNode();
 
-    private native double Nat_GetConstValue(long node);
+    native double Nat_GetConstValue(long node);
 
     public native long Nat_GetElseChild(long node);
 
@@ -114,7 +86,8 @@ public class MtbddNode {
     public native long Nat_setConstValue(double c, long node);
 
     public void setConstValue(double constValue) {
-        this.pointer = Nat_setConstValue(constValue, this.pointer);
+        this.pointer = Mtbdd.getEngine().setConstValue(constValue,
+                this.pointer);
     }
 
     public void setPointer(long pointerIn) {
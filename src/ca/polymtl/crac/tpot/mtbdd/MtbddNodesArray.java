@@ -36,15 +36,13 @@ public class MtbddNodesArray {
             DefaultState s = (DefaultState) state;
             MtbddNode n = Mtbdd.addConst(1);
             // MtbddNode n = new MtbddNode();
-            Mtbdd.Nat_RecursiveDeref(n.getPointer());
+            Mtbdd.recursiveDeref(n);
 
-            // Get the list of boolean representing the binary current state
-            s.completeBinaryTab(nbrNodes);
-            List<Boolean> start = new LinkedList<>(s.getBinaryTab());
-
-            for (int i = 0; i < start.size(); i++) {
-                // if the boolean value is true, we send the node
-                if (start.get(i)) {
+            // Read the bits of the current state, padded with binary zeros to
+            // the number of nodes
+            for (int i = 0; i < nbrNodes; i++) {
+                // if the bit is set, we send the node
+                if (s.getBinaryBit(i, nbrNodes)) {
                     n = Mtbdd.mtbddAnd(n, arr_nodes.getNodes().get(i));
                 }
                 // else we send the complement of the node
@@ -1,8 +1,5 @@
 package ca.polymtl.crac.tpot.mtbdd;
 
-import java.util.LinkedList;
-import java.util.List;
-
 import net.jautomata.rationals.Transition;
 import net.jautomata.rationals.DefaultStateFactory.DefaultState;
 
@@ -39,21 +36,11 @@ public class MtbddTransition {
         DefaultState st = (DefaultState) t.start();
         DefaultState en = (DefaultState) t.end();
 
-        // Complete the tab with binary zeros if the binary representation is to
-        // short
-        st.completeBinaryTab(nbrNodes);
-        // Get back the binary representation the start state
-        LinkedList<Boolean> start = new LinkedList<>(st.getBinaryTab());
-
-        // Complete the tab with binary zeros if the binary representation is to
-        // short
-        en.completeBinaryTab(nbrNodes);
-        // Get back the binary coding of the end state
-        List<Boolean> end = new LinkedList<>(en.getBinaryTab());
-
         // Add the start state to the transition node
+        // The bits of the states are read from their indexes, padded with
+        // binary zeros to the number of nodes.
         // For example, if the binary representation of the start state is 101,
-        // alias [true,false,true] in @start variable
+        // alias [true,false,true]
         // and nodes in startNodes are [x1,x2,x3]
         // the cudd representation of our transition node will be : transition =
         // x1.Not(x2).x3
@@ -63,8 +50,8 @@ public class MtbddTransition {
             this.transition = Mtbdd.addConst(1);
         }
 
-        for (int i = 0; i < start.size(); i++) {
-            if (start.get(i)) {
+        for (int i = 0; i < nbrNodes; i++) {
+            if (st.getBinaryBit(i, nbrNodes)) {
                 // if the boolean value is true, we send the node
                 this.transition = Mtbdd.mtbddAnd(this.transition, xVars
                         .getNodes().get(i));
@@ -75,8 +62,8 @@ public class MtbddTransition {
             }
         }
 
-        for (int i = 0; i < end.size(); i++) {
-            if (end.get(i)) {
+        for (int i = 0; i < nbrNodes; i++) {
+            if (en.getBinaryBit(i, nbrNodes)) {
                 // if the boolean value is true, we send the node
                 this.transition = Mtbdd.mtbddAnd(this.transition, yVars
                         .getNodes().get(i));
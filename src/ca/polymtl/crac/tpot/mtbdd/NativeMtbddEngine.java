@@ -0,0 +1,229 @@
+package ca.polymtl.crac.tpot.mtbdd;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Engine delegating to the native MtbddBis library, a wrapper around CUDD. The
+ * library must have been loaded before using this engine. The operations the
+ * library does not provide are composed from the ones it does.
+ * @author Daniel Lefevre
+ */
+public class NativeMtbddEngine implements MtbddEngine {
+
+    /**
+     * A node used to call the native methods of MtbddNode.
+     */
+    private final MtbddNode natives = new MtbddNode(0L);
+
+    @Override
+    public final void init() {
+        Mtbdd.Nat_manager_init();
+    }
+
+    @Override
+    public final void quit() {
+        Mtbdd.Nat_manager_quit();
+    }
+
+    @Override
+    public final void enableGarbageCollection() {
+        Mtbdd.Nat_enableGarbageCollection();
+    }
+
+    @Override
+    public final void freeTree() {
+        Mtbdd.Nat_freeTree();
+    }
+
+    @Override
+    public final void ref(final long node) {
+        Mtbdd.Nat_Ref(node);
+    }
+
+    @Override
+    public final void recursiveDeref(final long node) {
+        Mtbdd.Nat_RecursiveDeref(node);
+    }
+
+    @Override
+    public final long readOne() {
+        return Mtbdd.Nat_readOne();
+    }
+
+    @Override
+    public final long readLogicZero() {
+        return Mtbdd.Nat_ReadLogicZero();
+    }
+
+    @Override
+    public final long addConst(final double value) {
+        return Mtbdd.Nat_addConst(value);
+    }
+
+    @Override
+    public final long addIthVar(final int index) {
+        return Mtbdd.Nat_addIthVar(index);
+    }
+
+    @Override
+    public final long addNewVar() {
+        return this.natives.Nat_CreateNode();
+    }
+
+    @Override
+    public final long and(final long dd1, final long dd2) {
+        return Mtbdd.Nat_And(dd1, dd2);
+    }
+
+    @Override
+    public final long or(final long dd1, final long dd2) {
+        return Mtbdd.Nat_Or(dd1, dd2);
+    }
+
+    @Override
+    public final long xor(final long dd1, final long dd2) {
+        return Mtbdd.Nat_Xor(dd1, dd2);
+    }
+
+    @Override
+    public final long not(final long dd) {
+        return Mtbdd.Nat_Not(dd);
+    }
+
+    @Override
+    public final long plus(final long dd1, final long dd2) {
+        return Mtbdd.Nat_Plus(dd1, dd2);
+    }
+
+    @Override
+    public final long addComputeCube(final long[] vars) {
+        return Mtbdd.Nat_addComputeCube(vars);
+    }
+
+    @Override
+    public final long addExistAbstract(final long dd, final long cube) {
+        return Mtbdd.Nat_addExistAbstract(dd, cube);
+    }
+
+    @Override
+    public final long addOrAbstract(final long dd, final long cube) {
+        return Mtbdd.Nat_addOrAbstract(dd, cube);
+    }
+
+    @Override
+    public final long addMatrixMultiply(final long dd1, final long dd2,
+            final long cube) {
+        return Mtbdd.Nat_addExistAbstract(Mtbdd.Nat_And(dd1, dd2), cube);
+    }
+
+    @Override
+    public final long addPermute(final long dd, final int[] permutation) {
+        return this.permute(dd, permutation, new HashMap<Long, Long>());
+    }
+
+    /**
+     * Renames the variables of a diagram.
+     * @param dd
+     *            the diagram
+     * @param permutation
+     *            the new index of each variable
+     * @param memo
+     *            the diagrams already renamed
+     * @return the renamed diagram
+     */
+    private long permute(final long dd, final int[] permutation,
+            final Map<Long, Long> memo) {
+        if (this.natives.Nat_IsConstant(dd)) {
+            return dd;
+        }
+        Long known = memo.get(dd);
+        if (known != null) {
+            return known;
+        }
+        int var = this.natives.Nat_GetIndex(dd);
+        long x = Mtbdd.Nat_addIthVar((var < permutation.length)
+                ? permutation[var] : var);
+        long t = this.permute(this.natives.Nat_GetThenChild(dd), permutation,
+                memo);
+        long e = this.permute(this.natives.Nat_GetElseChild(dd), permutation,
+                memo);
+        long r = Mtbdd.Nat_Plus(Mtbdd.Nat_And(x, t),
+                Mtbdd.Nat_And(Mtbdd.Nat_Not(x), e));
+        memo.put(dd, r);
+        return r;
+    }
+
+    @Override
+    public final boolean equalSupNorm(final long dd1, final long dd2,
+            final double tolerance) {
+        long difference = Mtbdd.Nat_Plus(dd1,
+                Mtbdd.Nat_And(dd2, Mtbdd.Nat_addConst(-1)));
+        return Mtbdd.Nat_findMax(difference) <= tolerance
+                && -Mtbdd.Nat_findMin(difference) <= tolerance;
+    }
+
+    @Override
+    public final double countPath(final long node) {
+        return Mtbdd.Nat_CountPath(node);
+    }
+
+    @Override
+    public final double countPathsToNonZero(final long node) {
+        return Mtbdd.Nat_CountPathsToNonZero(node);
+    }
+
+    @Override
+    public final double findMax(final long node) {
+        return Mtbdd.Nat_findMax(node);
+    }
+
+    @Override
+    public final double findMin(final long node) {
+        return Mtbdd.Nat_findMin(node);
+    }
+
+    @Override
+    public final boolean isConstant(final long node) {
+        return this.natives.Nat_IsConstant(node);
+    }
+
+    @Override
+    public final boolean isComplemented(final long node) {
+        return this.natives.Nat_IsComplemented(node);
+    }
+
+    @Override
+    public final int getIndex(final long node) {
+        return this.natives.Nat_GetIndex(node);
+    }
+
+    @Override
+    public final long getThenChild(final long node) {
+        return this.natives.Nat_GetThenChild(node);
+    }
+
+    @Override
+    public final long getElseChild(final long node) {
+        return this.natives.Nat_GetElseChild(node);
+    }
+
+    @Override
+    public final double getConstValue(final long node) {
+        return this.natives.Nat_GetConstValue(node);
+    }
+
+    @Override
+    public final long setConstValue(final double value, final long node) {
+        return this.natives.Nat_setConstValue(value, node);
+    }
+
+    @Override
+    public final void drawMtbdd(final long node, final String filename) {
+        if (filename == null) {
+            Mtbdd.Nat_drawMtbdd(node);
+        } else {
+            Mtbdd.Nat_drawMtbdd(node, filename);
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package ca.polymtl.crac.tpot.mtbdd;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+
+import ca.polymtl.crac.tpot.model.Model;
+import ca.polymtl.crac.tpot.solver.AbstractIterativeSolver;
+
+/**
+ * Reachability computations on a transition matrix encoded by a mtbdd over
+ * the row variables xi and the column variables yi of some automata. The
+ * state sets and the vectors are mtbdds over the row variables; a vector is
+ * renamed over the column variables to be multiplied by the matrix.
+ * <p>
+ * The mtbdds kept from one operation to the next are referenced, so that the
+ * garbage collection of the engine only frees the intermediate results. The
+ * matrix and the cubes stay referenced until {@link #release()}.
+ * @author Daniel Lefevre
+ */
+public class SymbolicReachability {
+
+    /**
+     * The engine.
+     */
+    private final MtbddEngine engine;
+    /**
+     * The transition matrix, over the row and the column variables.
+     */
+    private final long matrix;
+    /**
+     * The cube of the row variables.
+     */
+    private final long rowCube;
+    /**
+     * The cube of the column variables.
+     */
+    private final long columnCube;
+    /**
+     * The permutation swapping each row variable with its column variable.
+     */
+    private final int[] swap;
+    /**
+     * The tolerance on the difference between two iterates.
+     */
+    private double tolerance = AbstractIterativeSolver.DEFAULT_TOLERANCE;
+    /**
+     * The maximum number of iterations.
+     */
+    private int maxIterations =
+            AbstractIterativeSolver.DEFAULT_MAX_ITERATIONS;
+    /**
+     * False if a power iteration stopped at the maximum number of iterations
+     * before reaching the tolerance.
+     */
+    private boolean converged = true;
+
+    /**
+     * Constructor.
+     * @param matrixIn
+     *            the transition matrix, or null if there is no transition
+     * @param components
+     *            the automata whose variables encode the states of the matrix
+     */
+    public SymbolicReachability(final MtbddNode matrixIn,
+            final Mtbdd... components) {
+        this.engine = Mtbdd.getEngine();
+        this.matrix = this.keep((matrixIn == null) ? this.engine.addConst(0)
+                : matrixIn.getPointer());
+
+        List<MtbddNode> rows = new ArrayList<>();
+        List<MtbddNode> columns = new ArrayList<>();
+        for (Mtbdd component : components) {
+            rows.addAll(component.getxVars().getNodes());
+            columns.addAll(component.getyVars().getNodes());
+        }
+        long[] rowVars = new long[rows.size()];
+        long[] columnVars = new long[columns.size()];
+        int size = 0;
+        for (int i = 0; i < rowVars.length; ++i) {
+            rowVars[i] = rows.get(i).getPointer();
+            columnVars[i] = columns.get(i).getPointer();
+            size = Math.max(size, Math.max(rows.get(i).getIndex(), columns
+                    .get(i).getIndex()) + 1);
+        }
+        this.rowCube = this.keep(this.engine.addComputeCube(rowVars));
+        this.columnCube = this.keep(this.engine.addComputeCube(columnVars));
+
+        this.swap = new int[size];
+        for (int i = 0; i < size; ++i) {
+            this.swap[i] = i;
+        }
+        for (int i = 0; i < rowVars.length; ++i) {
+            int x = rows.get(i).getIndex();
+            int y = columns.get(i).getIndex();
+            this.swap[x] = y;
+            this.swap[y] = x;
+        }
+    }
+
+    /**
+     * Getter.
+     * @return the tolerance on the difference between two iterates
+     */
+    public final double getTolerance() {
+        return this.tolerance;
+    }
+
+    /**
+     * Setter.
+     * @param toleranceIn
+     *            the new tolerance
+     */
+    public final void setTolerance(final double toleranceIn) {
+        this.tolerance = toleranceIn;
+    }
+
+    /**
+     * Getter.
+     * @return the maximum number of iterations
+     */
+    public final int getMaxIterations() {
+        return this.maxIterations;
+    }
+
+    /**
+     * Setter.
+     * @param maxIterationsIn
+     *            the new maximum number of iterations
+     */
+    public final void setMaxIterations(final int maxIterationsIn) {
+        this.maxIterations = maxIterationsIn;
+    }
+
+    /**
+     * Getter.
+     * @return false if a probability computed by this object stopped at the
+     *         maximum number of iterations before reaching the tolerance
+     */
+    public final boolean isConverged() {
+        return this.converged;
+    }
+
+    /**
+     * Dereferences the matrix and the cubes. This object must not be used
+     * afterwards.
+     */
+    public final void release() {
+        this.engine.recursiveDeref(this.matrix);
+        this.engine.recursiveDeref(this.rowCube);
+        this.engine.recursiveDeref(this.columnCube);
+    }
+
+    /**
+     * References a mtbdd, so that it survives the garbage collections until
+     * it is dereferenced.
+     * @param dd
+     *            the mtbdd
+     * @return the mtbdd
+     */
+    private long keep(final long dd) {
+        this.engine.ref(dd);
+        return dd;
+    }
+
+    /**
+     * Renames a mtbdd over the row variables into the column variables, or
+     * conversely.
+     * @param dd
+     *            the mtbdd
+     * @return the renamed mtbdd
+     */
+    private long swap(final long dd) {
+        return this.engine.addPermute(dd, this.swap);
+    }
+
+    /**
+     * Getter.
+     * @param dd
+     *            a mtbdd
+     * @return true if the mtbdd is the constant 0
+     */
+    private boolean isZero(final long dd) {
+        return this.engine.isConstant(dd)
+                && this.engine.getConstValue(dd) == 0;
+    }
+
+    /**
+     * Checks whether no terminal state is reachable from the initial states.
+     * @param initials
+     *            the initial states, over the row variables
+     * @param finals
+     *            the terminal states, over the column variables
+     * @return true if the language of the automaton is empty
+     */
+    public final boolean isLanguageEmpty(final MtbddNode initials,
+            final MtbddNode finals) {
+        long terminals = this.keep(this.swap(finals.getPointer()));
+        long reached = this.keep(this.engine.or(initials.getPointer(),
+                this.engine.addConst(0)));
+        long frontier = this.keep(reached);
+        boolean empty = true;
+        while (empty && !this.isZero(frontier)) {
+            if (!this.isZero(this.engine.and(frontier, terminals))) {
+                empty = false;
+            } else {
+                long image = this.keep(this.swap(this.engine.addOrAbstract(
+                        this.engine.and(this.matrix, frontier),
+                        this.rowCube)));
+                long notReached = this.engine.not(reached);
+                this.engine.recursiveDeref(frontier);
+                frontier = this.keep(this.engine.and(image, notReached));
+                this.engine.recursiveDeref(image);
+                long union = this.keep(this.engine.or(reached, frontier));
+                this.engine.recursiveDeref(reached);
+                reached = union;
+            }
+        }
+        this.engine.recursiveDeref(terminals);
+        this.engine.recursiveDeref(reached);
+        this.engine.recursiveDeref(frontier);
+        return empty;
+    }
+
+    /**
+     * Computes the probability of the words accepted by the automaton. The
+     * vector v of the probabilities from each state is the solution of
+     * v = t + P v, where t is 1 on the terminal states ; it is computed by
+     * the power iteration v(k+1) = t + P v(k), starting from t, until two
+     * iterates differ by at most the tolerance, or until the maximum number
+     * of iterations, which is reported by {@link #isConverged()}.
+     * @param initials
+     *            the initial states, over the row variables
+     * @param finals
+     *            the terminal states, over the column variables
+     * @return the sum over the initial states of the probability to reach a
+     *         terminal state
+     */
+    public final double computeProbability(final MtbddNode initials,
+            final MtbddNode finals) {
+        long terminals = this.keep(this.swap(finals.getPointer()));
+        long vector = this.keep(terminals);
+        int iterations = 0;
+        boolean converged = false;
+        while (!converged && iterations < this.maxIterations) {
+            long next = this.keep(this.engine.plus(terminals, this.engine
+                    .addMatrixMultiply(this.matrix, this.swap(vector),
+                            this.columnCube)));
+            converged = this.engine.equalSupNorm(next, vector,
+                    this.tolerance);
+            this.engine.recursiveDeref(vector);
+            vector = next;
+            ++iterations;
+        }
+        if (converged) {
+            Model.LOGGER.log(Level.FINE, "Symbolic power iteration converged"
+                    + " in " + iterations + " iterations");
+        } else {
+            Model.LOGGER.log(Level.WARNING, "Symbolic power iteration did not"
+                    + " converge in " + iterations + " iterations");
+            this.converged = false;
+        }
+        long probability = this.engine.addExistAbstract(
+                this.engine.and(initials.getPointer(), vector), this.rowCube);
+        this.engine.recursiveDeref(terminals);
+        this.engine.recursiveDeref(vector);
+        return this.engine.getConstValue(probability);
+    }
+}
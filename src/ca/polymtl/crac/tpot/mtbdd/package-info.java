@@ -1,4 +1,5 @@
 /**
- * TODO.
+ * Symbolic computation of the opacity with multi-terminal binary decision
+ * diagrams, run either by the native MtbddBis library or by a Java engine.
  */
 package ca.polymtl.crac.tpot.mtbdd;
@@ -0,0 +1,66 @@
+package ca.polymtl.crac.tpot.sampling;
+
+/**
+ * An estimated value with the half-width of its confidence interval.
+ * @author Daniel Lefevre
+ */
+public class Estimate {
+
+    /**
+     * The value.
+     */
+    private final double value;
+    /**
+     * The half-width of the confidence interval, NaN if unknown.
+     */
+    private final double halfWidth;
+
+    /**
+     * Constructor.
+     * @param valueIn
+     *            the value
+     * @param halfWidthIn
+     *            the half-width of the confidence interval, NaN if unknown
+     */
+    public Estimate(final double valueIn, final double halfWidthIn) {
+        this.value = valueIn;
+        this.halfWidth = halfWidthIn;
+    }
+
+    /**
+     * Getter.
+     * @return the value
+     */
+    public final double getValue() {
+        return this.value;
+    }
+
+    /**
+     * Getter.
+     * @return the half-width of the confidence interval, NaN if unknown
+     */
+    public final double getHalfWidth() {
+        return this.halfWidth;
+    }
+
+    /**
+     * Getter.
+     * @return the lower bound of the confidence interval
+     */
+    public final double getLower() {
+        return this.value - this.halfWidth;
+    }
+
+    /**
+     * Getter.
+     * @return the upper bound of the confidence interval
+     */
+    public final double getUpper() {
+        return this.value + this.halfWidth;
+    }
+
+    @Override
+    public final String toString() {
+        return this.value + " +/- " + this.halfWidth;
+    }
+}
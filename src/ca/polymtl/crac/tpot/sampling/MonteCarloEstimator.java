@@ -0,0 +1,771 @@
+package ca.polymtl.crac.tpot.sampling;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Level;
+
+import net.jautomata.rationals.Automaton;
+import net.jautomata.rationals.SymbolTable;
+
+import ca.polymtl.crac.tpot.budget.WorkBudget;
+import ca.polymtl.crac.tpot.model.JointDistribution;
+import ca.polymtl.crac.tpot.model.Model;
+import ca.polymtl.crac.tpot.model.ModelObservable;
+import ca.polymtl.crac.tpot.model.Opacity;
+import ca.polymtl.crac.tpot.model.product.CompiledDfa;
+
+/**
+ * Estimates the LPO, the RPO and the VPO of a probabilistic automaton by
+ * sampling random runs, without building the products nor solving any
+ * system : the memory needed is that of the automaton, the determinized
+ * predicate and the determinized observations.
+ * <p>
+ * Each run draws the transitions with the alias tables of
+ * {@link SampledSystem} and steps the predicate and the observations along
+ * its word. Each visit of a terminal state counts for the predicate and the
+ * observations accepting the word, so the mean of the counts over the runs
+ * is the joint distribution computed by the products. The revealing
+ * observations are found by the inclusion tests of {@link Opacity}, which
+ * do not depend on the automaton.
+ * <p>
+ * The runs are sampled by batches, each with its own stream of random
+ * numbers, so that the results only depend on the seed. The batches of a
+ * round are sampled on the executor, if any. The confidence intervals come
+ * from the spread of the estimates of the batches, and the rounds go on
+ * until they are all narrower than the precision or the maximum number of
+ * runs is reached. The observable, if any, is notified after each round
+ * with the bounds of the intervals and the progress.
+ * @author Daniel Lefevre
+ */
+public class MonteCarloEstimator {
+
+    /**
+     * The default half-width of the confidence intervals.
+     */
+    public static final double DEFAULT_PRECISION = 0.01;
+    /**
+     * The default level of the confidence intervals.
+     */
+    public static final double DEFAULT_CONFIDENCE = 0.95;
+    /**
+     * The default number of runs of a batch.
+     */
+    public static final int DEFAULT_BATCH_RUNS = 10000;
+    /**
+     * The default number of batches of a round.
+     */
+    public static final int DEFAULT_ROUND_BATCHES = 16;
+    /**
+     * The default maximum number of runs.
+     */
+    public static final long DEFAULT_MAX_RUNS = 100000000L;
+    /**
+     * The default maximum number of transitions of a run.
+     */
+    public static final int DEFAULT_MAX_STEPS = 1000000;
+    /**
+     * The number of runs between two checks of the work budget.
+     */
+    private static final int CHECK_INTERVAL = 1024;
+
+    /**
+     * The executor sampling the batches, null to sample them in the calling
+     * thread.
+     */
+    private final Executor executor;
+    /**
+     * The observable notified after each round, null for none.
+     */
+    private final ModelObservable observable;
+    /**
+     * The seed of the streams.
+     */
+    private long seed;
+    /**
+     * The half-width of the confidence intervals to reach.
+     */
+    private double precision = DEFAULT_PRECISION;
+    /**
+     * The level of the confidence intervals.
+     */
+    private double confidence = DEFAULT_CONFIDENCE;
+    /**
+     * The number of runs of a batch.
+     */
+    private int batchRuns = DEFAULT_BATCH_RUNS;
+    /**
+     * The number of batches of a round.
+     */
+    private int roundBatches = DEFAULT_ROUND_BATCHES;
+    /**
+     * The maximum number of runs.
+     */
+    private long maxRuns = DEFAULT_MAX_RUNS;
+    /**
+     * The maximum number of transitions of a run.
+     */
+    private int maxSteps = DEFAULT_MAX_STEPS;
+    /**
+     * The system being sampled.
+     */
+    private SampledSystem system;
+    /**
+     * The determinized predicate.
+     */
+    private CompiledDfa phi;
+    /**
+     * The determinized observations.
+     */
+    private CompiledDfa[] classes;
+    /**
+     * For each observation index, true if the observation is revealing.
+     */
+    private boolean[] revealing;
+    /**
+     * The number of runs sampled.
+     */
+    private long runs;
+    /**
+     * The number of runs stopped after the maximum number of transitions.
+     */
+    private long truncated;
+    /**
+     * The estimated joint distribution, null before the estimation.
+     */
+    private JointDistribution distribution;
+    /**
+     * The estimated LPO, null before the estimation.
+     */
+    private Estimate lpo;
+    /**
+     * The estimated RPO, null before the estimation.
+     */
+    private Estimate rpo;
+    /**
+     * The estimated VPO, null before the estimation.
+     */
+    private Estimate vpo;
+
+    /**
+     * Constructor. The batches are sampled in the calling thread.
+     */
+    public MonteCarloEstimator() {
+        this(null, null);
+    }
+
+    /**
+     * Constructor.
+     * @param executorIn
+     *            the executor sampling the batches, null to sample them in
+     *            the calling thread
+     * @param observableIn
+     *            the observable notified after each round, null for none
+     */
+    public MonteCarloEstimator(final Executor executorIn,
+            final ModelObservable observableIn) {
+        this.executor = executorIn;
+        this.observable = observableIn;
+    }
+
+    /**
+     * Estimates the opacities of an automaton.
+     * @param auto
+     *            the probabilistic automaton
+     * @param observations
+     *            the observations
+     * @param phiIn
+     *            the predicate
+     * @throws IllegalArgumentException
+     *             if the automaton is not probabilistic
+     */
+    public final void estimate(final Automaton auto,
+            final List<Automaton> observations, final Automaton phiIn) {
+        this.revealing = new Opacity(auto, observations, phiIn)
+                .computeRevealing(true);
+        SymbolTable symbols = new SymbolTable();
+        this.system = new SampledSystem(auto, symbols);
+        this.phi = new CompiledDfa(phiIn, symbols);
+        this.classes = new CompiledDfa[observations.size()];
+        for (int i = 0; i < this.classes.length; ++i) {
+            this.classes[i] = new CompiledDfa(observations.get(i), symbols);
+        }
+        this.runs = 0;
+        this.truncated = 0;
+        double z = normalQuantile(1 - (1 - this.confidence) / 2);
+        Model.LOGGER.log(Level.INFO, "Sampling " + this.system.size()
+                + " states.");
+
+        List<Batch> batches = new ArrayList<>();
+        Batch pooled = new Batch(this.classes.length);
+        boolean precise = false;
+        while (!precise && (this.runs < this.maxRuns)) {
+            List<Callable<Batch>> tasks = new ArrayList<>();
+            long planned = this.runs;
+            while ((tasks.size() < this.roundBatches)
+                    && (planned < this.maxRuns)) {
+                final long stream = batches.size() + tasks.size();
+                final int size = (int) Math.min(this.batchRuns, this.maxRuns
+                        - planned);
+                tasks.add(new Callable<Batch>() {
+                    @Override
+                    public Batch call() {
+                        return MonteCarloEstimator.this.sample(stream, size);
+                    }
+                });
+                planned += size;
+            }
+            for (Future<Batch> future : this.submitAll(tasks)) {
+                Batch batch = get(future);
+                batches.add(batch);
+                pooled.add(batch);
+            }
+
+            double[][] values = new double[3][batches.size()];
+            for (int b = 0; b < batches.size(); ++b) {
+                double[] measures = this.measures(batches.get(b)
+                        .distribution());
+                for (int m = 0; m < measures.length; ++m) {
+                    values[m][b] = measures[m];
+                }
+            }
+            this.distribution = pooled.distribution();
+            double[] measures = this.measures(this.distribution);
+            Estimate[] estimates = new Estimate[measures.length];
+            precise = true;
+            for (int m = 0; m < measures.length; ++m) {
+                estimates[m] = new Estimate(measures[m], z
+                        * standardError(values[m]));
+                precise &= estimates[m].getHalfWidth() <= this.precision;
+            }
+            synchronized (this) {
+                this.runs = pooled.runs;
+                this.truncated = pooled.truncated;
+                this.lpo = estimates[0];
+                this.rpo = estimates[1];
+                this.vpo = estimates[2];
+            }
+            this.notifyObservable();
+        }
+
+        if (this.truncated > 0) {
+            Model.LOGGER.log(Level.WARNING, this.truncated + " of "
+                    + this.runs + " runs were stopped after " + this.maxSteps
+                    + " transitions.");
+        }
+        Model.LOGGER.log(Level.INFO, "Sampled " + this.runs + " runs : LPO "
+                + this.lpo + ", RPO " + this.rpo + ", VPO " + this.vpo + ".");
+    }
+
+    /**
+     * Samples a batch of runs.
+     * @param stream
+     *            the index of the stream of random numbers
+     * @param size
+     *            the number of runs
+     * @return the counts of the batch
+     */
+    private Batch sample(final long stream, final int size) {
+        SplitMix random = new SplitMix(this.seed, stream);
+        Batch batch = new Batch(this.classes.length);
+        int[] observationStates = new int[this.classes.length];
+        for (int r = 0; r < size; ++r) {
+            if (r % CHECK_INTERVAL == 0) {
+                WorkBudget.checkpoint();
+            }
+            for (int initial : this.system.getInitials()) {
+                this.run(initial, random, observationStates, batch);
+            }
+            ++batch.runs;
+        }
+        return batch;
+    }
+
+    /**
+     * Samples a run and counts its visits of the terminal states.
+     * @param initial
+     *            the initial state
+     * @param random
+     *            the stream of random numbers
+     * @param observationStates
+     *            the states of the observations, overwritten
+     * @param batch
+     *            the counts
+     */
+    private void run(final int initial, final SplitMix random,
+            final int[] observationStates, final Batch batch) {
+        int state = initial;
+        int phiState = 0;
+        Arrays.fill(observationStates, 0);
+        for (int step = 0;; ++step) {
+            if (this.system.isTerminal(state)) {
+                batch.record(this.classes, phiState != CompiledDfa.NONE
+                        && this.phi.isAccepting(phiState), observationStates);
+            }
+            if (step == this.maxSteps) {
+                ++batch.truncated;
+                return;
+            }
+            int outcome = this.system.draw(state, random.nextDouble());
+            state = this.system.getTarget(outcome);
+            if (state == SampledSystem.STOP) {
+                return;
+            }
+            int symbol = this.system.getSymbol(outcome);
+            if (phiState != CompiledDfa.NONE) {
+                phiState = this.phi.next(phiState, symbol);
+            }
+            for (int c = 0; c < this.classes.length; ++c) {
+                if (observationStates[c] != CompiledDfa.NONE) {
+                    observationStates[c] = this.classes[c].next(
+                            observationStates[c], symbol);
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the opacities of a joint distribution.
+     * @param joint
+     *            the distribution
+     * @return the LPO, the RPO and the VPO
+     */
+    private double[] measures(final JointDistribution joint) {
+        return new double[] {joint.lpo(this.revealing),
+                1 - joint.initialEntropy() + joint.remainingEntropy(),
+                joint.vpo() };
+    }
+
+    /**
+     * Computes the standard error of the mean of some values. Equal values,
+     * even infinite, have no error.
+     * @param values
+     *            the values
+     * @return the standard error, NaN for less than two different values
+     */
+    private static double standardError(final double[] values) {
+        boolean equal = true;
+        for (double v : values) {
+            equal &= v == values[0];
+        }
+        if (equal) {
+            return 0;
+        }
+        if (values.length < 2) {
+            return Double.NaN;
+        }
+        double mean = 0;
+        for (double v : values) {
+            mean += v;
+        }
+        mean /= values.length;
+        double variance = 0;
+        for (double v : values) {
+            variance += (v - mean) * (v - mean);
+        }
+        variance /= values.length - 1;
+        return Math.sqrt(variance / values.length);
+    }
+
+    /**
+     * Computes a quantile of the standard normal distribution above the
+     * median, with the rational approximation of Acklam (relative error
+     * below 1.2e-9).
+     * @param p
+     *            the probability, in [0.5, 1)
+     * @return the quantile
+     */
+    private static double normalQuantile(final double p) {
+        if (p <= 1 - 0.02425) {
+            double q = p - 0.5;
+            double r = q * q;
+            return (((((-3.969683028665376e+01 * r + 2.209460984245205e+02)
+                    * r - 2.759285104469687e+02) * r + 1.383577518672690e+02)
+                    * r - 3.066479806614716e+01) * r + 2.506628277459239e+00)
+                    * q / (((((-5.447609879822406e+01 * r
+                            + 1.615858368580409e+02) * r
+                            - 1.556989798598866e+02) * r
+                            + 6.680131188771972e+01) * r
+                            - 1.328068155288572e+01) * r + 1);
+        }
+        double q = Math.sqrt(-2 * Math.log(1 - p));
+        return -(((((-7.784894002430293e-03 * q - 3.223964580411365e-01) * q
+                - 2.400758277161838e+00) * q - 2.549732539343734e+00) * q
+                + 4.374664141464968e+00) * q + 2.938163982698783e+00)
+                / ((((7.784695709041462e-03 * q + 3.224671290700398e-01) * q
+                        + 2.445134137142996e+00) * q + 3.754408661907416e+00)
+                        * q + 1);
+    }
+
+    /**
+     * Submits tasks to the executor, or runs them in the calling thread if
+     * there is none. The tasks keep the work budget of the calling thread.
+     * @param tasks
+     *            the tasks
+     * @param <T>
+     *            the type of the results
+     * @return the futures of the tasks, in the same order
+     */
+    private <T> List<Future<T>> submitAll(final List<Callable<T>> tasks) {
+        List<Future<T>> futures = new ArrayList<>(tasks.size());
+        for (Callable<T> task : tasks) {
+            FutureTask<T> future = new FutureTask<>(
+                    WorkBudget.propagate(task));
+            futures.add(future);
+            if (this.executor == null) {
+                future.run();
+            } else {
+                this.executor.execute(future);
+            }
+        }
+        return futures;
+    }
+
+    /**
+     * Waits for the result of a task, rethrowing its exception if it failed.
+     * @param future
+     *            the future of the task
+     * @param <T>
+     *            the type of the result
+     * @return the result of the task
+     */
+    private static <T> T get(final Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while sampling", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Notifies the observable with the bounds of the confidence intervals
+     * and the progress.
+     */
+    private void notifyObservable() {
+        if (this.observable != null) {
+            this.observable.updateMinMaxOpacities(this.getBounds());
+        }
+    }
+
+    /**
+     * Getter.
+     * @return the bounds of the confidence intervals and the progress : the
+     *         lower and upper bounds of the LPO, the RPO and the VPO, then
+     *         the number of runs sampled and the maximum number of runs, in
+     *         the layout of {@code NonDetScheduler.getMinMaxOpacities()}
+     */
+    public final synchronized double[] getBounds() {
+        return new double[] {this.lpo.getLower(), this.lpo.getUpper(),
+                this.rpo.getLower(), this.rpo.getUpper(), this.vpo.getLower(),
+                this.vpo.getUpper(), this.runs, this.maxRuns };
+    }
+
+    /**
+     * Getter.
+     * @return the estimated LPO, null before the estimation
+     */
+    public final synchronized Estimate getLpo() {
+        return this.lpo;
+    }
+
+    /**
+     * Getter.
+     * @return the estimated RPO, null before the estimation
+     */
+    public final synchronized Estimate getRpo() {
+        return this.rpo;
+    }
+
+    /**
+     * Getter.
+     * @return the estimated VPO, null before the estimation
+     */
+    public final synchronized Estimate getVpo() {
+        return this.vpo;
+    }
+
+    /**
+     * Getter.
+     * @return the estimated joint distribution, null before the estimation
+     */
+    public final synchronized JointDistribution getDistribution() {
+        return this.distribution;
+    }
+
+    /**
+     * Getter.
+     * @return the number of runs sampled
+     */
+    public final synchronized long getRuns() {
+        return this.runs;
+    }
+
+    /**
+     * Getter.
+     * @return the number of runs stopped after the maximum number of
+     *         transitions, whose later visits are missing from the estimates
+     */
+    public final synchronized long getTruncated() {
+        return this.truncated;
+    }
+
+    /**
+     * Getter.
+     * @return the seed of the streams of random numbers
+     */
+    public final long getSeed() {
+        return this.seed;
+    }
+
+    /**
+     * Setter. The same seed gives the same estimates, whatever the executor.
+     * @param seedIn
+     *            the seed of the streams of random numbers
+     */
+    public final void setSeed(final long seedIn) {
+        this.seed = seedIn;
+    }
+
+    /**
+     * Getter.
+     * @return the half-width of the confidence intervals to reach
+     */
+    public final double getPrecision() {
+        return this.precision;
+    }
+
+    /**
+     * Setter.
+     * @param precisionIn
+     *            the half-width of the confidence intervals to reach
+     */
+    public final void setPrecision(final double precisionIn) {
+        if (!(precisionIn > 0)) {
+            throw new IllegalArgumentException("The precision must be "
+                    + "positive : " + precisionIn);
+        }
+        this.precision = precisionIn;
+    }
+
+    /**
+     * Getter.
+     * @return the level of the confidence intervals
+     */
+    public final double getConfidence() {
+        return this.confidence;
+    }
+
+    /**
+     * Setter.
+     * @param confidenceIn
+     *            the level of the confidence intervals, in [0.5, 1)
+     */
+    public final void setConfidence(final double confidenceIn) {
+        if (!(confidenceIn >= 0.5) || !(confidenceIn < 1)) {
+            throw new IllegalArgumentException("The confidence must be in "
+                    + "[0.5, 1) : " + confidenceIn);
+        }
+        this.confidence = confidenceIn;
+    }
+
+    /**
+     * Getter.
+     * @return the number of runs of a batch
+     */
+    public final int getBatchRuns() {
+        return this.batchRuns;
+    }
+
+    /**
+     * Setter. The batches must be large enough for their estimates to be
+     * close to normal.
+     * @param batchRunsIn
+     *            the number of runs of a batch
+     */
+    public final void setBatchRuns(final int batchRunsIn) {
+        if (batchRunsIn < 1) {
+            throw new IllegalArgumentException("The number of runs of a batch"
+                    + " must be at least 1 : " + batchRunsIn);
+        }
+        this.batchRuns = batchRunsIn;
+    }
+
+    /**
+     * Getter.
+     * @return the number of batches of a round
+     */
+    public final int getRoundBatches() {
+        return this.roundBatches;
+    }
+
+    /**
+     * Setter.
+     * @param roundBatchesIn
+     *            the number of batches of a round, at least 2 for the first
+     *            round to give confidence intervals
+     */
+    public final void setRoundBatches(final int roundBatchesIn) {
+        if (roundBatchesIn < 2) {
+            throw new IllegalArgumentException("The number of batches of a "
+                    + "round must be at least 2 : " + roundBatchesIn);
+        }
+        this.roundBatches = roundBatchesIn;
+    }
+
+    /**
+     * Getter.
+     * @return the maximum number of runs
+     */
+    public final long getMaxRuns() {
+        return this.maxRuns;
+    }
+
+    /**
+     * Setter.
+     * @param maxRunsIn
+     *            the maximum number of runs
+     */
+    public final void setMaxRuns(final long maxRunsIn) {
+        if (maxRunsIn < 1) {
+            throw new IllegalArgumentException("The maximum number of runs "
+                    + "must be at least 1 : " + maxRunsIn);
+        }
+        this.maxRuns = maxRunsIn;
+    }
+
+    /**
+     * Getter.
+     * @return the maximum number of transitions of a run
+     */
+    public final int getMaxSteps() {
+        return this.maxSteps;
+    }
+
+    /**
+     * Setter. The longer runs are stopped and counted by
+     * {@link #getTruncated()}.
+     * @param maxStepsIn
+     *            the maximum number of transitions of a run
+     */
+    public final void setMaxSteps(final int maxStepsIn) {
+        if (maxStepsIn < 1) {
+            throw new IllegalArgumentException("The maximum number of "
+                    + "transitions must be at least 1 : " + maxStepsIn);
+        }
+        this.maxSteps = maxStepsIn;
+    }
+
+    /**
+     * The counts of the visits of the terminal states over a batch of runs.
+     * @author Daniel Lefevre
+     */
+    private static class Batch {
+
+        /**
+         * The number of runs.
+         */
+        private long runs;
+        /**
+         * The number of runs stopped after the maximum number of transitions.
+         */
+        private long truncated;
+        /**
+         * The number of visits.
+         */
+        private double total;
+        /**
+         * The number of visits satisfying the predicate.
+         */
+        private double phi;
+        /**
+         * The number of visits in each observation.
+         */
+        private final double[] obs;
+        /**
+         * The number of visits satisfying the predicate in each observation.
+         */
+        private final double[] phiAndObs;
+
+        /**
+         * Constructor.
+         * @param classes
+         *            the number of observations
+         */
+        Batch(final int classes) {
+            this.obs = new double[classes];
+            this.phiAndObs = new double[classes];
+        }
+
+        /**
+         * Counts a visit of a terminal state.
+         * @param classes
+         *            the observations
+         * @param inPhi
+         *            true if the word satisfies the predicate
+         * @param observationStates
+         *            the states of the observations
+         */
+        final void record(final CompiledDfa[] classes, final boolean inPhi,
+                final int[] observationStates) {
+            ++this.total;
+            if (inPhi) {
+                ++this.phi;
+            }
+            for (int c = 0; c < classes.length; ++c) {
+                int o = observationStates[c];
+                if ((o != CompiledDfa.NONE) && classes[c].isAccepting(o)) {
+                    ++this.obs[c];
+                    if (inPhi) {
+                        ++this.phiAndObs[c];
+                    }
+                }
+            }
+        }
+
+        /**
+         * Adds the counts of another batch.
+         * @param other
+         *            the other batch
+         */
+        final void add(final Batch other) {
+            this.runs += other.runs;
+            this.truncated += other.truncated;
+            this.total += other.total;
+            this.phi += other.phi;
+            for (int c = 0; c < this.obs.length; ++c) {
+                this.obs[c] += other.obs[c];
+                this.phiAndObs[c] += other.phiAndObs[c];
+            }
+        }
+
+        /**
+         * Getter.
+         * @return the mean of the counts over the runs
+         */
+        final JointDistribution distribution() {
+            double[] pObs = new double[this.obs.length];
+            double[] pPhiAndObs = new double[this.obs.length];
+            for (int c = 0; c < pObs.length; ++c) {
+                pObs[c] = this.obs[c] / this.runs;
+                pPhiAndObs[c] = this.phiAndObs[c] / this.runs;
+            }
+            return new JointDistribution(pObs, pPhiAndObs, this.phi
+                    / this.runs, this.total / this.runs);
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package ca.polymtl.crac.tpot.sampling;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.jautomata.rationals.Automaton;
+import net.jautomata.rationals.CompactAutomaton;
+import net.jautomata.rationals.PSymbol;
+import net.jautomata.rationals.State;
+import net.jautomata.rationals.SymbolTable;
+import net.jautomata.rationals.Transition;
+
+/**
+ * A probabilistic automaton compiled for sampling : the states are numbered
+ * from 0, and the outcomes of each state, its transitions and the end of the
+ * run, are drawn in constant time with an alias table.
+ * <p>
+ * The outcomes of the state i are at the positions rowPtr[i] to
+ * rowPtr[i + 1] - 1. The end of the run has the probability left by the
+ * transitions, if any, and the target {@link #STOP}. The probabilities of
+ * the transitions labelled by a {@link PSymbol} are theirs, the others have
+ * the probability 1, as in the products. The labels are kept as their
+ * numbers in a {@link SymbolTable}, which may be shared with the automata
+ * following the runs.
+ * @author Daniel Lefevre
+ */
+public class SampledSystem {
+
+    /**
+     * The target of the outcome ending the run.
+     */
+    public static final int STOP = -1;
+    /**
+     * The tolerance on the sum of the probabilities of a state.
+     */
+    private static final double TOLERANCE = 1e-9;
+
+    /**
+     * Beginning of the outcomes of each state.
+     */
+    private final int[] rowPtr;
+    /**
+     * The targets of the outcomes, {@link #STOP} for the end of the run.
+     */
+    private final int[] targets;
+    /**
+     * The numbers of the labels.
+     */
+    private final SymbolTable symbols;
+    /**
+     * The numbers of the labels of the outcomes.
+     */
+    private final int[] labels;
+    /**
+     * The probability of keeping each outcome in its column of the alias
+     * table.
+     */
+    private final double[] cuts;
+    /**
+     * The outcome replacing each outcome when it is not kept.
+     */
+    private final int[] aliases;
+    /**
+     * True for the terminal states.
+     */
+    private final boolean[] terminals;
+    /**
+     * The indexes of the initial states.
+     */
+    private final int[] initials;
+
+    /**
+     * Compiles an automaton, with labels numbered by a table of its own.
+     * @param system
+     *            the probabilistic automaton
+     * @throws IllegalArgumentException
+     *             if the probabilities leaving a state sum to more than 1,
+     *             as for an automaton which is not scheduled
+     */
+    public SampledSystem(final Automaton system) {
+        this(system, new SymbolTable());
+    }
+
+    /**
+     * Compiles an automaton.
+     * @param system
+     *            the probabilistic automaton
+     * @param symbolsIn
+     *            the table numbering the labels, completed with those of the
+     *            automaton
+     * @throws IllegalArgumentException
+     *             if the probabilities leaving a state sum to more than 1,
+     *             as for an automaton which is not scheduled
+     */
+    public SampledSystem(final Automaton system,
+            final SymbolTable symbolsIn) {
+        this.symbols = symbolsIn;
+        Map<State, Integer> indexes = new HashMap<>();
+        for (State s : system.states()) {
+            indexes.put(s, indexes.size());
+        }
+        int n = indexes.size();
+        this.terminals = new boolean[n];
+        List<List<Transition>> out = new ArrayList<>(n);
+        for (int i = 0; i < n; ++i) {
+            out.add(new ArrayList<Transition>());
+        }
+        for (Map.Entry<State, Integer> e : indexes.entrySet()) {
+            this.terminals[e.getValue()] = e.getKey().isTerminal();
+        }
+        int count = 0;
+        for (Transition t : system.delta()) {
+            out.get(indexes.get(t.start())).add(t);
+            ++count;
+        }
+        this.initials = new int[system.initials().size()];
+        int k = 0;
+        for (State s : system.initials()) {
+            this.initials[k++] = indexes.get(s);
+        }
+
+        // one more outcome per state for the end of the run
+        this.rowPtr = new int[n + 1];
+        this.targets = new int[count + n];
+        this.labels = new int[count + n];
+        this.cuts = new double[count + n];
+        this.aliases = new int[count + n];
+        int position = 0;
+        for (int i = 0; i < n; ++i) {
+            this.rowPtr[i] = position;
+            double sum = 0;
+            for (Transition t : out.get(i)) {
+                this.targets[position] = indexes.get(t.end());
+                this.labels[position] = symbolsIn.intern(t.symbol());
+                this.cuts[position] = t.weight();
+                sum += t.weight();
+                ++position;
+            }
+            position = this.endRow(i, position, sum);
+        }
+        this.rowPtr[n] = position;
+    }
+
+    /**
+     * Compiles a compact automaton, without creating any {@link State} or
+     * {@link Transition} object. The indexes of the states and the table of
+     * the labels are kept.
+     * @param system
+     *            the probabilistic automaton
+     * @throws IllegalArgumentException
+     *             if the probabilities leaving a state sum to more than 1,
+     *             as for an automaton which is not scheduled
+     */
+    public SampledSystem(final CompactAutomaton system) {
+        this.symbols = system.getSymbols();
+        int n = system.size();
+        int count = system.transitionCount();
+        this.terminals = new boolean[n];
+        for (int i = 0; i < n; ++i) {
+            this.terminals[i] = system.isTerminal(i);
+        }
+        this.initials = system.getInitials();
+
+        this.rowPtr = new int[n + 1];
+        this.targets = new int[count + n];
+        this.labels = new int[count + n];
+        this.cuts = new double[count + n];
+        this.aliases = new int[count + n];
+        int position = 0;
+        for (int i = 0; i < n; ++i) {
+            this.rowPtr[i] = position;
+            double sum = 0;
+            for (int k = system.firstTransition(i); k < system
+                    .endTransition(i); ++k) {
+                double probability = system.getProbability(k);
+                this.targets[position] = system.getTarget(k);
+                this.labels[position] = system.getTransitionLabel(k);
+                this.cuts[position] = probability;
+                sum += probability;
+                ++position;
+            }
+            position = this.endRow(i, position, sum);
+        }
+        this.rowPtr[n] = position;
+    }
+
+    /**
+     * Ends the outcomes of a state : adds the end of the run if the
+     * transitions leave some probability, and builds the alias table.
+     * @param state
+     *            the index of the state
+     * @param position
+     *            the position after its transitions
+     * @param sum
+     *            the sum of the probabilities of its transitions
+     * @return the position after its outcomes
+     * @throws IllegalArgumentException
+     *             if the sum is more than 1
+     */
+    private int endRow(final int state, final int position, final double sum) {
+        if (sum > 1 + TOLERANCE) {
+            throw new IllegalArgumentException("The probabilities leaving the"
+                    + " state " + state + " sum to " + sum + " : the "
+                    + "automaton must be scheduled before sampling.");
+        }
+        int end = position;
+        if ((sum < 1 - TOLERANCE) || (end == this.rowPtr[state])) {
+            this.targets[end] = STOP;
+            this.cuts[end] = Math.max(0, 1 - sum);
+            ++end;
+        }
+        this.buildAliases(this.rowPtr[state], end);
+        return end;
+    }
+
+    /**
+     * Turns the probabilities of the outcomes of a state into an alias table
+     * (Vose's method).
+     * @param from
+     *            the first outcome
+     * @param to
+     *            the end of the outcomes
+     */
+    private void buildAliases(final int from, final int to) {
+        int size = to - from;
+        double sum = 0;
+        for (int k = from; k < to; ++k) {
+            sum += this.cuts[k];
+        }
+        Deque<Integer> small = new ArrayDeque<>();
+        Deque<Integer> large = new ArrayDeque<>();
+        for (int k = from; k < to; ++k) {
+            this.cuts[k] = (sum == 0) ? 1 : this.cuts[k] * size / sum;
+            this.aliases[k] = k;
+            if (this.cuts[k] < 1) {
+                small.push(k);
+            } else {
+                large.push(k);
+            }
+        }
+        while (!small.isEmpty() && !large.isEmpty()) {
+            int s = small.pop();
+            int l = large.pop();
+            this.aliases[s] = l;
+            this.cuts[l] -= 1 - this.cuts[s];
+            if (this.cuts[l] < 1) {
+                small.push(l);
+            } else {
+                large.push(l);
+            }
+        }
+        // the rounding errors leave columns which are full
+        while (!small.isEmpty()) {
+            this.cuts[small.pop()] = 1;
+        }
+        while (!large.isEmpty()) {
+            this.cuts[large.pop()] = 1;
+        }
+    }
+
+    /**
+     * Getter.
+     * @return the number of states
+     */
+    public final int size() {
+        return this.terminals.length;
+    }
+
+    /**
+     * Getter. The array is shared, it must not be modified.
+     * @return the indexes of the initial states
+     */
+    public final int[] getInitials() {
+        return this.initials;
+    }
+
+    /**
+     * Getter.
+     * @param state
+     *            the index of a state
+     * @return true if the state is terminal
+     */
+    public final boolean isTerminal(final int state) {
+        return this.terminals[state];
+    }
+
+    /**
+     * Getter.
+     * @param outcome
+     *            the position of an outcome
+     * @return the target of the outcome, {@link #STOP} for the end of the run
+     */
+    public final int getTarget(final int outcome) {
+        return this.targets[outcome];
+    }
+
+    /**
+     * Getter.
+     * @return the table numbering the labels
+     */
+    public final SymbolTable getSymbols() {
+        return this.symbols;
+    }
+
+    /**
+     * Getter.
+     * @param outcome
+     *            the position of an outcome
+     * @return the number of the label of the outcome
+     */
+    public final int getSymbol(final int outcome) {
+        return this.labels[outcome];
+    }
+
+    /**
+     * Getter.
+     * @param outcome
+     *            the position of an outcome
+     * @return the label of the outcome, without its probability
+     */
+    public final Object getLabel(final int outcome) {
+        return this.symbols.get(this.labels[outcome]);
+    }
+
+    /**
+     * Draws an outcome of a state.
+     * @param state
+     *            the index of the state
+     * @param random
+     *            the value drawn, uniform in [0, 1)
+     * @return the position of the outcome
+     */
+    public final int draw(final int state, final double random) {
+        int from = this.rowPtr[state];
+        double u = random * (this.rowPtr[state + 1] - from);
+        int column = (int) u;
+        int k = from + column;
+        return (u - column < this.cuts[k]) ? k : this.aliases[k];
+    }
+}
@@ -0,0 +1,58 @@
+package ca.polymtl.crac.tpot.sampling;
+
+/**
+ * The SplitMix64 generator. The stream of index i starts from the seed
+ * mixed with i, so that the streams are independent, and a batch of runs
+ * gives the same values whatever the thread sampling it.
+ * @author Daniel Lefevre
+ */
+final class SplitMix {
+
+    /**
+     * The increment of the state, the odd integer closest to 2^64 divided by
+     * the golden ratio.
+     */
+    private static final long GAMMA = 0x9e3779b97f4a7c15L;
+    /**
+     * The scale from the 53 high bits of a long to a double in [0, 1).
+     */
+    private static final double SCALE = 1.0 / (1L << 53);
+
+    /**
+     * The state.
+     */
+    private long state;
+
+    /**
+     * Constructor.
+     * @param seed
+     *            the seed shared by the streams
+     * @param stream
+     *            the index of the stream
+     */
+    SplitMix(final long seed, final long stream) {
+        this.state = mix(seed + mix(stream * GAMMA));
+    }
+
+    /**
+     * Mixes the bits of a value.
+     * @param value
+     *            the value
+     * @return the mixed value
+     */
+    private static long mix(final long value) {
+        long z = value;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Getter.
+     * @return the next value, uniform in [0, 1)
+     */
+    double nextDouble() {
+        this.state += GAMMA;
+        return (mix(this.state) >>> 11) * SCALE;
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * Estimation of the opacities by sampling random runs of the system, for the
+ * models too large for the products and the solvers.
+ */
+package ca.polymtl.crac.tpot.sampling;
@@ -1,176 +1,388 @@
 package ca.polymtl.crac.tpot.scheduler;
 
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
 import java.util.logging.Level;
-import java.util.logging.Logger;
 
 import net.jautomata.rationals.Automaton;
 import net.jautomata.rationals.State;
 
+import ca.polymtl.crac.tpot.budget.BudgetExceededException;
+import ca.polymtl.crac.tpot.budget.WorkBudget;
+import ca.polymtl.crac.tpot.model.Model;
+import ca.polymtl.crac.tpot.model.ModelObservable;
 import ca.polymtl.crac.tpot.model.Opacity;
+import ca.polymtl.crac.tpot.model.Opacity.IncorrectDataException;
+import ca.polymtl.crac.tpot.model.io.RegParser;
 
+/**
+ * Computes the minimum and the maximum of the opacities over the schedulers
+ * of an automaton whose nondeterminism is a loop-free prefix, by evaluating
+ * each probabilistic sub-automaton of {@link Automaton#scheduleNonDet()}.
+ * <p>
+ * The sub-automata are built, validated and evaluated one per task on the
+ * executor, if any, and share the observations and the predicate, which are
+ * only read : the observations are thus over the words of the branches,
+ * which start at the roots of the probabilistic part. Only the extremes are
+ * kept : each branch is dropped as soon as its opacities are known, and the
+ * observable, if any, is notified with the current extremes after each
+ * branch.
+ * @author Olivier Bachard, Daniel Lefevre
+ */
 public class NonDetScheduler {
 
-    List<Opacity> opacities;
-    double minLpo = -1;
-    double minRpo = -1;
-    double minVpo = -1;
-    double maxLpo = -1;
-    double maxRpo = -1;
-    double maxVpo = -1;
+    /**
+     * The executor evaluating the branches, null to evaluate them in the
+     * calling thread.
+     */
+    private final Executor executor;
+    /**
+     * The observable notified after each branch, null for none.
+     */
+    private final ModelObservable observable;
+    /**
+     * The number of branches.
+     */
+    private int total;
+    /**
+     * The number of branches evaluated, including the failed ones.
+     */
+    private int done;
+    /**
+     * The number of branches whose evaluation failed.
+     */
+    private int failed;
+    /**
+     * The exception of the first branch which exceeded the work budget, null
+     * if none did.
+     */
+    private BudgetExceededException exceeded;
+    /**
+     * The first exception or error of a branch other than an incorrect data
+     * or an exceeded budget, null if none was thrown.
+     */
+    private Throwable error;
+    /**
+     * The minimum LPO, -1 if no branch was evaluated.
+     */
+    private double minLpo = -1;
+    /**
+     * The minimum RPO, -1 if no branch was evaluated.
+     */
+    private double minRpo = -1;
+    /**
+     * The minimum VPO, -1 if no branch was evaluated.
+     */
+    private double minVpo = -1;
+    /**
+     * The maximum LPO, -1 if no branch was evaluated.
+     */
+    private double maxLpo = -1;
+    /**
+     * The maximum RPO, -1 if no branch was evaluated.
+     */
+    private double maxRpo = -1;
+    /**
+     * The maximum VPO, -1 if no branch was evaluated.
+     */
+    private double maxVpo = -1;
 
+    /**
+     * Constructor. The branches are evaluated in the calling thread.
+     */
     public NonDetScheduler() {
-        this.opacities = new ArrayList<>();
+        this(null, null);
     }
 
-    public final void computeOpacities(final Automaton auto,
-            final String regFile) throws IOException {
-        // List<Automaton> subAutos = auto.scheduleNonDet();
-        // System.out.println("nbre d'auto: " + subAutos.size());
-        //
-        // for (Automaton automaton : subAutos) {
-        // System.out.println("A = " + automaton.delta().toString());
-        // System.out.println("Q = " + automaton.states().toString());
-        // System.out.println("I = " + automaton.initials().toString());
-        // System.out.println("T = " + automaton.terminals().toString()
-        // + "\n\n");
-        //
-        // for (State state : automaton.states()) {
-        // System.out.println("trans from: " + automaton.delta(state));
-        // }
-        //
-        // // Acquisition du fichier contenant les observations et le prédicat
-        // InputStream is1 = null;
-        // try {
-        // is1 = new FileInputStream("input/" + regFile + ".reg");
-        // } catch (FileNotFoundException e) {
-        // System.err.println("Cannot open " + regFile + " for reading");
-        // System.exit(1);
-        // }
-        //
-        // // Construit les observations et le prédicat
-        // // Opacity op = new Opacity(automaton);
-        // // op.readObsAndPredicate(is1);
-        //
-        // // TODO : change that thing !
-        // try {
-        // op.validateData();
-        //
-        // System.out.println("Obs: \n" + op.getObs().toString());
-        // System.out.println("Phi: \nb" + op.getPhi().toString());
-        // System.out.println("Auto: \nb" + automaton.toString());
-        //
-        // System.out.println("The Lpo of the system is : "
-        // + op.computeLpo());
-        // System.out.println("The Rpo of the system is : "
-        // + op.computeRpo());
-        // System.out.println("Initial entropy :    "
-        // + op.getInitialEntropy());
-        // System.out.println("Remaining entropy :  "
-        // + op.getRemainingEntropy());
-        // System.out.println("Mutual information : "
-        // + op.getMutualInformation());
-        // System.out.println("The Vpo of the system is : "
-        // + op.computeVpo());
-        //
-        // this.opacities.add(op);
-        // } catch (Exception ex) {
-        // Logger.getLogger(NonDetScheduler.class.getName()).log(
-        // Level.SEVERE, null, ex);
-        // }
-        // }
-    }
-
-    public final double getMaxLpo() {
-        return this.maxLpo;
-    }
-
-    public final double getMaxRpo() {
-        return this.maxRpo;
+    /**
+     * Constructor.
+     * @param executorIn
+     *            the executor evaluating the branches, null to evaluate them
+     *            in the calling thread
+     * @param observableIn
+     *            the observable notified after each branch, null for none
+     */
+    public NonDetScheduler(final Executor executorIn,
+            final ModelObservable observableIn) {
+        this.executor = executorIn;
+        this.observable = observableIn;
     }
 
-    public final double getMaxVpo() {
-        return this.maxVpo;
-    }
-
-    public final double getMinLpo() {
-        return this.minLpo;
+    /**
+     * Computes the extremes of the opacities over the branches of an
+     * automaton, with the observations and the predicate of a file.
+     * @param auto
+     *            the automaton
+     * @param regFile
+     *            the name of the ".reg" file
+     * @throws IOException
+     *             if the file could not be read
+     * @throws InterruptedException
+     *             if the calling thread is interrupted while waiting for the
+     *             branches
+     */
+    public final void computeOpacities(final Automaton auto,
+            final String regFile) throws IOException, InterruptedException {
+        RegParser parser = new RegParser(regFile);
+        parser.parseFile();
+        this.computeOpacities(auto, parser.getParsedObservations(),
+                parser.getParsedPhi());
     }
 
-    public final void getMinMaxOpacities() {
-        if (this.opacities.size() == 0) {
-            return;
+    /**
+     * Computes the extremes of the opacities over the branches of an
+     * automaton. A branch which does not validate is counted as failed. The
+     * extremes over the branches evaluated are kept when the work budget of
+     * the calling thread is exceeded. Any other exception or error of a
+     * branch is a bug or a lack of resources : the branches not started yet
+     * are skipped, and the first one is thrown again.
+     * @param auto
+     *            the automaton
+     * @param observations
+     *            the observations
+     * @param phi
+     *            the predicate
+     * @throws InterruptedException
+     *             if the calling thread is interrupted while waiting for the
+     *             branches
+     * @throws BudgetExceededException
+     *             if a branch exceeded the work budget of the calling thread
+     * @throws RuntimeException
+     *             the first unexpected exception of a branch
+     * @throws Error
+     *             the first error of a branch
+     */
+    public final void computeOpacities(final Automaton auto,
+            final List<Automaton> observations, final Automaton phi)
+            throws InterruptedException {
+        List<State> roots = auto.getNonDetRoots();
+        synchronized (this) {
+            this.total = roots.size();
+            this.done = 0;
+            this.failed = 0;
+            this.exceeded = null;
+            this.error = null;
+            this.minLpo = -1;
+            this.maxLpo = -1;
+            this.minRpo = -1;
+            this.maxRpo = -1;
+            this.minVpo = -1;
+            this.maxVpo = -1;
         }
+        Model.LOGGER.log(Level.INFO, "Evaluating " + roots.size()
+                + " schedulers.");
 
-        this.minLpo = this.opacities.get(0).getLpo();
-        this.maxLpo = this.opacities.get(0).getLpo();
-        this.minRpo = this.opacities.get(0).getRpo();
-        this.maxRpo = this.opacities.get(0).getRpo();
-        this.minVpo = this.opacities.get(0).getVpo();
-        this.maxVpo = this.opacities.get(0).getVpo();
+        final CountDownLatch remaining = new CountDownLatch(roots.size());
+        for (final State root : roots) {
+            Runnable branch = new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        NonDetScheduler.this.evaluate(auto, root,
+                                observations, phi);
+                    } finally {
+                        remaining.countDown();
+                    }
+                }
+            };
+            if (this.executor == null) {
+                branch.run();
+            } else {
+                this.executor.execute(WorkBudget.propagate(branch));
+            }
+        }
+        remaining.await();
 
-        for (int i = 1; i < this.opacities.size(); i++) {
-            if (this.opacities.get(i).getLpo() > this.maxLpo) {
-                this.maxLpo = this.opacities.get(i).getLpo();
+        synchronized (this) {
+            if (this.error instanceof RuntimeException) {
+                throw (RuntimeException) this.error;
+            } else if (this.error != null) {
+                throw (Error) this.error;
             }
-            if (this.opacities.get(i).getLpo() < this.minLpo) {
-                this.minLpo = this.opacities.get(i).getLpo();
+            if (this.exceeded != null) {
+                throw this.exceeded;
+            }
+        }
+        if (this.getFailed() > 0) {
+            Model.LOGGER.log(Level.WARNING, this.getFailed() + " of "
+                    + roots.size() + " schedulers failed.");
+        }
+    }
+
+    /**
+     * Builds a branch, computes its opacities and records them.
+     * @param auto
+     *            the automaton
+     * @param root
+     *            the root of the branch
+     * @param observations
+     *            the observations
+     * @param phi
+     *            the predicate
+     */
+    private void evaluate(final Automaton auto, final State root,
+            final List<Automaton> observations, final Automaton phi) {
+        synchronized (this) {
+            if (this.error != null) {
+                ++this.done;
+                return;
             }
-            if (this.opacities.get(i).getRpo() > this.maxRpo) {
-                this.maxRpo = this.opacities.get(i).getRpo();
+        }
+        double lpo;
+        double rpo;
+        double vpo;
+        try {
+            Opacity opacity = new Opacity(auto.getScheduledAutomaton(root),
+                    observations, phi);
+            opacity.validateData();
+            lpo = opacity.computeLpo();
+            rpo = opacity.computeRpo();
+            vpo = opacity.computeVpo();
+        } catch (BudgetExceededException e) {
+            synchronized (this) {
+                if (this.exceeded == null) {
+                    this.exceeded = e;
+                }
+                ++this.failed;
+                ++this.done;
+                this.notifyObservable();
             }
-            if (this.opacities.get(i).getRpo() < this.minRpo) {
-                this.minRpo = this.opacities.get(i).getRpo();
+            return;
+        } catch (IncorrectDataException e) {
+            Model.LOGGER.log(Level.WARNING, "Scheduler failed : "
+                    + e.getMessage());
+            synchronized (this) {
+                ++this.failed;
+                ++this.done;
+                this.notifyObservable();
             }
-            if (this.opacities.get(i).getVpo() > this.maxVpo) {
-                this.maxVpo = this.opacities.get(i).getVpo();
+            return;
+        } catch (RuntimeException | Error e) {
+            // recorded to be thrown again by the calling thread, since the
+            // branch may run on a thread of the executor
+            synchronized (this) {
+                if (this.error == null) {
+                    this.error = e;
+                }
+                ++this.failed;
+                ++this.done;
             }
-            if (this.opacities.get(i).getVpo() < this.minVpo) {
-                this.minVpo = this.opacities.get(i).getVpo();
+            return;
+        }
+
+        synchronized (this) {
+            if (this.done - this.failed == 0) {
+                this.minLpo = lpo;
+                this.maxLpo = lpo;
+                this.minRpo = rpo;
+                this.maxRpo = rpo;
+                this.minVpo = vpo;
+                this.maxVpo = vpo;
+            } else {
+                this.minLpo = Math.min(this.minLpo, lpo);
+                this.maxLpo = Math.max(this.maxLpo, lpo);
+                this.minRpo = Math.min(this.minRpo, rpo);
+                this.maxRpo = Math.max(this.maxRpo, rpo);
+                this.minVpo = Math.min(this.minVpo, vpo);
+                this.maxVpo = Math.max(this.maxVpo, vpo);
             }
+            ++this.done;
+            this.notifyObservable();
         }
+    }
 
+    /**
+     * Notifies the observable with the current extremes. Called with the lock
+     * held, so that the notifications are in order.
+     */
+    private void notifyObservable() {
+        if (this.observable != null) {
+            this.observable.updateMinMaxOpacities(this.getMinMaxOpacities());
+        }
     }
 
-    public final double getMinRpo() {
-        return this.minRpo;
+    /**
+     * Getter.
+     * @return the current extremes and progress : the minimum and maximum
+     *         LPO, RPO and VPO, then the number of branches evaluated and the
+     *         number of branches
+     */
+    public final synchronized double[] getMinMaxOpacities() {
+        return new double[] {this.minLpo, this.maxLpo, this.minRpo,
+                this.maxRpo, this.minVpo, this.maxVpo, this.done, this.total };
     }
 
-    public final double getMinVpo() {
-        return this.minVpo;
+    /**
+     * Getter.
+     * @return the number of branches
+     */
+    public final synchronized int getTotal() {
+        return this.total;
     }
 
-    public final List<Opacity> getOpacities() {
-        return this.opacities;
+    /**
+     * Getter.
+     * @return the number of branches evaluated, including the failed ones
+     */
+    public final synchronized int getDone() {
+        return this.done;
     }
 
-    public final void setMaxLpo(final double maxLpoIn) {
-        this.maxLpo = maxLpoIn;
+    /**
+     * Getter.
+     * @return the number of branches whose evaluation failed
+     */
+    public final synchronized int getFailed() {
+        return this.failed;
     }
 
-    public final void setMaxRpo(final double maxRpoIn) {
-        this.maxRpo = maxRpoIn;
+    /**
+     * Getter.
+     * @return the maximum LPO
+     */
+    public final synchronized double getMaxLpo() {
+        return this.maxLpo;
     }
 
-    public final void setMaxVpo(final double maxVpoIn) {
-        this.maxVpo = maxVpoIn;
+    /**
+     * Getter.
+     * @return the maximum RPO
+     */
+    public final synchronized double getMaxRpo() {
+        return this.maxRpo;
     }
 
-    public final void setMinLpo(final double minLpoIn) {
-        this.minLpo = minLpoIn;
+    /**
+     * Getter.
+     * @return the maximum VPO
+     */
+    public final synchronized double getMaxVpo() {
+        return this.maxVpo;
     }
 
-    public final void setMinRpo(final double minRpoIn) {
-        this.minRpo = minRpoIn;
+    /**
+     * Getter.
+     * @return the minimum LPO
+     */
+    public final synchronized double getMinLpo() {
+        return this.minLpo;
     }
 
-    public final void setMinVpo(final double minVpoIn) {
-        this.minVpo = minVpoIn;
+    /**
+     * Getter.
+     * @return the minimum RPO
+     */
+    public final synchronized double getMinRpo() {
+        return this.minRpo;
     }
 
+    /**
+     * Getter.
+     * @return the minimum VPO
+     */
+    public final synchronized double getMinVpo() {
+        return this.minVpo;
+    }
 }
@@ -0,0 +1,560 @@
+package ca.polymtl.crac.tpot.scheduler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+
+import net.jautomata.rationals.Automaton;
+import net.jautomata.rationals.PSymbol;
+import net.jautomata.rationals.State;
+import net.jautomata.rationals.SymbolTable;
+import net.jautomata.rationals.Transition;
+
+import ca.polymtl.crac.tpot.budget.WorkBudget;
+import ca.polymtl.crac.tpot.model.Model;
+import ca.polymtl.crac.tpot.model.Opacity;
+import ca.polymtl.crac.tpot.model.product.ObservationDfa;
+import ca.polymtl.crac.tpot.solver.AbstractIterativeSolver;
+
+/**
+ * Computes the minimum and the maximum of the LPO over the schedulers of a
+ * nondeterministic automaton, seen as a Markov decision process, without
+ * enumerating the schedulers.
+ * <p>
+ * A state with a probabilistic transition is a random state. The other
+ * states are the choice states, where the scheduler picks one of the
+ * transitions : as for {@link NonDetScheduler}, these transitions are not
+ * observed, so the observations are over the words of the probabilistic
+ * transitions. Unlike {@link NonDetScheduler}, the choices may come after
+ * probabilistic transitions and may form loops.
+ * <p>
+ * The LPO of a scheduler is the expected number of revealing observation
+ * classes accepting the words of the system, which is an expected reward in
+ * the product of the system with the observation automaton. The revealing
+ * classes only depend on the observations and the predicate, so the
+ * predicate is not part of the product. The extremes are computed by value
+ * iteration over the product : the maximum from zero, and the minimum from
+ * the maximum, so that a scheduler looping forever between choice states is
+ * not optimal. The optimal schedulers are memoryless in the product, which
+ * remembers the state of the observation automaton.
+ * @author Daniel Lefevre
+ */
+public class OptimalScheduler {
+
+    /**
+     * The difference under which two values are equal when extracting the
+     * optimal choices.
+     */
+    private static final double TIE = 1e-9;
+    /**
+     * The shift of the system state in the keys of the product states.
+     */
+    private static final int KEY_SHIFT = 32;
+
+    /**
+     * The observation automaton.
+     */
+    private final ObservationDfa observations;
+    /**
+     * The system states, by index.
+     */
+    private final List<State> systemStates = new ArrayList<>();
+    /**
+     * The number of states of the product.
+     */
+    private int size = 0;
+    /**
+     * The system state of each state.
+     */
+    private int[] systems = new int[16];
+    /**
+     * The observation state of each state.
+     */
+    private int[] observationStates = new int[16];
+    /**
+     * True for the choice states.
+     */
+    private final boolean[] choices;
+    /**
+     * The reward of each state : the number of revealing classes accepting
+     * the word leading to it if it is terminal, 0 otherwise.
+     */
+    private final double[] rewards;
+    /**
+     * Beginning of the transitions of each state.
+     */
+    private final int[] rowPtr;
+    /**
+     * The targets of the transitions.
+     */
+    private int[] targets = new int[16];
+    /**
+     * The probabilities of the transitions, 1 for the choices.
+     */
+    private double[] probabilities = new double[16];
+    /**
+     * The system transition of each transition.
+     */
+    private Transition[] transitions = new Transition[16];
+    /**
+     * The indexes of the initial states.
+     */
+    private final int[] initials;
+    /**
+     * The tolerance of the value iteration.
+     */
+    private double tolerance = AbstractIterativeSolver.DEFAULT_TOLERANCE;
+    /**
+     * The maximum number of sweeps of each value iteration.
+     */
+    private int maxIterations = AbstractIterativeSolver.DEFAULT_MAX_ITERATIONS;
+    /**
+     * The minimum LPO, -1 if not computed.
+     */
+    private double minLpo = -1;
+    /**
+     * The maximum LPO, -1 if not computed.
+     */
+    private double maxLpo = -1;
+    /**
+     * The transition chosen in each state by a minimizing scheduler, -1 for
+     * the random states.
+     */
+    private int[] minChoices;
+    /**
+     * The transition chosen in each state by a maximizing scheduler, -1 for
+     * the random states.
+     */
+    private int[] maxChoices;
+
+    /**
+     * Builds the reachable part of the product.
+     * @param system
+     *            the nondeterministic automaton
+     * @param observationsIn
+     *            the observation classes
+     * @param phi
+     *            the predicate
+     */
+    public OptimalScheduler(final Automaton system,
+            final List<Automaton> observationsIn, final Automaton phi) {
+        SymbolTable symbols = new SymbolTable();
+        this.observations = new ObservationDfa(observationsIn, symbols);
+        boolean[] revealing = new Opacity(system, observationsIn, phi)
+                .computeRevealing(true);
+
+        // numbers the system states and groups their transitions
+        Map<State, Integer> indexes = new HashMap<>();
+        for (State s : system.states()) {
+            indexes.put(s, indexes.size());
+            this.systemStates.add(s);
+        }
+        int n = indexes.size();
+        List<List<Transition>> out = new ArrayList<>(n);
+        boolean[] random = new boolean[n];
+        for (int i = 0; i < n; ++i) {
+            out.add(new ArrayList<Transition>());
+        }
+        for (Transition t : system.delta()) {
+            int start = indexes.get(t.start());
+            out.get(start).add(t);
+            if (t.label() instanceof PSymbol) {
+                random[start] = true;
+            }
+        }
+        List<int[]> outSymbols = new ArrayList<>(n);
+        for (List<Transition> l : out) {
+            int[] ids = new int[l.size()];
+            for (int j = 0; j < ids.length; ++j) {
+                ids[j] = symbols.intern(l.get(j).symbol());
+            }
+            outSymbols.add(ids);
+        }
+
+        Map<Long, Integer> states = new HashMap<>();
+        this.initials = new int[system.initials().size()];
+        int k = 0;
+        for (State s : system.initials()) {
+            this.initials[k++] = this.intern(states, indexes.get(s),
+                    this.observations.initial());
+        }
+
+        // the states are numbered in breadth-first order, so the rows can be
+        // filled while exploring
+        List<Integer> rows = new ArrayList<>();
+        int count = 0;
+        for (int i = 0; i < this.size; ++i) {
+            WorkBudget.checkpoint();
+            WorkBudget.checkSize(this.size);
+            rows.add(count);
+            int observationState = this.observationStates[i];
+            List<Transition> from = out.get(this.systems[i]);
+            int[] ids = outSymbols.get(this.systems[i]);
+            for (int j = 0; j < ids.length; ++j) {
+                Transition t = from.get(j);
+                int nextObservation = observationState;
+                if (random[this.systems[i]]) {
+                    nextObservation = this.observations.next(observationState,
+                            ids[j]);
+                }
+                int target = this.intern(states, indexes.get(t.end()),
+                        nextObservation);
+                if (count == this.targets.length) {
+                    this.targets = Arrays.copyOf(this.targets, 2 * count);
+                    this.probabilities = Arrays.copyOf(this.probabilities,
+                            2 * count);
+                    this.transitions = Arrays.copyOf(this.transitions,
+                            2 * count);
+                }
+                this.targets[count] = target;
+                this.probabilities[count] = t.weight();
+                this.transitions[count] = t;
+                ++count;
+            }
+        }
+        this.rowPtr = new int[this.size + 1];
+        this.choices = new boolean[this.size];
+        this.rewards = new double[this.size];
+        for (int i = 0; i < this.size; ++i) {
+            this.rowPtr[i] = rows.get(i);
+            this.choices[i] = !random[this.systems[i]];
+            if (this.systemStates.get(this.systems[i]).isTerminal()) {
+                for (int o : this.observations.tags(
+                        this.observationStates[i])) {
+                    if (revealing[o]) {
+                        this.rewards[i] += 1;
+                    }
+                }
+            }
+        }
+        this.rowPtr[this.size] = count;
+    }
+
+    /**
+     * Returns the index of a state, adding it if needed.
+     * @param states
+     *            the states added so far, by key
+     * @param system
+     *            the system state
+     * @param observation
+     *            the observation state
+     * @return the index of the state
+     */
+    private int intern(final Map<Long, Integer> states, final int system,
+            final int observation) {
+        Long key = ((long) system << KEY_SHIFT) | observation;
+        Integer index = states.get(key);
+        if (index == null) {
+            index = this.size;
+            states.put(key, index);
+            if (this.size == this.systems.length) {
+                int capacity = 2 * this.size;
+                this.systems = Arrays.copyOf(this.systems, capacity);
+                this.observationStates = Arrays.copyOf(this.observationStates,
+                        capacity);
+            }
+            this.systems[this.size] = system;
+            this.observationStates[this.size] = observation;
+            ++this.size;
+        }
+        return index;
+    }
+
+    /**
+     * Computes the minimum and the maximum LPO, and the optimal schedulers.
+     */
+    public final void computeLpoBounds() {
+        double[] max = new double[this.size];
+        this.iterate(max, true);
+        double[] min = max.clone();
+        this.iterate(min, false);
+
+        this.maxLpo = this.initialValue(max);
+        this.minLpo = this.initialValue(min);
+        this.maxChoices = this.extract(max);
+        this.minChoices = this.extract(min);
+    }
+
+    /**
+     * Applies the Bellman operator until the values are stable. The states
+     * are swept backwards, since the targets mostly follow their sources in
+     * the breadth-first numbering, and updated in place.
+     * @param values
+     *            the initial values, replaced by the final values
+     * @param maximum
+     *            true to maximize, false to minimize
+     */
+    private void iterate(final double[] values, final boolean maximum) {
+        int iteration = 0;
+        double delta;
+        do {
+            WorkBudget.checkpoint();
+            delta = 0;
+            for (int i = this.size - 1; i >= 0; --i) {
+                double v = this.rewards[i] + this.next(values, i, maximum);
+                delta = Math.max(delta, Math.abs(v - values[i]));
+                values[i] = v;
+            }
+            ++iteration;
+        } while ((delta > this.tolerance) && (iteration < this.maxIterations));
+
+        if (delta > this.tolerance) {
+            Model.LOGGER.log(Level.WARNING, "Value iteration on " + this.size
+                    + " states did not converge : " + delta + " after "
+                    + iteration + " sweeps.");
+        } else if (Model.LOGGER.isLoggable(Level.FINE)) {
+            Model.LOGGER.log(Level.FINE, "Value iteration on " + this.size
+                    + " states converged after " + iteration + " sweeps.");
+        }
+    }
+
+    /**
+     * Computes the value of the transitions of a state : the optimal value
+     * of the targets for a choice state, the expected value of the targets
+     * for a random state.
+     * @param values
+     *            the values of the states
+     * @param state
+     *            the index of the state
+     * @param maximum
+     *            true to maximize, false to minimize
+     * @return the value of the transitions, 0 if there is none
+     */
+    private double next(final double[] values, final int state,
+            final boolean maximum) {
+        int begin = this.rowPtr[state];
+        int end = this.rowPtr[state + 1];
+        if (begin == end) {
+            return 0;
+        }
+        double v;
+        if (this.choices[state]) {
+            v = values[this.targets[begin]];
+            for (int k = begin + 1; k < end; ++k) {
+                double w = values[this.targets[k]];
+                v = maximum ? Math.max(v, w) : Math.min(v, w);
+            }
+        } else {
+            v = 0;
+            for (int k = begin; k < end; ++k) {
+                v += this.probabilities[k] * values[this.targets[k]];
+            }
+        }
+        return v;
+    }
+
+    /**
+     * Extracts an optimal scheduler from the optimal values. The choices are
+     * resolved backwards from the random states, so that a choice state
+     * never picks a loop of choice states whose value only comes from a way
+     * out.
+     * @param values
+     *            the optimal values
+     * @return the transition chosen in each choice state, -1 in the random
+     *         states and in the choice states without transitions
+     */
+    private int[] extract(final double[] values) {
+        int[] chosen = new int[this.size];
+        Arrays.fill(chosen, -1);
+
+        // the choice transitions, backwards
+        int[] predPtr = new int[this.size + 1];
+        for (int i = 0; i < this.size; ++i) {
+            if (this.choices[i]) {
+                for (int k = this.rowPtr[i]; k < this.rowPtr[i + 1]; ++k) {
+                    ++predPtr[this.targets[k] + 1];
+                }
+            }
+        }
+        for (int i = 0; i < this.size; ++i) {
+            predPtr[i + 1] += predPtr[i];
+        }
+        int[] preds = new int[predPtr[this.size]];
+        int[] sources = new int[preds.length];
+        int[] fill = Arrays.copyOf(predPtr, this.size);
+        for (int i = 0; i < this.size; ++i) {
+            if (this.choices[i]) {
+                for (int k = this.rowPtr[i]; k < this.rowPtr[i + 1]; ++k) {
+                    int p = fill[this.targets[k]]++;
+                    preds[p] = k;
+                    sources[p] = i;
+                }
+            }
+        }
+
+        // the random states and the dead ends are resolved first
+        boolean[] resolved = new boolean[this.size];
+        int[] queue = new int[this.size];
+        int tail = 0;
+        for (int i = 0; i < this.size; ++i) {
+            if (!this.choices[i] || (this.rowPtr[i] == this.rowPtr[i + 1])) {
+                resolved[i] = true;
+                queue[tail++] = i;
+            }
+        }
+        for (int head = 0; head < tail; ++head) {
+            int t = queue[head];
+            for (int p = predPtr[t]; p < predPtr[t + 1]; ++p) {
+                int i = sources[p];
+                if (!resolved[i] && (Math.abs(values[i] - this.rewards[i]
+                        - values[t]) <= TIE)) {
+                    resolved[i] = true;
+                    chosen[i] = preds[p];
+                    queue[tail++] = i;
+                }
+            }
+        }
+
+        // the remaining choice states can not reach a way out optimally
+        for (int i = 0; i < this.size; ++i) {
+            if (!resolved[i]) {
+                chosen[i] = this.rowPtr[i];
+            }
+        }
+        return chosen;
+    }
+
+    /**
+     * Sums the values of the initial states.
+     * @param values
+     *            the values of the states
+     * @return the value of the system
+     */
+    private double initialValue(final double[] values) {
+        double v = 0;
+        for (int i : this.initials) {
+            v += values[i];
+        }
+        return v;
+    }
+
+    /**
+     * Getter.
+     * @return the number of states of the product
+     */
+    public final int size() {
+        return this.size;
+    }
+
+    /**
+     * Getter. The array is shared, it must not be modified.
+     * @return the indexes of the initial states of the product
+     */
+    public final int[] getInitials() {
+        return this.initials;
+    }
+
+    /**
+     * Getter.
+     * @param state
+     *            the index of a state of the product
+     * @return the system state
+     */
+    public final State getSystemState(final int state) {
+        return this.systemStates.get(this.systems[state]);
+    }
+
+    /**
+     * Getter.
+     * @param state
+     *            the index of a state of the product
+     * @return true if the scheduler chooses the transition of the state
+     */
+    public final boolean isChoice(final int state) {
+        return this.choices[state];
+    }
+
+    /**
+     * Getter. The bounds must have been computed.
+     * @param maximum
+     *            true for the maximizing scheduler, false for the minimizing
+     *            one
+     * @param state
+     *            the index of a state of the product
+     * @return the transition chosen in the state, null if it is not a choice
+     *         state or has no transition
+     */
+    public final Transition getChoice(final boolean maximum,
+            final int state) {
+        int k = (maximum ? this.maxChoices : this.minChoices)[state];
+        return (k < 0) ? null : this.transitions[k];
+    }
+
+    /**
+     * Getter. The bounds must have been computed. The choices are those of
+     * the choice states reached before any observed transition : they are
+     * the whole scheduler when the nondeterminism is a prefix, as for
+     * {@link NonDetScheduler}.
+     * @param maximum
+     *            true for the maximizing scheduler, false for the minimizing
+     *            one
+     * @return the transition chosen in each choice state reached before any
+     *         observed transition
+     */
+    public final Map<State, Transition> getScheduler(final boolean maximum) {
+        Map<State, Transition> scheduler = new LinkedHashMap<>();
+        int initial = this.observations.initial();
+        for (int i = 0; i < this.size; ++i) {
+            Transition t = this.getChoice(maximum, i);
+            if ((t != null) && (this.observationStates[i] == initial)) {
+                scheduler.put(this.getSystemState(i), t);
+            }
+        }
+        return scheduler;
+    }
+
+    /**
+     * Getter.
+     * @return the minimum LPO, -1 if not computed
+     */
+    public final double getMinLpo() {
+        return this.minLpo;
+    }
+
+    /**
+     * Getter.
+     * @return the maximum LPO, -1 if not computed
+     */
+    public final double getMaxLpo() {
+        return this.maxLpo;
+    }
+
+    /**
+     * Getter.
+     * @return the tolerance of the value iteration
+     */
+    public final double getTolerance() {
+        return this.tolerance;
+    }
+
+    /**
+     * Setter.
+     * @param toleranceIn
+     *            the largest change of a value between two sweeps at which
+     *            the value iteration stops
+     */
+    public final void setTolerance(final double toleranceIn) {
+        this.tolerance = toleranceIn;
+    }
+
+    /**
+     * Getter.
+     * @return the maximum number of sweeps of each value iteration
+     */
+    public final int getMaxIterations() {
+        return this.maxIterations;
+    }
+
+    /**
+     * Setter.
+     * @param maxIterationsIn
+     *            the maximum number of sweeps of each value iteration
+     */
+    public final void setMaxIterations(final int maxIterationsIn) {
+        this.maxIterations = maxIterationsIn;
+    }
+}
@@ -5,20 +5,18 @@ import ca.polymtl.crac.tpot.scheduler.Scheduler;
 
 public class InternSchedulerGramm implements InternSchedulerGrammConstants {
 
-    static private boolean jj_initialized_once = false;
-
     /** Generated Token Manager. */
-    static public InternSchedulerGrammTokenManager token_source;
+    public InternSchedulerGrammTokenManager token_source;
 
-    static SimpleCharStream jj_input_stream;
+    SimpleCharStream jj_input_stream;
 
     /** Current token. */
-    static public Token token;
+    public Token token;
     /** Next token. */
-    static public Token jj_nt;
-    static private int jj_ntk;
-    static private int jj_gen;
-    static final private int[] jj_la1 = new int[2];
+    public Token jj_nt;
+    private int jj_ntk;
+    private int jj_gen;
+    final private int[] jj_la1 = new int[2];
     static private int[] jj_la1_0;
 
     /** Constructor with InputStream. */
@@ -28,15 +26,6 @@ public class InternSchedulerGramm implements InternSchedulerGrammConstants {
 
     /** Constructor with InputStream and supplied encoding */
     public InternSchedulerGramm(java.io.InputStream stream, String encoding) {
-        if (jj_initialized_once) {
-            System.out
-                    .println("ERROR: Second call to constructor of static parser.  ");
-            System.out
-                    .println("       You must either use ReInit() or set the JavaCC option STATIC to false");
-            System.out.println("       during parser generation.");
-            throw new Error();
-        }
-        jj_initialized_once = true;
         try {
             jj_input_stream = new SimpleCharStream(stream, encoding, 1, 1);
         } catch (java.io.UnsupportedEncodingException e) {
@@ -53,23 +42,14 @@ public class InternSchedulerGramm implements InternSchedulerGrammConstants {
     static {
         jj_la1_init_0();
     }
-    static private java.util.List<int[]> jj_expentries = new java.util.ArrayList<int[]>();
+    private java.util.List<int[]> jj_expentries = new java.util.ArrayList<int[]>();
 
-    static private int[] jj_expentry;
+    private int[] jj_expentry;
 
-    static private int jj_kind = -1;
+    private int jj_kind = -1;
 
     /** Constructor with generated Token Manager. */
     public InternSchedulerGramm(InternSchedulerGrammTokenManager tm) {
-        if (jj_initialized_once) {
-            System.out
-                    .println("ERROR: Second call to constructor of static parser. ");
-            System.out
-                    .println("       You must either use ReInit() or set the JavaCC option STATIC to false");
-            System.out.println("       during parser generation.");
-            throw new Error();
-        }
-        jj_initialized_once = true;
         token_source = tm;
         token = new Token();
         jj_ntk = -1;
@@ -80,15 +60,6 @@ public class InternSchedulerGramm implements InternSchedulerGrammConstants {
 
     /** Constructor. */
     public InternSchedulerGramm(java.io.Reader stream) {
-        if (jj_initialized_once) {
-            System.out
-                    .println("ERROR: Second call to constructor of static parser. ");
-            System.out
-                    .println("       You must either use ReInit() or set the JavaCC option STATIC to false");
-            System.out.println("       during parser generation.");
-            throw new Error();
-        }
-        jj_initialized_once = true;
         jj_input_stream = new SimpleCharStream(stream, 1, 1);
         token_source = new InternSchedulerGrammTokenManager(jj_input_stream);
         token = new Token();
@@ -99,14 +70,14 @@ public class InternSchedulerGramm implements InternSchedulerGrammConstants {
     }
 
     /** Disable tracing. */
-    static final public void disable_tracing() {
+    final public void disable_tracing() {
     }
 
     /** Enable tracing. */
-    static final public void enable_tracing() {
+    final public void enable_tracing() {
     }
 
-    static final public EquivalenceClass EquivalenceClass()
+    final public EquivalenceClass EquivalenceClass()
             throws ParseException {
         EquivalenceClass eqClass = new EquivalenceClass();
         Token action = null;
@@ -135,7 +106,7 @@ public class InternSchedulerGramm implements InternSchedulerGrammConstants {
     }
 
     /** Generate ParseException. */
-    static public ParseException generateParseException() {
+    public ParseException generateParseException() {
         jj_expentries.clear();
         boolean[] la1tokens = new boolean[13];
         if (jj_kind >= 0) {
@@ -166,36 +137,34 @@ public class InternSchedulerGramm implements InternSchedulerGrammConstants {
     }
 
     /** Get the next Token. */
-    static final public Token getNextToken() {
+    final public Token getNextToken() {
         if (token.next != null)
             token = token.next;
         else
-            token = token.next = InternSchedulerGrammTokenManager
-                    .getNextToken();
+            token = token.next = token_source.getNextToken();
         jj_ntk = -1;
         jj_gen++;
         return token;
     }
 
     /** Get the specific Token. */
-    static final public Token getToken(int index) {
+    final public Token getToken(int index) {
         Token t = token;
         for (int i = 0; i < index; i++) {
             if (t.next != null)
                 t = t.next;
             else
-                t = t.next = InternSchedulerGrammTokenManager.getNextToken();
+                t = t.next = token_source.getNextToken();
         }
         return t;
     }
 
-    static private Token jj_consume_token(int kind) throws ParseException {
+    private Token jj_consume_token(int kind) throws ParseException {
         Token oldToken;
         if ((oldToken = token).next != null)
             token = token.next;
         else
-            token = token.next = InternSchedulerGrammTokenManager
-                    .getNextToken();
+            token = token.next = token_source.getNextToken();
         jj_ntk = -1;
         if (token.kind == kind) {
             jj_gen++;
@@ -210,35 +179,55 @@ public class InternSchedulerGramm implements InternSchedulerGrammConstants {
         jj_la1_0 = new int[]{0x400, 0x200,};
     }
 
-    static private int jj_ntk() {
+    private int jj_ntk() {
         if ((jj_nt = token.next) == null)
-            return (jj_ntk = (token.next = InternSchedulerGrammTokenManager
-                    .getNextToken()).kind);
+            return (jj_ntk = (token.next = token_source.getNextToken()).kind);
         else
             return (jj_ntk = jj_nt.kind);
     }
 
+    /**
+     * Parses the equivalence classes of a scheduler. Each call has its own
+     * parser, so several schedulers can be parsed at the same time.
+     * @param file
+     *            the text of the scheduler
+     * @return the scheduler
+     * @throws ParseException
+     *             if the text is incorrect
+     */
     public static Scheduler parseEquivalenceClasses(String file)
             throws ParseException {
-        InternSchedulerGramm parser = new InternSchedulerGramm(
-                new java.io.StringReader(file));
-        Scheduler sched = InternSchedulerGramm.Start();
-        return sched;
+        return parseEquivalenceClasses(new java.io.StringReader(file));
+    }
+
+    /**
+     * Parses the equivalence classes of a scheduler from a stream, which is
+     * not closed. Each call has its own parser, so several schedulers can be
+     * parsed at the same time.
+     * @param in
+     *            the text of the scheduler
+     * @return the scheduler
+     * @throws ParseException
+     *             if the text is incorrect
+     */
+    public static Scheduler parseEquivalenceClasses(java.io.Reader in)
+            throws ParseException {
+        return new InternSchedulerGramm(in).Start();
     }
 
     /** Reinitialise. */
-    static public void ReInit(java.io.InputStream stream) {
+    public void ReInit(java.io.InputStream stream) {
         ReInit(stream, null);
     }
 
     /** Reinitialise. */
-    static public void ReInit(java.io.InputStream stream, String encoding) {
+    public void ReInit(java.io.InputStream stream, String encoding) {
         try {
             jj_input_stream.ReInit(stream, encoding, 1, 1);
         } catch (java.io.UnsupportedEncodingException e) {
             throw new RuntimeException(e);
         }
-        InternSchedulerGrammTokenManager.ReInit(jj_input_stream);
+        token_source.ReInit(jj_input_stream);
         token = new Token();
         jj_ntk = -1;
         jj_gen = 0;
@@ -247,9 +236,9 @@ public class InternSchedulerGramm implements InternSchedulerGrammConstants {
     }
 
     /** Reinitialise. */
-    static public void ReInit(java.io.Reader stream) {
+    public void ReInit(java.io.Reader stream) {
         jj_input_stream.ReInit(stream, 1, 1);
-        InternSchedulerGrammTokenManager.ReInit(jj_input_stream);
+        token_source.ReInit(jj_input_stream);
         token = new Token();
         jj_ntk = -1;
         jj_gen = 0;
@@ -263,7 +252,7 @@ public class InternSchedulerGramm implements InternSchedulerGrammConstants {
      * *****************************************************
      */
     /*****************************************************************************/
-    static final public Scheduler Start() throws ParseException {
+    final public Scheduler Start() throws ParseException {
         Scheduler sched = new Scheduler();
         EquivalenceClass eqClass;
         label_1: while (true) {
@@ -287,7 +276,7 @@ public class InternSchedulerGramm implements InternSchedulerGrammConstants {
     }
 
     /** Reinitialise. */
-    public static void ReInit(InternSchedulerGrammTokenManager tm) {
+    public void ReInit(InternSchedulerGrammTokenManager tm) {
         token_source = tm;
         token = new Token();
         jj_ntk = -1;
@@ -1,5 +1,5 @@
 /* Generated By:JavaCC: Do not edit this line. SimpleCharStream.java Version 5.0 */
-/* JavaCCOptions:STATIC=true,SUPPORT_CLASS_VISIBILITY_PUBLIC=true */
+/* JavaCCOptions:STATIC=false,SUPPORT_CLASS_VISIBILITY_PUBLIC=true */
 package ca.polymtl.crac.tpot.scheduler.parser;
 
 /**
@@ -10,27 +10,27 @@ package ca.polymtl.crac.tpot.scheduler.parser;
 public class SimpleCharStream {
 
     /** Whether parser is static. */
-    public static final boolean staticFlag = true;
-    static int bufsize;
-    static int available;
-    static int tokenBegin;
+    public static final boolean staticFlag = false;
+    int bufsize;
+    int available;
+    int tokenBegin;
     /** Position in buffer. */
-    static public int bufpos = -1;
-    static protected int bufline[];
-    static protected int bufcolumn[];
+    public int bufpos = -1;
+    protected int bufline[];
+    protected int bufcolumn[];
 
-    static protected int column = 0;
-    static protected int line = 1;
+    protected int column = 0;
+    protected int line = 1;
 
-    static protected boolean prevCharIsCR = false;
-    static protected boolean prevCharIsLF = false;
+    protected boolean prevCharIsCR = false;
+    protected boolean prevCharIsLF = false;
 
-    static protected java.io.Reader inputStream;
+    protected java.io.Reader inputStream;
 
-    static protected char[] buffer;
-    static protected int maxNextCharInd = 0;
-    static protected int inBuf = 0;
-    static protected int tabSize = 8;
+    protected char[] buffer;
+    protected int maxNextCharInd = 0;
+    protected int inBuf = 0;
+    protected int tabSize = 8;
 
     /** Constructor. */
     public SimpleCharStream(java.io.InputStream dstream) {
@@ -86,11 +86,6 @@ public class SimpleCharStream {
     /** Constructor. */
     public SimpleCharStream(java.io.Reader dstream, int startline,
             int startcolumn, int buffersize) {
-        if (inputStream != null)
-            throw new Error(
-                    "\n   ERROR: Second call to the constructor of a static SimpleCharStream.\n"
-                            + "       You must either use ReInit() or set the JavaCC option STATIC to false\n"
-                            + "       during the generation of this class.");
         inputStream = dstream;
         line = startline;
         column = startcolumn - 1;
@@ -104,7 +99,7 @@ public class SimpleCharStream {
     /**
      * Method to adjust line and column numbers for the start of a token.
      */
-    static public void adjustBeginLineColumn(int newLine, int newCol) {
+    public void adjustBeginLineColumn(int newLine, int newCol) {
         int start = tokenBegin;
         int len;
 
@@ -144,7 +139,7 @@ public class SimpleCharStream {
     }
 
     /** Backup a number of characters. */
-    static public void backup(int amount) {
+    public void backup(int amount) {
 
         inBuf += amount;
         if ((bufpos -= amount) < 0)
@@ -152,7 +147,7 @@ public class SimpleCharStream {
     }
 
     /** Start. */
-    static public char BeginToken() throws java.io.IOException {
+    public char BeginToken() throws java.io.IOException {
         tokenBegin = -1;
         char c = readChar();
         tokenBegin = bufpos;
@@ -161,13 +156,13 @@ public class SimpleCharStream {
     }
 
     /** Reset buffer when finished. */
-    static public void Done() {
+    public void Done() {
         buffer = null;
         bufline = null;
         bufcolumn = null;
     }
 
-    static protected void ExpandBuff(boolean wrapAround) {
+    protected void ExpandBuff(boolean wrapAround) {
         char[] newbuffer = new char[bufsize + 2048];
         int newbufline[] = new int[bufsize + 2048];
         int newbufcolumn[] = new int[bufsize + 2048];
@@ -217,7 +212,7 @@ public class SimpleCharStream {
         tokenBegin = 0;
     }
 
-    static protected void FillBuff() throws java.io.IOException {
+    protected void FillBuff() throws java.io.IOException {
         if (maxNextCharInd == available) {
             if (available == bufsize) {
                 if (tokenBegin > 2048) {
@@ -254,12 +249,12 @@ public class SimpleCharStream {
     }
 
     /** Get token beginning column number. */
-    static public int getBeginColumn() {
+    public int getBeginColumn() {
         return bufcolumn[tokenBegin];
     }
 
     /** Get token beginning line number. */
-    static public int getBeginLine() {
+    public int getBeginLine() {
         return bufline[tokenBegin];
     }
 
@@ -268,22 +263,22 @@ public class SimpleCharStream {
      * @deprecated
      * @see #getEndColumn
      */
-    static public int getColumn() {
+    public int getColumn() {
         return bufcolumn[bufpos];
     }
 
     /** Get token end column number. */
-    static public int getEndColumn() {
+    public int getEndColumn() {
         return bufcolumn[bufpos];
     }
 
     /** Get token end line number. */
-    static public int getEndLine() {
+    public int getEndLine() {
         return bufline[bufpos];
     }
 
     /** Get token literal value. */
-    static public String GetImage() {
+    public String GetImage() {
         if (bufpos >= tokenBegin)
             return new String(buffer, tokenBegin, bufpos - tokenBegin + 1);
         else
@@ -296,12 +291,12 @@ public class SimpleCharStream {
      * @deprecated
      * @see #getEndLine
      */
-    static public int getLine() {
+    public int getLine() {
         return bufline[bufpos];
     }
 
     /** Get the suffix. */
-    static public char[] GetSuffix(int len) {
+    public char[] GetSuffix(int len) {
         char[] ret = new char[len];
 
         if ((bufpos + 1) >= len)
@@ -315,12 +310,12 @@ public class SimpleCharStream {
         return ret;
     }
 
-    static protected int getTabSize(int i) {
+    protected int getTabSize(int i) {
         return tabSize;
     }
 
     /** Read a character. */
-    static public char readChar() throws java.io.IOException {
+    public char readChar() throws java.io.IOException {
         if (inBuf > 0) {
             --inBuf;
 
@@ -339,11 +334,11 @@ public class SimpleCharStream {
         return c;
     }
 
-    static protected void setTabSize(int i) {
+    protected void setTabSize(int i) {
         tabSize = i;
     }
 
-    static protected void UpdateLineColumn(char c) {
+    protected void UpdateLineColumn(char c) {
         column++;
 
         if (prevCharIsLF) {
@@ -0,0 +1,172 @@
+package ca.polymtl.crac.tpot.server;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ca.polymtl.crac.tpot.model.Opacity.IncorrectDataException;
+import ca.polymtl.crac.tpot.model.io.ModelDigest;
+
+/**
+ * The parsed models, by content hash, evicting the least recently used
+ * model beyond the capacity. The models are parsed outside of the lock, so
+ * that a long parsing does not block the other requests ; two requests
+ * missing the same model at the same time both parse it, and the first one
+ * stored is kept.
+ * @author Daniel Lefevre
+ */
+public class ModelCache {
+
+    /**
+     * The maximum number of models.
+     */
+    private final int capacity;
+    /**
+     * The models, from the least to the most recently used.
+     */
+    private final Map<String, ParsedModel> models;
+    /**
+     * The number of requests finding their model.
+     */
+    private final AtomicLong hits = new AtomicLong();
+    /**
+     * The number of requests not finding their model.
+     */
+    private final AtomicLong misses = new AtomicLong();
+    /**
+     * The number of models evicted.
+     */
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Constructor.
+     * @param capacityIn
+     *            the maximum number of models
+     */
+    public ModelCache(final int capacityIn) {
+        if (capacityIn < 1) {
+            throw new IllegalArgumentException("The capacity must be at "
+                    + "least 1 : " + capacityIn);
+        }
+        this.capacity = capacityIn;
+        this.models = new LinkedHashMap<String, ParsedModel>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                    final Map.Entry<String, ParsedModel> eldest) {
+                if (this.size() > ModelCache.this.capacity) {
+                    ModelCache.this.evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the model of some texts, parsing it if it is not in the cache.
+     * @param auto
+     *            the text of the ".auto" file
+     * @param reg
+     *            the text of the ".reg" file
+     * @return the model
+     * @throws IOException
+     *             if a text could not be parsed
+     * @throws IncorrectDataException
+     *             if the model is incorrect
+     */
+    public final ParsedModel get(final String auto, final String reg)
+            throws IOException, IncorrectDataException {
+        String digest = ModelDigest.digest(auto, reg);
+        synchronized (this.models) {
+            ParsedModel model = this.models.get(digest);
+            if (model != null) {
+                this.hits.incrementAndGet();
+                return model;
+            }
+        }
+        this.misses.incrementAndGet();
+
+        ParsedModel parsed = new ParsedModel(auto, reg);
+        synchronized (this.models) {
+            ParsedModel model = this.models.get(digest);
+            if (model != null) {
+                return model;
+            }
+            this.models.put(digest, parsed);
+        }
+        return parsed;
+    }
+
+    /**
+     * Returns a model of the cache.
+     * @param digest
+     *            the content hash of the model
+     * @return the model, or null if it is not in the cache
+     */
+    public final ParsedModel get(final String digest) {
+        ParsedModel model;
+        synchronized (this.models) {
+            model = this.models.get(digest);
+        }
+        if (model != null) {
+            this.hits.incrementAndGet();
+        } else {
+            this.misses.incrementAndGet();
+        }
+        return model;
+    }
+
+    /**
+     * Removes all models. The counters are kept.
+     */
+    public final void clear() {
+        synchronized (this.models) {
+            this.models.clear();
+        }
+    }
+
+    /**
+     * Getter.
+     * @return the maximum number of models
+     */
+    public final int getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Getter.
+     * @return the number of models in the cache
+     */
+    public final int size() {
+        synchronized (this.models) {
+            return this.models.size();
+        }
+    }
+
+    /**
+     * Getter.
+     * @return the number of requests finding their model
+     */
+    public final long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * Getter.
+     * @return the number of requests not finding their model
+     */
+    public final long getMisses() {
+        return this.misses.get();
+    }
+
+    /**
+     * Getter.
+     * @return the number of models evicted
+     */
+    public final long getEvictions() {
+        return this.evictions.get();
+    }
+}
@@ -0,0 +1,376 @@
+package ca.polymtl.crac.tpot.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+
+import ca.polymtl.crac.tpot.batch.BatchRunner;
+import ca.polymtl.crac.tpot.batch.ResultFormat;
+import ca.polymtl.crac.tpot.model.Model;
+import ca.polymtl.crac.tpot.model.Opacity.IncorrectDataException;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A HTTP server computing the opacities of models, keeping the parsed models
+ * in a {@link ModelCache}. The models are sent as a form with the fields
+ * "auto" and "reg" holding the texts of the ".auto" and ".reg" files, for
+ * example with {@code curl --data-urlencode auto@m.auto --data-urlencode
+ * reg@m.reg}. The requests are :
+ * <ul>
+ * <li>POST /models : parses and stores a model, and returns its id, which is
+ * its content hash ;</li>
+ * <li>GET /models/id : computes the opacities of a stored model ;</li>
+ * <li>POST /opacity : the same as both requests above in one ;</li>
+ * <li>GET /stats : returns the counters of the cache.</li>
+ * </ul>
+ * The opacities are returned as the JSON lines of the batch runner. An
+ * incorrect model gets the status 422, and an unknown id the status 404.
+ * @author Daniel Lefevre
+ */
+public class OpacityServer {
+
+    /**
+     * The status of a success.
+     */
+    private static final int OK = 200;
+    /**
+     * The status of an incorrect request.
+     */
+    private static final int BAD_REQUEST = 400;
+    /**
+     * The status of an unknown model.
+     */
+    private static final int NOT_FOUND = 404;
+    /**
+     * The status of an incorrect method.
+     */
+    private static final int METHOD_NOT_ALLOWED = 405;
+    /**
+     * The status of an incorrect model.
+     */
+    private static final int UNPROCESSABLE = 422;
+    /**
+     * The maximum number of pending connections.
+     */
+    private static final int BACKLOG = 50;
+
+    /**
+     * The cache of the parsed models.
+     */
+    private final ModelCache cache;
+    /**
+     * The HTTP server.
+     */
+    private final HttpServer server;
+    /**
+     * The threads serving the requests.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Constructor. The server is started by {@link #start()}.
+     * @param address
+     *            the address to listen on
+     * @param threads
+     *            the number of requests served at the same time
+     * @param cacheIn
+     *            the cache of the parsed models
+     * @throws IOException
+     *             if the address could not be bound
+     */
+    public OpacityServer(final InetSocketAddress address, final int threads,
+            final ModelCache cacheIn) throws IOException {
+        this.cache = cacheIn;
+        this.server = HttpServer.create(address, BACKLOG);
+        this.executor = Executors.newFixedThreadPool(threads);
+        this.server.setExecutor(this.executor);
+
+        this.server.createContext("/models", new Handler() {
+            @Override
+            protected void handle(final HttpExchange exchange,
+                    final String method, final String path)
+                    throws IOException, IncorrectDataException {
+                OpacityServer.this.handleModels(exchange, method, path);
+            }
+        });
+        this.server.createContext("/opacity", new Handler() {
+            @Override
+            protected void handle(final HttpExchange exchange,
+                    final String method, final String path)
+                    throws IOException, IncorrectDataException {
+                if (!"POST".equals(method)) {
+                    reply(exchange, METHOD_NOT_ALLOWED, error(method));
+                    return;
+                }
+                ParsedModel model = OpacityServer.this.submit(exchange);
+                if (model != null) {
+                    reply(exchange, OK, compute(model));
+                }
+            }
+        });
+        this.server.createContext("/stats", new Handler() {
+            @Override
+            protected void handle(final HttpExchange exchange,
+                    final String method, final String path)
+                    throws IOException {
+                reply(exchange, OK, OpacityServer.this.stats());
+            }
+        });
+    }
+
+    /**
+     * Getter.
+     * @return the cache of the parsed models
+     */
+    public final ModelCache getCache() {
+        return this.cache;
+    }
+
+    /**
+     * Getter.
+     * @return the address the server listens on
+     */
+    public final InetSocketAddress getAddress() {
+        return this.server.getAddress();
+    }
+
+    /**
+     * Starts serving the requests.
+     */
+    public final void start() {
+        this.server.start();
+        Model.LOGGER.log(Level.INFO, "Opacity server listening on "
+                + this.getAddress());
+    }
+
+    /**
+     * Stops the server, letting the current requests end for some time.
+     * @param delay
+     *            the time given to the current requests, in seconds
+     */
+    public final void stop(final int delay) {
+        this.server.stop(delay);
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * Serves the requests on /models.
+     * @param exchange
+     *            the exchange
+     * @param method
+     *            the method
+     * @param path
+     *            the path
+     * @throws IOException
+     *             if the exchange failed
+     * @throws IncorrectDataException
+     *             if the submitted model is incorrect
+     */
+    private void handleModels(final HttpExchange exchange,
+            final String method, final String path) throws IOException,
+            IncorrectDataException {
+        String id = path.substring("/models".length());
+        if (id.startsWith("/")) {
+            id = id.substring(1);
+        }
+        if (id.isEmpty() && "POST".equals(method)) {
+            ParsedModel model = this.submit(exchange);
+            if (model != null) {
+                reply(exchange, OK, "{\"id\":\"" + model.getDigest()
+                        + "\",\"states\":" + model.getAutomaton().states()
+                        .size() + ",\"transitions\":" + model.getAutomaton()
+                        .delta().size() + ",\"observations\":"
+                        + model.getObservations().size() + "}");
+            }
+        } else if (!id.isEmpty() && "GET".equals(method)) {
+            ParsedModel model = this.cache.get(id);
+            if (model == null) {
+                reply(exchange, NOT_FOUND, error("Unknown model " + id));
+            } else {
+                reply(exchange, OK, compute(model));
+            }
+        } else {
+            reply(exchange, METHOD_NOT_ALLOWED, error(method + " " + path));
+        }
+    }
+
+    /**
+     * Reads the model of a form and finds it in the cache, or parses it.
+     * Replies with an error if a field is missing.
+     * @param exchange
+     *            the exchange
+     * @return the model, or null if the request was incorrect
+     * @throws IOException
+     *             if the exchange failed or the model could not be parsed
+     * @throws IncorrectDataException
+     *             if the model is incorrect
+     */
+    private ParsedModel submit(final HttpExchange exchange)
+            throws IOException, IncorrectDataException {
+        Map<String, String> form = parseForm(readBody(exchange));
+        String auto = form.get("auto");
+        String reg = form.get("reg");
+        if (auto == null || reg == null) {
+            reply(exchange, BAD_REQUEST,
+                    error("The fields auto and reg are required"));
+            return null;
+        }
+        return this.cache.get(auto, reg);
+    }
+
+    /**
+     * Computes the opacities of a model.
+     * @param model
+     *            the model
+     * @return the JSON line of the result
+     */
+    private static String compute(final ParsedModel model) {
+        return ResultFormat.JSON.format(BatchRunner.compute(model.getDigest(),
+                model.newOpacity()));
+    }
+
+    /**
+     * Getter.
+     * @return the counters of the cache, in JSON
+     */
+    private String stats() {
+        return "{\"hits\":" + this.cache.getHits() + ",\"misses\":"
+                + this.cache.getMisses() + ",\"evictions\":"
+                + this.cache.getEvictions() + ",\"size\":"
+                + this.cache.size() + ",\"capacity\":"
+                + this.cache.getCapacity() + "}";
+    }
+
+    /**
+     * Reads the body of a request.
+     * @param exchange
+     *            the exchange
+     * @return the body
+     * @throws IOException
+     *             if the body could not be read
+     */
+    private static String readBody(final HttpExchange exchange)
+            throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decodes a form.
+     * @param body
+     *            the body of the request, url-encoded
+     * @return the fields of the form
+     * @throws IOException
+     *             if the body is not url-encoded
+     */
+    private static Map<String, String> parseForm(final String body)
+            throws IOException {
+        Map<String, String> form = new HashMap<>();
+        for (String pair : body.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int eq = pair.indexOf('=');
+            String name = (eq < 0) ? pair : pair.substring(0, eq);
+            String value = (eq < 0) ? "" : pair.substring(eq + 1);
+            form.put(URLDecoder.decode(name, "UTF-8"),
+                    URLDecoder.decode(value, "UTF-8"));
+        }
+        return form;
+    }
+
+    /**
+     * Formats an error.
+     * @param message
+     *            the message
+     * @return the error, in JSON
+     */
+    private static String error(final String message) {
+        return "{\"error\":\"" + message.replace("\\", "\\\\")
+                .replace("\"", "\\\"").replace("\n", "\\n") + "\"}";
+    }
+
+    /**
+     * Sends the response of a request.
+     * @param exchange
+     *            the exchange
+     * @param status
+     *            the status
+     * @param json
+     *            the body, in JSON
+     * @throws IOException
+     *             if the response could not be sent
+     */
+    private static void reply(final HttpExchange exchange, final int status,
+            final String json) throws IOException {
+        byte[] bytes = (json + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type",
+                "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * A handler replying with an error when the request is incorrect. The
+     * failures of the computation are in the result; any other exception is
+     * a bug, logged and left to the server, which closes the exchange.
+     * @author Daniel Lefevre
+     */
+    private abstract static class Handler implements HttpHandler {
+
+        @Override
+        public final void handle(final HttpExchange exchange)
+                throws IOException {
+            try {
+                this.handle(exchange, exchange.getRequestMethod(), exchange
+                        .getRequestURI().getPath());
+            } catch (IncorrectDataException e) {
+                reply(exchange, UNPROCESSABLE, error(e.getMessage()));
+            } catch (IOException e) {
+                reply(exchange, BAD_REQUEST, error(e.toString()));
+            } catch (RuntimeException | Error e) {
+                Model.LOGGER.log(Level.SEVERE, "Request failed", e);
+                throw e;
+            } finally {
+                exchange.close();
+            }
+        }
+
+        /**
+         * Serves a request.
+         * @param exchange
+         *            the exchange
+         * @param method
+         *            the method
+         * @param path
+         *            the path
+         * @throws IOException
+         *             if the exchange failed or the model could not be parsed
+         * @throws IncorrectDataException
+         *             if the submitted model is incorrect
+         */
+        protected abstract void handle(HttpExchange exchange, String method,
+                String path) throws IOException, IncorrectDataException;
+    }
+}
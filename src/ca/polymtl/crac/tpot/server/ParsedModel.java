@@ -0,0 +1,110 @@
+package ca.polymtl.crac.tpot.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import net.jautomata.rationals.Automaton;
+import ca.polymtl.crac.tpot.model.Opacity;
+import ca.polymtl.crac.tpot.model.Opacity.IncorrectDataException;
+import ca.polymtl.crac.tpot.model.io.AutoParser;
+import ca.polymtl.crac.tpot.model.io.ModelDigest;
+import ca.polymtl.crac.tpot.model.io.RegParser;
+
+/**
+ * A parsed and validated model. The automata are never modified once the
+ * model is built, so that they can be shared by the requests running at the
+ * same time, each on its own {@link Opacity}.
+ * @author Daniel Lefevre
+ */
+public class ParsedModel {
+
+    /**
+     * The content hash of the model.
+     */
+    private final String digest;
+    /**
+     * The automaton.
+     */
+    private final Automaton automaton;
+    /**
+     * The observations.
+     */
+    private final List<Automaton> observations;
+    /**
+     * The predicate.
+     */
+    private final Automaton phi;
+
+    /**
+     * Parses and validates a model.
+     * @param auto
+     *            the text of the ".auto" file
+     * @param reg
+     *            the text of the ".reg" file
+     * @throws IOException
+     *             if a text could not be parsed
+     * @throws IncorrectDataException
+     *             if the model is incorrect
+     */
+    public ParsedModel(final String auto, final String reg)
+            throws IOException, IncorrectDataException {
+        this.digest = ModelDigest.digest(auto, reg);
+
+        AutoParser autoParser = new AutoParser(this.digest + ".auto");
+        autoParser.parse(new ByteArrayInputStream(auto
+                .getBytes(StandardCharsets.UTF_8)));
+        RegParser regParser = new RegParser(this.digest + ".reg");
+        regParser.parse(new StringReader(reg));
+
+        this.automaton = autoParser.getParsedAutomaton();
+        this.observations = Collections.unmodifiableList(new ArrayList<>(
+                regParser.getParsedObservations()));
+        this.phi = regParser.getParsedPhi();
+        this.newOpacity().validateData();
+    }
+
+    /**
+     * Getter.
+     * @return the content hash of the model
+     */
+    public final String getDigest() {
+        return this.digest;
+    }
+
+    /**
+     * Getter.
+     * @return the automaton
+     */
+    public final Automaton getAutomaton() {
+        return this.automaton;
+    }
+
+    /**
+     * Getter.
+     * @return the observations
+     */
+    public final List<Automaton> getObservations() {
+        return this.observations;
+    }
+
+    /**
+     * Getter.
+     * @return the predicate
+     */
+    public final Automaton getPhi() {
+        return this.phi;
+    }
+
+    /**
+     * Creates a new opacity on this model, without any cached result.
+     * @return the opacity
+     */
+    public final Opacity newOpacity() {
+        return new Opacity(this.automaton, this.observations, this.phi);
+    }
+}
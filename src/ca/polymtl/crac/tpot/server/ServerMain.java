@@ -0,0 +1,90 @@
+package ca.polymtl.crac.tpot.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
+/**
+ * Command line entry point of the {@link OpacityServer}.
+ * <p>
+ * Usage : {@code ServerMain [-b address] [-p port] [-j threads]
+ * [-c capacity]}. The server listens on the loopback address and the port
+ * 8750 by default, and keeps 256 parsed models.
+ * @author Daniel Lefevre
+ */
+public final class ServerMain {
+
+    /**
+     * The default port.
+     */
+    public static final int DEFAULT_PORT = 8750;
+    /**
+     * The default number of parsed models kept.
+     */
+    public static final int DEFAULT_CAPACITY = 256;
+    /**
+     * Exit status when the arguments are incorrect.
+     */
+    private static final int EXIT_USAGE = 2;
+    /**
+     * Usage message.
+     */
+    private static final String USAGE = "Usage : ServerMain [-b address] "
+            + "[-p port] [-j threads] [-c capacity]";
+
+    /**
+     * Private constructor.
+     */
+    private ServerMain() {
+    }
+
+    /**
+     * Main.
+     * @param args
+     *            the options
+     */
+    public static void main(final String[] args) {
+        String address = "127.0.0.1";
+        int port = DEFAULT_PORT;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int capacity = DEFAULT_CAPACITY;
+        try {
+            for (int i = 0; i < args.length; ++i) {
+                switch (args[i]) {
+                case "-b":
+                    address = args[++i];
+                    break;
+                case "-p":
+                    port = Integer.parseInt(args[++i]);
+                    break;
+                case "-j":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "-c":
+                    capacity = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException(args[i]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.println(USAGE);
+            System.exit(EXIT_USAGE);
+        }
+
+        try {
+            final OpacityServer server = new OpacityServer(
+                    new InetSocketAddress(address, port), threads,
+                    new ModelCache(capacity));
+            Runtime.getRuntime().addShutdownHook(new Thread() {
+                @Override
+                public void run() {
+                    server.stop(0);
+                }
+            });
+            server.start();
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error : " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
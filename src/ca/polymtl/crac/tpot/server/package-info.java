@@ -0,0 +1,5 @@
+/**
+ * A long-running HTTP server computing the opacities of submitted models,
+ * with a cache of the parsed models.
+ */
+package ca.polymtl.crac.tpot.server;
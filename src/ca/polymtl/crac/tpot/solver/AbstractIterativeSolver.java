@@ -0,0 +1,61 @@
+package ca.polymtl.crac.tpot.solver;
+
+/**
+ * Base class of the iterative solvers, holding the tolerance and the iteration
+ * cap.
+ * @author Daniel Lefevre
+ */
+public abstract class AbstractIterativeSolver implements LinearSolver {
+
+    /**
+     * Default tolerance.
+     */
+    public static final double DEFAULT_TOLERANCE = 1e-12;
+    /**
+     * Default maximum number of iterations.
+     */
+    public static final int DEFAULT_MAX_ITERATIONS = 100000;
+
+    /**
+     * The tolerance.
+     */
+    private double tolerance = DEFAULT_TOLERANCE;
+    /**
+     * The maximum number of iterations.
+     */
+    private int maxIterations = DEFAULT_MAX_ITERATIONS;
+
+    /**
+     * Getter.
+     * @return the tolerance
+     */
+    public final double getTolerance() {
+        return this.tolerance;
+    }
+
+    /**
+     * Setter.
+     * @param toleranceIn
+     *            the new tolerance
+     */
+    public final void setTolerance(final double toleranceIn) {
+        this.tolerance = toleranceIn;
+    }
+
+    /**
+     * Getter.
+     * @return the maximum number of iterations
+     */
+    public final int getMaxIterations() {
+        return this.maxIterations;
+    }
+
+    /**
+     * Setter.
+     * @param maxIterationsIn
+     *            the new maximum number of iterations
+     */
+    public final void setMaxIterations(final int maxIterationsIn) {
+        this.maxIterations = maxIterationsIn;
+    }
+}
@@ -0,0 +1,118 @@
+package ca.polymtl.crac.tpot.solver;
+
+import java.util.Arrays;
+
+import ca.polymtl.crac.tpot.budget.WorkBudget;
+
+/**
+ * Solves the system with the Jacobi-preconditioned BiCGSTAB method. It stops
+ * when the residual, relative to the right-hand side, is below the tolerance.
+ * @author Daniel Lefevre
+ */
+public class BiCgStabSolver extends AbstractIterativeSolver {
+
+    @Override
+    public final SolverResult solve(final SparseMatrix a, final double[] b) {
+        int n = a.size();
+        double[] invDiag = a.diagonal();
+        for (int i = 0; i < n; ++i) {
+            invDiag[i] = (invDiag[i] == 0) ? 1 : 1 / invDiag[i];
+        }
+
+        double[] x = new double[n];
+        double[] r = b.clone();
+        double[] rHat = b.clone();
+        double[] p = new double[n];
+        double[] v = new double[n];
+        double[] y = new double[n];
+        double[] s = new double[n];
+        double[] z = new double[n];
+        double[] t = new double[n];
+
+        double bNorm = norm(b);
+        if (bNorm == 0) {
+            return new SolverResult(x, 0, 0, true);
+        }
+        double rho = 1;
+        double alpha = 1;
+        double w = 1;
+        int iteration = 0;
+        boolean converged = norm(r) / bNorm <= this.getTolerance();
+        while (!converged && (iteration < this.getMaxIterations())) {
+            WorkBudget.checkpoint();
+            ++iteration;
+            double rhoNext = dot(rHat, r);
+            if (rhoNext == 0) {
+                // the shadow residual became orthogonal to the residual :
+                // restarts from the current iterate
+                System.arraycopy(r, 0, rHat, 0, n);
+                Arrays.fill(p, 0);
+                Arrays.fill(v, 0);
+                rho = 1;
+                alpha = 1;
+                w = 1;
+                rhoNext = dot(rHat, r);
+            }
+            double beta = (rhoNext / rho) * (alpha / w);
+            rho = rhoNext;
+            for (int i = 0; i < n; ++i) {
+                p[i] = r[i] + beta * (p[i] - w * v[i]);
+                y[i] = invDiag[i] * p[i];
+            }
+            a.multiply(y, v);
+            alpha = rho / dot(rHat, v);
+            for (int i = 0; i < n; ++i) {
+                s[i] = r[i] - alpha * v[i];
+            }
+            if (norm(s) / bNorm <= this.getTolerance()) {
+                for (int i = 0; i < n; ++i) {
+                    x[i] += alpha * y[i];
+                }
+                converged = true;
+                break;
+            }
+            for (int i = 0; i < n; ++i) {
+                z[i] = invDiag[i] * s[i];
+            }
+            a.multiply(z, t);
+            double tt = dot(t, t);
+            w = (tt == 0) ? 0 : dot(t, s) / tt;
+            for (int i = 0; i < n; ++i) {
+                x[i] += alpha * y[i] + w * z[i];
+                r[i] = s[i] - w * t[i];
+            }
+            converged = norm(r) / bNorm <= this.getTolerance();
+            if (!converged && (w == 0)) {
+                throw new SolverException("BiCGSTAB breakdown (omega = 0) at "
+                        + "iteration " + iteration);
+            }
+        }
+        return new SolverResult(x, a.residual(x, b), iteration, converged);
+    }
+
+    /**
+     * Computes the dot product of two vectors.
+     * @param u
+     *            the first vector
+     * @param v
+     *            the second vector
+     * @return u . v
+     */
+    private static double dot(final double[] u, final double[] v) {
+        double sum = 0;
+        for (int i = 0; i < u.length; ++i) {
+            sum += u[i] * v[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Computes the euclidean norm of a vector.
+     * @param u
+     *            the vector
+     * @return ||u||
+     */
+    private static double norm(final double[] u) {
+        return Math.sqrt(dot(u, u));
+    }
+}
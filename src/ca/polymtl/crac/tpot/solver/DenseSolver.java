@@ -0,0 +1,46 @@
+package ca.polymtl.crac.tpot.solver;
+
+import Jama.Matrix;
+
+import ca.polymtl.crac.tpot.budget.WorkBudget;
+
+/**
+ * Solves the system with a dense LU decomposition (Jama). It needs O(n^2)
+ * memory and O(n^3) time, so it is only suited to small systems.
+ * @author Daniel Lefevre
+ */
+public class DenseSolver implements LinearSolver {
+
+    @Override
+    public final SolverResult solve(final SparseMatrix a, final double[] b) {
+        int n = a.size();
+        int[] rowPtr = a.getRowPtr();
+        int[] cols = a.getCols();
+        double[] values = a.getValues();
+
+        Matrix dense = new Matrix(n, n, 0);
+        for (int i = 0; i < n; ++i) {
+            for (int k = rowPtr[i]; k < rowPtr[i + 1]; ++k) {
+                dense.set(i, cols[k], values[k]);
+            }
+        }
+        Matrix rhs = new Matrix(n, 1, 0);
+        for (int i = 0; i < n; ++i) {
+            rhs.set(i, 0, b[i]);
+        }
+
+        WorkBudget.checkpoint();
+        Matrix x;
+        try {
+            x = dense.solve(rhs);
+        } catch (RuntimeException e) {
+            throw new SolverException(e.getMessage());
+        }
+
+        double[] solution = new double[n];
+        for (int i = 0; i < n; ++i) {
+            solution[i] = x.get(i, 0);
+        }
+        return new SolverResult(solution, a.residual(solution, b), 0, true);
+    }
+}
@@ -0,0 +1,73 @@
+package ca.polymtl.crac.tpot.solver;
+
+import ca.polymtl.crac.tpot.budget.WorkBudget;
+
+/**
+ * Solves the system with the Gauss-Seidel method, or with successive
+ * over-relaxation when the relaxation factor is not 1. It converges on the
+ * systems (I - P) built from the automata as long as every state can reach a
+ * terminal state or a deadlock.
+ * @author Daniel Lefevre
+ */
+public class GaussSeidelSolver extends AbstractIterativeSolver {
+
+    /**
+     * The relaxation factor.
+     */
+    private double omega = 1;
+
+    /**
+     * Getter.
+     * @return the relaxation factor
+     */
+    public final double getOmega() {
+        return this.omega;
+    }
+
+    /**
+     * Setter.
+     * @param omegaIn
+     *            the new relaxation factor, in ]0, 2[
+     */
+    public final void setOmega(final double omegaIn) {
+        this.omega = omegaIn;
+    }
+
+    @Override
+    public final SolverResult solve(final SparseMatrix a, final double[] b) {
+        int n = a.size();
+        int[] rowPtr = a.getRowPtr();
+        int[] cols = a.getCols();
+        double[] values = a.getValues();
+        double[] diag = a.diagonal();
+        for (int i = 0; i < n; ++i) {
+            if (diag[i] == 0) {
+                throw new SolverException("Zero diagonal at row " + i);
+            }
+        }
+
+        double[] x = new double[n];
+        int iteration = 0;
+        boolean converged = false;
+        while (!converged && (iteration < this.getMaxIterations())) {
+            WorkBudget.checkpoint();
+            ++iteration;
+            double change = 0;
+            for (int i = 0; i < n; ++i) {
+                double sum = b[i];
+                for (int k = rowPtr[i]; k < rowPtr[i + 1]; ++k) {
+                    int c = cols[k];
+                    if (c != i) {
+                        sum -= values[k] * x[c];
+                    }
+                }
+                double next = (1 - this.omega) * x[i] + this.omega * sum
+                        / diag[i];
+                change = Math.max(change, Math.abs(next - x[i]));
+                x[i] = next;
+            }
+            converged = change <= this.getTolerance();
+        }
+        return new SolverResult(x, a.residual(x, b), iteration, converged);
+    }
+}
@@ -0,0 +1,20 @@
+package ca.polymtl.crac.tpot.solver;
+
+/**
+ * Solves linear systems A x = b.
+ * @author Daniel Lefevre
+ */
+public interface LinearSolver {
+
+    /**
+     * Solves A x = b.
+     * @param a
+     *            the matrix of the system
+     * @param b
+     *            the right-hand side
+     * @return the solution, its residual and the number of iterations
+     * @throws SolverException
+     *             if the system cannot be solved
+     */
+    SolverResult solve(SparseMatrix a, double[] b);
+}
@@ -0,0 +1,119 @@
+package ca.polymtl.crac.tpot.solver;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import net.jautomata.rationals.Automaton;
+import net.jautomata.rationals.PSymbol;
+import net.jautomata.rationals.State;
+import net.jautomata.rationals.Transition;
+
+/**
+ * The linear system giving the probability for each state of a probabilistic
+ * automaton to reach a final state : x = P x + t, that is (I - P) x = t where
+ * P holds the probabilities of the transitions and t is 1 for the terminal
+ * states.
+ * @author Daniel Lefevre
+ */
+public class ReachabilitySystem {
+
+    /**
+     * The index of each state in the system.
+     */
+    private final Map<State, Integer> indexes;
+    /**
+     * The matrix I - P.
+     */
+    private final SparseMatrix matrix;
+    /**
+     * The right-hand side t.
+     */
+    private final double[] rhs;
+    /**
+     * The indexes of the initial states.
+     */
+    private final int[] initials;
+
+    /**
+     * Builds the system of an automaton. The transitions that are not labelled
+     * with a {@link PSymbol} are taken with probability 1.
+     * @param auto
+     *            the automaton
+     */
+    public ReachabilitySystem(final Automaton auto) {
+        this.indexes = new HashMap<>();
+        for (State s : auto.states()) {
+            this.indexes.put(s, this.indexes.size());
+        }
+        int n = this.indexes.size();
+
+        SparseMatrix.Builder builder = new SparseMatrix.Builder(n);
+        for (int i = 0; i < n; ++i) {
+            builder.add(i, i, 1);
+        }
+        for (Transition t : auto.delta()) {
+            builder.add(this.indexes.get(t.start()),
+                    this.indexes.get(t.end()), -t.weight());
+        }
+        this.matrix = builder.build();
+
+        this.rhs = new double[n];
+        for (State s : auto.terminals()) {
+            this.rhs[this.indexes.get(s)] = 1;
+        }
+
+        this.initials = new int[auto.initials().size()];
+        int k = 0;
+        for (State s : auto.initials()) {
+            this.initials[k++] = this.indexes.get(s);
+        }
+    }
+
+    /**
+     * Getter.
+     * @return the number of states
+     */
+    public final int size() {
+        return this.matrix.size();
+    }
+
+    /**
+     * Getter.
+     * @return the matrix I - P
+     */
+    public final SparseMatrix getMatrix() {
+        return this.matrix;
+    }
+
+    /**
+     * Getter.
+     * @return the right-hand side
+     */
+    public final double[] getRhs() {
+        return this.rhs;
+    }
+
+    /**
+     * Getter.
+     * @param s
+     *            a state of the automaton
+     * @return the index of the state in the system
+     */
+    public final int indexOf(final State s) {
+        return this.indexes.get(s);
+    }
+
+    /**
+     * Computes the probability to reach a final state from the initial states.
+     * @param solution
+     *            the solution of the system
+     * @return the sum of the solution over the initial states
+     */
+    public final double initialProbability(final double[] solution) {
+        double probability = 0;
+        for (int i : this.initials) {
+            probability += solution[i];
+        }
+        return probability;
+    }
+}
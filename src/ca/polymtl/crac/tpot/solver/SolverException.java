@@ -0,0 +1,23 @@
+package ca.polymtl.crac.tpot.solver;
+
+/**
+ * Thrown when a linear system cannot be solved, for instance when the matrix
+ * is singular or when an iterative method breaks down.
+ * @author Daniel Lefevre
+ */
+public class SolverException extends RuntimeException {
+
+    /**
+     * Serial version UID.
+     */
+    private static final long serialVersionUID = 4417215869932514386L;
+
+    /**
+     * Constructor.
+     * @param s
+     *            the explanation of the error
+     */
+    public SolverException(final String s) {
+        super(s);
+    }
+}
@@ -0,0 +1,83 @@
+package ca.polymtl.crac.tpot.solver;
+
+/**
+ * The result of a linear solve : the solution, along with the residual and the
+ * number of iterations it took to get it.
+ * @author Daniel Lefevre
+ */
+public class SolverResult {
+
+    /**
+     * The solution.
+     */
+    private final double[] solution;
+    /**
+     * The infinity norm of the residual b - A x.
+     */
+    private final double residual;
+    /**
+     * The number of iterations (zero for direct solvers).
+     */
+    private final int iterations;
+    /**
+     * True if the solver reached the requested tolerance.
+     */
+    private final boolean converged;
+
+    /**
+     * Constructor.
+     * @param solutionIn
+     *            the solution
+     * @param residualIn
+     *            the infinity norm of the residual
+     * @param iterationsIn
+     *            the number of iterations
+     * @param convergedIn
+     *            true if the solver reached the requested tolerance
+     */
+    public SolverResult(final double[] solutionIn, final double residualIn,
+            final int iterationsIn, final boolean convergedIn) {
+        this.solution = solutionIn;
+        this.residual = residualIn;
+        this.iterations = iterationsIn;
+        this.converged = convergedIn;
+    }
+
+    /**
+     * Getter.
+     * @return the solution
+     */
+    public final double[] getSolution() {
+        return this.solution;
+    }
+
+    /**
+     * Getter.
+     * @return the infinity norm of the residual b - A x
+     */
+    public final double getResidual() {
+        return this.residual;
+    }
+
+    /**
+     * Getter.
+     * @return the number of iterations
+     */
+    public final int getIterations() {
+        return this.iterations;
+    }
+
+    /**
+     * Getter.
+     * @return true if the solver reached the requested tolerance
+     */
+    public final boolean isConverged() {
+        return this.converged;
+    }
+
+    @Override
+    public final String toString() {
+        return "residual " + this.residual + " after " + this.iterations
+                + " iterations" + (this.converged ? "" : " (not converged)");
+    }
+}
@@ -0,0 +1,331 @@
+package ca.polymtl.crac.tpot.solver;
+
+import java.util.Arrays;
+
+import ca.polymtl.crac.tpot.budget.WorkBudget;
+
+/**
+ * Solves the system with a sparse LU decomposition (row-by-row Doolittle
+ * without pivoting). The systems built from the automata are (I - P) with P
+ * substochastic, which are diagonally dominant enough for the decomposition
+ * to be stable without pivoting. The fill-in is kept sparse, so the cost
+ * depends on the structure of the automaton instead of on n^3 ; the states are
+ * not reordered though, so a poorly connected numbering can still fill the
+ * factors. The decomposition can be reused for several right-hand sides.
+ * @author Daniel Lefevre
+ */
+public class SparseLuSolver implements LinearSolver {
+
+    /**
+     * Pivots smaller than this value are considered to be zero.
+     */
+    private static final double PIVOT_EPSILON = 1e-300;
+
+    @Override
+    public final SolverResult solve(final SparseMatrix a, final double[] b) {
+        double[] x = this.factorize(a).solve(b);
+        return new SolverResult(x, a.residual(x, b), 0, true);
+    }
+
+    /**
+     * Computes the LU decomposition of a matrix. The decomposition can be
+     * reused to solve the system for several right-hand sides.
+     * @param a
+     *            the matrix
+     * @return the decomposition
+     * @throws SolverException
+     *             if a pivot is zero
+     */
+    public final Factorization factorize(final SparseMatrix a) {
+        int n = a.size();
+        int[] rowPtr = a.getRowPtr();
+        int[] cols = a.getCols();
+        double[] values = a.getValues();
+
+        Rows lower = new Rows(n, a.nonZeros());
+        Rows upper = new Rows(n, a.nonZeros());
+        double[] diag = new double[n];
+
+        double[] work = new double[n];
+        boolean[] used = new boolean[n];
+        int[] pattern = new int[n];
+        int[] heap = new int[n];
+
+        for (int i = 0; i < n; ++i) {
+            WorkBudget.checkpoint();
+            int patternSize = 0;
+            int heapSize = 0;
+            for (int k = rowPtr[i]; k < rowPtr[i + 1]; ++k) {
+                int c = cols[k];
+                work[c] = values[k];
+                used[c] = true;
+                pattern[patternSize++] = c;
+                if (c < i) {
+                    heapSize = push(heap, heapSize, c);
+                }
+            }
+
+            // Eliminates the columns < i in increasing order; the fill-in
+            // only adds columns greater than the one being eliminated.
+            while (heapSize > 0) {
+                int k = heap[0];
+                heapSize = pop(heap, heapSize);
+                double factor = work[k] / diag[k];
+                work[k] = factor;
+                if (factor == 0) {
+                    continue;
+                }
+                for (int p = upper.start[k]; p < upper.end[k]; ++p) {
+                    int j = upper.cols[p];
+                    if (!used[j]) {
+                        used[j] = true;
+                        work[j] = 0;
+                        pattern[patternSize++] = j;
+                        if (j < i) {
+                            heapSize = push(heap, heapSize, j);
+                        }
+                    }
+                    work[j] -= factor * upper.values[p];
+                }
+            }
+
+            Arrays.sort(pattern, 0, patternSize);
+            lower.startRow(i);
+            upper.startRow(i);
+            for (int p = 0; p < patternSize; ++p) {
+                int j = pattern[p];
+                double v = work[j];
+                if (j < i) {
+                    if (v != 0) {
+                        lower.add(j, v);
+                    }
+                } else if (j == i) {
+                    diag[i] = v;
+                } else if (v != 0) {
+                    upper.add(j, v);
+                }
+                used[j] = false;
+                work[j] = 0;
+            }
+            lower.endRow(i);
+            upper.endRow(i);
+
+            if (Math.abs(diag[i]) < PIVOT_EPSILON) {
+                throw new SolverException("Zero pivot at row " + i
+                        + ", the matrix is singular");
+            }
+        }
+        return new Factorization(n, lower, upper, diag);
+    }
+
+    /**
+     * Pushes a value on a binary min-heap.
+     * @param heap
+     *            the heap
+     * @param size
+     *            the size of the heap
+     * @param value
+     *            the value to push
+     * @return the new size of the heap
+     */
+    private static int push(final int[] heap, final int size,
+            final int value) {
+        int i = size;
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (heap[parent] <= value) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = value;
+        return size + 1;
+    }
+
+    /**
+     * Removes the smallest value of a binary min-heap.
+     * @param heap
+     *            the heap
+     * @param size
+     *            the size of the heap
+     * @return the new size of the heap
+     */
+    private static int pop(final int[] heap, final int size) {
+        int newSize = size - 1;
+        int value = heap[newSize];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= newSize) {
+                break;
+            }
+            if ((child + 1 < newSize) && (heap[child + 1] < heap[child])) {
+                ++child;
+            }
+            if (value <= heap[child]) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        if (newSize > 0) {
+            heap[i] = value;
+        }
+        return newSize;
+    }
+
+    /**
+     * Growable row storage for one of the triangular factors.
+     * @author Daniel Lefevre
+     */
+    private static class Rows {
+
+        /**
+         * Beginning of each row.
+         */
+        private final int[] start;
+        /**
+         * End of each row.
+         */
+        private final int[] end;
+        /**
+         * Column indexes.
+         */
+        private int[] cols;
+        /**
+         * Values.
+         */
+        private double[] values;
+        /**
+         * Number of stored entries.
+         */
+        private int size;
+
+        /**
+         * Constructor.
+         * @param n
+         *            the number of rows
+         * @param capacity
+         *            the initial capacity
+         */
+        Rows(final int n, final int capacity) {
+            this.start = new int[n];
+            this.end = new int[n];
+            this.cols = new int[Math.max(capacity, 1)];
+            this.values = new double[Math.max(capacity, 1)];
+        }
+
+        /**
+         * Begins a new row.
+         * @param row
+         *            the row
+         */
+        void startRow(final int row) {
+            this.start[row] = this.size;
+        }
+
+        /**
+         * Ends the current row.
+         * @param row
+         *            the row
+         */
+        void endRow(final int row) {
+            this.end[row] = this.size;
+        }
+
+        /**
+         * Adds an entry to the current row.
+         * @param col
+         *            the column
+         * @param value
+         *            the value
+         */
+        void add(final int col, final double value) {
+            if (this.size == this.cols.length) {
+                this.cols = Arrays.copyOf(this.cols, 2 * this.size);
+                this.values = Arrays.copyOf(this.values, 2 * this.size);
+            }
+            this.cols[this.size] = col;
+            this.values[this.size] = value;
+            ++this.size;
+        }
+    }
+
+    /**
+     * The LU decomposition of a matrix : L is unit lower triangular, U is
+     * upper triangular and its diagonal is stored separately.
+     * @author Daniel Lefevre
+     */
+    public static class Factorization {
+
+        /**
+         * The size of the matrix.
+         */
+        private final int n;
+        /**
+         * The strictly lower part of L.
+         */
+        private final Rows lower;
+        /**
+         * The strictly upper part of U.
+         */
+        private final Rows upper;
+        /**
+         * The diagonal of U.
+         */
+        private final double[] diag;
+
+        /**
+         * Constructor.
+         * @param nIn
+         *            the size of the matrix
+         * @param lowerIn
+         *            the strictly lower part of L
+         * @param upperIn
+         *            the strictly upper part of U
+         * @param diagIn
+         *            the diagonal of U
+         */
+        Factorization(final int nIn, final Rows lowerIn, final Rows upperIn,
+                final double[] diagIn) {
+            this.n = nIn;
+            this.lower = lowerIn;
+            this.upper = upperIn;
+            this.diag = diagIn;
+        }
+
+        /**
+         * Getter.
+         * @return the number of non-zero entries of L and U
+         */
+        public final int nonZeros() {
+            return this.lower.size + this.upper.size + this.n;
+        }
+
+        /**
+         * Solves L U x = b.
+         * @param b
+         *            the right-hand side
+         * @return the solution
+         */
+        public final double[] solve(final double[] b) {
+            double[] x = Arrays.copyOf(b, this.n);
+            for (int i = 0; i < this.n; ++i) {
+                double sum = x[i];
+                for (int p = this.lower.start[i]; p < this.lower.end[i]; ++p) {
+                    sum -= this.lower.values[p] * x[this.lower.cols[p]];
+                }
+                x[i] = sum;
+            }
+            for (int i = this.n - 1; i >= 0; --i) {
+                double sum = x[i];
+                for (int p = this.upper.start[i]; p < this.upper.end[i]; ++p) {
+                    sum -= this.upper.values[p] * x[this.upper.cols[p]];
+                }
+                x[i] = sum / this.diag[i];
+            }
+            return x;
+        }
+    }
+}
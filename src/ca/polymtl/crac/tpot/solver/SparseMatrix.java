@@ -0,0 +1,295 @@
+package ca.polymtl.crac.tpot.solver;
+
+import java.util.Arrays;
+
+/**
+ * A square sparse matrix stored in compressed sparse row (CSR) format. The
+ * columns of each row are sorted and unique.
+ * @author Daniel Lefevre
+ */
+public class SparseMatrix {
+
+    /**
+     * The number of rows (and columns).
+     */
+    private final int n;
+    /**
+     * Index in cols and values of the first entry of each row, plus one
+     * trailing index.
+     */
+    private final int[] rowPtr;
+    /**
+     * The column of each entry.
+     */
+    private final int[] cols;
+    /**
+     * The value of each entry.
+     */
+    private final double[] values;
+
+    /**
+     * Constructor.
+     * @param nIn
+     *            the number of rows
+     * @param rowPtrIn
+     *            the row pointers
+     * @param colsIn
+     *            the columns of the entries
+     * @param valuesIn
+     *            the values of the entries
+     */
+    SparseMatrix(final int nIn, final int[] rowPtrIn, final int[] colsIn,
+            final double[] valuesIn) {
+        this.n = nIn;
+        this.rowPtr = rowPtrIn;
+        this.cols = colsIn;
+        this.values = valuesIn;
+    }
+
+    /**
+     * Getter.
+     * @return the number of rows
+     */
+    public final int size() {
+        return this.n;
+    }
+
+    /**
+     * Getter.
+     * @return the number of stored entries
+     */
+    public final int nonZeros() {
+        return this.rowPtr[this.n];
+    }
+
+    /**
+     * Getter.
+     * @return the row pointers
+     */
+    final int[] getRowPtr() {
+        return this.rowPtr;
+    }
+
+    /**
+     * Getter.
+     * @return the columns of the entries
+     */
+    final int[] getCols() {
+        return this.cols;
+    }
+
+    /**
+     * Getter.
+     * @return the values of the entries
+     */
+    final double[] getValues() {
+        return this.values;
+    }
+
+    /**
+     * Extracts the diagonal of this matrix.
+     * @return a new array holding the diagonal entries
+     */
+    public final double[] diagonal() {
+        double[] d = new double[this.n];
+        for (int i = 0; i < this.n; ++i) {
+            int k = Arrays.binarySearch(this.cols, this.rowPtr[i],
+                    this.rowPtr[i + 1], i);
+            if (k >= 0) {
+                d[i] = this.values[k];
+            }
+        }
+        return d;
+    }
+
+    /**
+     * Computes y = A x.
+     * @param x
+     *            the vector to multiply
+     * @param y
+     *            the vector receiving the result
+     */
+    public final void multiply(final double[] x, final double[] y) {
+        for (int i = 0; i < this.n; ++i) {
+            double sum = 0;
+            for (int k = this.rowPtr[i]; k < this.rowPtr[i + 1]; ++k) {
+                sum += this.values[k] * x[this.cols[k]];
+            }
+            y[i] = sum;
+        }
+    }
+
+    /**
+     * Computes the infinity norm of the residual b - A x.
+     * @param x
+     *            the candidate solution
+     * @param b
+     *            the right-hand side
+     * @return max |b - A x|
+     */
+    public final double residual(final double[] x, final double[] b) {
+        double max = 0;
+        for (int i = 0; i < this.n; ++i) {
+            double sum = b[i];
+            for (int k = this.rowPtr[i]; k < this.rowPtr[i + 1]; ++k) {
+                sum -= this.values[k] * x[this.cols[k]];
+            }
+            max = Math.max(max, Math.abs(sum));
+        }
+        return max;
+    }
+
+    /**
+     * Builds a sparse matrix from entries given in any order. Entries at the
+     * same position are summed.
+     * @author Daniel Lefevre
+     */
+    public static class Builder {
+
+        /**
+         * Rows longer than this are not insertion sorted.
+         */
+        private static final int INSERTION_SORT_LIMIT = 32;
+        /**
+         * The number of rows.
+         */
+        private final int n;
+        /**
+         * The rows of the entries added so far.
+         */
+        private int[] rows = new int[16];
+        /**
+         * The columns of the entries added so far.
+         */
+        private int[] cols = new int[16];
+        /**
+         * The values of the entries added so far.
+         */
+        private double[] values = new double[16];
+        /**
+         * The number of entries added so far.
+         */
+        private int count = 0;
+
+        /**
+         * Constructor.
+         * @param nIn
+         *            the number of rows (and columns) of the matrix
+         */
+        public Builder(final int nIn) {
+            this.n = nIn;
+        }
+
+        /**
+         * Adds a value at a position of the matrix.
+         * @param row
+         *            the row
+         * @param col
+         *            the column
+         * @param value
+         *            the value to add
+         * @return this builder
+         */
+        public final Builder add(final int row, final int col,
+                final double value) {
+            if (this.count == this.rows.length) {
+                int capacity = this.count * 2;
+                this.rows = Arrays.copyOf(this.rows, capacity);
+                this.cols = Arrays.copyOf(this.cols, capacity);
+                this.values = Arrays.copyOf(this.values, capacity);
+            }
+            this.rows[this.count] = row;
+            this.cols[this.count] = col;
+            this.values[this.count] = value;
+            ++this.count;
+            return this;
+        }
+
+        /**
+         * Builds the matrix.
+         * @return the matrix, in CSR format
+         */
+        public final SparseMatrix build() {
+            // counting sort of the entries by row
+            int[] start = new int[this.n + 1];
+            for (int k = 0; k < this.count; ++k) {
+                ++start[this.rows[k] + 1];
+            }
+            for (int i = 0; i < this.n; ++i) {
+                start[i + 1] += start[i];
+            }
+            int[] next = Arrays.copyOf(start, this.n);
+            int[] sortedCols = new int[this.count];
+            double[] sortedValues = new double[this.count];
+            for (int k = 0; k < this.count; ++k) {
+                int pos = next[this.rows[k]]++;
+                sortedCols[pos] = this.cols[k];
+                sortedValues[pos] = this.values[k];
+            }
+
+            // sorts each row by column and sums the duplicates
+            int[] rowPtr = new int[this.n + 1];
+            int[] outCols = new int[this.count];
+            double[] outValues = new double[this.count];
+            int out = 0;
+            for (int i = 0; i < this.n; ++i) {
+                rowPtr[i] = out;
+                sortRow(sortedCols, sortedValues, start[i], start[i + 1]);
+                for (int k = start[i]; k < start[i + 1]; ++k) {
+                    if (out > rowPtr[i] && outCols[out - 1] == sortedCols[k]) {
+                        outValues[out - 1] += sortedValues[k];
+                    } else {
+                        outCols[out] = sortedCols[k];
+                        outValues[out] = sortedValues[k];
+                        ++out;
+                    }
+                }
+            }
+            rowPtr[this.n] = out;
+
+            return new SparseMatrix(this.n, rowPtr, Arrays.copyOf(outCols,
+                    out), Arrays.copyOf(outValues, out));
+        }
+
+        /**
+         * Sorts a row by column. Rows of product automata are short, so they
+         * are insertion sorted; long rows are sorted through packed keys.
+         * @param c
+         *            the columns
+         * @param v
+         *            the values
+         * @param from
+         *            the first entry of the row
+         * @param to
+         *            the entry following the last entry of the row
+         */
+        private static void sortRow(final int[] c, final double[] v,
+                final int from, final int to) {
+            if (to - from > INSERTION_SORT_LIMIT) {
+                long[] keys = new long[to - from];
+                for (int k = from; k < to; ++k) {
+                    keys[k - from] = ((long) c[k] << 32) | (k - from);
+                }
+                Arrays.sort(keys);
+                double[] copy = Arrays.copyOfRange(v, from, to);
+                for (int k = 0; k < keys.length; ++k) {
+                    c[from + k] = (int) (keys[k] >>> 32);
+                    v[from + k] = copy[(int) keys[k]];
+                }
+                return;
+            }
+            for (int k = from + 1; k < to; ++k) {
+                int col = c[k];
+                double value = v[k];
+                int j = k - 1;
+                while (j >= from && c[j] > col) {
+                    c[j + 1] = c[j];
+                    v[j + 1] = v[j];
+                    --j;
+                }
+                c[j + 1] = col;
+                v[j + 1] = value;
+            }
+        }
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * Linear system solvers used to compute the reachability probabilities of
+ * probabilistic automata.
+ */
+package ca.polymtl.crac.tpot.solver;
@@ -1,15 +1,18 @@
 package net.jautomata.rationals;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import net.jautomata.rationals.transformations.TransformationsToolBox;
+import ca.polymtl.crac.tpot.scheduler.EquivalenceClass;
 import ca.polymtl.crac.tpot.scheduler.Scheduler;
 
 
@@ -97,6 +100,24 @@ public class Automaton implements Acceptor, StateMachine, Rational, Cloneable {
      */
     private Map<Key, Set<Transition>> reverse;
 
+    /**
+     * The transitions of this automaton leaving each state, whatever their
+     * label : the same objects as in {@link #transitions}.
+     */
+    private Map<State, Set<Transition>> outgoing;
+
+    /**
+     * The reversed transitions of this automaton arriving to each state,
+     * whatever their label : the same objects as in {@link #reverse}.
+     */
+    private Map<State, Set<Transition>> incoming;
+
+    /**
+     * The unmodifiable set of all transitions returned by {@link #delta()},
+     * null until it is computed or after a change of the transitions.
+     */
+    private volatile Set<Transition> allTransitions;
+
     /**
      * bonte
      */
@@ -201,6 +222,8 @@ public class Automaton implements Acceptor, StateMachine, Rational, Cloneable {
         this.terminals = this.stateFactory.stateSet();
         this.transitions = new HashMap<Key, Set<Transition>>();
         this.reverse = new HashMap<Key, Set<Transition>>();
+        this.outgoing = new HashMap<State, Set<Transition>>();
+        this.incoming = new HashMap<State, Set<Transition>>();
     }
 
     /**
@@ -420,18 +443,54 @@ public class Automaton implements Acceptor, StateMachine, Rational, Cloneable {
         s.add(t);
     }
 
+    // add a given transition and its reverse to the indexes by state
+    private void index(final Transition t, final Transition reversed) {
+        Set<Transition> s = this.outgoing.get(t.start());
+        if (s == null) {
+            s = new HashSet<Transition>();
+            this.outgoing.put(t.start(), s);
+        }
+        s.add(t);
+        s = this.incoming.get(t.end());
+        if (s == null) {
+            s = new HashSet<Transition>();
+            this.incoming.put(t.end(), s);
+        }
+        s.add(reversed);
+        this.allTransitions = null;
+    }
+
+    // remove a given transition and its reverse from the indexes by state
+    private void unindex(final Transition t) {
+        Set<Transition> s = this.outgoing.get(t.start());
+        if (s != null) {
+            s.remove(t);
+        }
+        s = this.incoming.get(t.end());
+        if (s != null) {
+            s.remove(t.getReversed());
+        }
+        this.allTransitions = null;
+    }
+
     /**
-     * Returns the set of all transitions of this automaton
-     * @return the set of all transitions of this automaton Objects which are
-     *         contained in this set are instances of class <tt>Transition</tt>.
+     * Returns the set of all transitions of this automaton. The set is
+     * computed once and kept until the transitions change.
+     * @return the set of all transitions of this automaton, which cannot be
+     *         modified. Objects which are contained in this set are instances
+     *         of class <tt>Transition</tt>.
      * @see Transition
      */
     @Override
     public Set<Transition> delta() {
-        Set<Transition> s = new HashSet<Transition>();
-        Iterator<Set<Transition>> i = this.transitions.values().iterator();
-        while (i.hasNext()) {
-            s.addAll(i.next());
+        Set<Transition> s = this.allTransitions;
+        if (s == null) {
+            s = new HashSet<Transition>();
+            for (Set<Transition> out : this.outgoing.values()) {
+                s.addAll(out);
+            }
+            s = Collections.unmodifiableSet(s);
+            this.allTransitions = s;
         }
         return s;
     }
@@ -497,19 +556,17 @@ public class Automaton implements Acceptor, StateMachine, Rational, Cloneable {
     }
 
     /**
-     * Return all transitions from a State
+     * Return all transitions from a State, in a time proportional to their
+     * number whatever the size of the alphabet.
      * @param state
      *            start state
      * @return a new Set of transitions (maybe empty)
      */
     @Override
     public Set<Transition> delta(final State state) {
-        Set<Transition> s = new HashSet<Transition>();
-        Iterator<Object> alphit = alphabet().iterator();
-        while (alphit.hasNext()) {
-            s.addAll(delta(state, alphit.next()));
-        }
-        return s;
+        Set<Transition> out = this.outgoing.get(state);
+        return (out == null) ? new HashSet<Transition>()
+                : new HashSet<Transition>(out);
     }
 
     /**
@@ -596,8 +653,10 @@ public class Automaton implements Acceptor, StateMachine, Rational, Cloneable {
         if (!this.alphabet.contains(transition.label())) {
             this.alphabet.add(transition.label());
         }
+        Transition reversed = transition.getReversed();
         add(this.transitions, transition);
-        add(this.reverse, transition.getReversed());
+        add(this.reverse, reversed);
+        this.index(transition, reversed);
     }
 
     /**
@@ -623,6 +682,7 @@ public class Automaton implements Acceptor, StateMachine, Rational, Cloneable {
                     newtrans.add(new Transition(k.s, null, tr.end()));
                     // remove transtion
                     tit.remove();
+                    this.unindex(tr);
                 }
             }
         }
@@ -631,8 +691,10 @@ public class Automaton implements Acceptor, StateMachine, Rational, Cloneable {
             Iterator<Transition> it = newtrans.iterator();
             while (trans.hasNext()) {
                 Transition tr = it.next();
+                Transition reversed = tr.getReversed();
                 add(this.transitions, tr);
-                add(this.reverse, tr.getReversed());
+                add(this.reverse, reversed);
+                this.index(tr, reversed);
             }
         }
         // remove alphabet
@@ -950,6 +1012,7 @@ public class Automaton implements Acceptor, StateMachine, Rational, Cloneable {
             this.reverse.put(new Key(tr.end(), msg), s);
         }
         tr.setLabel(msg);
+        this.allTransitions = null;
     }
 
     /**
@@ -958,12 +1021,9 @@ public class Automaton implements Acceptor, StateMachine, Rational, Cloneable {
      */
     @Override
     public Set<Transition> deltaMinusOne(final State st) {
-        Set<Transition> s = new HashSet<Transition>();
-        Iterator<Object> alphit = alphabet().iterator();
-        while (alphit.hasNext()) {
-            s.addAll(deltaMinusOne(st, alphit.next()));
-        }
-        return s;
+        Set<Transition> in = this.incoming.get(st);
+        return (in == null) ? new HashSet<Transition>()
+                : new HashSet<Transition>(in);
     }
 
     /**
@@ -1018,73 +1078,78 @@ public class Automaton implements Acceptor, StateMachine, Rational, Cloneable {
     }
 
     /**
+     * Applique un ordonnanceur interne : dans chaque état, les transitions
+     * dont l'action est dans une même classe d'équivalence sont fusionnées
+     * en transitions probabilistes étiquetées par la concaténation des
+     * actions de la classe, la probabilité de chacune étant divisée par leur
+     * nombre. Une action de plusieurs classes appartient à la première.
+     * Cet automate n'est pas modifié : l'automate ordonnancé est une copie,
+     * plusieurs ordonnanceurs peuvent donc être appliqués en parallèle.
      * @param sched
-     * @return
+     *            l'ordonnanceur
+     * @return l'automate ordonnancé
      */
-    public final void schedule(final Scheduler sched) {
-        Iterator<State> it = this.states.iterator();
-
-        // Pour chaque état de l'automate
-        while (it.hasNext()) {
-            State s = it.next();
-            // Pour chaque classe d'équivalence
-            for (int i = 0; i < sched.getEqClasses().size(); i++) {
-                // temp stocke les transitions dont le label est dans la classe
-                // d'équivalence
-                ArrayList<Transition> temp = new ArrayList<Transition>();
-                Iterator<Transition> it2 = delta(s).iterator();
-                // Pour chaque transition partant de l'état
-                while (it2.hasNext()) {
-                    Transition t = it2.next();
-                    // Pour chaque action de la classe d'équivalence
-                    for (int j = 0; j < sched.getEqClasses().get(i)
-                            .getEqActions().size(); j++) {
-                        String ac = sched.getEqClasses().get(i).getEqActions()
-                                .get(j);
-                        if (t.label() instanceof PSymbol) {
-                            if (ac.equals(((PSymbol) t.label()).getLabel())) {
-                                temp.add(t);
-                            }
-                        } else {
-                            if (ac.equals(t.label())) {
-                                temp.add(t);
-                            }
-                        }
-                    }
-
+    public final Automaton schedule(final Scheduler sched) {
+        // Index des classes d'équivalence par action, et nouveaux labels
+        List<EquivalenceClass> classes = sched.getEqClasses();
+        Map<Object, Integer> classOf = new HashMap<Object, Integer>();
+        String[] labels = new String[classes.size()];
+        for (int i = 0; i < classes.size(); i++) {
+            StringBuilder label = new StringBuilder();
+            for (String action : classes.get(i).getEqActions()) {
+                label.append(action);
+                if (!classOf.containsKey(action)) {
+                    classOf.put(action, i);
                 }
+            }
+            labels[i] = label.toString();
+        }
 
-                // On modifie la probabilité et le label de chaque transition
-                // récupérée
-                String newLabel = "";
-                // Création du nouveau label (concaténation de ceux de chaque
-                // transition)
-                for (int j = 0; j < sched.getEqClasses().get(i).getEqActions()
-                        .size(); j++) {
-                    newLabel += sched.getEqClasses().get(i).getEqActions()
-                            .get(j);
-                }
-                // Ajout du nouveau label à l'alphabet de l'automate
-                this.alphabet.add(newLabel);
-
-                // Modification des transitions
-                for (int j = 0; j < temp.size(); j++) {
-                    if (temp.get(j).label() instanceof PSymbol) {
-                        double p = ((PSymbol) temp.get(j).label())
-                                .getProbability();
-                        ((PSymbol) temp.get(j).label()).setLabel(newLabel);
-                        ((PSymbol) temp.get(j).label())
-                                .setProbability((double) p / temp.size());
-                    } else {
-                        temp.get(j)
-                                .setLabel(
-                                        new PSymbol(newLabel, (double) 1
-                                                / temp.size()));
-                    }
+        // Classe de chaque transition, et nombre de transitions par état et
+        // par classe
+        List<Transition> delta = new ArrayList<Transition>(this.delta());
+        int[] classOfTransition = new int[delta.size()];
+        Map<State, int[]> counts = new HashMap<State, int[]>();
+        for (int k = 0; k < delta.size(); k++) {
+            Transition t = delta.get(k);
+            Integer c = classOf.get(t.symbol());
+            classOfTransition[k] = (c == null) ? -1 : c;
+            if (c != null) {
+                int[] count = counts.get(t.start());
+                if (count == null) {
+                    count = new int[classes.size()];
+                    counts.put(t.start(), count);
                 }
+                count[c]++;
             }
+        }
 
+        // Copie des états, puis des transitions avec les nouveaux labels
+        Automaton scheduled = new Automaton();
+        Map<State, State> map = new HashMap<State, State>();
+        for (State e : this.states) {
+            map.put(e, scheduled.addState(e.isInitial(), e.isTerminal()));
+        }
+        scheduled.alphabet.addAll(this.alphabet);
+        for (String label : labels) {
+            scheduled.alphabet.add(label);
+        }
+        for (int k = 0; k < delta.size(); k++) {
+            Transition t = delta.get(k);
+            Object label = t.label();
+            int c = classOfTransition[k];
+            if (c >= 0) {
+                label = new PSymbol(labels[c], t.weight()
+                        / counts.get(t.start())[c]);
+            }
+            try {
+                scheduled.addTransition(new Transition(map.get(t.start()),
+                        label, map.get(t.end())));
+            } catch (NoSuchStateException x) {
+                throw new IllegalStateException(x);
+            }
         }
+        return scheduled;
     }
 
     /**
@@ -1097,6 +1162,19 @@ public class Automaton implements Acceptor, StateMachine, Rational, Cloneable {
      */
     public final ArrayList<Automaton> scheduleNonDet() {
         ArrayList<Automaton> autos = new ArrayList<Automaton>();
+        // On construit pour chaque états le sous automate partant de cet état
+        for (State root : this.getNonDetRoots()) {
+            autos.add(this.getScheduledAutomaton(root));
+        }
+        return autos;
+    }
+
+    /**
+     * Récupère, sans doublons et dans l'ordre du parcours, les états racines
+     * des sous automates probabilistes de {@link #scheduleNonDet()}.
+     * @return la liste des états racines
+     */
+    public final List<State> getNonDetRoots() {
         // La liste des états racines des sous automates probabilistes
         ArrayList<State> roots = new ArrayList<State>();
         // On récupère la liste des états racines
@@ -1105,21 +1183,30 @@ public class Automaton implements Acceptor, StateMachine, Rational, Cloneable {
             State s = (State) inits.next();
             roots = getNonDetRoots(roots, s);
         }
-        // On construit pour chaque états le sous automate partant de cet état
-        for (int i = 0; i < roots.size(); i++) {
-            // On construit le sous automate partant de l'état récupéré
-            Automaton subAuto = getSubAutomaton(roots.get(i));
-            Iterator<Object> it = this.alphabet.iterator();
-            while (it.hasNext()) {
-                Object o = it.next();
-                if (!subAuto.alphabet().contains(o) && o instanceof PSymbol) {
-                    subAuto.alphabet().add(o);
-                }
+        return new ArrayList<State>(new LinkedHashSet<State>(roots));
+    }
 
+    /**
+     * Construit le sous automate probabiliste partant d'un état racine, avec
+     * l'alphabet probabiliste complet de cet automate. Cet automate n'est pas
+     * modifié, plusieurs sous automates peuvent donc être construits en
+     * parallèle.
+     * @param root
+     *            un état racine de {@link #getNonDetRoots()}
+     * @return le sous automate
+     */
+    public final Automaton getScheduledAutomaton(final State root) {
+        // On construit le sous automate partant de l'état récupéré
+        Automaton subAuto = getSubAutomaton(root);
+        Iterator<Object> it = this.alphabet.iterator();
+        while (it.hasNext()) {
+            Object o = it.next();
+            if (!subAuto.alphabet().contains(o) && o instanceof PSymbol) {
+                subAuto.alphabet().add(o);
             }
-            autos.add(subAuto);
+
         }
-        return autos;
+        return subAuto;
     }
 
     /**
@@ -1170,20 +1257,37 @@ public class Automaton implements Acceptor, StateMachine, Rational, Cloneable {
 
     }
 
+    /**
+     * Ajoute à la liste les états accessibles depuis l'état de départ, sans
+     * continuer au-delà des états terminaux. Chaque état n'est parcouru
+     * qu'une fois, les boucles sont donc permises.
+     * @param start
+     *            l'état de départ
+     * @param out
+     *            la liste des états
+     * @return la liste des états
+     */
     public final ArrayList<State> getStatesFrom(final State start,
-            ArrayList<State> out) {
-        out.add(start);
-        Set<Transition> setTr = this.delta(start);
-        Iterator<Transition> it = setTr.iterator();
-        while (it.hasNext()) {
-            Transition t = it.next();
-            if (!t.end().isTerminal()) {
-                out = getStatesFrom(t.end(), out);
-            } else {
-                out.add(t.end());
+            final ArrayList<State> out) {
+        Set<State> visited = new HashSet<State>(out);
+        LinkedList<State> todo = new LinkedList<State>();
+        if (visited.add(start)) {
+            out.add(start);
+            todo.add(start);
+        }
+        while (!todo.isEmpty()) {
+            State s = todo.removeFirst();
+            Iterator<Transition> it = this.delta(s).iterator();
+            while (it.hasNext()) {
+                State end = it.next().end();
+                if (visited.add(end)) {
+                    out.add(end);
+                    if (!end.isTerminal()) {
+                        todo.add(end);
+                    }
+                }
             }
         }
-
         return out;
     }
 
@@ -0,0 +1,983 @@
+package net.jautomata.rationals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable automaton stored in primitive arrays : the states are the
+ * integers from 0, and the transitions of the state i are at the positions
+ * offsets[i] to offsets[i + 1] - 1 of the arrays of the labels, targets and
+ * probabilities (compressed sparse rows). A transition costs 8 bytes, 16
+ * with a probability, instead of the {@link Transition}, the reversed
+ * transition, the keys and the hash entries of {@link Automaton}.
+ * <p>
+ * The labels are numbered by a {@link SymbolTable}, possibly shared with
+ * other automata, a {@link PSymbol} being stored as its label and its
+ * probability. The automaton is built with a {@link Builder}, or
+ * converted from an {@link Automaton}; {@link #toAutomaton()} converts it
+ * back for the transformations which need one. The methods of
+ * {@link StateMachine} and {@link Acceptor} create the {@link State} objects
+ * on first use and the {@link Transition} objects on each call, so the
+ * computations on large automata should use the index methods instead.
+ * @author Daniel Lefevre
+ */
+public final class CompactAutomaton implements Acceptor, StateMachine {
+
+    /**
+     * The identifier.
+     */
+    private Object id;
+    /**
+     * The number of states.
+     */
+    private final int stateCount;
+    /**
+     * The initial states.
+     */
+    private final BitSet initialStates;
+    /**
+     * The terminal states.
+     */
+    private final BitSet terminalStates;
+    /**
+     * The numbers of the labels. A label may be null, for the epsilon
+     * transitions.
+     */
+    private final SymbolTable symbols;
+    /**
+     * The labels numbered by the table when the automaton was built.
+     */
+    private final Object[] labels;
+    /**
+     * The numbers of the labels of the transitions.
+     */
+    private final BitSet usedLabels = new BitSet();
+    /**
+     * Beginning of the transitions of each state.
+     */
+    private final int[] offsets;
+    /**
+     * The number of the label of each transition.
+     */
+    private final int[] transitionLabels;
+    /**
+     * The target of each transition.
+     */
+    private final int[] targets;
+    /**
+     * The probability of each transition, NaN for the transitions which are
+     * not probabilistic, null if none is.
+     */
+    private final double[] probabilities;
+    /**
+     * The states, created on first use.
+     */
+    private State[] stateObjects;
+    /**
+     * The factory of the sets of states.
+     */
+    private final StateFactory stateFactory = new CompactStateFactory();
+
+    /**
+     * Constructor, used by the builder.
+     * @param builder
+     *            the builder, whose transitions are sorted by state
+     */
+    private CompactAutomaton(final Builder builder) {
+        this.stateCount = builder.stateCount;
+        this.initialStates = (BitSet) builder.initialStates.clone();
+        this.terminalStates = (BitSet) builder.terminalStates.clone();
+        this.symbols = builder.symbols;
+        this.labels = builder.symbols.toArray();
+
+        int count = builder.transitionCount;
+        this.offsets = new int[this.stateCount + 1];
+        for (int k = 0; k < count; ++k) {
+            ++this.offsets[builder.sources[k] + 1];
+        }
+        for (int i = 0; i < this.stateCount; ++i) {
+            this.offsets[i + 1] += this.offsets[i];
+        }
+        int[] next = Arrays.copyOf(this.offsets, this.stateCount);
+        this.transitionLabels = new int[count];
+        this.targets = new int[count];
+        this.probabilities = (builder.probabilities == null) ? null
+                : new double[count];
+        for (int k = 0; k < count; ++k) {
+            int position = next[builder.sources[k]]++;
+            this.transitionLabels[position] = builder.transitionLabels[k];
+            this.usedLabels.set(builder.transitionLabels[k]);
+            this.targets[position] = builder.targets[k];
+            if (this.probabilities != null) {
+                this.probabilities[position] = builder.probabilities[k];
+            }
+        }
+    }
+
+    /**
+     * Converts an automaton, with labels numbered by a table of its own.
+     * @param auto
+     *            the automaton
+     * @return the compact automaton
+     */
+    public static CompactAutomaton fromAutomaton(final Automaton auto) {
+        return fromAutomaton(auto, new SymbolTable());
+    }
+
+    /**
+     * Converts an automaton.
+     * @param auto
+     *            the automaton
+     * @param symbols
+     *            the table numbering the labels, completed with those of the
+     *            automaton
+     * @return the compact automaton
+     */
+    public static CompactAutomaton fromAutomaton(final Automaton auto,
+            final SymbolTable symbols) {
+        Builder builder = new Builder(symbols);
+        Map<State, Integer> indexes = new HashMap<>();
+        for (State s : auto.states()) {
+            indexes.put(s, builder.addState(s.isInitial(), s.isTerminal()));
+        }
+        for (Transition t : auto.delta()) {
+            int from = indexes.get(t.start());
+            int to = indexes.get(t.end());
+            if (t.label() instanceof PSymbol) {
+                builder.addTransition(from, t.symbol(), to, t.weight());
+            } else {
+                builder.addTransition(from, t.symbol(), to);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Converts the automaton into an {@link Automaton}, whose states are
+     * created in the order of the indexes.
+     * @return the automaton
+     */
+    public Automaton toAutomaton() {
+        Automaton auto = new Automaton();
+        State[] states = new State[this.stateCount];
+        for (int i = 0; i < this.stateCount; ++i) {
+            states[i] = auto.addState(this.isInitial(i), this.isTerminal(i));
+        }
+        for (int i = 0; i < this.stateCount; ++i) {
+            for (int k = this.offsets[i]; k < this.offsets[i + 1]; ++k) {
+                try {
+                    auto.addTransition(new Transition(states[i], this
+                            .transitionLabel(k), states[this.targets[k]]));
+                } catch (NoSuchStateException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+        return auto;
+    }
+
+    /**
+     * Getter.
+     * @return the number of states
+     */
+    public int size() {
+        return this.stateCount;
+    }
+
+    /**
+     * Getter.
+     * @return the number of transitions
+     */
+    public int transitionCount() {
+        return this.targets.length;
+    }
+
+    /**
+     * Getter.
+     * @return the table numbering the labels
+     */
+    public SymbolTable getSymbols() {
+        return this.symbols;
+    }
+
+    /**
+     * Getter.
+     * @return the number of labels numbered by the table when the automaton
+     *         was built, an upper bound of the label numbers of the
+     *         transitions
+     */
+    public int labelCount() {
+        return this.labels.length;
+    }
+
+    /**
+     * Getter.
+     * @param labelId
+     *            the number of a label
+     * @return the label
+     */
+    public Object getLabel(final int labelId) {
+        return this.labels[labelId];
+    }
+
+    /**
+     * Getter.
+     * @param label
+     *            a label, without its probability
+     * @return the number of the label, -1 if it is not in the alphabet
+     */
+    public int getLabelId(final Object label) {
+        int labelId = this.symbols.indexOf(label);
+        return (labelId < this.labels.length) ? labelId : -1;
+    }
+
+    /**
+     * Getter.
+     * @param state
+     *            the index of a state
+     * @return true if the state is initial
+     */
+    public boolean isInitial(final int state) {
+        return this.initialStates.get(state);
+    }
+
+    /**
+     * Getter.
+     * @param state
+     *            the index of a state
+     * @return true if the state is terminal
+     */
+    public boolean isTerminal(final int state) {
+        return this.terminalStates.get(state);
+    }
+
+    /**
+     * Getter.
+     * @return the indexes of the initial states
+     */
+    public int[] getInitials() {
+        int[] indexes = new int[this.initialStates.cardinality()];
+        int k = 0;
+        for (int i = this.initialStates.nextSetBit(0); i >= 0; i = this
+                .initialStates.nextSetBit(i + 1)) {
+            indexes[k++] = i;
+        }
+        return indexes;
+    }
+
+    /**
+     * Getter.
+     * @param state
+     *            the index of a state
+     * @return the position of the first transition of the state
+     */
+    public int firstTransition(final int state) {
+        return this.offsets[state];
+    }
+
+    /**
+     * Getter.
+     * @param state
+     *            the index of a state
+     * @return the position after the last transition of the state
+     */
+    public int endTransition(final int state) {
+        return this.offsets[state + 1];
+    }
+
+    /**
+     * Getter.
+     * @param transition
+     *            the position of a transition
+     * @return the number of the label of the transition
+     */
+    public int getTransitionLabel(final int transition) {
+        return this.transitionLabels[transition];
+    }
+
+    /**
+     * Getter.
+     * @param transition
+     *            the position of a transition
+     * @return the target of the transition
+     */
+    public int getTarget(final int transition) {
+        return this.targets[transition];
+    }
+
+    /**
+     * Getter.
+     * @param transition
+     *            the position of a transition
+     * @return true if the transition has a probability
+     */
+    public boolean isProbabilistic(final int transition) {
+        return (this.probabilities != null)
+                && !Double.isNaN(this.probabilities[transition]);
+    }
+
+    /**
+     * Getter. The transitions without probability have the probability 1, as
+     * in the products.
+     * @param transition
+     *            the position of a transition
+     * @return the probability of the transition
+     */
+    public double getProbability(final int transition) {
+        return this.isProbabilistic(transition)
+                ? this.probabilities[transition] : 1;
+    }
+
+    /**
+     * Builds the label of a transition as in an {@link Automaton}.
+     * @param transition
+     *            the position of a transition
+     * @return the label, a new {@link PSymbol} if the transition has a
+     *         probability
+     */
+    private Object transitionLabel(final int transition) {
+        Object label = this.labels[this.transitionLabels[transition]];
+        if (this.isProbabilistic(transition)) {
+            return new PSymbol(label, this.probabilities[transition]);
+        }
+        return label;
+    }
+
+    /**
+     * Getter.
+     * @param index
+     *            the index of a state
+     * @return the state, the same object at each call
+     */
+    public synchronized State getState(final int index) {
+        if (this.stateObjects == null) {
+            this.stateObjects = new State[this.stateCount];
+            for (int i = 0; i < this.stateCount; ++i) {
+                this.stateObjects[i] = new CompactState(i, this.isInitial(i),
+                        this.isTerminal(i));
+            }
+        }
+        return this.stateObjects[index];
+    }
+
+    /**
+     * Getter.
+     * @param state
+     *            a state of this automaton
+     * @return the index of the state
+     * @throws IllegalArgumentException
+     *             if the state is not a state of this automaton
+     */
+    public int indexOf(final State state) {
+        if (!(state instanceof CompactState)) {
+            throw new IllegalArgumentException("Not a state of this "
+                    + "automaton : " + state);
+        }
+        int index = ((CompactState) state).index;
+        if ((index >= this.stateCount) || (this.getState(index) != state)) {
+            throw new IllegalArgumentException("Not a state of this "
+                    + "automaton : " + state);
+        }
+        return index;
+    }
+
+    /**
+     * Builds a set of states from their indexes.
+     * @param indexes
+     *            the indexes
+     * @return the states
+     */
+    private Set<State> toStates(final BitSet indexes) {
+        Set<State> states = new HashSet<>();
+        for (int i = indexes.nextSetBit(0); i >= 0; i = indexes
+                .nextSetBit(i + 1)) {
+            states.add(this.getState(i));
+        }
+        return states;
+    }
+
+    /**
+     * Builds the indexes of a set of states.
+     * @param states
+     *            the states
+     * @return the indexes
+     */
+    private BitSet toIndexes(final Set<State> states) {
+        BitSet indexes = new BitSet(this.stateCount);
+        for (State s : states) {
+            indexes.set(this.indexOf(s));
+        }
+        return indexes;
+    }
+
+    /**
+     * Adds to a set of states the states reached by epsilon transitions.
+     * @param states
+     *            the indexes of the states, completed
+     * @return the set
+     */
+    private BitSet epsilonClosure(final BitSet states) {
+        int epsilon = this.getLabelId(null);
+        if (epsilon < 0) {
+            return states;
+        }
+        int[] stack = new int[this.stateCount];
+        int top = 0;
+        for (int i = states.nextSetBit(0); i >= 0; i = states
+                .nextSetBit(i + 1)) {
+            stack[top++] = i;
+        }
+        while (top > 0) {
+            int s = stack[--top];
+            for (int k = this.offsets[s]; k < this.offsets[s + 1]; ++k) {
+                int t = this.targets[k];
+                if ((this.transitionLabels[k] == epsilon) && !states.get(t)) {
+                    states.set(t);
+                    stack[top++] = t;
+                }
+            }
+        }
+        return states;
+    }
+
+    /**
+     * Follows a label from a set of states, after their epsilon closure.
+     * @param states
+     *            the indexes of the states
+     * @param label
+     *            the label
+     * @return the indexes of the states reached
+     */
+    private BitSet stepIndexes(final BitSet states, final Object label) {
+        BitSet reached = new BitSet(this.stateCount);
+        int labelId = this.getLabelId(label);
+        if ((label == null) || (labelId < 0)) {
+            return reached;
+        }
+        BitSet closure = this.epsilonClosure((BitSet) states.clone());
+        for (int s = closure.nextSetBit(0); s >= 0; s = closure
+                .nextSetBit(s + 1)) {
+            for (int k = this.offsets[s]; k < this.offsets[s + 1]; ++k) {
+                if (this.transitionLabels[k] == labelId) {
+                    reached.set(this.targets[k]);
+                }
+            }
+        }
+        return reached;
+    }
+
+    @Override
+    public Set<Object> alphabet() {
+        Set<Object> alphabet = new LinkedHashSet<>();
+        for (int i = this.usedLabels.nextSetBit(0); i >= 0; i = this
+                .usedLabels.nextSetBit(i + 1)) {
+            alphabet.add(this.labels[i]);
+        }
+        return Collections.unmodifiableSet(alphabet);
+    }
+
+    @Override
+    public Object getId() {
+        return this.id;
+    }
+
+    @Override
+    public void setId(final Object idIn) {
+        this.id = idIn;
+    }
+
+    @Override
+    public StateFactory getStateFactory() {
+        return this.stateFactory;
+    }
+
+    /**
+     * Not supported : the automaton is immutable.
+     * @param factory
+     *            ignored
+     */
+    @Override
+    public void setStateFactory(final StateFactory factory) {
+        throw new UnsupportedOperationException("The automaton is immutable");
+    }
+
+    @Override
+    public Set<Transition> delta(final State state, final Object label) {
+        Set<Transition> transitions = new HashSet<>();
+        int s = this.indexOf(state);
+        int labelId = this.getLabelId(label);
+        for (int k = this.offsets[s]; k < this.offsets[s + 1]; ++k) {
+            if (this.transitionLabels[k] == labelId) {
+                transitions.add(new Transition(state, this.transitionLabel(k),
+                        this.getState(this.targets[k])));
+            }
+        }
+        return transitions;
+    }
+
+    @Override
+    public Set<Transition> delta(final State state) {
+        Set<Transition> transitions = new HashSet<>();
+        int s = this.indexOf(state);
+        for (int k = this.offsets[s]; k < this.offsets[s + 1]; ++k) {
+            transitions.add(new Transition(state, this.transitionLabel(k),
+                    this.getState(this.targets[k])));
+        }
+        return transitions;
+    }
+
+    @Override
+    public Set<Transition> delta(final Set<State> states) {
+        Set<Transition> transitions = new HashSet<>();
+        for (State s : states) {
+            transitions.addAll(this.delta(s));
+        }
+        return transitions;
+    }
+
+    @Override
+    public Set<State> steps(final List<Object> word) {
+        BitSet states = this.epsilonClosure((BitSet) this.initialStates
+                .clone());
+        for (Object label : word) {
+            states = this.stepIndexes(states, label);
+            if (states.isEmpty()) {
+                break;
+            }
+        }
+        return this.toStates(states);
+    }
+
+    @Override
+    public Set<State> steps(final Set<State> s, final List<Object> word) {
+        BitSet states = this.toIndexes(s);
+        for (Object label : word) {
+            states = this.stepIndexes(states, label);
+            if (states.isEmpty()) {
+                break;
+            }
+        }
+        return this.toStates(states);
+    }
+
+    @Override
+    public Set<State> steps(final State st, final List<Object> word) {
+        return this.steps(Collections.singleton(st), word);
+    }
+
+    @Override
+    public Set<State> step(final Set<State> s, final Object o) {
+        return this.toStates(this.stepIndexes(this.toIndexes(s), o));
+    }
+
+    @Override
+    public Set<State> initials() {
+        return this.toStates(this.initialStates);
+    }
+
+    /**
+     * Returns the transitions ending in a state. The transitions are not
+     * indexed by their target, so this scans all the transitions.
+     * @param st
+     *            the state
+     * @return the transitions ending in the state
+     */
+    @Override
+    public Set<Transition> deltaMinusOne(final State st) {
+        Set<Transition> transitions = new HashSet<>();
+        int t = this.indexOf(st);
+        for (int s = 0; s < this.stateCount; ++s) {
+            for (int k = this.offsets[s]; k < this.offsets[s + 1]; ++k) {
+                if (this.targets[k] == t) {
+                    transitions.add(new Transition(this.getState(s), this
+                            .transitionLabel(k), st));
+                }
+            }
+        }
+        return transitions;
+    }
+
+    @Override
+    public boolean accept(final List<Object> word) {
+        BitSet states = this.epsilonClosure((BitSet) this.initialStates
+                .clone());
+        for (Object label : word) {
+            states = this.stepIndexes(states, label);
+            if (states.isEmpty()) {
+                return false;
+            }
+        }
+        return this.epsilonClosure(states).intersects(this.terminalStates);
+    }
+
+    @Override
+    public List<Set<State>> traceStates(final List<Object> word,
+            final State start) {
+        List<Set<State>> trace = new ArrayList<>();
+        BitSet states;
+        if (start != null) {
+            states = new BitSet(this.stateCount);
+            states.set(this.indexOf(start));
+        } else {
+            states = (BitSet) this.initialStates.clone();
+        }
+        for (Object label : word) {
+            int labelId = this.getLabelId(label);
+            if ((labelId < 0) || !this.usedLabels.get(labelId)) {
+                continue;
+            }
+            states = this.stepIndexes(states, label);
+            trace.add(this.toStates(states));
+            if (states.isEmpty()) {
+                return null;
+            }
+        }
+        return trace;
+    }
+
+    @Override
+    public String toString() {
+        return "CompactAutomaton[" + this.stateCount + " states, "
+                + this.transitionCount() + " transitions, "
+                + this.usedLabels.cardinality() + " labels]";
+    }
+
+    /**
+     * Builds a {@link CompactAutomaton} from states and transitions added in
+     * any order. The transitions are kept in growing primitive arrays and
+     * sorted by state by {@link #build()}.
+     * @author Daniel Lefevre
+     */
+    public static final class Builder {
+
+        /**
+         * The initial capacity of the arrays of the transitions.
+         */
+        private static final int CAPACITY = 16;
+
+        /**
+         * The number of states.
+         */
+        private int stateCount;
+        /**
+         * The initial states.
+         */
+        private final BitSet initialStates = new BitSet();
+        /**
+         * The terminal states.
+         */
+        private final BitSet terminalStates = new BitSet();
+        /**
+         * The numbers of the labels.
+         */
+        private final SymbolTable symbols;
+        /**
+         * The number of transitions.
+         */
+        private int transitionCount;
+        /**
+         * The source of each transition.
+         */
+        private int[] sources = new int[CAPACITY];
+        /**
+         * The number of the label of each transition.
+         */
+        private int[] transitionLabels = new int[CAPACITY];
+        /**
+         * The target of each transition.
+         */
+        private int[] targets = new int[CAPACITY];
+        /**
+         * The probability of each transition, NaN for those without, null
+         * until a transition has one.
+         */
+        private double[] probabilities;
+
+        /**
+         * Constructor, with labels numbered by a table of its own.
+         */
+        public Builder() {
+            this(new SymbolTable());
+        }
+
+        /**
+         * Constructor.
+         * @param symbolsIn
+         *            the table numbering the labels, completed with those of
+         *            the transitions added
+         */
+        public Builder(final SymbolTable symbolsIn) {
+            this.symbols = symbolsIn;
+        }
+
+        /**
+         * Adds a state.
+         * @param initial
+         *            true if the state is initial
+         * @param terminal
+         *            true if the state is terminal
+         * @return the index of the state
+         */
+        public int addState(final boolean initial, final boolean terminal) {
+            int index = this.stateCount++;
+            this.initialStates.set(index, initial);
+            this.terminalStates.set(index, terminal);
+            return index;
+        }
+
+        /**
+         * Adds states which are neither initial nor terminal.
+         * @param count
+         *            the number of states
+         * @return the index of the first state added
+         */
+        public int addStates(final int count) {
+            int first = this.stateCount;
+            this.stateCount += count;
+            return first;
+        }
+
+        /**
+         * Setter.
+         * @param state
+         *            the index of a state
+         * @param initial
+         *            true if the state is initial
+         */
+        public void setInitial(final int state, final boolean initial) {
+            this.checkState(state);
+            this.initialStates.set(state, initial);
+        }
+
+        /**
+         * Setter.
+         * @param state
+         *            the index of a state
+         * @param terminal
+         *            true if the state is terminal
+         */
+        public void setTerminal(final int state, final boolean terminal) {
+            this.checkState(state);
+            this.terminalStates.set(state, terminal);
+        }
+
+        /**
+         * Adds a transition without probability.
+         * @param from
+         *            the index of the source
+         * @param label
+         *            the label, null for an epsilon transition
+         * @param to
+         *            the index of the target
+         */
+        public void addTransition(final int from, final Object label,
+                final int to) {
+            this.add(from, label, to, Double.NaN);
+        }
+
+        /**
+         * Adds a probabilistic transition.
+         * @param from
+         *            the index of the source
+         * @param label
+         *            the label, without probability
+         * @param to
+         *            the index of the target
+         * @param probability
+         *            the probability
+         */
+        public void addTransition(final int from, final Object label,
+                final int to, final double probability) {
+            if (Double.isNaN(probability)) {
+                throw new IllegalArgumentException("The probability is NaN");
+            }
+            if (this.probabilities == null) {
+                this.probabilities = new double[this.sources.length];
+                Arrays.fill(this.probabilities, Double.NaN);
+            }
+            this.add(from, label, to, probability);
+        }
+
+        /**
+         * Adds a transition.
+         * @param from
+         *            the index of the source
+         * @param label
+         *            the label
+         * @param to
+         *            the index of the target
+         * @param probability
+         *            the probability, NaN for none
+         */
+        private void add(final int from, final Object label, final int to,
+                final double probability) {
+            this.checkState(from);
+            this.checkState(to);
+            int labelId = this.symbols.intern(label);
+            int k = this.transitionCount;
+            if (k == this.sources.length) {
+                int capacity = 2 * k;
+                this.sources = Arrays.copyOf(this.sources, capacity);
+                this.transitionLabels = Arrays.copyOf(this.transitionLabels,
+                        capacity);
+                this.targets = Arrays.copyOf(this.targets, capacity);
+                if (this.probabilities != null) {
+                    this.probabilities = Arrays.copyOf(this.probabilities,
+                            capacity);
+                    Arrays.fill(this.probabilities, k, capacity, Double.NaN);
+                }
+            }
+            this.sources[k] = from;
+            this.transitionLabels[k] = labelId;
+            this.targets[k] = to;
+            if (this.probabilities != null) {
+                this.probabilities[k] = probability;
+            }
+            ++this.transitionCount;
+        }
+
+        /**
+         * Checks the index of a state.
+         * @param state
+         *            the index
+         * @throws IllegalArgumentException
+         *             if the state was not added
+         */
+        private void checkState(final int state) {
+            if ((state < 0) || (state >= this.stateCount)) {
+                throw new IllegalArgumentException("No state " + state);
+            }
+        }
+
+        /**
+         * Builds the automaton. The builder can still be used afterwards.
+         * @return the automaton
+         */
+        public CompactAutomaton build() {
+            return new CompactAutomaton(this);
+        }
+    }
+
+    /**
+     * A state of a compact automaton, identified by its index.
+     * @author Daniel Lefevre
+     */
+    private static final class CompactState implements State {
+
+        /**
+         * The index.
+         */
+        private final int index;
+        /**
+         * True if the state is initial.
+         */
+        private final boolean initial;
+        /**
+         * True if the state is terminal.
+         */
+        private final boolean terminal;
+
+        /**
+         * Constructor.
+         * @param indexIn
+         *            the index
+         * @param initialIn
+         *            true if the state is initial
+         * @param terminalIn
+         *            true if the state is terminal
+         */
+        CompactState(final int indexIn, final boolean initialIn,
+                final boolean terminalIn) {
+            this.index = indexIn;
+            this.initial = initialIn;
+            this.terminal = terminalIn;
+        }
+
+        /**
+         * Not supported : the automaton is immutable.
+         * @param initialIn
+         *            ignored
+         */
+        @Override
+        public void setInitial(final boolean initialIn) {
+            throw new UnsupportedOperationException(
+                    "The automaton is immutable");
+        }
+
+        /**
+         * Not supported : the automaton is immutable.
+         * @param terminalIn
+         *            ignored
+         */
+        @Override
+        public void setTerminal(final boolean terminalIn) {
+            throw new UnsupportedOperationException(
+                    "The automaton is immutable");
+        }
+
+        @Override
+        public boolean isInitial() {
+            return this.initial;
+        }
+
+        @Override
+        public boolean isTerminal() {
+            return this.terminal;
+        }
+
+        @Override
+        public String toString() {
+            return Integer.toString(this.index);
+        }
+    }
+
+    /**
+     * The factory of the sets of states of a compact automaton. The states
+     * cannot be created.
+     * @author Daniel Lefevre
+     */
+    private static final class CompactStateFactory implements StateFactory {
+
+        /**
+         * Not supported : the automaton is immutable.
+         * @param initial
+         *            ignored
+         * @param terminal
+         *            ignored
+         * @return nothing
+         */
+        @Override
+        public State create(final boolean initial, final boolean terminal) {
+            throw new UnsupportedOperationException(
+                    "The automaton is immutable");
+        }
+
+        @Override
+        public Set<State> stateSet() {
+            return new HashSet<>();
+        }
+
+        @Override
+        public Set<State> stateSet(final Set<State> s) {
+            return new HashSet<>(s);
+        }
+
+        @Override
+        public Object clone() {
+            return this;
+        }
+
+        @Override
+        public void setAutomaton(final Automaton automaton) {
+            // the sets do not depend on the automaton
+        }
+    }
+}
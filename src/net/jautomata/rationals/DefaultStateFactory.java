@@ -1,6 +1,7 @@
 package net.jautomata.rationals;
 
 import java.lang.reflect.Array;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collection;
 import java.util.ConcurrentModificationException;
@@ -9,6 +10,8 @@ import java.util.LinkedList;
 import java.util.NoSuchElementException;
 import java.util.Set;
 
+import ca.polymtl.crac.tpot.budget.WorkBudget;
+
 /**
  * This class is used by Automaton objects to create new states on A user can
  * implement its own version of StateFactory by providing an implementation for
@@ -28,76 +31,61 @@ public class DefaultStateFactory implements StateFactory, Cloneable {
 
         Automaton a;
 
-        /** @author Olivier */
-        // -------------------------------------
-
-        protected final String binaryValue;
-
-        protected LinkedList<Boolean> binaryTab;
-
-        // -------------------------------------
-
         public DefaultState(final int iIn, final boolean initialIn,
                 final boolean terminalIn) {
-
             this.i = iIn;
-
-            /** @author Olivier */
-            // -------------------------------------
-
-            this.binaryValue = Integer.toBinaryString(this.i);
-            this.binaryTab = new LinkedList<>();
-
-            for (int j = 0; j < this.binaryValue.length(); j++) {
-                if (String.valueOf(this.binaryValue.charAt(j)).equals("1")) {
-                    this.binaryTab.add(true);
-                } else if (String.valueOf(this.binaryValue.charAt(j)).equals(
-                        "0")) {
-                    this.binaryTab.add(false);
-                }
-            }
-
-            // ------------------------------------------------------
-
             this.a = DefaultStateFactory.this.getAutomaton();
             this.initial = initialIn;
             this.terminal = terminalIn;
-
         }
 
         /** @author Olivier */
         // -------------------------------------
+        // The binary encoding of the index, used by the MTBDDs, is computed
+        // from the index on each call instead of being stored in each state.
+
         public String getBinaryValue() {
-            return this.binaryValue;
+            return Integer.toBinaryString(this.i);
         }
 
-        public final LinkedList<Boolean> getBinaryTab() {
-            return this.binaryTab;
+        /**
+         * Getter.
+         * @param position
+         *            the position of a bit, 0 for the most significant one
+         * @param width
+         *            the number of bits of the encoding, at least the length
+         *            of {@link #getBinaryValue()}
+         * @return the bit of the index at this position, in an encoding of
+         *         this width padded with leading zeros
+         */
+        public final boolean getBinaryBit(final int position,
+                final int width) {
+            int shift = width - 1 - position;
+            return (shift < Integer.SIZE) && (((this.i >>> shift) & 1) != 0);
         }
 
-        public final void setBinaryTab(final LinkedList<Boolean> binaryTab) {
-            this.binaryTab = binaryTab;
+        /**
+         * Getter.
+         * @param width
+         *            the number of bits of the encoding, at least the length
+         *            of {@link #getBinaryValue()}
+         * @return a new list of the bits of the index, most significant
+         *         first, padded with leading zeros
+         */
+        public final LinkedList<Boolean> getBinaryTab(final int width) {
+            LinkedList<Boolean> tab = new LinkedList<>();
+            for (int j = 0; j < width; j++) {
+                tab.add(this.getBinaryBit(j, width));
+            }
+            return tab;
         }
 
-        public final String printBinaryTab() {
-            String out = "[";
-            for (int i = 0; i < this.binaryTab.size(); i++) {
-                if (i != this.binaryTab.size() - 1) {
-                    out += this.binaryTab.get(i) + ",";
-                } else {
-                    out += this.binaryTab.get(i);
-                }
-            }
-            out += "]";
-            return out;
+        public final LinkedList<Boolean> getBinaryTab() {
+            return this.getBinaryTab(this.getBinaryValue().length());
         }
 
-        public final void completeBinaryTab(final int size) {
-            while (this.binaryTab.size() < size) {
-                for (int i = 0; i < size - this.binaryTab.size(); i++) {
-                    this.binaryTab.addFirst(false);
-                }
-            }
+        public final String printBinaryTab() {
+            return this.getBinaryTab().toString().replace(" ", "");
         }
 
         // -------------------------------------
@@ -226,53 +214,64 @@ public class DefaultStateFactory implements StateFactory, Cloneable {
         }
 
         private int modcount = 0;
-        private int mods = 0;
-        private int bit = -1;
 
         private BitSet bits = new BitSet();
 
-        private Iterator it = new Iterator() {
+        /**
+         * Iterator over the states of the set. Each call to
+         * {@link DefaultStateSet#iterator()} returns a new one, so that the
+         * set can be iterated in nested loops and by several threads at once.
+         * The states returned are those created by the factory, so that the
+         * iteration allocates nothing per state.
+         */
+        private class StateIterator implements Iterator {
+
+            /**
+             * The bit from which the next state is searched.
+             */
+            private int bit = 0;
+
+            /**
+             * The bit of the last returned state, -1 if none.
+             */
+            private int last = -1;
+
+            /**
+             * The modification count of the set when the iterator was
+             * created.
+             */
+            private int expectedModCount = DefaultStateSet.this.modcount;
 
             @Override
             public void remove() {
-                if (DefaultStateSet.this.getBit() > 0) {
-                    DefaultStateSet.this.getBits().clear(
-                            DefaultStateSet.this.getBit());
+                if (this.last < 0) {
+                    throw new IllegalStateException();
                 }
+                DefaultStateSet.this.getBits().clear(this.last);
+                this.last = -1;
             }
 
             @Override
             public boolean hasNext() {
-                return DefaultStateSet.this.getBits().nextSetBit(
-                        DefaultStateSet.this.getBit()) > -1;
+                return DefaultStateSet.this.getBits().nextSetBit(this.bit) > -1;
             }
 
             @Override
             public Object next() {
-                DefaultStateSet.this.setBit(DefaultStateSet.this.getBits()
-                        .nextSetBit(DefaultStateSet.this.getBit()));
-                if (DefaultStateSet.this.getBit() == -1) {
-                    throw new NoSuchElementException();
-                }
-                DefaultState ds = new DefaultState(
-                        DefaultStateSet.this.getBit(), false, false);
-                ds.initial = DefaultStateFactory.this.getAutomaton().initials()
-                        .contains(ds);
-                ds.terminal = DefaultStateFactory.this.getAutomaton()
-                        .terminals().contains(ds);
-                DefaultStateSet.this
-                        .setMods(DefaultStateSet.this.getMods() + 1);
-                DefaultStateSet.this.setModCount(DefaultStateSet.this
-                        .getModCount() + 1);
-                if (DefaultStateSet.this.getMods() != DefaultStateSet.this
-                        .getModCount()) {
+                if (DefaultStateSet.this.modcount != this.expectedModCount) {
                     throw new ConcurrentModificationException();
                 }
+                int next = DefaultStateSet.this.getBits().nextSetBit(this.bit);
+                if (next == -1) {
+                    throw new NoSuchElementException();
+                }
+                DefaultState ds = DefaultStateFactory.this.getState(next);
                 /* advance iterator */
-                DefaultStateSet.this.bit++;
+                this.last = next;
+                this.bit = next + 1;
                 return ds;
             }
-        };
+        }
 
         /*
          * (non-Javadoc)
@@ -283,50 +282,6 @@ public class DefaultStateFactory implements StateFactory, Cloneable {
             return this.bits.cardinality();
         }
 
-        /**
-         * Setter.
-         * @param modCountIn
-         *            the new mod count
-         */
-        protected void setModCount(final int modCountIn) {
-            this.modcount = modCountIn;
-        }
-
-        /**
-         * Setter.
-         * @param modsIn
-         *            the new mods
-         */
-        protected void setMods(final int modsIn) {
-            this.mods = modsIn;
-        }
-
-        /**
-         * Getter.
-         * @return the mod count
-         */
-        protected int getModCount() {
-            return this.modcount;
-        }
-
-        /**
-         * Getter.
-         * @return the mods
-         */
-        protected int getMods() {
-            return this.mods;
-
-        }
-
-        /**
-         * Setter.
-         * @param bitIn
-         *            the bit
-         */
-        public void setBit(final int bitIn) {
-            this.bit = bitIn;
-        }
-
         /**
          * Getter.
          * @return the bit set
@@ -335,14 +290,6 @@ public class DefaultStateFactory implements StateFactory, Cloneable {
             return this.bits;
         }
 
-        /**
-         * Getter.
-         * @return the bit
-         */
-        public int getBit() {
-            return this.bit;
-        }
-
         /*
          * (non-Javadoc)
          * @see java.util.Set#clear()
@@ -439,7 +386,6 @@ public class DefaultStateFactory implements StateFactory, Cloneable {
             BitSet bs = new BitSet();
             bs.or(this.bits);
             bs.and(dss.bits);
-            this.modcount++;
             return bs.equals(dss.bits);
         }
 
@@ -473,9 +419,7 @@ public class DefaultStateFactory implements StateFactory, Cloneable {
          */
         @Override
         public Iterator iterator() {
-            /* reset iterator */
-            this.bit = this.modcount = this.mods = 0;
-            return this.it;
+            return new StateIterator();
         }
 
         /*
@@ -510,6 +454,12 @@ public class DefaultStateFactory implements StateFactory, Cloneable {
 
     private Automaton automaton;
 
+    /**
+     * The states created, by index : the canonical state of each index,
+     * returned by the iterators of the sets of states.
+     */
+    private DefaultState[] created = new DefaultState[16];
+
     // //////////////////////////////////////////////////////
     // PUBLIC METHODS
     // /////////////////////////////////////////////////////
@@ -536,10 +486,38 @@ public class DefaultStateFactory implements StateFactory, Cloneable {
      *            if true, this state will be terminal; otherwise this state
      *            will be non terminal.
      * @return the new created state
+     * @throws ca.polymtl.crac.tpot.budget.BudgetExceededException
+     *             if the automaton exceeds the state ceiling of the budget of
+     *             the current thread
      */
     @Override
     public final State create(final boolean initial, final boolean terminal) {
-        return new DefaultState(this.id++, initial, terminal);
+        WorkBudget.checkSize(this.id + 1);
+        DefaultState state = new DefaultState(this.id, initial, terminal);
+        if (this.id == this.created.length) {
+            this.created = Arrays.copyOf(this.created, 2 * this.id);
+        }
+        this.created[this.id++] = state;
+        return state;
+    }
+
+    /**
+     * Getter. A state of another automaton added with
+     * {@link Automaton#addState(State)} has no canonical state in this
+     * factory : a new state of the index is then returned, with the
+     * initial and terminal flags of the automaton.
+     * @param index
+     *            the index of a state
+     * @return the state created by this factory with this index
+     */
+    final DefaultState getState(final int index) {
+        if (index < this.id) {
+            return this.created[index];
+        }
+        DefaultState ds = new DefaultState(index, false, false);
+        ds.initial = this.automaton.initials().contains(ds);
+        ds.terminal = this.automaton.terminals().contains(ds);
+        return ds;
     }
 
     /*
@@ -555,8 +533,9 @@ public class DefaultStateFactory implements StateFactory, Cloneable {
      * (non-Javadoc)
      * @see rationals.StateFactory#stateSet(java.util.Set)
      */
+    @SuppressWarnings("unchecked")
     @Override
-    public final Set stateSet(final Set s) {
+    public final Set<State> stateSet(final Set<State> s) {
         return new DefaultStateSet((DefaultStateSet) s, this);
     }
 
@@ -566,6 +545,7 @@ public class DefaultStateFactory implements StateFactory, Cloneable {
         try {
             cl = (DefaultStateFactory) super.clone();
             cl.id = 0;
+            cl.created = new DefaultState[16];
         } catch (CloneNotSupportedException e) {
             cl = null;
         }
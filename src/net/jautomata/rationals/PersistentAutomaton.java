@@ -0,0 +1,682 @@
+package net.jautomata.rationals;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An immutable version of an automaton edited with an {@link Editor}. The
+ * states are the integers from 0, stored in chunks of {@link #CHUNK} rows;
+ * the row of a state holds its flags and its transitions, as label numbers,
+ * targets and probabilities. A version shares its chunks and rows with the
+ * previous and the next ones : an edit copies the row it changes, the chunk
+ * of the row, and the array of the chunks once per version. Taking a
+ * version with {@link Editor#snapshot()} costs O(1).
+ * <p>
+ * The versions never change, so they can be shared by threads without
+ * synchronization. Each version has a version number, unique in the
+ * process, which the caches of the results can use as a key. The labels are
+ * numbered by a {@link SymbolTable} shared by all the versions, a
+ * {@link PSymbol} being stored as its label and its probability. The
+ * analyses work on {@link #toAutomaton()} or {@link #toCompactAutomaton()}.
+ * @author Daniel Lefevre
+ */
+public final class PersistentAutomaton {
+
+    /**
+     * The number of rows of a chunk.
+     */
+    public static final int CHUNK = 32;
+
+    /**
+     * The last version number given.
+     */
+    private static final AtomicLong VERSIONS = new AtomicLong();
+    /**
+     * The row of a state without transition, neither initial nor terminal.
+     */
+    private static final Row EMPTY = new Row(false, false, new int[0],
+            new int[0], null);
+
+    /**
+     * The version number.
+     */
+    private final long version;
+    /**
+     * The numbers of the labels, shared by the versions.
+     */
+    private final SymbolTable symbols;
+    /**
+     * The chunks of the rows, shared with the other versions.
+     */
+    private final Chunk[] chunks;
+    /**
+     * The number of states.
+     */
+    private final int stateCount;
+    /**
+     * The number of transitions.
+     */
+    private final int transitionCount;
+
+    /**
+     * Constructor, used by the editor.
+     * @param editor
+     *            the editor, which does not change the chunks anymore
+     */
+    private PersistentAutomaton(final Editor editor) {
+        this.version = VERSIONS.incrementAndGet();
+        this.symbols = editor.symbols;
+        this.chunks = editor.chunks;
+        this.stateCount = editor.stateCount;
+        this.transitionCount = editor.transitionCount;
+    }
+
+    /**
+     * Converts an automaton, with labels numbered by a table of its own.
+     * @param auto
+     *            the automaton
+     * @return the first version
+     */
+    public static PersistentAutomaton fromAutomaton(final Automaton auto) {
+        Editor editor = new Editor();
+        Map<State, Integer> indexes = new HashMap<>();
+        for (State s : auto.states()) {
+            indexes.put(s, editor.addState(s.isInitial(), s.isTerminal()));
+        }
+        for (Transition t : auto.delta()) {
+            int from = indexes.get(t.start());
+            int to = indexes.get(t.end());
+            if (t.label() instanceof PSymbol) {
+                editor.addTransition(from, t.symbol(), to, t.weight());
+            } else {
+                editor.addTransition(from, t.symbol(), to);
+            }
+        }
+        return editor.snapshot();
+    }
+
+    /**
+     * Getter.
+     * @return the version number, unique in the process
+     */
+    public long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Getter.
+     * @return the table numbering the labels
+     */
+    public SymbolTable getSymbols() {
+        return this.symbols;
+    }
+
+    /**
+     * Getter.
+     * @return the number of states
+     */
+    public int size() {
+        return this.stateCount;
+    }
+
+    /**
+     * Getter.
+     * @return the number of transitions
+     */
+    public int transitionCount() {
+        return this.transitionCount;
+    }
+
+    /**
+     * Getter.
+     * @param state
+     *            the index of a state
+     * @return the row of the state
+     */
+    private Row row(final int state) {
+        if ((state < 0) || (state >= this.stateCount)) {
+            throw new IllegalArgumentException("No state " + state);
+        }
+        return this.chunks[state / CHUNK].rows[state % CHUNK];
+    }
+
+    /**
+     * Getter.
+     * @param state
+     *            the index of a state
+     * @return true if the state is initial
+     */
+    public boolean isInitial(final int state) {
+        return this.row(state).initial;
+    }
+
+    /**
+     * Getter.
+     * @param state
+     *            the index of a state
+     * @return true if the state is terminal
+     */
+    public boolean isTerminal(final int state) {
+        return this.row(state).terminal;
+    }
+
+    /**
+     * Getter.
+     * @param state
+     *            the index of a state
+     * @return the number of transitions leaving the state
+     */
+    public int degree(final int state) {
+        return this.row(state).targets.length;
+    }
+
+    /**
+     * Getter.
+     * @param state
+     *            the index of a state
+     * @param k
+     *            the position of a transition of the state
+     * @return the number of the label of the transition
+     */
+    public int getLabelId(final int state, final int k) {
+        return this.row(state).labels[k];
+    }
+
+    /**
+     * Getter.
+     * @param state
+     *            the index of a state
+     * @param k
+     *            the position of a transition of the state
+     * @return the target of the transition
+     */
+    public int getTarget(final int state, final int k) {
+        return this.row(state).targets[k];
+    }
+
+    /**
+     * Getter.
+     * @param state
+     *            the index of a state
+     * @param k
+     *            the position of a transition of the state
+     * @return true if the transition has a probability
+     */
+    public boolean isProbabilistic(final int state, final int k) {
+        Row row = this.row(state);
+        return (row.probabilities != null)
+                && !Double.isNaN(row.probabilities[k]);
+    }
+
+    /**
+     * Getter. The transitions without probability have the probability 1, as
+     * in the products.
+     * @param state
+     *            the index of a state
+     * @param k
+     *            the position of a transition of the state
+     * @return the probability of the transition
+     */
+    public double getProbability(final int state, final int k) {
+        return this.isProbabilistic(state, k)
+                ? this.row(state).probabilities[k] : 1;
+    }
+
+    /**
+     * Starts a new version from this one. The editor shares the chunks of
+     * this version, which does not change.
+     * @return the editor
+     */
+    public Editor edit() {
+        return new Editor(this);
+    }
+
+    /**
+     * Converts the version into an {@link Automaton}, whose states are
+     * created in the order of the indexes.
+     * @return the automaton
+     */
+    public Automaton toAutomaton() {
+        Automaton auto = new Automaton();
+        State[] states = new State[this.stateCount];
+        for (int i = 0; i < this.stateCount; ++i) {
+            states[i] = auto.addState(this.isInitial(i), this.isTerminal(i));
+        }
+        for (int i = 0; i < this.stateCount; ++i) {
+            Row row = this.row(i);
+            for (int k = 0; k < row.targets.length; ++k) {
+                Object label = this.symbols.get(row.labels[k]);
+                if (this.isProbabilistic(i, k)) {
+                    label = new PSymbol(label, row.probabilities[k]);
+                }
+                try {
+                    auto.addTransition(new Transition(states[i], label,
+                            states[row.targets[k]]));
+                } catch (NoSuchStateException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+        return auto;
+    }
+
+    /**
+     * Converts the version into a {@link CompactAutomaton} numbering its
+     * labels with the table of the versions.
+     * @return the compact automaton
+     */
+    public CompactAutomaton toCompactAutomaton() {
+        CompactAutomaton.Builder builder = new CompactAutomaton.Builder(
+                this.symbols);
+        for (int i = 0; i < this.stateCount; ++i) {
+            builder.addState(this.isInitial(i), this.isTerminal(i));
+        }
+        for (int i = 0; i < this.stateCount; ++i) {
+            Row row = this.row(i);
+            for (int k = 0; k < row.targets.length; ++k) {
+                Object label = this.symbols.get(row.labels[k]);
+                if (this.isProbabilistic(i, k)) {
+                    builder.addTransition(i, label, row.targets[k],
+                            row.probabilities[k]);
+                } else {
+                    builder.addTransition(i, label, row.targets[k]);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    @Override
+    public String toString() {
+        return "PersistentAutomaton[version " + this.version + ", "
+                + this.stateCount + " states, " + this.transitionCount
+                + " transitions]";
+    }
+
+    /**
+     * The flags and the transitions of a state. A row never changes : an
+     * edit replaces it.
+     * @author Daniel Lefevre
+     */
+    private static final class Row {
+
+        /**
+         * True if the state is initial.
+         */
+        private final boolean initial;
+        /**
+         * True if the state is terminal.
+         */
+        private final boolean terminal;
+        /**
+         * The number of the label of each transition.
+         */
+        private final int[] labels;
+        /**
+         * The target of each transition.
+         */
+        private final int[] targets;
+        /**
+         * The probability of each transition, NaN for the transitions which
+         * are not probabilistic, null if none is.
+         */
+        private final double[] probabilities;
+
+        /**
+         * Constructor.
+         * @param initialIn
+         *            true if the state is initial
+         * @param terminalIn
+         *            true if the state is terminal
+         * @param labelsIn
+         *            the number of the label of each transition
+         * @param targetsIn
+         *            the target of each transition
+         * @param probabilitiesIn
+         *            the probability of each transition, NaN for none, null
+         *            if no transition has one
+         */
+        private Row(final boolean initialIn, final boolean terminalIn,
+                final int[] labelsIn, final int[] targetsIn,
+                final double[] probabilitiesIn) {
+            this.initial = initialIn;
+            this.terminal = terminalIn;
+            this.labels = labelsIn;
+            this.targets = targetsIn;
+            this.probabilities = probabilitiesIn;
+        }
+    }
+
+    /**
+     * The rows of {@link #CHUNK} consecutive states. A chunk is changed in
+     * place only by the editor which created it, and only until its next
+     * snapshot.
+     * @author Daniel Lefevre
+     */
+    private static final class Chunk {
+
+        /**
+         * The editor session which may change the chunk in place.
+         */
+        private final Object owner;
+        /**
+         * The rows.
+         */
+        private final Row[] rows;
+
+        /**
+         * Constructor.
+         * @param ownerIn
+         *            the editor session which may change the chunk in place
+         * @param rowsIn
+         *            the rows
+         */
+        private Chunk(final Object ownerIn, final Row[] rowsIn) {
+            this.owner = ownerIn;
+            this.rows = rowsIn;
+        }
+    }
+
+    /**
+     * Edits a new version of an automaton. The chunks shared with the
+     * versions already taken are copied before their first change, so that
+     * the versions never change. This class is not thread safe.
+     * @author Daniel Lefevre
+     */
+    public static final class Editor {
+
+        /**
+         * The numbers of the labels.
+         */
+        private final SymbolTable symbols;
+        /**
+         * The chunks of the rows.
+         */
+        private Chunk[] chunks;
+        /**
+         * True if the array of the chunks is not shared with a version.
+         */
+        private boolean chunksOwned;
+        /**
+         * The session of the editor since its last snapshot : the chunks it
+         * owns may be changed in place.
+         */
+        private Object session = new Object();
+        /**
+         * The number of states.
+         */
+        private int stateCount;
+        /**
+         * The number of transitions.
+         */
+        private int transitionCount;
+        /**
+         * The last version taken, null if the editor changed since.
+         */
+        private PersistentAutomaton last;
+
+        /**
+         * Constructor of an empty automaton, with labels numbered by a table
+         * of its own.
+         */
+        public Editor() {
+            this(new SymbolTable());
+        }
+
+        /**
+         * Constructor of an empty automaton.
+         * @param symbolsIn
+         *            the table numbering the labels
+         */
+        public Editor(final SymbolTable symbolsIn) {
+            this.symbols = symbolsIn;
+            this.chunks = new Chunk[0];
+            this.chunksOwned = true;
+        }
+
+        /**
+         * Constructor.
+         * @param base
+         *            the version to start from
+         */
+        private Editor(final PersistentAutomaton base) {
+            this.symbols = base.symbols;
+            this.chunks = base.chunks;
+            this.chunksOwned = false;
+            this.stateCount = base.stateCount;
+            this.transitionCount = base.transitionCount;
+            this.last = base;
+        }
+
+        /**
+         * Takes the current version. The next edits copy what they change.
+         * @return the version, the same as the last one if nothing changed
+         *         since
+         */
+        public PersistentAutomaton snapshot() {
+            if (this.last == null) {
+                this.last = new PersistentAutomaton(this);
+                this.session = new Object();
+                this.chunksOwned = false;
+            }
+            return this.last;
+        }
+
+        /**
+         * Getter.
+         * @return the number of states
+         */
+        public int size() {
+            return this.stateCount;
+        }
+
+        /**
+         * Adds a state.
+         * @param initial
+         *            true if the state is initial
+         * @param terminal
+         *            true if the state is terminal
+         * @return the index of the state
+         */
+        public int addState(final boolean initial, final boolean terminal) {
+            int index = this.stateCount;
+            if (index % CHUNK == 0) {
+                this.chunks = Arrays.copyOf(this.chunks,
+                        this.chunks.length + 1);
+                this.chunksOwned = true;
+                Row[] rows = new Row[CHUNK];
+                Arrays.fill(rows, EMPTY);
+                this.chunks[index / CHUNK] = new Chunk(this.session, rows);
+            }
+            ++this.stateCount;
+            Row row = this.row(index);
+            this.setRow(index, new Row(initial, terminal, row.labels,
+                    row.targets, row.probabilities));
+            return index;
+        }
+
+        /**
+         * Setter.
+         * @param state
+         *            the index of a state
+         * @param initial
+         *            true if the state is initial
+         */
+        public void setInitial(final int state, final boolean initial) {
+            Row row = this.row(state);
+            this.setRow(state, new Row(initial, row.terminal, row.labels,
+                    row.targets, row.probabilities));
+        }
+
+        /**
+         * Setter.
+         * @param state
+         *            the index of a state
+         * @param terminal
+         *            true if the state is terminal
+         */
+        public void setTerminal(final int state, final boolean terminal) {
+            Row row = this.row(state);
+            this.setRow(state, new Row(row.initial, terminal, row.labels,
+                    row.targets, row.probabilities));
+        }
+
+        /**
+         * Adds a transition without probability.
+         * @param from
+         *            the index of the source
+         * @param label
+         *            the label, null for an epsilon transition
+         * @param to
+         *            the index of the target
+         */
+        public void addTransition(final int from, final Object label,
+                final int to) {
+            this.add(from, label, to, Double.NaN);
+        }
+
+        /**
+         * Adds a probabilistic transition.
+         * @param from
+         *            the index of the source
+         * @param label
+         *            the label, without probability
+         * @param to
+         *            the index of the target
+         * @param probability
+         *            the probability
+         */
+        public void addTransition(final int from, final Object label,
+                final int to, final double probability) {
+            if (Double.isNaN(probability)) {
+                throw new IllegalArgumentException("The probability is NaN");
+            }
+            this.add(from, label, to, probability);
+        }
+
+        /**
+         * Removes the transitions between two states with a label, whatever
+         * their probability.
+         * @param from
+         *            the index of the source
+         * @param label
+         *            the label, without probability
+         * @param to
+         *            the index of the target
+         * @return the number of transitions removed
+         */
+        public int removeTransition(final int from, final Object label,
+                final int to) {
+            this.checkState(to);
+            Row row = this.row(from);
+            int labelId = this.symbols.indexOf(label);
+            int n = row.targets.length;
+            int[] labels = new int[n];
+            int[] targets = new int[n];
+            double[] probabilities = (row.probabilities == null) ? null
+                    : new double[n];
+            int kept = 0;
+            for (int k = 0; k < n; ++k) {
+                if ((row.labels[k] != labelId) || (row.targets[k] != to)) {
+                    labels[kept] = row.labels[k];
+                    targets[kept] = row.targets[k];
+                    if (probabilities != null) {
+                        probabilities[kept] = row.probabilities[k];
+                    }
+                    ++kept;
+                }
+            }
+            if (kept < n) {
+                this.setRow(from, new Row(row.initial, row.terminal, Arrays
+                        .copyOf(labels, kept), Arrays.copyOf(targets, kept),
+                        (probabilities == null) ? null : Arrays.copyOf(
+                                probabilities, kept)));
+                this.transitionCount -= n - kept;
+            }
+            return n - kept;
+        }
+
+        /**
+         * Adds a transition.
+         * @param from
+         *            the index of the source
+         * @param label
+         *            the label
+         * @param to
+         *            the index of the target
+         * @param probability
+         *            the probability, NaN for none
+         */
+        private void add(final int from, final Object label, final int to,
+                final double probability) {
+            this.checkState(to);
+            Row row = this.row(from);
+            int n = row.targets.length;
+            int[] labels = Arrays.copyOf(row.labels, n + 1);
+            int[] targets = Arrays.copyOf(row.targets, n + 1);
+            double[] probabilities = null;
+            if ((row.probabilities != null) || !Double.isNaN(probability)) {
+                if (row.probabilities == null) {
+                    probabilities = new double[n + 1];
+                    Arrays.fill(probabilities, Double.NaN);
+                } else {
+                    probabilities = Arrays.copyOf(row.probabilities, n + 1);
+                }
+                probabilities[n] = probability;
+            }
+            labels[n] = this.symbols.intern(label);
+            targets[n] = to;
+            this.setRow(from, new Row(row.initial, row.terminal, labels,
+                    targets, probabilities));
+            ++this.transitionCount;
+        }
+
+        /**
+         * Getter.
+         * @param state
+         *            the index of a state
+         * @return the row of the state
+         */
+        private Row row(final int state) {
+            this.checkState(state);
+            return this.chunks[state / CHUNK].rows[state % CHUNK];
+        }
+
+        /**
+         * Replaces the row of a state, copying its chunk and the array of
+         * the chunks if they are shared with a version.
+         * @param state
+         *            the index of the state
+         * @param row
+         *            the new row
+         */
+        private void setRow(final int state, final Row row) {
+            if (!this.chunksOwned) {
+                this.chunks = this.chunks.clone();
+                this.chunksOwned = true;
+            }
+            Chunk chunk = this.chunks[state / CHUNK];
+            if (chunk.owner != this.session) {
+                chunk = new Chunk(this.session, chunk.rows.clone());
+                this.chunks[state / CHUNK] = chunk;
+            }
+            chunk.rows[state % CHUNK] = row;
+            this.last = null;
+        }
+
+        /**
+         * Checks the index of a state.
+         * @param state
+         *            the index
+         * @throws IllegalArgumentException
+         *             if the state was not added
+         */
+        private void checkState(final int state) {
+            if ((state < 0) || (state >= this.stateCount)) {
+                throw new IllegalArgumentException("No state " + state);
+            }
+        }
+    }
+}
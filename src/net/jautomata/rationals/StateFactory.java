@@ -39,7 +39,7 @@ public interface StateFactory {
 	 * @param s a Set 
 	 * @return a shallow copy of <code>s</code>
 	 */
-	public Set stateSet(Set s);
+	public Set<State> stateSet(Set<State> s);
 	
 	/**
 	 * Returns a new StateFactory object which is the same as this 
@@ -0,0 +1,110 @@
+package net.jautomata.rationals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Numbers the labels of a family of automata from 0, so that the automata
+ * sharing a table compare the labels as integers instead of calling
+ * {@link Object#equals(Object)}. A {@link PSymbol} is numbered as its label :
+ * the probability is a weight of the transition, not a part of the symbol.
+ * The null label, for the epsilon transitions, is numbered like the others.
+ * <p>
+ * The numbers are never reused nor removed, so that the arrays indexed by
+ * them stay valid as the table grows. This class is thread safe.
+ * @author Daniel Lefevre
+ */
+public final class SymbolTable {
+
+    /**
+     * The labels, by number.
+     */
+    private final List<Object> symbols = new ArrayList<>();
+    /**
+     * The numbers of the labels.
+     */
+    private final Map<Object, Integer> ids = new HashMap<>();
+
+    /**
+     * Getter.
+     * @param label
+     *            a label, possibly a {@link PSymbol}
+     * @return the label without its probability
+     */
+    public static Object symbolOf(final Object label) {
+        return (label instanceof PSymbol) ? ((PSymbol) label).getLabel()
+                : label;
+    }
+
+    /**
+     * Getter.
+     * @param label
+     *            a label, possibly a {@link PSymbol}
+     * @return the probability of the label, 1 if it has none
+     */
+    public static double weightOf(final Object label) {
+        return (label instanceof PSymbol) ? ((PSymbol) label)
+                .getProbability() : 1;
+    }
+
+    /**
+     * Returns the number of a label, numbering it if needed.
+     * @param label
+     *            the label, possibly a {@link PSymbol}
+     * @return the number of the label
+     */
+    public synchronized int intern(final Object label) {
+        Object symbol = symbolOf(label);
+        Integer id = this.ids.get(symbol);
+        if (id == null) {
+            id = this.symbols.size();
+            this.symbols.add(symbol);
+            this.ids.put(symbol, id);
+        }
+        return id;
+    }
+
+    /**
+     * Getter.
+     * @param label
+     *            a label, possibly a {@link PSymbol}
+     * @return the number of the label, -1 if it is not numbered
+     */
+    public synchronized int indexOf(final Object label) {
+        Integer id = this.ids.get(symbolOf(label));
+        return (id == null) ? -1 : id;
+    }
+
+    /**
+     * Getter.
+     * @param id
+     *            the number of a label
+     * @return the label, without probability
+     */
+    public synchronized Object get(final int id) {
+        return this.symbols.get(id);
+    }
+
+    /**
+     * Getter.
+     * @return the number of labels numbered so far
+     */
+    public synchronized int size() {
+        return this.symbols.size();
+    }
+
+    /**
+     * Getter.
+     * @return the labels numbered so far, by number
+     */
+    public synchronized Object[] toArray() {
+        return this.symbols.toArray();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "SymbolTable" + this.symbols;
+    }
+}
@@ -19,6 +19,10 @@ public class Transition {
 
     private Object label;
 
+    private Object symbol;
+
+    private double weight;
+
     private State end;
 
     /**
@@ -34,7 +38,7 @@ public class Transition {
      */
     public Transition(final State start, final Object label, final State end) {
         this.start = start;
-        this.label = label;
+        this.setLabel(label);
         this.end = end;
     }
 
@@ -56,6 +60,24 @@ public class Transition {
         return this.label;
     }
 
+    /**
+     * Returns the label of this transition without its probability, computed
+     * when the label is set.
+     * @return the label of a {@link PSymbol}, the label itself otherwise.
+     */
+    public final Object symbol() {
+        return this.symbol;
+    }
+
+    /**
+     * Returns the probability of this transition, computed when the label is
+     * set.
+     * @return the probability of a {@link PSymbol} label, 1 otherwise.
+     */
+    public final double weight() {
+        return this.weight;
+    }
+
     /**
      * Returns the ending state of this transition.
      * @return the ending state of this transition, that is the state
@@ -165,6 +187,8 @@ public class Transition {
      */
     public final void setLabel(final Object obj) {
         this.label = obj;
+        this.symbol = SymbolTable.symbolOf(obj);
+        this.weight = SymbolTable.weightOf(obj);
     }
 
     /**
@@ -25,6 +25,7 @@ package net.jautomata.rationals.properties.binarytests;
 import net.jautomata.rationals.Automaton;
 import net.jautomata.rationals.properties.unarytests.IsEmpty;
 import net.jautomata.rationals.transformations.Complement;
+import net.jautomata.rationals.transformations.EpsilonTransitionRemover;
 import net.jautomata.rationals.transformations.Intersection;
 import net.jautomata.rationals.transformations.Pruner;
 
@@ -50,12 +51,17 @@ public class Inclusion implements BinaryTest {
      */
     @Override
     public final boolean test(final Automaton a, final Automaton b) {
+        // the intersection follows the letters of a one by one, so its
+        // epsilon transitions are removed first, and null is not a letter of
+        // the complement
+        Automaton closed = new EpsilonTransitionRemover().transform(a);
         Complement complement = new Complement();
         // we need to add a's alphabet for b's complement
-        complement.setAlphabet(a.alphabet());
+        complement.setAlphabet(closed.alphabet());
 
         Automaton cb = complement.transform(b);
-        this.cex = new Pruner().transform(new Intersection().transform(a, cb));
+        this.cex = new Pruner().transform(new Intersection().transform(closed,
+                cb));
 
         return new IsEmpty().test(this.cex);
     }
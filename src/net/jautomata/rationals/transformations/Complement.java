@@ -50,6 +50,8 @@ import net.jautomata.rationals.NoSuchStateException;
 import net.jautomata.rationals.State;
 import net.jautomata.rationals.Transition;
 
+import ca.polymtl.crac.tpot.budget.WorkBudget;
+
 /**
  * A transformation that computes the complement of an automaton.
  * <p>
@@ -73,11 +75,12 @@ public class Complement implements UnaryTransformation {
 
     /**
      * Use this function to enrich the alphabet to complement on.
+     * The set is copied, so the alphabet of the caller is left untouched.
      * @param alphabet the alphabet to enchance with
      * @author adeft
      */
     public void setAlphabet(Set<Object> alphabet) {
-        this.alphabet = alphabet;
+        this.alphabet = new HashSet<Object>(alphabet);
     }
 
     /*
@@ -86,12 +89,16 @@ public class Complement implements UnaryTransformation {
      * @see rationals.transformations.UnaryTransformation#transform(rationals.Automaton)
      */
     public Automaton transform(Automaton a) {
-        // we have to enrich the alphabet
-        alphabet.addAll(a.alphabet());
-
         //System.out.println("Complement ... determinisation");
         // we must determinize the automaton before inverting final states
         a = new ToDFA().transform(a);
+
+        // we have to enrich the alphabet (on a copy, so that the same
+        // instance can complement several automata); the determinization
+        // removed the epsilon transitions, and null is not a letter
+        Set<Object> alphabet = new HashSet<Object>(this.alphabet);
+        alphabet.addAll(a.alphabet());
+        alphabet.remove(null);
         //System.out.println("Complement ... computing");
 
         Automaton ret = new Automaton();
@@ -114,6 +121,7 @@ public class Complement implements UnaryTransformation {
         Set s = a.initials();
         todo.addAll(s);
         while (!todo.isEmpty()) {
+            WorkBudget.checkpoint();
             State st = (State) todo.remove(0);
             State ns = (State) sm.get(st);
             if (ns == null) {
@@ -17,6 +17,8 @@ import net.jautomata.rationals.Pair;
 import net.jautomata.rationals.State;
 import net.jautomata.rationals.Transition;
 
+import ca.polymtl.crac.tpot.budget.WorkBudget;
+
 /**
  * Computes the intersection between two automata.
  *
@@ -47,6 +49,7 @@ public class Intersection implements BinaryTransformation {
         }
 
         while (queue.peek() != null) {
+            WorkBudget.checkpoint();
             Pair<State, State> pair = queue.poll();
 
             Set<Transition> bDelta = b.delta(pair.second);
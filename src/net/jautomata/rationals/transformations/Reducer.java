@@ -11,6 +11,8 @@ import net.jautomata.rationals.NoSuchStateException;
 import net.jautomata.rationals.State;
 import net.jautomata.rationals.Transition;
 
+import ca.polymtl.crac.tpot.budget.WorkBudget;
+
 
 /**
  * Computes the minimal automaton from a deterministic automaton.
@@ -79,6 +81,7 @@ public class Reducer implements UnaryTransformation {
             current = new HashMap();
             i = old.keySet().iterator();
             while (i.hasNext()) {
+                WorkBudget.checkpoint();
                 State e1 = (State) i.next();
                 Set s = b.getStateFactory().stateSet();
                 Iterator j = current.keySet().iterator();
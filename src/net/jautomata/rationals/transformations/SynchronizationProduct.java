@@ -1,5 +1,6 @@
 package net.jautomata.rationals.transformations;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -15,8 +16,11 @@ import net.jautomata.rationals.NoSuchStateException;
 import net.jautomata.rationals.PSymbol;
 import net.jautomata.rationals.Pair;
 import net.jautomata.rationals.State;
+import net.jautomata.rationals.SymbolTable;
 import net.jautomata.rationals.Transition;
 
+import ca.polymtl.crac.tpot.budget.WorkBudget;
+
 /**
  *
  * @author adeft
@@ -36,6 +40,11 @@ public class SynchronizationProduct implements BinaryTransformation {
 
         Queue<Pair<State,State>> queue = new LinkedList<Pair<State,State>>();
 
+        // the targets of each state of b, by label number : built once per
+        // state, and compared with the labels of a as integers
+        SymbolTable symbols = new SymbolTable();
+        Map<State, State[]> bTargets = new HashMap<State, State[]>();
+
         Set<State> aStart = TransformationsToolBox.epsilonClosure(a.initials(), a);
         State bStart = b.initials().iterator().next(); // b is deterministic
 
@@ -49,16 +58,21 @@ public class SynchronizationProduct implements BinaryTransformation {
         }
 
         while (queue.peek() != null) {
+            WorkBudget.checkpoint();
             Pair<State, State> pair = queue.poll();
 
-            Set<Transition> bDelta = b.delta(pair.second);
-
-            // create map between labels and transitions
-            //  each label will apear only once because "b" is determinstic
-            Map<Object, Transition> bLabels= new HashMap<Object, Transition>();
-            for (Iterator<Transition> it = bDelta.iterator(); it.hasNext();) {
-                Transition bTransition = it.next();
-                bLabels.put(bTransition.label(), bTransition);
+            State[] bRow = bTargets.get(pair.second);
+            if (bRow == null) {
+                // each label will apear only once because "b" is determinstic
+                bRow = new State[0];
+                for (Transition bTransition : b.delta(pair.second)) {
+                    int id = symbols.intern(bTransition.symbol());
+                    if (id >= bRow.length) {
+                        bRow = Arrays.copyOf(bRow, id + 1);
+                    }
+                    bRow[id] = bTransition.end();
+                }
+                bTargets.put(pair.second, bRow);
             }
 
             // Find all future transitions
@@ -74,12 +88,12 @@ public class SynchronizationProduct implements BinaryTransformation {
             for (Iterator<Transition> it = aDelta.iterator(); it.hasNext();) {
                 Transition aTransition = it.next();
                 PSymbol aLabel = (PSymbol) aTransition.label();
-                Object label = aLabel.getLabel();
+                int id = symbols.indexOf(aTransition.symbol());
 
                 // we add the tranzition only if b has it too
-                if (bLabels.containsKey(label)) {
+                if ((id >= 0) && (id < bRow.length) && (bRow[id] != null)) {
                     State aState = aTransition.end();
-                    State bState = bLabels.get(label).end();
+                    State bState = bRow[id];
 
                     Pair newPair = new Pair<State, State>(aState, bState);
 
@@ -12,6 +12,8 @@ import net.jautomata.rationals.NoSuchStateException;
 import net.jautomata.rationals.State;
 import net.jautomata.rationals.Transition;
 
+import ca.polymtl.crac.tpot.budget.WorkBudget;
+
 
 /**
  * Determinization of an automaton.
@@ -32,6 +34,7 @@ public class ToDFA implements UnaryTransformation {
         map.put(e, b.addState(true, t));
         l.add(e);
         while (!l.isEmpty()) {
+            WorkBudget.checkpoint();
             Set e1 = (Set) l.removeFirst();
             done.add(e1);
             State ep1 = (State) map.get(e1);
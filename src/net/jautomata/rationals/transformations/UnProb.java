@@ -31,12 +31,8 @@ public class UnProb implements UnaryTransformation {
         while (it.hasNext()) {
             // get next transition
             Transition t = it.next();
-            Object label;
-            if(t.label() instanceof PSymbol)
-            	label = ((PSymbol) t.label()).getLabel();
-            else
-            	label = t.label();
-            
+            Object label = t.symbol();
+
             State start = states.get(t.start());
             // add start state if needed
             if (start == null) {
@@ -0,0 +1,161 @@
+package ca.polymtl.crac.tpot.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import ca.polymtl.crac.tpot.model.OpacityTest;
+import ca.polymtl.crac.tpot.model.metrics.MetricsListener;
+import ca.polymtl.crac.tpot.model.metrics.PhaseMetrics;
+
+/**
+ * Checks how the batches report the failures of the models.
+ * @author Daniel Lefevre
+ */
+public class BatchRunnerTest {
+
+    /**
+     * A listener throwing an error at the end of every phase.
+     * @author Daniel Lefevre
+     */
+    private static class Throwing implements MetricsListener {
+
+        /**
+         * The error thrown.
+         */
+        private final Error error;
+
+        /**
+         * Constructor.
+         * @param errorIn
+         *            the error thrown
+         */
+        Throwing(final Error errorIn) {
+            this.error = errorIn;
+        }
+
+        @Override
+        public void phaseFinished(final PhaseMetrics metrics) {
+            throw this.error;
+        }
+    }
+
+    /**
+     * A listener blocking at the end of a phase of an observation until it
+     * is interrupted.
+     * @author Daniel Lefevre
+     */
+    private static class Blocking implements MetricsListener {
+
+        /**
+         * The phase after which the listener blocks.
+         */
+        private final String phase;
+        /**
+         * The index of the observation of the phase.
+         */
+        private final int observation;
+
+        /**
+         * Constructor.
+         * @param phaseIn
+         *            the phase after which the listener blocks
+         * @param observationIn
+         *            the index of the observation of the phase
+         */
+        Blocking(final String phaseIn, final int observationIn) {
+            this.phase = phaseIn;
+            this.observation = observationIn;
+        }
+
+        @Override
+        public void phaseFinished(final PhaseMetrics metrics) {
+            if (metrics.getPhase().equals(this.phase)
+                    && (metrics.getObservation() == this.observation)) {
+                try {
+                    Thread.sleep(60000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * Getter.
+     * @return the sample models
+     * @throws Exception
+     *             if a resource has no valid path
+     */
+    private static List<String> models() throws Exception {
+        return Arrays.asList(OpacityTest.samplePath("ex"),
+                OpacityTest.samplePath("acyc"), OpacityTest.samplePath("m1"));
+    }
+
+    /**
+     * An error caused by a model alone fails this model only.
+     * @throws Exception
+     *             if the batch fails
+     */
+    @Test(timeout = 60000)
+    public final void modelErrorFailsModel() throws Exception {
+        BatchRunner runner = new BatchRunner(2, 0);
+        runner.setMetricsListener(new Throwing(new StackOverflowError()));
+        StringWriter out = new StringWriter();
+        assertEquals(3, runner.run(models(), ResultFormat.JSON, out));
+        assertEquals(3, out.toString().split("StackOverflowError").length - 1);
+    }
+
+    /**
+     * An OutOfMemoryError stops the batch, after the line of its model.
+     * @throws Exception
+     *             if the batch fails otherwise
+     */
+    @Test(timeout = 60000)
+    public final void outOfMemoryStopsBatch() throws Exception {
+        BatchRunner runner = new BatchRunner(1, 0);
+        runner.setMetricsListener(new Throwing(new OutOfMemoryError("test")));
+        StringWriter out = new StringWriter();
+        try {
+            runner.run(models(), ResultFormat.JSON, out);
+            fail("The batch should have stopped");
+        } catch (OutOfMemoryError e) {
+            assertEquals("test", e.getMessage());
+        }
+        String[] lines = out.toString().split(System.lineSeparator());
+        assertEquals(1, lines.length);
+        assertTrue(lines[0].contains("OutOfMemoryError"));
+    }
+
+    /**
+     * A model which times out is stopped, and reported with the opacities
+     * computed until then : m1 is stopped after the last inclusion test of
+     * its LPO.
+     * @throws Exception
+     *             if the batch fails
+     */
+    @Test(timeout = 60000)
+    public final void timeoutKeepsPartialResult() throws Exception {
+        BatchRunner runner = new BatchRunner(1, 500);
+        runner.setMetricsListener(new Blocking("inclusion.complement", 2));
+        StringWriter out = new StringWriter();
+        assertEquals(1, runner.run(
+                Arrays.asList(OpacityTest.samplePath("m1")),
+                ResultFormat.JSON, out));
+        String line = out.toString();
+        assertTrue(line, line.contains("TIMEOUT"));
+        Matcher lpo = Pattern.compile("\"lpo\":([^,]+),").matcher(line);
+        assertTrue(line, lpo.find());
+        assertEquals(0.7802329214657098, Double.parseDouble(lpo.group(1)),
+                1e-9);
+        assertTrue(line, line.contains("\"rpo\":null"));
+    }
+}
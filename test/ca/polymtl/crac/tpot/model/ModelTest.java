@@ -0,0 +1,80 @@
+package ca.polymtl.crac.tpot.model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Checks the notifications of the observers of a model.
+ * @author Daniel Lefevre
+ */
+public class ModelTest {
+
+    /**
+     * An observer recording the bounds of the LPO it receives.
+     * @author Daniel Lefevre
+     */
+    private static class Recorder implements ModelObserver {
+
+        /**
+         * The bounds of the LPO received, in order.
+         */
+        private final List<double[]> lpo = new ArrayList<>();
+        /**
+         * The number of arrays of extremes received.
+         */
+        private int minMax;
+
+        @Override
+        public void displayLpo(final double lpoMin, final double lpoMax) {
+            this.lpo.add(new double[] {lpoMin, lpoMax });
+        }
+
+        @Override
+        public void displayMinMaxOpacities(final double[] opacities) {
+            ++this.minMax;
+        }
+
+        @Override
+        public void displayResults(final Opacity opacity) {
+            // not recorded
+        }
+
+        @Override
+        public void displayRpo(final double rpoMin, final double rpoMax) {
+            // not recorded
+        }
+
+        @Override
+        public void displayVpo(final double vpoMin, final double vpoMax) {
+            // not recorded
+        }
+    }
+
+    /**
+     * The optimal scheduler notifies the observers with the bounds of the
+     * LPO only.
+     * @throws Exception
+     *             if the model cannot be read
+     */
+    @Test
+    public final void optimalScheduleNotifiesLpo() throws Exception {
+        String path = new File(ModelTest.class.getResource(
+                "/ca/polymtl/crac/tpot/scheduler/samples/nd.auto").toURI())
+                .getPath();
+        Model model = new BasicModel(path.substring(0, path.length()
+                - ".auto".length()));
+        Recorder recorder = new Recorder();
+        model.addObserver(recorder);
+        model.optimalScheduleModel();
+
+        assertEquals(1, recorder.lpo.size());
+        assertArrayEquals(new double[] {1, 1 }, recorder.lpo.get(0), 1e-9);
+        assertEquals(0, recorder.minMax);
+    }
+}
@@ -0,0 +1,338 @@
+package ca.polymtl.crac.tpot.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import ca.polymtl.crac.tpot.model.metrics.MetricsRecorder;
+import ca.polymtl.crac.tpot.model.metrics.PhaseMetrics;
+import ca.polymtl.crac.tpot.mtbdd.Mtbdd;
+import ca.polymtl.crac.tpot.solver.GaussSeidelSolver;
+import net.jautomata.rationals.Automaton;
+import net.jautomata.rationals.NoSuchStateException;
+import net.jautomata.rationals.State;
+import net.jautomata.rationals.Transition;
+
+/**
+ * Checks the opacities of the sample models against the values computed by
+ * the original, observation by observation, implementation.
+ * <p>
+ * The tests of this source root are JUnit 4 tests, compiled with the
+ * application and junit on the class path; the files other than the sources
+ * are resources, to be copied next to the compiled classes.
+ * @author Daniel Lefevre
+ */
+public class OpacityTest {
+
+    /**
+     * Tolerance on the computed probabilities.
+     */
+    private static final double EPSILON = 1e-9;
+
+    /**
+     * Builds a sample model.
+     * @param name
+     *            the name of the model, in the samples directory
+     * @return the opacity of the model, validated
+     * @throws Exception
+     *             if the model cannot be read
+     */
+    public static Opacity sample(final String name) throws Exception {
+        Model model = new BasicModel(samplePath(name));
+        model.buildModel();
+        return model.getOpacity();
+    }
+
+    /**
+     * Getter.
+     * @param name
+     *            the name of the model, in the samples directory
+     * @return the path of the files of the model, without extension
+     * @throws URISyntaxException
+     *             if the resource has no valid path
+     */
+    public static String samplePath(final String name) throws URISyntaxException {
+        File auto = new File(OpacityTest.class.getResource(
+                "samples/" + name + ".auto").toURI());
+        String path = auto.getPath();
+        return path.substring(0, path.length() - ".auto".length());
+    }
+
+    /**
+     * Copies an automaton, with a new initial state leading to the initial
+     * states of the copy by epsilon transitions.
+     * @param auto
+     *            the automaton
+     * @return the copy, recognizing the same language
+     * @throws NoSuchStateException
+     *             never
+     */
+    private static Automaton withEpsilons(final Automaton auto)
+            throws NoSuchStateException {
+        Automaton copy = new Automaton();
+        State initial = copy.addState(true, false);
+        Map<State, State> states = new HashMap<>();
+        for (State s : auto.states()) {
+            states.put(s, copy.addState(false, s.isTerminal()));
+        }
+        for (State s : auto.initials()) {
+            copy.addTransition(new Transition(initial, null, states.get(s)));
+        }
+        for (Transition t : auto.delta()) {
+            copy.addTransition(new Transition(states.get(t.start()),
+                    t.label(), states.get(t.end())));
+        }
+        return copy;
+    }
+
+    /**
+     * The LPO of the sample models.
+     * @throws Exception
+     *             if a model cannot be read
+     */
+    @Test
+    public final void lpo() throws Exception {
+        assertEquals(0.25, sample("ex").computeLpo(), EPSILON);
+        assertEquals(0.375, sample("acyc").computeLpo(), EPSILON);
+        assertEquals(0.7802329214657098, sample("m1").computeLpo(), EPSILON);
+        assertEquals(0.7168427975605036, sample("m4").computeLpo(), EPSILON);
+        assertEquals(0.5147845908148732, sample("m5").computeLpo(), EPSILON);
+    }
+
+    /**
+     * The RPO of the sample models.
+     * @throws Exception
+     *             if a model cannot be read
+     */
+    @Test
+    public final void rpo() throws Exception {
+        assertEquals(0.75, sample("ex").computeRpo(), EPSILON);
+        assertEquals(0.6524101186092028, sample("acyc").computeRpo(),
+                EPSILON);
+        assertEquals(0.2622425834275185, sample("m1").computeRpo(), EPSILON);
+        assertEquals(0.28581907232550363, sample("m4").computeRpo(),
+                EPSILON);
+        assertEquals(0.4775520285011773, sample("m5").computeRpo(), EPSILON);
+    }
+
+    /**
+     * The VPO of the sample models : each of them has an observation
+     * revealing the predicate.
+     * @throws Exception
+     *             if a model cannot be read
+     */
+    @Test
+    public final void vpo() throws Exception {
+        for (String name : new String[] {"ex", "acyc", "m1", "m4", "m5" }) {
+            assertEquals(name, 0, sample(name).computeVpo(), EPSILON);
+        }
+    }
+
+    /**
+     * The initial entropy is computed on its own, and is the one used by the
+     * RPO.
+     * @throws Exception
+     *             if a model cannot be read
+     */
+    @Test
+    public final void initialEntropy() throws Exception {
+        for (String name : new String[] {"ex", "acyc", "m1", "m4", "m5" }) {
+            Opacity expected = sample(name);
+            expected.computeRpo();
+            Opacity opacity = sample(name);
+            opacity.computeInitialEntropy();
+            assertEquals(name, expected.getInitialEntropy(),
+                    opacity.getInitialEntropy(), EPSILON);
+        }
+        Opacity opacity = sample("ex");
+        opacity.computeInitialEntropy();
+        assertEquals(1, opacity.getInitialEntropy(), EPSILON);
+    }
+
+    /**
+     * A solve stopped before the tolerance of its solver is reported, and
+     * the opacities computed from it are not cached.
+     * @throws Exception
+     *             if the model cannot be read
+     */
+    @Test
+    public final void notConverged() throws Exception {
+        Opacity opacity = sample("m1");
+        GaussSeidelSolver solver = new GaussSeidelSolver();
+        solver.setMaxIterations(1);
+        opacity.setSparseThreshold(0);
+        opacity.setSparseSolver(solver);
+        opacity.computeLpo();
+        assertFalse(opacity.isConverged());
+
+        opacity.setSparseSolver(new GaussSeidelSolver());
+        opacity.setAutomaton(opacity.getAutomaton());
+        opacity.computeLpo();
+        assertTrue(opacity.isConverged());
+    }
+
+    /**
+     * The symbolic LPO of the sample models, equal to the explicit one up to
+     * the tolerance of the power iteration.
+     * @throws Exception
+     *             if a model cannot be read
+     */
+    @Test
+    public final void symbolicLpo() throws Exception {
+        assertEquals(0.375, Mtbdd.computeLpo(sample("acyc")), EPSILON);
+        assertEquals(0.7802329214657098, Mtbdd.computeLpo(sample("m1")),
+                EPSILON);
+        assertEquals(0.7168427975605036, Mtbdd.computeLpo(sample("m4")),
+                EPSILON);
+        assertEquals(0.5147845908148732, Mtbdd.computeLpo(sample("m5")),
+                EPSILON);
+    }
+
+    /**
+     * A symbolic power iteration stopped before its tolerance is reported by
+     * the opacity.
+     * @throws Exception
+     *             if the model cannot be read
+     */
+    @Test
+    public final void symbolicNotConverged() throws Exception {
+        Opacity opacity = sample("m1");
+        Mtbdd.computeLpo(opacity);
+        assertTrue(opacity.isConverged());
+        Mtbdd.computeLpo(opacity, 1);
+        assertFalse(opacity.isConverged());
+    }
+
+    /**
+     * An observation using a letter the predicate does not use is included in
+     * the complement of the predicate : with the observations of m1, only
+     * "(a+b)*B" does not reveal the predicate.
+     * @throws Exception
+     *             if the model cannot be read
+     */
+    @Test
+    public final void complementOverObservationLetters() throws Exception {
+        Opacity opacity = sample("m1");
+        boolean[] revealing = opacity.computeRevealing(true);
+        assertEquals(true, revealing[0]);
+        assertEquals(false, revealing[1]);
+        assertEquals(true, revealing[2]);
+    }
+
+    /**
+     * After a change of the predicate, the opacities are recomputed with the
+     * joint product, and are those of a new opacity with this predicate.
+     * @throws Exception
+     *             if the model cannot be read
+     */
+    @Test
+    public final void setPhiUsesJointProduct() throws Exception {
+        Opacity opacity = sample("m1");
+        opacity.computeLpo();
+        Automaton phi = opacity.getObs().get(1);
+        Opacity expected = new Opacity(opacity.getAutomaton(),
+                opacity.getObs(), phi);
+
+        MetricsRecorder recorder = new MetricsRecorder();
+        opacity.setMetricsListener(recorder);
+        opacity.setPhi(phi);
+        assertEquals(expected.computeLpo(), opacity.computeLpo(), EPSILON);
+        assertEquals(expected.computeRpo(), opacity.computeRpo(), EPSILON);
+        assertEquals(expected.computeVpo(), opacity.computeVpo(), EPSILON);
+
+        Set<String> phases = new HashSet<>();
+        for (PhaseMetrics m : recorder.getMetrics()) {
+            phases.add(m.getPhase());
+        }
+        assertTrue(phases.contains("product.joint"));
+        assertFalse(phases.contains("product.phi"));
+        assertFalse(phases.contains("product.observation"));
+    }
+
+    /**
+     * Without the joint product, the terms of the predicate are computed
+     * observation by observation after a change of the predicate, and
+     * combined with the probabilities of the observations kept from the
+     * previous computation.
+     * @throws Exception
+     *             if the model cannot be read
+     */
+    @Test
+    public final void setPhiWithoutJointProduct() throws Exception {
+        Opacity opacity = sample("m1");
+        opacity.setJointProduct(false);
+        opacity.computeRpo();
+        Automaton phi = opacity.getObs().get(1);
+        Opacity expected = new Opacity(opacity.getAutomaton(),
+                opacity.getObs(), phi);
+
+        opacity.setPhi(phi);
+        assertEquals(expected.computeLpo(), opacity.computeLpo(), EPSILON);
+        assertEquals(expected.computeRpo(), opacity.computeRpo(), EPSILON);
+        assertEquals(expected.computeVpo(), opacity.computeVpo(), EPSILON);
+    }
+
+    /**
+     * The joint product of the bounded opacities is built once : a larger
+     * horizon only extends the propagation.
+     * @throws Exception
+     *             if the model cannot be read
+     */
+    @Test
+    public final void boundedProductBuiltOnce() throws Exception {
+        Opacity opacity = sample("m1");
+        MetricsRecorder recorder = new MetricsRecorder();
+        opacity.setMetricsListener(recorder);
+        for (int horizon : new int[] {1, 5, 2, 50 }) {
+            opacity.computeBoundedLpo(horizon);
+        }
+        assertEquals(0.7802329214657098, opacity.computeBoundedLpo(50),
+                EPSILON);
+
+        int products = 0;
+        int propagations = 0;
+        for (PhaseMetrics m : recorder.getMetrics()) {
+            if (m.getPhase().equals("product.joint")) {
+                ++products;
+            } else if (m.getPhase().equals("propagation")) {
+                ++propagations;
+            }
+        }
+        assertEquals(1, products);
+        assertEquals(5, propagations);
+    }
+
+    /**
+     * The epsilon transitions of the observations and of the predicate are
+     * removed before the products, the inclusions and the symbolic
+     * computation : the opacities are those of the automata without them.
+     * @throws Exception
+     *             if the model cannot be read
+     */
+    @Test
+    public final void epsilonObservations() throws Exception {
+        Opacity expected = sample("ex");
+        List<Automaton> observations = new ArrayList<>();
+        for (Automaton o : expected.getObs()) {
+            observations.add(withEpsilons(o));
+        }
+        Opacity opacity = new Opacity(expected.getAutomaton(), observations,
+                withEpsilons(expected.getPhi()));
+
+        assertEquals(expected.computeLpo(), opacity.computeLpo(), EPSILON);
+        assertEquals(expected.computeRpo(), opacity.computeRpo(), EPSILON);
+        assertEquals(expected.computeLpo(), Mtbdd.computeLpo(opacity),
+                EPSILON);
+    }
+}
@@ -0,0 +1,95 @@
+package ca.polymtl.crac.tpot.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.junit.Test;
+
+import ca.polymtl.crac.tpot.model.io.ModelDigest;
+import ca.polymtl.crac.tpot.solver.GaussSeidelSolver;
+
+/**
+ * Checks the cache of the opacities.
+ * @author Daniel Lefevre
+ */
+public class ResultCacheTest {
+
+    /**
+     * Creates an empty cache.
+     * @return the cache, in a new temporary directory
+     * @throws Exception
+     *             if the directory cannot be created
+     */
+    private static ResultCache cache() throws Exception {
+        File directory = Files.createTempDirectory("results").toFile();
+        directory.deleteOnExit();
+        return new ResultCache(directory);
+    }
+
+    /**
+     * Computes all the opacities.
+     * @param opacity
+     *            the opacity
+     */
+    private static void computeAll(final Opacity opacity) {
+        opacity.computeLpo();
+        opacity.computeRpo();
+        opacity.computeVpo();
+    }
+
+    /**
+     * The stored opacities are restored.
+     * @throws Exception
+     *             if the model cannot be read
+     */
+    @Test
+    public final void storeAndRestore() throws Exception {
+        ResultCache cache = cache();
+        Opacity opacity = OpacityTest.sample("m1");
+        computeAll(opacity);
+        assertTrue(cache.store("m1", opacity));
+
+        Opacity restored = OpacityTest.sample("m1");
+        assertTrue(cache.restore("m1", restored));
+        assertEquals(opacity.getLpo(), restored.getLpo(), 0);
+        assertEquals(opacity.getRpo(), restored.getRpo(), 0);
+        assertEquals(opacity.getVpo(), restored.getVpo(), 0);
+    }
+
+    /**
+     * The opacities computed from a solve which did not converge are not
+     * stored.
+     * @throws Exception
+     *             if the model cannot be read
+     */
+    @Test
+    public final void notConvergedNotStored() throws Exception {
+        ResultCache cache = cache();
+        Opacity opacity = OpacityTest.sample("m1");
+        GaussSeidelSolver solver = new GaussSeidelSolver();
+        solver.setMaxIterations(1);
+        opacity.setSparseThreshold(0);
+        opacity.setSparseSolver(solver);
+        computeAll(opacity);
+
+        assertFalse(cache.store("m1", opacity));
+        assertFalse(cache.restore("m1", OpacityTest.sample("m1")));
+    }
+
+    /**
+     * The keys change with the version of the computations, so that the
+     * opacities stored by a previous version are not read.
+     */
+    @Test
+    public final void keyDependsOnVersion() {
+        String key = ResultCache.key("auto", "reg");
+        assertEquals(key, ResultCache.key("auto", "reg"));
+        assertFalse(key.equals(ModelDigest.digest("auto", "reg",
+                "results-1")));
+        assertFalse(key.equals(ResultCache.key("auto", "reg2")));
+    }
+}
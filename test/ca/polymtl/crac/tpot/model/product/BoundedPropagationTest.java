@@ -0,0 +1,72 @@
+package ca.polymtl.crac.tpot.model.product;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import ca.polymtl.crac.tpot.model.JointDistribution;
+import ca.polymtl.crac.tpot.model.Opacity;
+import ca.polymtl.crac.tpot.model.OpacityTest;
+
+/**
+ * Checks the propagation of the probabilities over traces of bounded length.
+ * @author Daniel Lefevre
+ */
+public class BoundedPropagationTest {
+
+    /**
+     * Tolerance on the computed probabilities.
+     */
+    private static final double EPSILON = 1e-9;
+
+    /**
+     * A curve extended horizon by horizon is the one propagated at once.
+     * @throws Exception
+     *             if the model cannot be read
+     */
+    @Test
+    public final void extendMatchesSinglePropagation() throws Exception {
+        Opacity m1 = OpacityTest.sample("m1");
+        JointProduct product = new JointProduct(m1.getAutomaton(),
+                m1.getPhi(), m1.getObs());
+        JointDistribution[] expected = product.boundedDistributions(20);
+
+        BoundedPropagation propagation = new BoundedPropagation(product);
+        assertEquals(-1, propagation.getHorizon());
+        JointDistribution[] curve = null;
+        for (int horizon : new int[] {0, 3, 3, 1, 10, 20 }) {
+            curve = propagation.extend(horizon);
+            assertEquals(horizon + 1, curve.length);
+        }
+        assertEquals(20, propagation.getHorizon());
+
+        for (int k = 0; k < expected.length; ++k) {
+            assertEquals(expected[k].getPTotal(), curve[k].getPTotal(),
+                    EPSILON);
+            assertEquals(expected[k].getPPhi(), curve[k].getPPhi(), EPSILON);
+            for (int o = 0; o < expected[k].size(); ++o) {
+                assertEquals(expected[k].getPObs(o), curve[k].getPObs(o),
+                        EPSILON);
+                assertEquals(expected[k].getPPhiAndObs(o),
+                        curve[k].getPPhiAndObs(o), EPSILON);
+            }
+        }
+    }
+
+    /**
+     * Once no probability is left, the curve is flat.
+     * @throws Exception
+     *             if the model cannot be read
+     */
+    @Test
+    public final void flatAfterLongestTrace() throws Exception {
+        Opacity acyc = OpacityTest.sample("acyc");
+        BoundedPropagation propagation = new BoundedPropagation(
+                new JointProduct(acyc.getAutomaton(), acyc.getPhi(),
+                        acyc.getObs()));
+        JointDistribution[] curve = propagation.extend(100);
+        assertEquals(1, curve[100].getPTotal(), EPSILON);
+        assertEquals(0.375, curve[100].lpo(acyc.computeRevealing(true)),
+                EPSILON);
+    }
+}
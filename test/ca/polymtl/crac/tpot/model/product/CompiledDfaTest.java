@@ -0,0 +1,57 @@
+package ca.polymtl.crac.tpot.model.product;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import net.jautomata.rationals.Automaton;
+import net.jautomata.rationals.NoSuchStateException;
+import net.jautomata.rationals.State;
+import net.jautomata.rationals.Transition;
+
+/**
+ * Checks the determinization and the numbering of the compiled automata.
+ * @author Daniel Lefevre
+ */
+public class CompiledDfaTest {
+
+    /**
+     * An automaton without initial state recognizes the empty language : a
+     * single state, not accepting, that every letter leaves.
+     */
+    @Test
+    public final void noInitialState() {
+        Automaton auto = new Automaton();
+        auto.addState(false, true);
+        CompiledDfa dfa = new CompiledDfa(auto);
+
+        assertEquals(1, dfa.size());
+        assertFalse(dfa.isAccepting(0));
+        assertEquals(CompiledDfa.NONE, dfa.next(0, "a"));
+    }
+
+    /**
+     * The epsilon transitions are closed before the numbering : "a" is
+     * accepted through an epsilon transition, and the null label is not a
+     * letter.
+     * @throws NoSuchStateException
+     *             never
+     */
+    @Test
+    public final void epsilonTransitions() throws NoSuchStateException {
+        Automaton auto = new Automaton();
+        State s0 = auto.addState(true, false);
+        State s1 = auto.addState(false, false);
+        State s2 = auto.addState(false, true);
+        auto.addTransition(new Transition(s0, null, s1));
+        auto.addTransition(new Transition(s1, "a", s2));
+        CompiledDfa dfa = new CompiledDfa(auto);
+
+        int next = dfa.next(0, "a");
+        assertTrue(next != CompiledDfa.NONE);
+        assertTrue(dfa.isAccepting(next));
+        assertEquals(CompiledDfa.NONE, dfa.next(0, (Object) null));
+    }
+}
@@ -0,0 +1,55 @@
+package ca.polymtl.crac.tpot.model.product;
+
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import ca.polymtl.crac.tpot.model.Opacity;
+import ca.polymtl.crac.tpot.model.OpacityTest;
+import net.jautomata.rationals.Automaton;
+import net.jautomata.rationals.NoSuchStateException;
+import net.jautomata.rationals.State;
+import net.jautomata.rationals.Transition;
+
+/**
+ * Checks the product of the system with the predicate and the observation
+ * classes.
+ * @author Daniel Lefevre
+ */
+public class JointProductTest {
+
+    /**
+     * A predicate recognizing the empty language has a null probability.
+     * @throws Exception
+     *             if the model cannot be read
+     */
+    @Test
+    public final void emptyPredicate() throws Exception {
+        Opacity ex = OpacityTest.sample("ex");
+        JointProduct product = new JointProduct(ex.getAutomaton(),
+                new Automaton(), ex.getObs());
+        for (int i = 0; i < product.size(); ++i) {
+            assertFalse(product.isPhi(i));
+        }
+    }
+
+    /**
+     * The epsilon transitions of the system are rejected, since their
+     * probability would be lost.
+     * @throws NoSuchStateException
+     *             never
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public final void epsilonSystem() throws NoSuchStateException {
+        Automaton system = new Automaton();
+        State s0 = system.addState(true, false);
+        State s1 = system.addState(false, true);
+        system.addTransition(new Transition(s0, null, s1));
+        List<Automaton> observations = new ArrayList<>();
+        observations.add(system);
+        new JointProduct(system, system, observations);
+    }
+}
@@ -0,0 +1,63 @@
+package ca.polymtl.crac.tpot.mtbdd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+/**
+ * Checks the garbage collection of the Java engine.
+ * @author Daniel Lefevre
+ */
+public class JavaMtbddEngineTest {
+
+    /**
+     * Number of live nodes above which the automatic collection runs.
+     */
+    private static final int GC_THRESHOLD = 1 << 16;
+
+    /**
+     * The referenced nodes survive a collection, the others are freed.
+     */
+    @Test
+    public final void freeTreeKeepsReferencedNodes() {
+        JavaMtbddEngine engine = new JavaMtbddEngine();
+        long kept = engine.addConst(0.25);
+        long lost = engine.addConst(0.75);
+        engine.ref(kept);
+        engine.freeTree();
+
+        assertEquals(0.25, engine.getConstValue(kept), 0);
+        try {
+            engine.getConstValue(engine.plus(lost, kept));
+            fail("The unreferenced node should have been collected");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    /**
+     * The automatic collection running before an operation keeps all its
+     * operands, including the cube of the matrix multiplication, even if they
+     * are not referenced.
+     */
+    @Test
+    public final void automaticCollectionKeepsOperands() {
+        JavaMtbddEngine engine = new JavaMtbddEngine();
+        long x0 = engine.addIthVar(0);
+        long x1 = engine.addIthVar(1);
+        long cube = engine.addComputeCube(new long[] {engine.addIthVar(2) });
+
+        // fills the unique table up to the threshold, without collecting
+        for (int i = 0; engine.getNodeCount() <= GC_THRESHOLD; ++i) {
+            engine.addConst(i + 0.5);
+        }
+
+        // sum over x2 of x0 * x1
+        long product = engine.addMatrixMultiply(x0, x1, cube);
+        assertTrue(engine.getNodeCount() < GC_THRESHOLD);
+        assertEquals(2, engine.findMax(product), 0);
+        assertEquals(0, engine.findMin(product), 0);
+    }
+}
@@ -0,0 +1,117 @@
+package ca.polymtl.crac.tpot.scheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+import ca.polymtl.crac.tpot.model.io.AutoParser;
+import ca.polymtl.crac.tpot.model.io.RegParser;
+import net.jautomata.rationals.Automaton;
+
+/**
+ * Checks the evaluation of the schedulers of a nondeterministic model.
+ * @author Daniel Lefevre
+ */
+public class NonDetSchedulerTest {
+
+    /**
+     * Tolerance on the computed probabilities.
+     */
+    private static final double EPSILON = 1e-9;
+
+    /**
+     * Getter.
+     * @return the path of the files of the sample model, without extension
+     * @throws Exception
+     *             if the resource has no valid path
+     */
+    private static String samplePath() throws Exception {
+        String path = new File(NonDetSchedulerTest.class.getResource(
+                "samples/nd.auto").toURI()).getPath();
+        return path.substring(0, path.length() - ".auto".length());
+    }
+
+    /**
+     * Reads the automaton of the sample model.
+     * @return the automaton
+     * @throws Exception
+     *             if the file cannot be read
+     */
+    private static Automaton automaton() throws Exception {
+        AutoParser parser = new AutoParser(samplePath() + ".auto");
+        parser.parseFile();
+        return parser.getParsedAutomaton();
+    }
+
+    /**
+     * The extremes of the opacities over the schedulers : both observations
+     * reveal the predicate under every scheduler, while the RPO depends on
+     * the scheduler.
+     * @throws Exception
+     *             if the model cannot be read
+     */
+    @Test
+    public final void extremes() throws Exception {
+        NonDetScheduler scheduler = new NonDetScheduler();
+        scheduler.computeOpacities(automaton(), samplePath() + ".reg");
+        assertEquals(0, scheduler.getFailed());
+        assertEquals(scheduler.getTotal(), scheduler.getDone());
+        assertEquals(1, scheduler.getMinLpo(), EPSILON);
+        assertEquals(1, scheduler.getMaxLpo(), EPSILON);
+        assertEquals(0, scheduler.getMinRpo(), EPSILON);
+        assertEquals(0.18872187554086717, scheduler.getMaxRpo(), EPSILON);
+    }
+
+    /**
+     * A branch whose data is incorrect is counted as failed.
+     * @throws Exception
+     *             if the model cannot be read
+     */
+    @Test
+    public final void incorrectDataFailsBranch() throws Exception {
+        RegParser parser = new RegParser(samplePath() + ".reg");
+        parser.parseFile();
+        NonDetScheduler scheduler = new NonDetScheduler();
+        scheduler.computeOpacities(automaton(),
+                parser.getParsedObservations(), null);
+        assertEquals(scheduler.getTotal(), scheduler.getFailed());
+    }
+
+    /**
+     * Any other exception of a branch is thrown again by the calling thread,
+     * even if the branch ran on the executor.
+     * @throws Exception
+     *             if the model cannot be read
+     */
+    @Test
+    public final void unexpectedExceptionThrown() throws Exception {
+        List<Automaton> broken = new AbstractList<Automaton>() {
+            @Override
+            public Automaton get(final int index) {
+                throw new IllegalStateException("broken");
+            }
+
+            @Override
+            public int size() {
+                throw new IllegalStateException("broken");
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            new NonDetScheduler(executor, null).computeOpacities(automaton(),
+                    broken, new Automaton());
+            fail("The exception of the branches should be thrown");
+        } catch (IllegalStateException e) {
+            assertEquals("broken", e.getMessage());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
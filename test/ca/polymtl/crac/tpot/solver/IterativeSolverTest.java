@@ -0,0 +1,81 @@
+package ca.polymtl.crac.tpot.solver;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Checks the convergence of the iterative solvers against the dense solver.
+ * @author Daniel Lefevre
+ */
+public class IterativeSolverTest {
+
+    /**
+     * Tolerance on the solutions.
+     */
+    private static final double EPSILON = 1e-9;
+    /**
+     * The right-hand side of the system of {@link #chain()} : the last state
+     * is terminal.
+     */
+    private static final double[] RHS = {0, 0, 0, 0.25 };
+
+    /**
+     * Builds the system (I - P) x = t of a chain of four states, each going
+     * to the next one with probability 0.5, to itself with probability 0.25,
+     * and leaving the chain otherwise.
+     * @return the matrix I - P
+     */
+    private static SparseMatrix chain() {
+        SparseMatrix.Builder builder = new SparseMatrix.Builder(4);
+        for (int i = 0; i < 4; ++i) {
+            builder.add(i, i, 1 - 0.25);
+            if (i < 3) {
+                builder.add(i, i + 1, -0.5);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Checks that a solver converges to the solution of the dense solver.
+     * @param solver
+     *            the solver
+     */
+    private static void converges(final LinearSolver solver) {
+        double[] expected = new DenseSolver().solve(chain(), RHS)
+                .getSolution();
+        SolverResult result = solver.solve(chain(), RHS);
+        assertTrue(result.isConverged());
+        assertTrue(result.getResidual() <= EPSILON);
+        assertArrayEquals(expected, result.getSolution(), EPSILON);
+    }
+
+    /**
+     * Gauss-Seidel converges on the system.
+     */
+    @Test
+    public final void gaussSeidelConverges() {
+        converges(new GaussSeidelSolver());
+    }
+
+    /**
+     * BiCGSTAB converges on the system.
+     */
+    @Test
+    public final void biCgStabConverges() {
+        converges(new BiCgStabSolver());
+    }
+
+    /**
+     * A solver stopped before the tolerance reports it.
+     */
+    @Test
+    public final void notConverged() {
+        GaussSeidelSolver solver = new GaussSeidelSolver();
+        solver.setMaxIterations(1);
+        assertFalse(solver.solve(chain(), RHS).isConverged());
+    }
+}
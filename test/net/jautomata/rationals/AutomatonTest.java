@@ -0,0 +1,101 @@
+package net.jautomata.rationals;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import ca.polymtl.crac.tpot.scheduler.EquivalenceClass;
+import ca.polymtl.crac.tpot.scheduler.Scheduler;
+
+/**
+ * Checks the application of an internal scheduler to an automaton.
+ * @author Daniel Lefevre
+ */
+public class AutomatonTest {
+
+    /**
+     * Builds a system choosing between a, b and c in its initial state,
+     * followed by d after a.
+     * @return the system
+     * @throws NoSuchStateException
+     *             never
+     */
+    private static Automaton system() throws NoSuchStateException {
+        Automaton system = new Automaton();
+        State s0 = system.addState(true, false);
+        State s1 = system.addState(false, false);
+        State s2 = system.addState(false, true);
+        system.addTransition(new Transition(s0, new PSymbol("a", 0.2), s1));
+        system.addTransition(new Transition(s0, new PSymbol("b", 0.3), s2));
+        system.addTransition(new Transition(s0, new PSymbol("c", 0.5), s2));
+        system.addTransition(new Transition(s1, new PSymbol("d", 1.0), s2));
+        return system;
+    }
+
+    /**
+     * Builds an equivalence class.
+     * @param actions
+     *            the actions of the class
+     * @return the class
+     */
+    private static EquivalenceClass eqClass(final String... actions) {
+        EquivalenceClass eqClass = new EquivalenceClass();
+        for (String action : actions) {
+            eqClass.addEqAction(action);
+        }
+        return eqClass;
+    }
+
+    /**
+     * Getter.
+     * @param auto
+     *            an automaton
+     * @return the label and the probability of each transition, sorted
+     */
+    private static List<String> transitions(final Automaton auto) {
+        List<String> transitions = new ArrayList<>();
+        for (Transition t : auto.delta()) {
+            transitions.add(t.symbol() + " " + t.weight());
+        }
+        Collections.sort(transitions);
+        return transitions;
+    }
+
+    /**
+     * The transitions of a state whose actions are in a same class are
+     * merged under the concatenation of the actions of the class, their
+     * probabilities being divided by their number; an action of several
+     * classes belongs to the first one, and the other actions are kept. The
+     * scheduled automaton is a copy : the system is unchanged.
+     * @throws NoSuchStateException
+     *             never
+     */
+    @Test
+    public final void schedule() throws NoSuchStateException {
+        Automaton system = system();
+        List<String> before = transitions(system);
+
+        Scheduler scheduler = new Scheduler();
+        scheduler.addEqClass(eqClass("a", "b"));
+        scheduler.addEqClass(eqClass("b", "c"));
+        Automaton scheduled = system.schedule(scheduler);
+
+        List<String> expected = new ArrayList<>();
+        expected.add("ab 0.1");
+        expected.add("ab 0.15");
+        expected.add("bc 0.5");
+        expected.add("d 1.0");
+        assertEquals(expected, transitions(scheduled));
+        assertEquals(system.states().size(), scheduled.states().size());
+        assertTrue(scheduled.alphabet().contains("ab"));
+        assertTrue(scheduled.alphabet().contains("bc"));
+
+        assertEquals(before, transitions(system));
+        assertEquals(4, system.delta().size());
+    }
+}
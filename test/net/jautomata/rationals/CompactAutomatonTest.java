@@ -0,0 +1,85 @@
+package net.jautomata.rationals;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import ca.polymtl.crac.tpot.model.Opacity;
+import ca.polymtl.crac.tpot.model.OpacityTest;
+
+/**
+ * Checks that a compact automaton is equivalent to the automaton it was
+ * converted from.
+ * @author Daniel Lefevre
+ */
+public class CompactAutomatonTest {
+
+    /**
+     * Tolerance on the computed probabilities.
+     */
+    private static final double EPSILON = 1e-9;
+
+    /**
+     * The sample models.
+     */
+    private static final String[] SAMPLES = {"ex", "acyc", "m1", "m4",
+            "m5" };
+
+    /**
+     * The conversion keeps the states, the transitions and their
+     * probabilities : the opacities of the converted system are the same.
+     * @throws Exception
+     *             if a model cannot be read
+     */
+    @Test
+    public final void sameOpacities() throws Exception {
+        for (String name : SAMPLES) {
+            Opacity expected = OpacityTest.sample(name);
+            Automaton system = expected.getAutomaton();
+            CompactAutomaton compact = CompactAutomaton.fromAutomaton(system);
+            assertEquals(system.states().size(), compact.size());
+            assertEquals(system.delta().size(), compact.transitionCount());
+            assertEquals(system.initials().size(),
+                    compact.getInitials().length);
+
+            Opacity opacity = new Opacity(compact.toAutomaton(),
+                    expected.getObs(), expected.getPhi());
+            assertEquals(name, expected.computeLpo(), opacity.computeLpo(),
+                    EPSILON);
+            assertEquals(name, expected.computeRpo(), opacity.computeRpo(),
+                    EPSILON);
+        }
+    }
+
+    /**
+     * The transitions of each state are those of the automaton, with the
+     * same labels and probabilities.
+     * @throws Exception
+     *             if the model cannot be read
+     */
+    @Test
+    public final void sameTransitions() throws Exception {
+        Automaton system = OpacityTest.sample("m1").getAutomaton();
+        CompactAutomaton compact = CompactAutomaton.fromAutomaton(system);
+        Automaton back = compact.toAutomaton();
+        for (int i = 0; i < compact.size(); ++i) {
+            State state = compact.getState(i);
+            assertEquals(compact.endTransition(i) - compact.firstTransition(i),
+                    compact.delta(state).size());
+            for (Transition t : compact.delta(state)) {
+                int label = compact.getLabelId(t.symbol());
+                boolean found = false;
+                for (int k = compact.firstTransition(i); k < compact
+                        .endTransition(i); ++k) {
+                    found |= (compact.getTransitionLabel(k) == label)
+                            && (compact.getTarget(k) == compact.indexOf(t
+                                    .end()))
+                            && (compact.getProbability(k) == t.weight());
+                }
+                assertEquals(true, found);
+            }
+        }
+        assertEquals(system.delta().size(), back.delta().size());
+        assertEquals(system.states().size(), back.states().size());
+    }
+}
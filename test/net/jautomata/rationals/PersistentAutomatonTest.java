@@ -0,0 +1,82 @@
+package net.jautomata.rationals;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import ca.polymtl.crac.tpot.model.Opacity;
+import ca.polymtl.crac.tpot.model.OpacityTest;
+
+/**
+ * Checks that a persistent automaton is equivalent to the automaton it was
+ * converted from, and that its versions do not change.
+ * @author Daniel Lefevre
+ */
+public class PersistentAutomatonTest {
+
+    /**
+     * Tolerance on the computed probabilities.
+     */
+    private static final double EPSILON = 1e-9;
+
+    /**
+     * The sample models.
+     */
+    private static final String[] SAMPLES = {"ex", "acyc", "m1", "m4",
+            "m5" };
+
+    /**
+     * The conversions keep the states, the transitions and their
+     * probabilities : the opacities of the converted systems are the same.
+     * @throws Exception
+     *             if a model cannot be read
+     */
+    @Test
+    public final void sameOpacities() throws Exception {
+        for (String name : SAMPLES) {
+            Opacity expected = OpacityTest.sample(name);
+            Automaton system = expected.getAutomaton();
+            PersistentAutomaton persistent = PersistentAutomaton
+                    .fromAutomaton(system);
+            assertEquals(system.states().size(), persistent.size());
+            assertEquals(system.delta().size(), persistent.transitionCount());
+
+            Automaton[] converted = {persistent.toAutomaton(),
+                    persistent.toCompactAutomaton().toAutomaton() };
+            for (Automaton auto : converted) {
+                Opacity opacity = new Opacity(auto, expected.getObs(),
+                        expected.getPhi());
+                assertEquals(name, expected.computeLpo(),
+                        opacity.computeLpo(), EPSILON);
+                assertEquals(name, expected.computeRpo(),
+                        opacity.computeRpo(), EPSILON);
+            }
+        }
+    }
+
+    /**
+     * The edits of a version give a new version, the previous one being left
+     * unchanged.
+     * @throws Exception
+     *             if the model cannot be read
+     */
+    @Test
+    public final void editsKeepPreviousVersion() throws Exception {
+        Automaton system = OpacityTest.sample("ex").getAutomaton();
+        PersistentAutomaton first = PersistentAutomaton.fromAutomaton(system);
+        PersistentAutomaton.Editor editor = first.edit();
+        int state = editor.addState(false, true);
+        editor.addTransition(0, "c", state, 0.5);
+        PersistentAutomaton second = editor.snapshot();
+
+        assertTrue(first.getVersion() != second.getVersion());
+        assertEquals(system.states().size(), first.size());
+        assertEquals(system.delta().size(), first.transitionCount());
+        assertEquals(system.states().size() + 1, second.size());
+        assertEquals(system.delta().size() + 1, second.transitionCount());
+        assertEquals(system.delta().size(), first.toAutomaton().delta()
+                .size());
+        assertEquals(first.degree(0) + 1, second.degree(0));
+    }
+}